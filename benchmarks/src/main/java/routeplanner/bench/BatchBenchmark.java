@@ -0,0 +1,42 @@
+package routeplanner.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the BatchQueryEngine over all queries of testcases_bigGraph.txt; one operation is one
+ * complete batch.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+    @Param({"1.0", "1.4515"})
+    double scalingFactor;
+
+    @Param({"1", "4"})
+    int threads;
+
+    private PlannerFixture fixture;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = PlannerFixture.create();
+        fixture.loadBigGraph();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public Object batch() throws InterruptedException {
+        return fixture.runBatch(scalingFactor, threads);
+    }
+}
@@ -0,0 +1,39 @@
+package routeplanner.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A size × size cost matrix between the start and goal cities of the first bigGraph queries, once with
+ * distanceMatrix (one search per source on all processors) and once with one A* search per pair.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DistanceMatrixBenchmark {
+    @Param({"10", "30"})
+    int size;
+
+    private PlannerFixture fixture;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = PlannerFixture.create();
+        fixture.loadBigGraph();
+    }
+
+    @Benchmark
+    public Object distanceMatrix() throws InterruptedException {
+        return fixture.distanceMatrix(size);
+    }
+
+    @Benchmark
+    public Object pairwise() {
+        return fixture.pairwiseCosts(size);
+    }
+}
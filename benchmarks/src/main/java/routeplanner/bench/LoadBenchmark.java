@@ -0,0 +1,48 @@
+package routeplanner.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to read the cities and connections files and build the search graph, and to open the same
+ * network from a binary snapshot instead.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LoadBenchmark {
+    private PlannerFixture fixture;
+    private Path snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = PlannerFixture.create();
+        fixture.loadBigGraph();
+        snapshot = Files.createTempFile("bigGraph", ".rpsn");
+        fixture.writeSnapshot(snapshot.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Benchmark
+    public PlannerFixture loadBigGraph() throws IOException {
+        fixture.loadBigGraph();
+        return fixture;
+    }
+
+    @Benchmark
+    public PlannerFixture loadBigGraphSnapshot() throws IOException {
+        fixture.loadSnapshot(snapshot.toString());
+        return fixture;
+    }
+}
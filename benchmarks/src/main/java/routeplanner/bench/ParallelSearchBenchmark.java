@@ -0,0 +1,46 @@
+package routeplanner.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a single parallelSearch call against the number of worker threads, on bigGraph and on
+ * synthetic grids of 100 × 100 and 300 × 300 cities. Like {@link SearchBenchmark} it cycles through the
+ * queries, one per invocation. Divide the 1-thread score by the others for the speedup curve; it is only
+ * meaningful with at least as many cores as threads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ParallelSearchBenchmark {
+    @Param({"bigGraph", "grid100", "grid300"})
+    String network;
+
+    @Param({"1", "2", "4", "8"})
+    int threads;
+
+    private PlannerFixture fixture;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = PlannerFixture.create();
+        if (network.equals("bigGraph")) {
+            fixture.loadBigGraph();
+        } else {
+            fixture.loadSyntheticGrid(Integer.parseInt(network.substring("grid".length())), 50, 42);
+        }
+    }
+
+    @Benchmark
+    public Object search() throws InterruptedException {
+        int query = next;
+        next = (next + 1) % fixture.queryCount();
+        return fixture.parallelSearch(query, threads);
+    }
+}
@@ -0,0 +1,128 @@
+package routeplanner.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a single aStarSearch call. The bigGraph benchmark cycles through the queries of
+ * testcases_bigGraph.txt, one query per invocation, so the score is the mean over the whole query set.
+ * The small networks run through the budgeted {@code search}, because RoutePlanner's aStarSearch prints
+ * every route. The other bigGraph benchmarks run the same queries through another engine, to compare with
+ * {@code bigGraph} at scaling factor 1.0 without dominance pruning; the contraction hierarchy is built once
+ * per trial, outside the measurement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+
+    @State(Scope.Thread)
+    public static class BigGraph {
+        @Param({"1.0", "1.4515"})
+        double scalingFactor;
+
+        @Param({"false", "true"})
+        boolean dominancePruning;
+
+        PlannerFixture fixture;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            fixture = PlannerFixture.create();
+            fixture.loadBigGraph();
+            fixture.setDominancePruning(dominancePruning);
+        }
+
+        int nextQuery() {
+            int query = next;
+            next = (next + 1) % fixture.queryCount();
+            return query;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Engines {
+        PlannerFixture fixture;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            fixture = PlannerFixture.create();
+            fixture.loadBigGraph();
+        }
+
+        int nextQuery() {
+            int query = next;
+            next = (next + 1) % fixture.queryCount();
+            return query;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Hierarchy {
+        PlannerFixture fixture;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            fixture = PlannerFixture.create();
+            fixture.loadBigGraph();
+            fixture.buildContractionHierarchy();
+        }
+
+        int nextQuery() {
+            int query = next;
+            next = (next + 1) % fixture.queryCount();
+            return query;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SmallGraph {
+        @Param({"0", "1", "2", "3", "4", "5", "6", "7"})
+        int testCase;
+
+        PlannerFixture fixture;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            fixture = PlannerFixture.create();
+            fixture.loadSmallGraph(testCase);
+        }
+    }
+
+    @Benchmark
+    public Object bigGraph(BigGraph state) {
+        return state.fixture.search(state.nextQuery(), state.scalingFactor);
+    }
+
+    @Benchmark
+    public Object bigGraphFixedPoint(Engines state) {
+        return state.fixture.fixedPointSearch(state.nextQuery());
+    }
+
+    @Benchmark
+    public Object bigGraphBidirectional(Engines state) {
+        return state.fixture.bidirectionalSearch(state.nextQuery());
+    }
+
+    @Benchmark
+    public Object bigGraphPareto(Engines state) {
+        return state.fixture.paretoSearch(state.nextQuery());
+    }
+
+    @Benchmark
+    public Object bigGraphContractionHierarchy(Hierarchy state) {
+        return state.fixture.contractionHierarchySearch(state.nextQuery());
+    }
+
+    @Benchmark
+    public int smallGraph(SmallGraph state) {
+        return state.fixture.searchSmall();
+    }
+}
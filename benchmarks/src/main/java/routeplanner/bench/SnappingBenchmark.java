@@ -0,0 +1,53 @@
+package routeplanner.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapping GPS positions to bigGraph cities: the start and goal of every query moved about 2 km away,
+ * snapped with the spatial index and with a scan over all cities, and aStarSearch between both positions
+ * including their snapping. Like {@link SearchBenchmark} it cycles through the positions, one per invocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SnappingBenchmark {
+    private PlannerFixture fixture;
+    private int nextPosition;
+    private int nextQuery;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = PlannerFixture.create();
+        fixture.loadBigGraph();
+        fixture.drawPositions(42);
+    }
+
+    @Benchmark
+    public Object nearestCity() {
+        return fixture.nearestCity(advancePosition());
+    }
+
+    @Benchmark
+    public Object nearestCityByScan() {
+        return fixture.nearestCityByScan(advancePosition());
+    }
+
+    @Benchmark
+    public Object snappedSearch() {
+        int query = nextQuery;
+        nextQuery = (nextQuery + 1) % fixture.queryCount();
+        return fixture.snappedSearch(query);
+    }
+
+    private int advancePosition() {
+        int position = nextPosition;
+        nextPosition = (nextPosition + 1) % (2 * fixture.queryCount());
+        return position;
+    }
+}
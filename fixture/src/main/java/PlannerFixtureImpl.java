@@ -0,0 +1,254 @@
+import routeplanner.bench.PlannerFixture;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Default-package side of {@link PlannerFixture}, calling the planners directly.
+ */
+public class PlannerFixtureImpl implements PlannerFixture {
+    private RoutePlanner2 planner2;
+    private List<TestCase> testCases;
+    private RoutePlanner planner;
+    private final SearchScratch<State> smallScratch = new SearchScratch<>();
+    private BatchQueryEngine engine;
+    private int engineThreads;
+    private double[][] positions; // latitude and longitude; start and goal of query i at 2 * i and 2 * i + 1
+    private City2[] scannedCities;
+
+    @Override
+    public void loadBigGraph() throws IOException {
+        planner2 = new RoutePlanner2();
+        planner2.readCities(PlannerFixture.dataFile("testcases_Teilaufgabe_3/bigGraph_cities.txt"));
+        planner2.readConnections(PlannerFixture.dataFile("testcases_Teilaufgabe_3/bigGraph_connections.txt"));
+        testCases = planner2.readTestCases(PlannerFixture.dataFile("testcases_Teilaufgabe_3/testcases_bigGraph.txt"));
+    }
+
+    @Override
+    public void loadSyntheticGrid(int side, int queries, long seed) throws IOException {
+        Random random = new Random(seed);
+        String[] permits = {"P1", "P2", "P3", "P4", "P5"};
+        City2[] grid = new City2[side * side];
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                String permit = random.nextInt(50) == 0 ? permits[random.nextInt(permits.length)] : "NONE";
+                grid[row * side + column] = new City2("C" + row + "_" + column,
+                        47.0 + (row + 0.4 * random.nextDouble()) * 0.05,
+                        6.0 + (column + 0.4 * random.nextDouble()) * 0.07, permit);
+            }
+        }
+
+        planner2 = new RoutePlanner2();
+        Path citiesFile = Files.createTempFile("grid", "_cities.txt");
+        Path connectionsFile = Files.createTempFile("grid", "_connections.txt");
+        try {
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(citiesFile, StandardCharsets.UTF_8))) {
+                out.println("city;lat;lon;available_permit");
+                for (City2 city : grid) {
+                    out.println(city.getName() + ";" + city.getLatitude() + ";" + city.getLongitude() + ";"
+                            + (city.getAvailablePermit() == null ? "NONE" : city.getAvailablePermit()));
+                }
+            }
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(connectionsFile, StandardCharsets.UTF_8))) {
+                out.println("city_1;city_2;distance;required_permit");
+                for (int i = 0; i < grid.length; i++) {
+                    int row = i / side;
+                    int column = i % side;
+                    if (column + 1 < side) writeRoad(out, grid[i], grid[i + 1], random, permits);
+                    if (row + 1 < side) writeRoad(out, grid[i], grid[i + side], random, permits);
+                    if (row + 1 < side && column + 1 < side && random.nextInt(4) == 0) {
+                        writeRoad(out, grid[i], grid[i + side + 1], random, permits);
+                    }
+                }
+            }
+            planner2.readCities(citiesFile.toString());
+            planner2.readConnections(connectionsFile.toString());
+        } finally {
+            Files.deleteIfExists(citiesFile);
+            Files.deleteIfExists(connectionsFile);
+        }
+
+        testCases = new ArrayList<>();
+        for (int i = 0; i < queries; i++) {
+            testCases.add(new TestCase(grid[random.nextInt(grid.length)].getName(),
+                    grid[random.nextInt(grid.length)].getName()));
+        }
+    }
+
+    private void writeRoad(PrintWriter out, City2 city1, City2 city2, Random random, String[] permits) {
+        double distance = Math.ceil(planner2.haversineDistance(city1, city2) * (1.05 + 0.35 * random.nextDouble()));
+        String permit = random.nextInt(20) == 0 ? permits[random.nextInt(permits.length)] : "NONE";
+        out.println(city1.getName() + ";" + city2.getName() + ";" + distance + ";" + permit);
+    }
+
+    @Override
+    public void writeSnapshot(String file) throws IOException {
+        planner2.writeSnapshot(file);
+    }
+
+    @Override
+    public void loadSnapshot(String file) throws IOException {
+        planner2 = new RoutePlanner2();
+        planner2.readSnapshot(file);
+    }
+
+    @Override
+    public void loadSmallGraph(int number) throws IOException {
+        planner = new RoutePlanner();
+        planner.readCities(PlannerFixture.dataFile("testcases_Teilaufgabe_2/t" + number + "_cities.txt"));
+        planner.readConnections(PlannerFixture.dataFile("testcases_Teilaufgabe_2/t" + number + "_connections.txt"));
+    }
+
+    @Override
+    public void setDominancePruning(boolean enabled) {
+        planner2.setDominancePruning(enabled);
+    }
+
+    @Override
+    public int queryCount() {
+        return testCases.size();
+    }
+
+    @Override
+    public Object search(int index, double scalingFactor) {
+        TestCase testCase = testCases.get(index);
+        return planner2.aStarSearch(testCase.getStartCity(), testCase.getGoalCity(), scalingFactor);
+    }
+
+    @Override
+    public Object fixedPointSearch(int index) {
+        TestCase testCase = testCases.get(index);
+        return planner2.fixedPointSearch(testCase.getStartCity(), testCase.getGoalCity(),
+                IntegerSearch.MILLIMETRES_PER_KM);
+    }
+
+    @Override
+    public Object bidirectionalSearch(int index) {
+        TestCase testCase = testCases.get(index);
+        return planner2.bidirectionalSearch(testCase.getStartCity(), testCase.getGoalCity());
+    }
+
+    @Override
+    public Object paretoSearch(int index) {
+        TestCase testCase = testCases.get(index);
+        return planner2.paretoSearch(testCase.getStartCity(), testCase.getGoalCity());
+    }
+
+    @Override
+    public void buildContractionHierarchy() {
+        planner2.buildContractionHierarchy();
+    }
+
+    @Override
+    public Object contractionHierarchySearch(int index) {
+        TestCase testCase = testCases.get(index);
+        return planner2.contractionHierarchySearch(testCase.getStartCity(), testCase.getGoalCity());
+    }
+
+    @Override
+    public Object parallelSearch(int index, int threads) throws InterruptedException {
+        TestCase testCase = testCases.get(index);
+        return planner2.parallelSearch(testCase.getStartCity(), testCase.getGoalCity(), threads);
+    }
+
+    @Override
+    public int searchSmall() {
+        // The budgeted search reports its outcome instead of printing it like aStarSearch
+        SearchOutcome outcome = planner.search("A", "B", SearchBudget.unlimited(), smallScratch);
+        return outcome.isFound() ? (int) outcome.getResult().getOptimalCost() : -1;
+    }
+
+    @Override
+    public Object runBatch(double scalingFactor, int threads) throws InterruptedException {
+        if (engine == null || engineThreads != threads) {
+            close();
+            engine = new BatchQueryEngine(planner2, threads);
+            engineThreads = threads;
+        }
+        return engine.run(testCases, scalingFactor);
+    }
+
+    @Override
+    public Object distanceMatrix(int size) throws InterruptedException {
+        List<String> sources = new ArrayList<>();
+        List<String> targets = new ArrayList<>();
+        for (TestCase testCase : testCases.subList(0, size)) {
+            sources.add(testCase.getStartCity());
+            targets.add(testCase.getGoalCity());
+        }
+        return planner2.distanceMatrix(sources, targets, false);
+    }
+
+    @Override
+    public Object pairwiseCosts(int size) {
+        double[][] costs = new double[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                SearchOutcome outcome = planner2.search(testCases.get(i).getStartCity(),
+                        testCases.get(j).getGoalCity(), 1.0, SearchBudget.unlimited());
+                costs[i][j] = outcome.isFound() ? outcome.getResult().getOptimalCost() : Double.POSITIVE_INFINITY;
+            }
+        }
+        return costs;
+    }
+
+    @Override
+    public void drawPositions(long seed) {
+        Random random = new Random(seed);
+        Graph graph = planner2.getNetwork().getGraph();
+        GeoHeuristic geo = planner2.getNetwork().getGeo();
+        scannedCities = new City2[graph.cityCount()];
+        for (int city = 0; city < scannedCities.length; city++) {
+            scannedCities[city] = new City2(graph.cityName(city), geo.latitudeDegrees(city),
+                    geo.longitudeDegrees(city), "NONE");
+        }
+        positions = new double[2 * testCases.size()][];
+        for (int i = 0; i < positions.length; i++) {
+            TestCase testCase = testCases.get(i / 2);
+            int city = graph.cityId(i % 2 == 0 ? testCase.getStartCity() : testCase.getGoalCity());
+            positions[i] = new double[]{geo.latitudeDegrees(city) + (random.nextDouble() - 0.5) * 0.05,
+                    geo.longitudeDegrees(city) + (random.nextDouble() - 0.5) * 0.05};
+        }
+    }
+
+    @Override
+    public Object nearestCity(int index) {
+        return planner2.nearestCity(positions[index][0], positions[index][1]);
+    }
+
+    @Override
+    public Object nearestCityByScan(int index) {
+        City2 position = new City2("", positions[index][0], positions[index][1], "NONE");
+        City2 nearest = null;
+        double nearestDistance = Double.POSITIVE_INFINITY;
+        for (City2 city : scannedCities) {
+            double distance = planner2.haversineDistance(position, city);
+            if (distance < nearestDistance) {
+                nearestDistance = distance;
+                nearest = city;
+            }
+        }
+        return nearest == null ? null : nearest.getName();
+    }
+
+    @Override
+    public Object snappedSearch(int index) {
+        double[] start = positions[2 * index];
+        double[] goal = positions[2 * index + 1];
+        return planner2.aStarSearch(start[0], start[1], goal[0], goal[1], 1.0);
+    }
+
+    @Override
+    public void close() {
+        if (engine != null) {
+            engine.close();
+            engine = null;
+        }
+    }
+}
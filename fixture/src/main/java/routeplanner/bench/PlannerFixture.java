@@ -0,0 +1,137 @@
+package routeplanner.bench;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The planner operations the benchmarks measure.
+ * <p>
+ * The planners live in the default package, which code in a named package cannot refer to, while JMH
+ * only accepts benchmarks in a named package. The implementation, {@code PlannerFixtureImpl}, is
+ * therefore a default-package class that is loaded by name once per trial. Both are compiled in the fixture
+ * module, which the benchmarks depend on, so the benchmark sources stay in their package.
+ */
+public interface PlannerFixture {
+
+    /** Loads the bigGraph network into a fresh RoutePlanner2. */
+    void loadBigGraph() throws IOException;
+
+    /**
+     * Loads a synthetic grid network of side × side cities into a fresh RoutePlanner2 and draws
+     * {@code queries} random queries on it. Roads are 5 to 40 % longer than the straight line; some
+     * require one of five permits, which a few cities offer. The same seed gives the same network.
+     */
+    void loadSyntheticGrid(int side, int queries, long seed) throws IOException;
+
+    /** Writes the loaded bigGraph network to a binary snapshot. */
+    void writeSnapshot(String file) throws IOException;
+
+    /** Opens a snapshot written by {@link #writeSnapshot} in a fresh RoutePlanner2. */
+    void loadSnapshot(String file) throws IOException;
+
+    /** Loads the Teilaufgabe 2 network {@code t<number>} into a fresh RoutePlanner. */
+    void loadSmallGraph(int number) throws IOException;
+
+    /** Enables or disables dominance pruning of the loaded RoutePlanner2. */
+    void setDominancePruning(boolean enabled);
+
+    /**
+     * Number of queries in testcases_bigGraph.txt, available after {@link #loadBigGraph()}, or of the
+     * queries drawn by {@link #loadSyntheticGrid}.
+     */
+    int queryCount();
+
+    /** Runs bigGraph query {@code index}; returns the SearchResult (null if there is no route). */
+    Object search(int index, double scalingFactor);
+
+    /**
+     * Runs bigGraph query {@code index} with fixedPointSearch in millimetres; returns the SearchResult (null
+     * if there is no route).
+     */
+    Object fixedPointSearch(int index);
+
+    /**
+     * Runs bigGraph query {@code index} with bidirectionalSearch; returns the SearchResult (null if there is
+     * no route).
+     */
+    Object bidirectionalSearch(int index);
+
+    /** Runs bigGraph query {@code index} with paretoSearch; returns the front (empty if there is no route). */
+    Object paretoSearch(int index);
+
+    /** Builds the contraction hierarchy of the loaded RoutePlanner2. */
+    void buildContractionHierarchy();
+
+    /**
+     * Runs bigGraph query {@code index} on the contraction hierarchy; returns the SearchResult (null if there
+     * is no route).
+     */
+    Object contractionHierarchySearch(int index);
+
+    /** Runs query {@code index} with parallelSearch; returns the SearchResult (null if there is no route). */
+    Object parallelSearch(int index, int threads) throws InterruptedException;
+
+    /**
+     * Runs the A to B query on the loaded small network without console output; returns the cost or -1.
+     */
+    int searchSmall();
+
+    /** Runs all bigGraph queries through a BatchQueryEngine; returns the BatchResult. */
+    Object runBatch(double scalingFactor, int threads) throws InterruptedException;
+
+    /**
+     * Computes the distance matrix from the start cities of the first {@code size} bigGraph queries to their
+     * goal cities; returns the DistanceMatrix.
+     */
+    Object distanceMatrix(int size) throws InterruptedException;
+
+    /**
+     * Computes the same costs as {@link #distanceMatrix} with one budget-free A* search per pair, without
+     * console output; returns the cost matrix.
+     */
+    Object pairwiseCosts(int size);
+
+    /**
+     * Moves the start and goal of every bigGraph query about 2 km away from their cities, the same way for
+     * the same seed. Available to {@link #nearestCity}, {@link #nearestCityByScan} and {@link #snappedSearch}.
+     */
+    void drawPositions(long seed);
+
+    /** Snaps position {@code index} to its nearest city with the spatial index; returns the city name. */
+    Object nearestCity(int index);
+
+    /** Snaps position {@code index} to its nearest city by a scan over all cities; returns the city name. */
+    Object nearestCityByScan(int index);
+
+    /**
+     * Runs aStarSearch between the start and goal positions of bigGraph query {@code index}; returns the
+     * SearchResult (null if there is no route).
+     */
+    Object snappedSearch(int index);
+
+    /** Releases threads held by the fixture. */
+    void close();
+
+    static PlannerFixture create() {
+        try {
+            return (PlannerFixture) Class.forName("PlannerFixtureImpl").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("PlannerFixtureImpl not on the class path", e);
+        }
+    }
+
+    /**
+     * Resolves a path below the planner's {@code src} directory. The directory can be set with
+     * {@code -Drouteplanner.src=...}; by default {@code src} and {@code ../src} are tried, so the
+     * benchmarks run from the repository root as well as from the benchmarks directory.
+     */
+    static String dataFile(String relativePath) {
+        String configured = System.getProperty("routeplanner.src");
+        if (configured != null) return new File(configured, relativePath).getPath();
+        for (String candidate : new String[]{"src", "../src"}) {
+            File file = new File(candidate, relativePath);
+            if (file.exists()) return file.getPath();
+        }
+        throw new IllegalStateException("Cannot find " + relativePath + "; set -Drouteplanner.src");
+    }
+}
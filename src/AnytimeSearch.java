@@ -0,0 +1,264 @@
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Anytime Repairing A* (ARA*) for RoutePlanner2 networks. The first iteration is weighted A* with the
+ * frontier ordered by {@code g + w·h}, which finds a route quickly. Every further iteration lowers the
+ * weight and continues on the states of the previous ones instead of starting over: a state whose cost
+ * drops after it was expanded is set aside and only queued again for the next iteration, so no state is
+ * expanded twice per iteration. The search stops when the proven bound reaches the target or the
+ * deadline passes.
+ * <p>
+ * The bound is proven, not assumed: along an optimal route the first state that was not expanded with
+ * its optimal cost is queued or set aside with that cost, so the smallest {@code g + h} (with the
+ * unweighted, admissible h) over these states is a lower bound of the optimal cost. The bound reported
+ * with a route is its cost divided by that lower bound, and it holds even when the deadline interrupts an
+ * iteration. Straight-line distance alone is not admissible on road networks, so without landmarks h is
+ * the geographic distance times the network's {@link GeoHeuristic#getAdmissibleScale() admissible scale};
+ * with landmarks {@link HeuristicTable} scales the geographic part itself. The smallest {@code g + h} is
+ * kept in a second heap as the search goes, and an iteration only requeues the states that are queued or
+ * set aside. An instance is not thread-safe, but it can be reused for consecutive queries.
+ */
+public class AnytimeSearch {
+    /** How much the weight drops between iterations, unless the proven bound is already lower. */
+    public static final double WEIGHT_STEP = 0.25;
+    private static final int DEADLINE_CHECK_INTERVAL = 64; // expansions between clock reads
+
+    private static final byte QUEUED = 0;
+    private static final byte EXPANDED = 1;     // in the iteration given by expandedIn
+    private static final byte INCONSISTENT = 2; // cost dropped after the expansion in this iteration
+    private static final byte WAITING = 3;      // generated but never queued
+
+    private final Graph graph;
+    private final GeoHeuristic geo;
+    private final GeoHeuristic.Kind heuristicKind;
+    private final LandmarkIndex landmarks;
+    private final double permitCost;
+
+    private final StateTable reached = new StateTable();
+    private final IndexedMinHeap frontier = new IndexedMinHeap(IndexedMinHeap.Mode.DECREASE_KEY, 4);
+    // queued and inconsistent states by unweighted g + h; expanded states are dropped when they surface
+    private final IndexedMinHeap openBounds = new IndexedMinHeap(IndexedMinHeap.Mode.LAZY_DELETION, 4);
+    private final HeuristicTable heuristics = new HeuristicTable();
+    private int count;
+    private int[] cities = new int[256];
+    private long[] permits = new long[256];
+    private double[] costs = new double[256];
+    private double[] permitCosts = new double[256];
+    private int[] parents = new int[256];
+    private byte[] status = new byte[256];
+    private int[] expandedIn = new int[256];
+    private int[] inconsistent = new int[64];
+    private int inconsistentCount;
+
+    private int goal;
+    private int iteration;
+    private double weight;
+    private int bestGoalState;
+    private int maxFrontierSize;
+    private int nodesExpanded;
+
+    /**
+     * @param landmarks ALT landmarks for the heuristic, or null
+     */
+    public AnytimeSearch(Graph graph, GeoHeuristic geo, GeoHeuristic.Kind heuristicKind,
+                         LandmarkIndex landmarks, double permitCost) {
+        this.graph = graph;
+        this.geo = geo;
+        this.heuristicKind = heuristicKind;
+        this.landmarks = landmarks;
+        this.permitCost = permitCost;
+    }
+
+    /**
+     * Searches a route between two city ids and improves it until its bound is at most {@code targetBound}
+     * or the deadline passes.
+     *
+     * @param initialWeight  heuristic weight of the first iteration, at least 1
+     * @param targetBound    stop as soon as the route is proven to cost at most this factor times the
+     *                       optimum, at least 1; 1 for an optimal route
+     * @param deadlineNanos  {@link System#nanoTime} value after which the best route so far is returned
+     * @param onImprovement  receives every route that is better than the previous one, or null
+     * @return the best route with its bound, or null if there is no route or none was found in time
+     * @throws IllegalArgumentException if initialWeight or targetBound is below 1
+     */
+    public SearchResult search(int start, int goal, double initialWeight, double targetBound, long deadlineNanos,
+                               Consumer<SearchResult> onImprovement) {
+        checkBounds(initialWeight, targetBound);
+        this.goal = goal;
+        reached.clear();
+        frontier.clear();
+        openBounds.clear();
+        count = 0;
+        inconsistentCount = 0;
+        iteration = 0;
+        heuristics.reset(geo, heuristicKind, landmarks, goal, landmarks != null ? 1.0 : geo.getAdmissibleScale());
+        weight = initialWeight;
+        bestGoalState = -1;
+        maxFrontierSize = 0;
+        nodesExpanded = 0;
+
+        relax(start, 0L, 0, 0, -1);
+        long startPermit = PermitRegistry.mask(graph.availablePermit(start));
+        if (startPermit != 0) {
+            relax(start, startPermit, permitCost, permitCost, -1);
+        }
+
+        SearchResult best = null;
+        double bound = Double.POSITIVE_INFINITY;
+        while (true) {
+            boolean completed = improvePath(deadlineNanos);
+            if (bestGoalState == -1) return null; // no route, or none found before the deadline
+            double cost = costs[bestGoalState];
+            double lowerBound = lowerBound();
+            // no open state left, or a route as cheap as the lower bound (also 0 / 0 if start is the goal)
+            double proven = lowerBound == Double.POSITIVE_INFINITY || cost <= lowerBound ? 1.0 : cost / lowerBound;
+            // a completed iteration also guarantees its weight; an earlier bound still holds for a cheaper route
+            double newBound = Math.min(bound, completed ? Math.min(weight, proven) : proven);
+            boolean improved = best == null || cost < best.getOptimalCost();
+            if (improved || newBound < bound) {
+                bound = newBound;
+                best = buildResult(bound);
+                if (improved && onImprovement != null) onImprovement.accept(best);
+            }
+            if (!completed || bound <= targetBound || System.nanoTime() - deadlineNanos >= 0) return best;
+            weight = Math.max(1.0, Math.min(weight - WEIGHT_STEP, bound));
+            requeue();
+        }
+    }
+
+    /**
+     * Checks the weight and target bound of a search.
+     *
+     * @throws IllegalArgumentException if either is below 1
+     */
+    static void checkBounds(double initialWeight, double targetBound) {
+        if (initialWeight < 1) throw new IllegalArgumentException("initialWeight must be at least 1: " + initialWeight);
+        if (targetBound < 1) throw new IllegalArgumentException("targetBound must be at least 1: " + targetBound);
+    }
+
+    /**
+     * Expands states in the order of their weighted key until no queued state can lead to a route cheaper
+     * than the best one.
+     *
+     * @return false if the deadline interrupted the iteration
+     */
+    private boolean improvePath(long deadlineNanos) {
+        while (!frontier.isEmpty()) {
+            double bestCost = bestGoalState == -1 ? Double.POSITIVE_INFINITY : costs[bestGoalState];
+            if (frontier.peekKey() >= bestCost) return true;
+            if (nodesExpanded % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadlineNanos >= 0) {
+                return false;
+            }
+            maxFrontierSize = Math.max(maxFrontierSize, frontier.size());
+            int state = frontier.poll();
+            status[state] = EXPANDED;
+            expandedIn[state] = iteration;
+            nodesExpanded++;
+            int city = cities[state];
+            if (city == goal) continue; // no cheaper route leads through the goal and back
+
+            long held = permits[state];
+            double cost = costs[state];
+            double paidPermits = permitCosts[state];
+            for (int edge = graph.firstEdge(city), end = graph.endEdge(city); edge < end; edge++) {
+                long required = PermitRegistry.mask(graph.requiredPermit(edge));
+                if ((held & required) != required) continue; // cannot drive on this road without permit
+                int next = graph.target(edge);
+                double newCost = cost + graph.distance(edge);
+                relax(next, held, newCost, paidPermits, state);
+                long available = PermitRegistry.mask(graph.availablePermit(next));
+                if (available != 0 && (held & available) == 0) {
+                    relax(next, held | available, newCost + permitCost, paidPermits + permitCost, state);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void relax(int city, long permitMask, double cost, double paidPermits, int parent) {
+        long key = graph.stateKey(city, permitMask);
+        int state = reached.get(key);
+        if (state == StateTable.ABSENT) {
+            state = add(city, permitMask);
+            reached.put(key, state);
+        } else if (cost >= costs[state]) {
+            return;
+        }
+        costs[state] = cost;
+        permitCosts[state] = paidPermits;
+        parents[state] = parent;
+        if (city == goal && (bestGoalState == -1 || cost < costs[bestGoalState])) bestGoalState = state;
+        double h = heuristics.get(city);
+        if (status[state] == EXPANDED && expandedIn[state] == iteration) {
+            status[state] = INCONSISTENT; // queued again in the next iteration
+            if (inconsistentCount == inconsistent.length) {
+                inconsistent = Arrays.copyOf(inconsistent, inconsistentCount * 2);
+            }
+            inconsistent[inconsistentCount++] = state;
+        } else if (status[state] != INCONSISTENT) {
+            status[state] = QUEUED;
+            frontier.push(state, cost + weight * h);
+        }
+        openBounds.push(state, cost + h);
+    }
+
+    /** Smallest {@code g + h} over the queued and inconsistent states, a lower bound of the optimal cost. */
+    private double lowerBound() {
+        while (!openBounds.isEmpty()) {
+            double lowerBound = openBounds.peekKey();
+            int state = openBounds.poll();
+            if (status[state] == QUEUED || status[state] == INCONSISTENT) {
+                openBounds.push(state, lowerBound);
+                return lowerBound;
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /** Starts the next iteration: queues the inconsistent states and reorders all with the new weight. */
+    private void requeue() {
+        iteration++;
+        for (int s : frontier.drain()) frontier.push(s, costs[s] + weight * heuristics.get(cities[s]));
+        for (int i = 0; i < inconsistentCount; i++) {
+            int s = inconsistent[i];
+            status[s] = QUEUED;
+            frontier.push(s, costs[s] + weight * heuristics.get(cities[s]));
+        }
+        inconsistentCount = 0;
+    }
+
+    private int add(int city, long permitMask) {
+        if (count == cities.length) {
+            int capacity = count * 2;
+            cities = Arrays.copyOf(cities, capacity);
+            permits = Arrays.copyOf(permits, capacity);
+            costs = Arrays.copyOf(costs, capacity);
+            permitCosts = Arrays.copyOf(permitCosts, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            status = Arrays.copyOf(status, capacity);
+            expandedIn = Arrays.copyOf(expandedIn, capacity);
+        }
+        int state = count++;
+        cities[state] = city;
+        permits[state] = permitMask;
+        status[state] = WAITING;
+        return state;
+    }
+
+    private SearchResult buildResult(double bound) {
+        List<String> path = new ArrayList<>();
+        List<String> permitsAcquired = new ArrayList<>();
+        for (int s = bestGoalState; s != -1; s = parents[s]) {
+            path.add(graph.cityName(cities[s]));
+            long previousPermits = parents[s] == -1 ? 0L : permits[parents[s]];
+            for (String permit : graph.permits().names(permits[s] & ~previousPermits)) {
+                permitsAcquired.add("Acquired permit " + permit + " at " + graph.cityName(cities[s]));
+            }
+        }
+        Collections.reverse(path);
+        Collections.reverse(permitsAcquired);
+        return new SearchResult(costs[bestGoalState], maxFrontierSize, nodesExpanded, path,
+                permitCosts[bestGoalState], permitsAcquired, bound);
+    }
+}
@@ -0,0 +1,114 @@
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers many independent route queries in parallel against the network loaded into one
+ * {@link RoutePlanner2}. Each worker owns a {@link SearchScratch} that is reused for all queries it
+ * runs, so the frontier and reached table are not reallocated per query. Every query runs on the
+ * {@link NetworkVersion} that is current when it starts, so the network can be updated or reloaded while a
+ * batch is running; the queries started afterwards see the new version.
+ */
+public class BatchQueryEngine implements AutoCloseable {
+    private final RoutePlanner2 planner;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final BlockingQueue<SearchScratch<State2>> scratches;
+
+    /**
+     * Creates an engine running on a fixed pool of platform threads.
+     */
+    public BatchQueryEngine(RoutePlanner2 planner, int parallelism) {
+        this(planner, Executors.newFixedThreadPool(parallelism), parallelism, IndexedMinHeap.Mode.DECREASE_KEY);
+    }
+
+    /**
+     * Creates an engine on the given executor. At most {@code parallelism} queries run at the same time,
+     * one per scratch. The engine shuts the executor down when it is closed.
+     */
+    public BatchQueryEngine(RoutePlanner2 planner, ExecutorService executor, int parallelism,
+                            IndexedMinHeap.Mode frontierMode) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        this.planner = planner;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.scratches = new ArrayBlockingQueue<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            scratches.add(new SearchScratch<>(frontierMode));
+        }
+    }
+
+    /**
+     * Creates an engine that starts one virtual thread per worker.
+     *
+     * @throws UnsupportedOperationException if the running JVM has no virtual threads (before Java 21)
+     */
+    public static BatchQueryEngine withVirtualThreads(RoutePlanner2 planner, int parallelism) {
+        ExecutorService executor;
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            executor = (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads are not available in this JVM", e);
+        }
+        return new BatchQueryEngine(planner, executor, parallelism, IndexedMinHeap.Mode.DECREASE_KEY);
+    }
+
+    /**
+     * Runs all test cases and returns their outcomes in input order. The searches print nothing, so the
+     * latencies are those of the searches alone.
+     *
+     * @throws IllegalStateException if a query failed, e.g. because a city is not in the network; the
+     *                               other queries are cancelled
+     * @throws InterruptedException  if the calling thread is interrupted; the running queries are cancelled
+     */
+    public BatchResult run(List<TestCase> testCases, double scalingFactor) throws InterruptedException {
+        int n = testCases.size();
+        SearchOutcome[] outcomes = new SearchOutcome[n];
+        long[] latencies = new long[n];
+        AtomicInteger nextQuery = new AtomicInteger();
+
+        long batchStart = System.nanoTime();
+        List<Future<?>> workers = new ArrayList<>(parallelism);
+        try {
+            for (int w = 0; w < Math.min(parallelism, n); w++) {
+                workers.add(executor.submit(() -> {
+                    SearchScratch<State2> scratch = scratches.take();
+                    try {
+                        int i;
+                        while (!Thread.currentThread().isInterrupted() && (i = nextQuery.getAndIncrement()) < n) {
+                            TestCase testCase = testCases.get(i);
+                            long queryStart = System.nanoTime();
+                            outcomes[i] = planner.search(testCase.getStartCity(), testCase.getGoalCity(),
+                                    scalingFactor, SearchBudget.unlimited(), scratch);
+                            latencies[i] = System.nanoTime() - queryStart;
+                        }
+                    } finally {
+                        scratches.add(scratch);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                try {
+                    worker.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Query failed", e.getCause());
+                }
+            }
+        } finally {
+            // no-op for finished workers; stops the others after a failure or an interrupt
+            for (Future<?> worker : workers) worker.cancel(true);
+        }
+        long wallTime = System.nanoTime() - batchStart;
+        return new BatchResult(Arrays.asList(outcomes), latencies, wallTime);
+    }
+
+    public int getParallelism() { return parallelism; }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
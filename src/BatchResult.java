@@ -0,0 +1,49 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Results of a {@link BatchQueryEngine} run, in the order of the queries, together with
+ * the latency of every query and the wall time of the whole batch.
+ */
+public class BatchResult {
+    private final List<SearchOutcome> outcomes;
+    private final List<SearchResult> results;
+    private final long[] latenciesNanos;
+    private final long wallTimeNanos;
+    private final long[] sortedLatencies;
+
+    public BatchResult(List<SearchOutcome> outcomes, long[] latenciesNanos, long wallTimeNanos) {
+        this.outcomes = outcomes;
+        this.results = new ArrayList<>(outcomes.size());
+        for (SearchOutcome outcome : outcomes) results.add(outcome.getResult());
+        this.latenciesNanos = latenciesNanos;
+        this.wallTimeNanos = wallTimeNanos;
+        this.sortedLatencies = latenciesNanos.clone();
+        Arrays.sort(sortedLatencies);
+    }
+
+    /** One entry per query, with its status and search statistics. */
+    public List<SearchOutcome> getOutcomes() { return outcomes; }
+
+    /** One entry per query; null where no route exists. */
+    public List<SearchResult> getResults() { return results; }
+    public long[] getLatenciesNanos() { return latenciesNanos; }
+    public long getWallTimeNanos() { return wallTimeNanos; }
+
+    /** Queries per second over the wall time of the batch. */
+    public double getThroughput() {
+        return wallTimeNanos == 0 ? 0 : results.size() * 1e9 / wallTimeNanos;
+    }
+
+    /**
+     * Nearest-rank latency percentile in milliseconds.
+     *
+     * @param percentile value in (0, 100]
+     */
+    public double getLatencyPercentileMillis(double percentile) {
+        if (sortedLatencies.length == 0) return 0;
+        int rank = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length);
+        return sortedLatencies[Math.min(Math.max(rank, 1), sortedLatencies.length) - 1] / 1e6;
+    }
+}
@@ -0,0 +1,231 @@
+import java.util.*;
+
+/**
+ * Bidirectional A* for RoutePlanner2 networks.
+ * <p>
+ * The forward search runs over (city, permits held) states exactly like {@link RoutePlanner2#aStarSearch}.
+ * The backward search starts at the goal and runs over (city, permits required) states: the permits the
+ * roads between the city and the goal need and that are not bought on that stretch. Crossing a road
+ * backwards adds its permit to the set. Buying a city's permit there removes it from the set and costs
+ * {@code permitCost}. A forward state (v, H) and a backward state (v, R) form a route whenever R ⊆ H.
+ * For routes without permits both searches stay in the empty-set layer, and this is plain bidirectional
+ * A* on the road graph.
+ * <p>
+ * Both directions order their frontier by cost plus an average potential, the consistent approach:
+ * {@code p(v) = (h_goal(v) - h_start(v)) / 2} forward and {@code -p(v)} backward. Here h is the ALT
+ * bound or, without landmarks, the geographic distance times the network's
+ * {@link GeoHeuristic#getAdmissibleScale() admissible scale}, a lower bound also on roads shorter than the
+ * straight line. Both potentials are consistent and cancel out at a meeting city, so the search can stop
+ * as soon as the two smallest frontier keys add up to at least the cost of the best route found so far.
+ * The result is then optimal. An instance is not thread-safe; it keeps its state tables between queries,
+ * also on different network versions, so one instance per thread saves the allocations.
+ */
+public class BidirectionalSearch {
+    private final Side forward = new Side();
+    private final Side backward = new Side();
+
+    // network of the current query
+    private Graph graph;
+    private double permitCost;
+
+    // best meeting found so far
+    private double bestCost;
+    private int bestForward;
+    private int bestBackward;
+
+    /**
+     * Searches an optimal route between two city ids of the network, with its ALT landmarks for both
+     * directions if it has any.
+     *
+     * @return the search result or null if there is no route
+     */
+    public SearchResult search(NetworkVersion network, GeoHeuristic.Kind heuristicKind, double permitCost,
+                               int start, int goal) {
+        this.graph = network.getGraph();
+        this.permitCost = permitCost;
+        forward.reset(graph.cityCount());
+        backward.reset(graph.cityCount());
+        double scale = network.getLandmarks() != null ? 1.0 : network.getGeo().getAdmissibleScale();
+        forward.heuristics.reset(network.getGeo(), heuristicKind, network.getLandmarks(), goal, scale);
+        backward.heuristics.reset(network.getGeo(), heuristicKind, network.getLandmarks(), start, scale);
+        bestCost = Double.POSITIVE_INFINITY;
+        bestForward = -1;
+        bestBackward = -1;
+        int maxFrontierSize = 0;
+        int nodesExpanded = 0;
+
+        relax(forward, backward, start, 0L, 0, 0, -1, false);
+        long startPermit = PermitRegistry.mask(graph.availablePermit(start));
+        if (startPermit != 0) {
+            relax(forward, backward, start, startPermit, permitCost, permitCost, -1, true);
+        }
+        relax(backward, forward, goal, 0L, 0, 0, -1, false);
+
+        while (!forward.frontier.isEmpty() && !backward.frontier.isEmpty()) {
+            maxFrontierSize = Math.max(maxFrontierSize, forward.frontier.size() + backward.frontier.size());
+            if (forward.frontier.peekKey() + backward.frontier.peekKey() >= bestCost) {
+                break; // no unexplored route can be cheaper than the best meeting
+            }
+            nodesExpanded++;
+            if (forward.frontier.size() <= backward.frontier.size()) {
+                expandForward(forward.frontier.poll());
+            } else {
+                expandBackward(backward.frontier.poll());
+            }
+        }
+
+        if (bestForward == -1) return null;
+        return buildResult(maxFrontierSize, nodesExpanded);
+    }
+
+    private void expandForward(int state) {
+        int city = forward.cities[state];
+        long held = forward.permits[state];
+        double cost = forward.costs[state];
+        double paidPermits = forward.permitCosts[state];
+        for (int edge = graph.firstEdge(city), end = graph.endEdge(city); edge < end; edge++) {
+            long required = PermitRegistry.mask(graph.requiredPermit(edge));
+            if ((held & required) != required) continue; // cannot drive on this road without permit
+            int next = graph.target(edge);
+            double newCost = cost + graph.distance(edge);
+            relax(forward, backward, next, held, newCost, paidPermits, state, false);
+            long available = PermitRegistry.mask(graph.availablePermit(next));
+            if (available != 0 && (held & available) == 0) {
+                relax(forward, backward, next, held | available, newCost + permitCost,
+                        paidPermits + permitCost, state, true);
+            }
+        }
+    }
+
+    private void expandBackward(int state) {
+        int city = backward.cities[state];
+        long required = backward.permits[state];
+        double cost = backward.costs[state];
+        double paidPermits = backward.permitCosts[state];
+        for (int edge = graph.firstEdge(city), end = graph.endEdge(city); edge < end; edge++) {
+            // roads are undirected: edge city -> previous is also the road previous -> city
+            int previous = graph.target(edge);
+            long requiredBefore = required | PermitRegistry.mask(graph.requiredPermit(edge));
+            double newCost = cost + graph.distance(edge);
+            relax(backward, forward, previous, requiredBefore, newCost, paidPermits, state, false);
+            // buying a required permit in the previous city covers the rest of the route
+            long available = PermitRegistry.mask(graph.availablePermit(previous));
+            if ((requiredBefore & available) != 0) {
+                relax(backward, forward, previous, requiredBefore & ~available, newCost + permitCost,
+                        paidPermits + permitCost, state, true);
+            }
+        }
+    }
+
+    private void relax(Side side, Side other, int city, long permits, double cost, double paidPermits,
+                       int parent, boolean acquired) {
+        double toGoal = forward.heuristics.get(city);
+        double toStart = backward.heuristics.get(city);
+        if (toGoal == Double.POSITIVE_INFINITY || toStart == Double.POSITIVE_INFINITY) {
+            return; // landmarks prove the city is not connected to start or goal
+        }
+        double potential = side == forward ? (toGoal - toStart) / 2 : (toStart - toGoal) / 2;
+
+        long key = graph.stateKey(city, permits);
+        int state = side.reached.get(key);
+        if (state == StateTable.ABSENT) {
+            state = side.add(city, permits);
+            side.reached.put(key, state);
+        } else if (cost >= side.costs[state]) {
+            return;
+        }
+        side.costs[state] = cost;
+        side.permitCosts[state] = paidPermits;
+        side.parents[state] = parent;
+        side.acquired[state] = acquired;
+        side.frontier.push(state, cost + potential);
+
+        // look for a compatible state of the other search in the same city
+        for (int o = other.headAtCity[city]; o != -1; o = other.nextAtCity[o]) {
+            long held = side == forward ? permits : other.permits[o];
+            long required = side == forward ? other.permits[o] : permits;
+            if ((required & ~held) != 0) continue;
+            double total = cost + other.costs[o];
+            if (total < bestCost) {
+                bestCost = total;
+                bestForward = side == forward ? state : o;
+                bestBackward = side == forward ? o : state;
+            }
+        }
+    }
+
+    private SearchResult buildResult(int maxFrontierSize, int nodesExpanded) {
+        List<String> path = new ArrayList<>();
+        List<String> permitsAcquired = new ArrayList<>();
+        for (int s = bestForward; s != -1; s = forward.parents[s]) {
+            path.add(graph.cityName(forward.cities[s]));
+            if (forward.acquired[s]) {
+                permitsAcquired.add(acquiredDetail(forward.cities[s]));
+            }
+        }
+        Collections.reverse(path);
+        Collections.reverse(permitsAcquired);
+        for (int s = bestBackward; s != -1; s = backward.parents[s]) {
+            if (s != bestBackward) path.add(graph.cityName(backward.cities[s]));
+            if (backward.acquired[s]) {
+                permitsAcquired.add(acquiredDetail(backward.cities[s]));
+            }
+        }
+        double cost = forward.costs[bestForward] + backward.costs[bestBackward];
+        double totalPermitCost = forward.permitCosts[bestForward] + backward.permitCosts[bestBackward];
+        return new SearchResult(cost, maxFrontierSize, nodesExpanded, path, totalPermitCost, permitsAcquired);
+    }
+
+    private String acquiredDetail(int city) {
+        return "Acquired permit " + graph.permitName(graph.availablePermit(city)) + " at " + graph.cityName(city);
+    }
+
+    /** States, frontier and heuristic memo of one search direction (towards the goal forward, the start backward). */
+    private static final class Side {
+        final StateTable reached = new StateTable();
+        final IndexedMinHeap frontier = new IndexedMinHeap(IndexedMinHeap.Mode.DECREASE_KEY, 4);
+        final HeuristicTable heuristics = new HeuristicTable();
+
+        int count;
+        int[] cities = new int[256];
+        long[] permits = new long[256];
+        double[] costs = new double[256];
+        double[] permitCosts = new double[256];
+        int[] parents = new int[256];
+        boolean[] acquired = new boolean[256];
+        // states per city as linked lists, for the meeting check
+        int[] headAtCity = new int[0];
+        int[] nextAtCity = new int[256];
+
+        void reset(int cityCount) {
+            reached.clear();
+            frontier.clear();
+            if (headAtCity.length < cityCount) {
+                headAtCity = new int[cityCount];
+                Arrays.fill(headAtCity, -1);
+            } else {
+                for (int i = 0; i < count; i++) headAtCity[cities[i]] = -1;
+            }
+            count = 0;
+        }
+
+        int add(int city, long permitMask) {
+            if (count == cities.length) {
+                int capacity = count * 2;
+                cities = Arrays.copyOf(cities, capacity);
+                permits = Arrays.copyOf(permits, capacity);
+                costs = Arrays.copyOf(costs, capacity);
+                permitCosts = Arrays.copyOf(permitCosts, capacity);
+                parents = Arrays.copyOf(parents, capacity);
+                acquired = Arrays.copyOf(acquired, capacity);
+                nextAtCity = Arrays.copyOf(nextAtCity, capacity);
+            }
+            int state = count++;
+            cities[state] = city;
+            permits[state] = permitMask;
+            nextAtCity[state] = headAtCity[city];
+            headAtCity[city] = state;
+            return state;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+import java.util.*;
+
+/**
+ * Contraction Hierarchy over a RoutePlanner2 network, built once offline and queried with
+ * {@link ContractionHierarchyQuery}.
+ * <p>
+ * Cities are contracted one by one in order of importance. When city v is removed, every pair of
+ * remaining neighbours u, w gets a shortcut u-w, unless a witness path already exists without v. The
+ * shortcut's distance is the sum of the two roads, and its required permits are the union of theirs. A
+ * witness must be at most as long and must need a subset of the shortcut's permits, so several
+ * shortcuts with different permit sets can connect the same pair.
+ * <p>
+ * A city where a permit is available is never contracted. Routes can only buy permits in those cities,
+ * so a shortcut never hides a purchase, and its permit set is exactly what the underlying roads need.
+ * Contraction also stops once the cheapest remaining city would add many more shortcuts than it
+ * removes; on dense networks the last contractions would otherwise turn the rest into an almost
+ * complete graph. The uncontracted cities form the core at the top of the hierarchy, where the query
+ * continues as a goal-directed search.
+ */
+public class ContractionHierarchy {
+    private static final int WITNESS_SETTLE_LIMIT = 200;
+    private static final double CORE_PRIORITY = 60; // edge difference at which contraction stops
+
+    private final Graph graph;
+    private final int[] rank; // contraction order, Integer.MAX_VALUE for core cities
+    // upward arcs: to higher ranked cities, and between core cities in both directions
+    private final int[] upOffsets;
+    private final int[] upTargets;
+    private final double[] upDistances;
+    private final long[] upPermits;
+    private final Arc[] upArcs;
+    private final int coreSize;
+    private final int shortcutCount;
+    private final long preprocessingTimeNanos;
+
+    /** Road or shortcut between two cities; a shortcut remembers the two arcs it replaces. */
+    static final class Arc {
+        final int from;
+        final int to;
+        final double distance;
+        final long permits;
+        final int middle; // contracted city, -1 for an original road
+        final Arc first;  // from - middle
+        final Arc second; // middle - to
+
+        Arc(int from, int to, double distance, long permits, int middle, Arc first, Arc second) {
+            this.from = from;
+            this.to = to;
+            this.distance = distance;
+            this.permits = permits;
+            this.middle = middle;
+            this.first = first;
+            this.second = second;
+        }
+
+        int other(int city) {
+            return city == from ? to : from;
+        }
+
+        /** Appends the cities after {@code start} when the arc is driven from {@code start}. */
+        void unpack(int start, List<Integer> cities) {
+            if (middle < 0) {
+                cities.add(other(start));
+            } else if (start == from) {
+                first.unpack(from, cities);
+                second.unpack(middle, cities);
+            } else {
+                second.unpack(to, cities);
+                first.unpack(middle, cities);
+            }
+        }
+    }
+
+    private ContractionHierarchy(Graph graph, int[] rank, List<List<Arc>> upward, int coreSize,
+                                 int shortcutCount, long preprocessingTimeNanos) {
+        this.graph = graph;
+        this.rank = rank;
+        this.coreSize = coreSize;
+        this.shortcutCount = shortcutCount;
+        this.preprocessingTimeNanos = preprocessingTimeNanos;
+        int n = graph.cityCount();
+        upOffsets = new int[n + 1];
+        for (int v = 0; v < n; v++) upOffsets[v + 1] = upOffsets[v] + upward.get(v).size();
+        int m = upOffsets[n];
+        upTargets = new int[m];
+        upDistances = new double[m];
+        upPermits = new long[m];
+        upArcs = new Arc[m];
+        for (int v = 0; v < n; v++) {
+            int i = upOffsets[v];
+            for (Arc arc : upward.get(v)) {
+                upTargets[i] = arc.other(v);
+                upDistances[i] = arc.distance;
+                upPermits[i] = arc.permits;
+                upArcs[i] = arc;
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Contracts the cities without an available permit, least important first, until only the core
+     * is left.
+     */
+    public static ContractionHierarchy build(Graph graph) {
+        long startTime = System.nanoTime();
+        int n = graph.cityCount();
+        List<List<Arc>> arcs = new ArrayList<>(n); // arcs between not yet contracted cities
+        for (int v = 0; v < n; v++) arcs.add(new ArrayList<>());
+        for (int v = 0; v < n; v++) {
+            for (int edge = graph.firstEdge(v), end = graph.endEdge(v); edge < end; edge++) {
+                int w = graph.target(edge);
+                if (w <= v) continue; // each road is stored in both directions
+                Arc arc = new Arc(v, w, graph.distance(edge), PermitRegistry.mask(graph.requiredPermit(edge)), -1, null, null);
+                addParetoArc(arcs, arc);
+            }
+        }
+
+        Contractor contractor = new Contractor(n, arcs);
+        int[] rank = new int[n];
+        Arrays.fill(rank, Integer.MAX_VALUE);
+        int[] contractedNeighbours = new int[n];
+        List<List<Arc>> upward = new ArrayList<>(n);
+        for (int v = 0; v < n; v++) upward.add(Collections.emptyList());
+
+        // lazy-update priority queue on the edge difference
+        IndexedMinHeap queue = new IndexedMinHeap(IndexedMinHeap.Mode.DECREASE_KEY, 4);
+        for (int v = 0; v < n; v++) {
+            if (graph.availablePermit(v) == Graph.NONE) {
+                queue.push(v, contractor.priority(v, contractor.shortcuts(v), contractedNeighbours));
+            }
+        }
+        int shortcutCount = 0;
+        int nextRank = 0;
+        int v;
+        while ((v = queue.poll()) != IndexedMinHeap.EMPTY) {
+            List<Arc> shortcuts = contractor.shortcuts(v);
+            double priority = contractor.priority(v, shortcuts, contractedNeighbours);
+            if (!queue.isEmpty() && priority > queue.peekKey()) {
+                queue.push(v, priority); // priority grew since it was queued, try again later
+                continue;
+            }
+            if (priority > CORE_PRIORITY) break; // the rest would mostly add shortcuts, keep it as core
+            upward.set(v, new ArrayList<>(arcs.get(v)));
+            for (Arc arc : arcs.get(v)) {
+                int w = arc.other(v);
+                arcs.get(w).remove(arc);
+                contractedNeighbours[w]++;
+            }
+            arcs.get(v).clear();
+            for (Arc shortcut : shortcuts) {
+                if (addParetoArc(arcs, shortcut)) shortcutCount++;
+            }
+            rank[v] = nextRank++;
+        }
+
+        int coreSize = 0;
+        for (int c = 0; c < n; c++) {
+            if (rank[c] == Integer.MAX_VALUE) {
+                upward.set(c, new ArrayList<>(arcs.get(c)));
+                coreSize++;
+            }
+        }
+        return new ContractionHierarchy(graph, rank, upward, coreSize, shortcutCount, System.nanoTime() - startTime);
+    }
+
+    /**
+     * Adds the arc unless an arc between the same cities is at most as long and needs a subset of its
+     * permits; arcs the new one dominates are removed.
+     *
+     * @return true if the arc was added
+     */
+    private static boolean addParetoArc(List<List<Arc>> arcs, Arc arc) {
+        List<Arc> fromArcs = arcs.get(arc.from);
+        for (Arc existing : fromArcs) {
+            if (existing.other(arc.from) == arc.to && existing.distance <= arc.distance
+                    && (existing.permits & ~arc.permits) == 0) {
+                return false;
+            }
+        }
+        Iterator<Arc> it = fromArcs.iterator();
+        while (it.hasNext()) {
+            Arc existing = it.next();
+            if (existing.other(arc.from) == arc.to && arc.distance <= existing.distance
+                    && (arc.permits & ~existing.permits) == 0) {
+                it.remove();
+                arcs.get(arc.to).remove(existing);
+            }
+        }
+        fromArcs.add(arc);
+        arcs.get(arc.to).add(arc);
+        return true;
+    }
+
+    /** Shortcut simulation with bounded, permit-restricted witness searches. */
+    private static final class Contractor {
+        private final List<List<Arc>> arcs;
+        private final double[] distance;
+        private final int[] touched;
+        private final IndexedMinHeap heap = new IndexedMinHeap(IndexedMinHeap.Mode.DECREASE_KEY, 4);
+        private int touchedCount;
+
+        Contractor(int cityCount, List<List<Arc>> arcs) {
+            this.arcs = arcs;
+            this.distance = new double[cityCount];
+            this.touched = new int[cityCount];
+            Arrays.fill(distance, Double.POSITIVE_INFINITY);
+        }
+
+        /** Edge difference plus the number of already contracted neighbours, which spreads contractions. */
+        double priority(int v, List<Arc> shortcuts, int[] contractedNeighbours) {
+            return shortcuts.size() - arcs.get(v).size() + contractedNeighbours[v];
+        }
+
+        /** Shortcuts needed to contract v. */
+        List<Arc> shortcuts(int v) {
+            List<Arc> result = new ArrayList<>();
+            List<Arc> around = arcs.get(v);
+            List<Arc> pending = new ArrayList<>(); // outgoing arcs still waiting for a witness search
+            for (Arc in : around) {
+                int u = in.other(v);
+                for (Arc out : around) {
+                    if (out.other(v) > u) pending.add(out); // arcs are undirected, one shortcut per pair of arcs
+                }
+                // one witness search from u per distinct permit set of the candidate shortcuts
+                while (!pending.isEmpty()) {
+                    long permits = in.permits | pending.get(0).permits;
+                    double maxDistance = 0;
+                    for (Arc out : pending) {
+                        if ((in.permits | out.permits) == permits) maxDistance = Math.max(maxDistance, in.distance + out.distance);
+                    }
+                    witnessSearch(u, v, maxDistance, permits);
+                    Iterator<Arc> it = pending.iterator();
+                    while (it.hasNext()) {
+                        Arc out = it.next();
+                        if ((in.permits | out.permits) != permits) continue;
+                        it.remove();
+                        int w = out.other(v);
+                        double length = in.distance + out.distance;
+                        if (distance[w] > length) result.add(new Arc(u, w, length, permits, v, in, out));
+                    }
+                    clearWitnessSearch();
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Dijkstra from u without v, over arcs whose permits are a subset of {@code permits}, up to
+         * {@code maxDistance}. Gives up after a fixed number of settled cities, so unreached cities may
+         * still have a witness; this only costs extra shortcuts.
+         */
+        private void witnessSearch(int u, int v, double maxDistance, long permits) {
+            heap.clear();
+            distance[u] = 0;
+            touched[touchedCount++] = u;
+            heap.push(u, 0);
+            int settled = 0;
+            int city;
+            while ((city = heap.poll()) != IndexedMinHeap.EMPTY) {
+                if (++settled > WITNESS_SETTLE_LIMIT) break;
+                for (Arc arc : arcs.get(city)) {
+                    int next = arc.other(city);
+                    if (next == v || (arc.permits & ~permits) != 0) continue;
+                    double d = distance[city] + arc.distance;
+                    if (d < distance[next] && d <= maxDistance) {
+                        if (distance[next] == Double.POSITIVE_INFINITY) touched[touchedCount++] = next;
+                        distance[next] = d;
+                        heap.push(next, d);
+                    }
+                }
+            }
+        }
+
+        private void clearWitnessSearch() {
+            for (int i = 0; i < touchedCount; i++) distance[touched[i]] = Double.POSITIVE_INFINITY;
+            touchedCount = 0;
+        }
+    }
+
+    Graph getGraph() { return graph; }
+    int firstUpArc(int city) { return upOffsets[city]; }
+    int endUpArc(int city) { return upOffsets[city + 1]; }
+    int upTarget(int arc) { return upTargets[arc]; }
+    double upDistance(int arc) { return upDistances[arc]; }
+    long upPermits(int arc) { return upPermits[arc]; }
+    Arc upArc(int arc) { return upArcs[arc]; }
+
+    public int getRank(int city) { return rank[city]; }
+    public int getCoreSize() { return coreSize; }
+    public int getShortcutCount() { return shortcutCount; }
+    public int getUpwardArcCount() { return upTargets.length; }
+    public long getPreprocessingTimeNanos() { return preprocessingTimeNanos; }
+
+    @Override
+    public String toString() {
+        return String.format("%d shortcuts, %d upward arcs, core of %d cities, preprocessing %.1f ms",
+                shortcutCount, upTargets.length, coreSize, preprocessingTimeNanos / 1e6);
+    }
+}
@@ -0,0 +1,251 @@
+import java.util.*;
+
+/**
+ * Permit-aware query on a {@link ContractionHierarchy}: a bidirectional search in which both directions
+ * only follow arcs to higher ranked cities or within the core. The forward search runs over (city,
+ * permits held) states and the backward search over (city, permits required) states, as in
+ * {@link BidirectionalSearch}. Permits can only be bought in core cities, at the start or while
+ * searching the core.
+ * <p>
+ * Each direction is an A* towards the opposite end of the query, with the ALT bound or, without landmarks,
+ * the geographic distance times the network's {@link GeoHeuristic#getAdmissibleScale() admissible scale}.
+ * The bound stays consistent on shortcuts because they are sums of roads. A direction stops once its
+ * smallest key reaches the cost of the best meeting. Without the bound both directions would have to
+ * sweep the whole core, which is almost a complete graph on the big network. States that are beaten by
+ * another state of the same city (cheaper and at least as good a permit set) are not expanded. Shortcuts
+ * on the resulting route are unpacked into the original cities.
+ * <p>
+ * An instance is not thread-safe; it keeps its state tables between queries, also on different
+ * hierarchies, so one instance per thread saves the allocations. The hierarchy itself can be shared.
+ */
+public class ContractionHierarchyQuery {
+    private final Side forward = new Side();
+    private final Side backward = new Side();
+
+    // hierarchy of the current query
+    private ContractionHierarchy hierarchy;
+    private Graph graph;
+    private double permitCost;
+
+    private double bestCost;
+    private int bestForward;
+    private int bestBackward;
+
+    /**
+     * Searches an optimal route between two city ids on the hierarchy of the network's graph, with the
+     * network's ALT landmarks for both directions if it has any.
+     *
+     * @return the search result or null if there is no route
+     */
+    public SearchResult search(ContractionHierarchy hierarchy, NetworkVersion network,
+                               GeoHeuristic.Kind heuristicKind, double permitCost, int start, int goal) {
+        this.hierarchy = hierarchy;
+        this.graph = hierarchy.getGraph();
+        this.permitCost = permitCost;
+        forward.reset(graph.cityCount());
+        backward.reset(graph.cityCount());
+        double scale = network.getLandmarks() != null ? 1.0 : network.getGeo().getAdmissibleScale();
+        forward.heuristics.reset(network.getGeo(), heuristicKind, network.getLandmarks(), goal, scale);
+        backward.heuristics.reset(network.getGeo(), heuristicKind, network.getLandmarks(), start, scale);
+        bestCost = Double.POSITIVE_INFINITY;
+        bestForward = -1;
+        bestBackward = -1;
+        int maxFrontierSize = 0;
+        int nodesExpanded = 0;
+
+        relax(forward, start, 0L, 0, 0, -1, -1, false);
+        long startPermit = PermitRegistry.mask(graph.availablePermit(start));
+        if (startPermit != 0) {
+            relax(forward, start, startPermit, permitCost, permitCost, -1, -1, true);
+        }
+        relax(backward, goal, 0L, 0, 0, -1, -1, false);
+
+        while (true) {
+            boolean forwardDone = forward.frontier.peekKey() >= bestCost;
+            boolean backwardDone = backward.frontier.peekKey() >= bestCost;
+            if (forwardDone && backwardDone) break;
+            maxFrontierSize = Math.max(maxFrontierSize, forward.frontier.size() + backward.frontier.size());
+            nodesExpanded++;
+            if (backwardDone || (!forwardDone && forward.frontier.peekKey() <= backward.frontier.peekKey())) {
+                expand(forward, backward, forward.frontier.poll());
+            } else {
+                expand(backward, forward, backward.frontier.poll());
+            }
+        }
+
+        if (bestForward == -1) return null;
+        return buildResult(maxFrontierSize, nodesExpanded);
+    }
+
+    private void expand(Side side, Side other, int state) {
+        if (isDominated(side, side.cities[state], side.permits[state], side.costs[state], state)) return;
+        meet(side, other, state);
+        int city = side.cities[state];
+        long permits = side.permits[state];
+        double cost = side.costs[state];
+        double paidPermits = side.permitCosts[state];
+        for (int arc = hierarchy.firstUpArc(city), end = hierarchy.endUpArc(city); arc < end; arc++) {
+            long required = hierarchy.upPermits(arc);
+            long nextPermits;
+            if (side == forward) {
+                if ((permits & required) != required) continue; // cannot drive without the permits
+                nextPermits = permits;
+            } else {
+                nextPermits = permits | required;
+            }
+            int next = hierarchy.upTarget(arc);
+            double newCost = cost + hierarchy.upDistance(arc);
+            relax(side, next, nextPermits, newCost, paidPermits, state, arc, false);
+
+            long available = PermitRegistry.mask(graph.availablePermit(next));
+            if (available == 0) continue;
+            if (side == forward && (nextPermits & available) == 0) {
+                relax(side, next, nextPermits | available, newCost + permitCost,
+                        paidPermits + permitCost, state, arc, true);
+            } else if (side == backward && (nextPermits & available) != 0) {
+                relax(side, next, nextPermits & ~available, newCost + permitCost,
+                        paidPermits + permitCost, state, arc, true);
+            }
+        }
+    }
+
+    private void relax(Side side, int city, long permits, double cost, double paidPermits,
+                       int parent, int arc, boolean acquired) {
+        double estimate = cost + side.heuristics.get(city);
+        if (estimate >= bestCost) return; // cannot lead to a cheaper route
+        long key = graph.stateKey(city, permits);
+        int state = side.reached.get(key);
+        if (state == StateTable.ABSENT) {
+            if (isDominated(side, city, permits, cost, -1)) return;
+            state = side.add(city, permits);
+            side.reached.put(key, state);
+        } else if (cost >= side.costs[state]) {
+            return;
+        }
+        side.costs[state] = cost;
+        side.permitCosts[state] = paidPermits;
+        side.parents[state] = parent;
+        side.parentArcs[state] = arc;
+        side.acquired[state] = acquired;
+        side.frontier.push(state, estimate);
+    }
+
+    /**
+     * True if another state at the same city is at most as expensive and at least as good: it holds a
+     * superset of the permits (forward) or requires a subset of them (backward).
+     */
+    private boolean isDominated(Side side, int city, long permits, double cost, int state) {
+        for (int o = side.headAtCity[city]; o != -1; o = side.nextAtCity[o]) {
+            if (o == state || side.costs[o] > cost) continue;
+            long better = side == forward ? side.permits[o] : permits;
+            long worse = side == forward ? permits : side.permits[o];
+            if ((worse & ~better) == 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks the settled state against the states of the other direction at the same city. Checking on
+     * settling is enough: both directions settle their half of the best route before they stop.
+     */
+    private void meet(Side side, Side other, int state) {
+        int city = side.cities[state];
+        for (int o = other.headAtCity[city]; o != -1; o = other.nextAtCity[o]) {
+            long held = side == forward ? side.permits[state] : other.permits[o];
+            long required = side == forward ? other.permits[o] : side.permits[state];
+            if ((required & ~held) != 0) continue;
+            double total = side.costs[state] + other.costs[o];
+            if (total < bestCost) {
+                bestCost = total;
+                bestForward = side == forward ? state : o;
+                bestBackward = side == forward ? o : state;
+            }
+        }
+    }
+
+    private SearchResult buildResult(int maxFrontierSize, int nodesExpanded) {
+        // forward chain: start .. meeting city
+        Deque<Integer> forwardStates = new ArrayDeque<>();
+        for (int s = bestForward; s != -1; s = forward.parents[s]) forwardStates.push(s);
+
+        List<Integer> cities = new ArrayList<>();
+        List<String> permitsAcquired = new ArrayList<>();
+        int previousCity = -1;
+        for (int s : forwardStates) {
+            if (previousCity == -1) {
+                cities.add(forward.cities[s]);
+            } else if (forward.parentArcs[s] != -1) {
+                hierarchy.upArc(forward.parentArcs[s]).unpack(previousCity, cities);
+            }
+            if (forward.acquired[s]) permitsAcquired.add(acquiredDetail(forward.cities[s]));
+            previousCity = forward.cities[s];
+        }
+        // backward chain: meeting city .. goal
+        for (int s = bestBackward; s != -1; s = backward.parents[s]) {
+            if (backward.acquired[s]) permitsAcquired.add(acquiredDetail(backward.cities[s]));
+            if (backward.parentArcs[s] != -1) {
+                hierarchy.upArc(backward.parentArcs[s]).unpack(backward.cities[s], cities);
+            }
+        }
+
+        List<String> path = new ArrayList<>(cities.size());
+        for (int city : cities) path.add(graph.cityName(city));
+        double cost = forward.costs[bestForward] + backward.costs[bestBackward];
+        double totalPermitCost = forward.permitCosts[bestForward] + backward.permitCosts[bestBackward];
+        return new SearchResult(cost, maxFrontierSize, nodesExpanded, path, totalPermitCost, permitsAcquired);
+    }
+
+    private String acquiredDetail(int city) {
+        return "Acquired permit " + graph.permitName(graph.availablePermit(city)) + " at " + graph.cityName(city);
+    }
+
+    /** States and frontier of one search direction. */
+    private static final class Side {
+        final StateTable reached = new StateTable();
+        final IndexedMinHeap frontier = new IndexedMinHeap(IndexedMinHeap.Mode.DECREASE_KEY, 4);
+        final HeuristicTable heuristics = new HeuristicTable();
+
+        int count;
+        int[] cities = new int[256];
+        long[] permits = new long[256];
+        double[] costs = new double[256];
+        double[] permitCosts = new double[256];
+        int[] parents = new int[256];
+        int[] parentArcs = new int[256];
+        boolean[] acquired = new boolean[256];
+        int[] headAtCity = new int[0];
+        int[] nextAtCity = new int[256];
+
+        void reset(int cityCount) {
+            reached.clear();
+            frontier.clear();
+            if (headAtCity.length < cityCount) {
+                headAtCity = new int[cityCount];
+                Arrays.fill(headAtCity, -1);
+            } else {
+                for (int i = 0; i < count; i++) headAtCity[cities[i]] = -1;
+            }
+            count = 0;
+        }
+
+        int add(int city, long permitMask) {
+            if (count == cities.length) {
+                int capacity = count * 2;
+                cities = Arrays.copyOf(cities, capacity);
+                permits = Arrays.copyOf(permits, capacity);
+                costs = Arrays.copyOf(costs, capacity);
+                permitCosts = Arrays.copyOf(permitCosts, capacity);
+                parents = Arrays.copyOf(parents, capacity);
+                parentArcs = Arrays.copyOf(parentArcs, capacity);
+                acquired = Arrays.copyOf(acquired, capacity);
+                nextAtCity = Arrays.copyOf(nextAtCity, capacity);
+            }
+            int state = count++;
+            cities[state] = city;
+            permits[state] = permitMask;
+            nextAtCity[state] = headAtCity[city];
+            headAtCity[city] = state;
+            return state;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Optimal costs between every source and every target city of a RoutePlanner2 network. Each source runs
+ * one {@link OneToManySearch} that stops when all targets are settled, so an N×M matrix costs N searches
+ * instead of N·M. The sources are spread over a fixed pool of threads, each with its own search.
+ * <p>
+ * If paths were requested, the search trees are kept and {@link #getResult} rebuilds a route only when
+ * it is asked for.
+ */
+public class DistanceMatrix {
+    private final Graph graph;
+    private final double[][] costs;
+    private final OneToManySearch.Tree[] trees; // per source, null if paths were not kept
+    private final long computeTimeNanos;
+
+    private DistanceMatrix(Graph graph, double[][] costs, OneToManySearch.Tree[] trees, long computeTimeNanos) {
+        this.graph = graph;
+        this.costs = costs;
+        this.trees = trees;
+        this.computeTimeNanos = computeTimeNanos;
+    }
+
+    /**
+     * Computes the matrix; the network must not change meanwhile.
+     *
+     * @param reachability reachability index of the graph, to skip unreachable targets and useless permits
+     * @param sources      source city ids, one row each
+     * @param targets      target city ids, one column each
+     * @param keepPaths    whether {@link #getResult} should be able to rebuild routes
+     * @param parallelism  number of threads, 1 to run on the calling thread
+     */
+    public static DistanceMatrix compute(Graph graph, ReachabilityIndex reachability, double permitCost,
+                                         int[] sources, int[] targets, boolean keepPaths, int parallelism)
+            throws InterruptedException {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        long start = System.nanoTime();
+        double[][] costs = new double[sources.length][targets.length];
+        OneToManySearch.Tree[] trees = keepPaths ? new OneToManySearch.Tree[sources.length] : null;
+        AtomicInteger nextSource = new AtomicInteger();
+        Callable<Void> worker = () -> {
+            OneToManySearch search = new OneToManySearch(graph, reachability, permitCost);
+            int i;
+            while ((i = nextSource.getAndIncrement()) < sources.length) {
+                OneToManySearch.Tree tree = search.search(sources[i], targets, costs[i], keepPaths);
+                if (keepPaths) trees[i] = tree;
+            }
+            return null;
+        };
+
+        int threads = Math.min(parallelism, sources.length);
+        if (threads <= 1) {
+            try {
+                worker.call();
+            } catch (Exception e) {
+                throw new IllegalStateException("Search failed", e);
+            }
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<Void>> workers = new ArrayList<>(threads);
+                for (int w = 0; w < threads; w++) workers.add(executor.submit(worker));
+                for (Future<Void> future : workers) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        throw new IllegalStateException("Search failed", e.getCause());
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        return new DistanceMatrix(graph, costs, trees, System.nanoTime() - start);
+    }
+
+    public int getSourceCount() { return costs.length; }
+    public int getTargetCount() { return costs.length == 0 ? 0 : costs[0].length; }
+
+    /** Dense cost matrix, rows per source and columns per target; unreachable pairs are infinite. */
+    public double[][] getCosts() { return costs; }
+
+    public double getCost(int source, int target) { return costs[source][target]; }
+
+    public boolean hasPaths() { return trees != null; }
+
+    public long getComputeTimeNanos() { return computeTimeNanos; }
+
+    /**
+     * Rebuilds the route from source row to target column. The frontier size and expanded nodes are those
+     * of the whole search from the source.
+     *
+     * @return the search result or null if there is no route
+     * @throws IllegalStateException if the matrix was computed without paths
+     */
+    public SearchResult getResult(int source, int target) {
+        if (trees == null) throw new IllegalStateException("Distance matrix computed without paths");
+        OneToManySearch.Tree tree = trees[source];
+        int state = tree.targetStates[target];
+        if (state == -1) return null;
+        List<String> path = new ArrayList<>();
+        List<String> permitsAcquired = new ArrayList<>();
+        for (int s = state; s != -1; s = tree.parents[s]) {
+            int city = tree.cities[s];
+            path.add(graph.cityName(city));
+            if (tree.acquired[s]) {
+                permitsAcquired.add("Acquired permit " + graph.permitName(graph.availablePermit(city))
+                        + " at " + graph.cityName(city));
+            }
+        }
+        Collections.reverse(path);
+        Collections.reverse(permitsAcquired);
+        return new SearchResult(costs[source][target], tree.maxFrontierSize, tree.nodesExpanded, path,
+                tree.permitCosts[state], permitsAcquired);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d x %d matrix in %.1f ms", getSourceCount(), getTargetCount(), computeTimeNanos / 1e6);
+    }
+}
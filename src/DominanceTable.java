@@ -0,0 +1,67 @@
+import java.util.Arrays;
+
+/**
+ * Pareto set of (permits, cost) labels per city for the optional dominance pruning of the planners.
+ * <p>
+ * A state is dominated when another state in the same city holds a strict superset of its permits at no
+ * higher cost: every road open to it is open to the other state, which reaches every later city at no
+ * more cost. Labels are indexed like the states of the search and linked per city; with p permit types a
+ * city holds at most 2^p labels, and a check walks them with one mask test and one comparison each.
+ * Dominated labels are not removed, since their states stay in the reached table, and a dominating label
+ * only gets cheaper.
+ */
+public class DominanceTable {
+    private int[] firstAtCity = new int[0]; // -1 if the city has no label
+    private int count;
+    private int[] cities = new int[256];
+    private long[] permits = new long[256];
+    private double[] costs = new double[256];
+    private int[] next = new int[256];
+
+    /** Removes all labels and makes room for the cities of the network. */
+    public void reset(int cityCount) {
+        if (firstAtCity.length < cityCount) {
+            firstAtCity = new int[cityCount];
+            Arrays.fill(firstAtCity, -1);
+        } else {
+            for (int i = 0; i < count; i++) firstAtCity[cities[i]] = -1;
+        }
+        count = 0;
+    }
+
+    /** True if a label in the city holds a strict superset of the permits at a cost of at most cost. */
+    public boolean isDominated(int city, long permitMask, double cost) {
+        for (int label = firstAtCity[city]; label != -1; label = next[label]) {
+            long other = permits[label];
+            if (other != permitMask && (other & permitMask) == permitMask && costs[label] <= cost) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds the label of a new state.
+     *
+     * @param state index of the state in the search, which has to be the number of labels added so far
+     */
+    public void add(int state, int city, long permitMask, double cost) {
+        if (state != count) throw new IllegalArgumentException("Label " + state + " added as label " + count);
+        if (count == cities.length) {
+            int capacity = count * 2;
+            cities = Arrays.copyOf(cities, capacity);
+            permits = Arrays.copyOf(permits, capacity);
+            costs = Arrays.copyOf(costs, capacity);
+            next = Arrays.copyOf(next, capacity);
+        }
+        cities[count] = city;
+        permits[count] = permitMask;
+        costs[count] = cost;
+        next[count] = firstAtCity[city];
+        firstAtCity[city] = count;
+        count++;
+    }
+
+    /** Lowers the cost of a state that was reached on a cheaper path. */
+    public void update(int state, double cost) {
+        costs[state] = cost;
+    }
+}
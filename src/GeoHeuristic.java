@@ -0,0 +1,126 @@
+/**
+ * Straight-line distances between cities, with coordinates converted to radians (and the cosine of the
+ * latitude and a unit vector cached) once when the network is loaded.
+ * <p>
+ * The straight line is a lower bound of the road distance only if no road is shorter than it. Road
+ * lengths in the input files are rounded, so some are: on bigGraph the shortest road is 0.82 times its
+ * straight line. {@link #measuredOn} finds the largest scale up to 1 that keeps every road at least as
+ * long as its scaled straight line. The scaled distance is then admissible and consistent, because any
+ * route is at least the scale times the straight line between its ends.
+ */
+public class GeoHeuristic {
+    public enum Kind {
+        /** Great-circle distance, as {@link RoutePlanner2#haversineDistance}. */
+        HAVERSINE,
+        /**
+         * Length of the straight chord through the earth. Never longer than the great-circle distance,
+         * so the admissible scale of HAVERSINE holds for it as well, and needs no trigonometry at query time.
+         */
+        CHORD
+    }
+
+    static final double EARTH_RADIUS = 6371; // km, half of the diameter used by haversineDistance
+
+    private final double[] latitudesDegrees;
+    private final double[] longitudesDegrees;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] cosLatitudes;
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    private final double admissibleScale;
+
+    /**
+     * @param latitudesDegrees  latitude per city id
+     * @param longitudesDegrees longitude per city id
+     */
+    public GeoHeuristic(double[] latitudesDegrees, double[] longitudesDegrees) {
+        this.admissibleScale = 1.0;
+        this.latitudesDegrees = latitudesDegrees;
+        this.longitudesDegrees = longitudesDegrees;
+        int n = latitudesDegrees.length;
+        latitudes = new double[n];
+        longitudes = new double[n];
+        cosLatitudes = new double[n];
+        x = new double[n];
+        y = new double[n];
+        z = new double[n];
+        for (int i = 0; i < n; i++) {
+            latitudes[i] = Math.toRadians(latitudesDegrees[i]);
+            longitudes[i] = Math.toRadians(longitudesDegrees[i]);
+            cosLatitudes[i] = Math.cos(latitudes[i]);
+            x[i] = cosLatitudes[i] * Math.cos(longitudes[i]);
+            y[i] = cosLatitudes[i] * Math.sin(longitudes[i]);
+            z[i] = Math.sin(latitudes[i]);
+        }
+    }
+
+    /** Same coordinates with another scale; the arrays are shared. */
+    private GeoHeuristic(GeoHeuristic coordinates, double admissibleScale) {
+        this.latitudesDegrees = coordinates.latitudesDegrees;
+        this.longitudesDegrees = coordinates.longitudesDegrees;
+        this.latitudes = coordinates.latitudes;
+        this.longitudes = coordinates.longitudes;
+        this.cosLatitudes = coordinates.cosLatitudes;
+        this.x = coordinates.x;
+        this.y = coordinates.y;
+        this.z = coordinates.z;
+        this.admissibleScale = admissibleScale;
+    }
+
+    /** Returns these coordinates with the admissible scale measured on all roads of the graph. */
+    public GeoHeuristic measuredOn(Graph graph) {
+        double scale = 1.0;
+        for (int city = 0; city < graph.cityCount(); city++) scale = lowestScale(graph, city, scale);
+        return new GeoHeuristic(this, scale);
+    }
+
+    /**
+     * Returns these coordinates with the admissible scale lowered for the roads of the given cities, e.g.
+     * the cities whose roads an update reopened or shortened. The other roads keep their ratio, so the
+     * scale stays valid without measuring them again.
+     */
+    public GeoHeuristic remeasuredOn(Graph graph, int[] cities) {
+        double scale = admissibleScale;
+        for (int city : cities) scale = lowestScale(graph, city, scale);
+        return scale == admissibleScale ? this : new GeoHeuristic(this, scale);
+    }
+
+    private double lowestScale(Graph graph, int city, double scale) {
+        for (int edge = graph.firstEdge(city), end = graph.endEdge(city); edge < end; edge++) {
+            double straight = haversine(city, graph.target(edge));
+            if (straight * scale > graph.distance(edge)) scale = graph.distance(edge) / straight;
+        }
+        return scale;
+    }
+
+    /**
+     * Largest factor up to 1 by which both kinds of distance can be multiplied and stay lower bounds of
+     * the road distance; 1 until {@link #measuredOn} has seen the roads.
+     */
+    public double getAdmissibleScale() { return admissibleScale; }
+
+    public int cityCount() { return latitudes.length; }
+    public double latitudeDegrees(int city) { return latitudesDegrees[city]; }
+    public double longitudeDegrees(int city) { return longitudesDegrees[city]; }
+
+    public double distance(Kind kind, int from, int to) {
+        return kind == Kind.CHORD ? chord(from, to) : haversine(from, to);
+    }
+
+    public double haversine(int from, int to) {
+        double sinHalfDeltaLat = Math.sin((latitudes[to] - latitudes[from]) / 2);
+        double sinHalfDeltaLon = Math.sin((longitudes[to] - longitudes[from]) / 2);
+        double a = sinHalfDeltaLat * sinHalfDeltaLat
+                + cosLatitudes[from] * cosLatitudes[to] * sinHalfDeltaLon * sinHalfDeltaLon;
+        return 2 * EARTH_RADIUS * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    public double chord(int from, int to) {
+        double dx = x[to] - x[from];
+        double dy = y[to] - y[from];
+        double dz = z[to] - z[from];
+        return EARTH_RADIUS * Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+}
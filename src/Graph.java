@@ -0,0 +1,109 @@
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Immutable road network in compressed-sparse-row form.
+ * <p>
+ * Cities are interned to dense ids {@code 0..cityCount()-1}. The outgoing roads of city {@code c}
+ * are the edge indices {@code firstEdge(c) .. endEdge(c)-1}; every undirected connection is stored
+ * once per direction. Permits are identified by their bit in the {@link PermitRegistry}, {@link #NONE}
+ * meaning "no permit". Instances are built by {@link GraphBuilder} on heap buffers, or opened from a
+ * {@link NetworkSnapshot}, in which case the buffers are views of the mapped file. A {@link GraphUpdate}
+ * derives a changed graph that shares the buffers the update leaves alone; the roads it closed are kept
+ * with the graph, outside the edge arrays, so they can be reopened. Snapshots do not store closed roads.
+ */
+public class Graph {
+    public static final int NONE = -1;
+
+    /** A connection taken out of the edge arrays by {@link GraphUpdate#closeRoad}. */
+    static final class ClosedRoad {
+        final int city1;
+        final int city2;
+        final double distance;
+        final int requiredPermit;
+
+        ClosedRoad(int city1, int city2, double distance, int requiredPermit) {
+            this.city1 = city1;
+            this.city2 = city2;
+            this.distance = distance;
+            this.requiredPermit = requiredPermit;
+        }
+
+        boolean connects(int a, int b) {
+            return (city1 == a && city2 == b) || (city1 == b && city2 == a);
+        }
+    }
+
+    private static final ClosedRoad[] NO_CLOSED_ROADS = new ClosedRoad[0];
+
+    private final NameTable cityNames;
+    private final IntBuffer availablePermits;
+    private final PermitRegistry permits;
+    private final int permitBits;
+
+    private final IntBuffer edgeOffsets;
+    private final IntBuffer edgeTargets;
+    private final DoubleBuffer edgeDistances;
+    private final IntBuffer edgeRequiredPermits;
+    private final ClosedRoad[] closedRoads;
+
+    Graph(NameTable cityNames, IntBuffer availablePermits, PermitRegistry permits,
+          IntBuffer edgeOffsets, IntBuffer edgeTargets, DoubleBuffer edgeDistances, IntBuffer edgeRequiredPermits) {
+        this(cityNames, availablePermits, permits, edgeOffsets, edgeTargets, edgeDistances, edgeRequiredPermits,
+                NO_CLOSED_ROADS);
+    }
+
+    Graph(NameTable cityNames, IntBuffer availablePermits, PermitRegistry permits,
+          IntBuffer edgeOffsets, IntBuffer edgeTargets, DoubleBuffer edgeDistances, IntBuffer edgeRequiredPermits,
+          ClosedRoad[] closedRoads) {
+        this.cityNames = cityNames;
+        this.availablePermits = availablePermits;
+        this.permits = permits;
+        this.permitBits = permits.size();
+        int cityBits = 64 - Long.numberOfLeadingZeros(Math.max(0, cityNames.size() - 1));
+        if (cityBits + permitBits > 63) {
+            throw new IllegalStateException("Too many cities/permits for a 64-bit state key: "
+                    + cityNames.size() + " cities, " + permitBits + " permits");
+        }
+        this.edgeOffsets = edgeOffsets;
+        this.edgeTargets = edgeTargets;
+        this.edgeDistances = edgeDistances;
+        this.edgeRequiredPermits = edgeRequiredPermits;
+        this.closedRoads = closedRoads;
+    }
+
+    public int cityCount() { return cityNames.size(); }
+    public int edgeCount() { return edgeTargets.limit(); }
+    public int permitCount() { return permitBits; }
+
+    /** Returns the id of the named city or {@link #NONE} if it is unknown. */
+    public int cityId(String name) { return cityNames.id(name); }
+
+    public String cityName(int city) { return cityNames.name(city); }
+    public int availablePermit(int city) { return availablePermits.get(city); }
+    public String permitName(int permit) { return permits.name(permit); }
+    public PermitRegistry permits() { return permits; }
+
+    public int firstEdge(int city) { return edgeOffsets.get(city); }
+    public int endEdge(int city) { return edgeOffsets.get(city + 1); }
+    public int target(int edge) { return edgeTargets.get(edge); }
+    public double distance(int edge) { return edgeDistances.get(edge); }
+    public int requiredPermit(int edge) { return edgeRequiredPermits.get(edge); }
+
+    /** Number of connections closed by a {@link GraphUpdate}, each counted once for both directions. */
+    public int closedRoadCount() { return closedRoads.length; }
+
+    // the parts a GraphUpdate shares with or copies into the next graph
+    NameTable cityNames() { return cityNames; }
+    IntBuffer availablePermits() { return availablePermits; }
+    IntBuffer edgeOffsets() { return edgeOffsets; }
+    IntBuffer edgeTargets() { return edgeTargets; }
+    DoubleBuffer edgeDistances() { return edgeDistances; }
+    IntBuffer edgeRequiredPermits() { return edgeRequiredPermits; }
+    ClosedRoad[] closedRoads() { return closedRoads; }
+
+    /** Packs a (city, permit mask) search state into one non-negative key for a {@link StateTable}. */
+    public long stateKey(int city, long permitMask) {
+        return ((long) city << permitBits) | permitMask;
+    }
+}
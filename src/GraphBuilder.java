@@ -0,0 +1,116 @@
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.*;
+
+/**
+ * Collects cities and connections while the input files are read and packs them into a {@link Graph}.
+ * Connections referring to a city that was not added before are dropped.
+ */
+public class GraphBuilder {
+    private final List<String> cityNames = new ArrayList<>();
+    private final Map<String, Integer> cityIds = new HashMap<>();
+    private int[] availablePermits = new int[16];
+
+    private final PermitRegistry permits = new PermitRegistry();
+
+    private int edgeCount = 0;
+    private int[] edgeSources = new int[64];
+    private int[] edgeTargets = new int[64];
+    private double[] edgeDistances = new double[64];
+    private int[] edgeRequiredPermits = new int[64];
+
+    /**
+     * Adds a city, or updates the permit of a city that was already added.
+     *
+     * @param availablePermit permit obtainable in the city, {@code null} or "NONE" for none
+     * @return the id of the city
+     */
+    public int addCity(String name, String availablePermit) {
+        Integer id = cityIds.get(name);
+        if (id == null) {
+            id = cityNames.size();
+            cityNames.add(name);
+            cityIds.put(name, id);
+            if (id == availablePermits.length) {
+                availablePermits = Arrays.copyOf(availablePermits, id * 2);
+            }
+        }
+        availablePermits[id] = permits.register(availablePermit);
+        return id;
+    }
+
+    /**
+     * Adds an undirected connection as two directed edges.
+     *
+     * @param requiredPermit permit needed on this road, {@code null} or "NONE" for none
+     * @return false if one of the cities is unknown and the connection was dropped
+     */
+    public boolean addConnection(String city1, String city2, double distance, String requiredPermit) {
+        Integer from = cityIds.get(city1);
+        Integer to = cityIds.get(city2);
+        if (from == null || to == null) return false;
+        int permit = permits.register(requiredPermit);
+        addEdge(from, to, distance, permit);
+        addEdge(to, from, distance, permit);
+        return true;
+    }
+
+    /**
+     * Adds an undirected connection between two cities given by the ids {@link #addCity} returned.
+     *
+     * @param requiredPermit permit needed on this road, {@code null} or "NONE" for none
+     */
+    public void addConnection(int city1, int city2, double distance, String requiredPermit) {
+        int permit = permits.register(requiredPermit);
+        addEdge(city1, city2, distance, permit);
+        addEdge(city2, city1, distance, permit);
+    }
+
+    public int cityCount() { return cityNames.size(); }
+
+    private void addEdge(int from, int to, double distance, int permit) {
+        if (edgeCount == edgeSources.length) {
+            int capacity = edgeCount * 2;
+            edgeSources = Arrays.copyOf(edgeSources, capacity);
+            edgeTargets = Arrays.copyOf(edgeTargets, capacity);
+            edgeDistances = Arrays.copyOf(edgeDistances, capacity);
+            edgeRequiredPermits = Arrays.copyOf(edgeRequiredPermits, capacity);
+        }
+        edgeSources[edgeCount] = from;
+        edgeTargets[edgeCount] = to;
+        edgeDistances[edgeCount] = distance;
+        edgeRequiredPermits[edgeCount] = permit;
+        edgeCount++;
+    }
+
+    /**
+     * Packs the collected data. Edges keep their insertion order within each city, so a search over
+     * the result visits neighbours in the same order as the input file lists them.
+     */
+    public Graph build() {
+        int n = cityNames.size();
+        int[] offsets = new int[n + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            offsets[edgeSources[e] + 1]++;
+        }
+        for (int c = 0; c < n; c++) {
+            offsets[c + 1] += offsets[c];
+        }
+        int[] next = Arrays.copyOf(offsets, n);
+        int[] targets = new int[edgeCount];
+        double[] distances = new double[edgeCount];
+        int[] requiredPermits = new int[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            int slot = next[edgeSources[e]]++;
+            targets[slot] = edgeTargets[e];
+            distances[slot] = edgeDistances[e];
+            requiredPermits[slot] = edgeRequiredPermits[e];
+        }
+        return new Graph(
+                NameTable.of(cityNames),
+                IntBuffer.wrap(Arrays.copyOf(availablePermits, n)),
+                permits,
+                IntBuffer.wrap(offsets), IntBuffer.wrap(targets), DoubleBuffer.wrap(distances),
+                IntBuffer.wrap(requiredPermits));
+    }
+}
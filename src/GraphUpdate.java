@@ -0,0 +1,347 @@
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.*;
+
+/**
+ * A batch of changes to a road network: roads closed and reopened, new distances and required permits
+ * of roads, new available permits of cities. The changes are recorded by name and only resolved by
+ * {@link #applyTo}, in the order they were made, so a batch can be applied to whatever graph version is
+ * current at that time.
+ * <p>
+ * {@link #applyTo} never modifies its input. The new graph shares every buffer the batch does not touch:
+ * new distances copy the distance array only, permit changes the permit array only, and only closing or
+ * reopening a road rebuilds the edge arrays. Roads are addressed by their two cities, and a change applies
+ * to all open connections between them, in both directions.
+ */
+public class GraphUpdate {
+    private enum Kind { CLOSE, REOPEN, DISTANCE, REQUIRED_PERMIT, AVAILABLE_PERMIT }
+
+    private static final class Change {
+        final Kind kind;
+        final String city1;
+        final String city2;
+        final double distance;
+        final String permit;
+
+        Change(Kind kind, String city1, String city2, double distance, String permit) {
+            this.kind = kind;
+            this.city1 = city1;
+            this.city2 = city2;
+            this.distance = distance;
+            this.permit = permit;
+        }
+    }
+
+    private final List<Change> changes = new ArrayList<>();
+
+    /** Takes all connections between the two cities out of the network until they are reopened. */
+    public GraphUpdate closeRoad(String city1, String city2) {
+        changes.add(new Change(Kind.CLOSE, city1, city2, 0, null));
+        return this;
+    }
+
+    /** Puts all closed connections between the two cities back, with the values they had when closed. */
+    public GraphUpdate reopenRoad(String city1, String city2) {
+        changes.add(new Change(Kind.REOPEN, city1, city2, 0, null));
+        return this;
+    }
+
+    /**
+     * Sets the distance of the road. The distance may be shorter than the straight line between the cities:
+     * {@link RoutePlanner2#updateNetwork} lowers the admissible scale of the geographic heuristic around the
+     * road, so it stays a lower bound.
+     *
+     * @throws IllegalArgumentException if the distance is negative or not finite
+     */
+    public GraphUpdate setDistance(String city1, String city2, double distance) {
+        if (!(distance >= 0) || Double.isInfinite(distance)) {
+            throw new IllegalArgumentException("Invalid distance: " + distance);
+        }
+        changes.add(new Change(Kind.DISTANCE, city1, city2, distance, null));
+        return this;
+    }
+
+    /** Sets the permit needed on the road, {@code null} or "NONE" for none. */
+    public GraphUpdate setRequiredPermit(String city1, String city2, String permit) {
+        changes.add(new Change(Kind.REQUIRED_PERMIT, city1, city2, 0, permit));
+        return this;
+    }
+
+    /** Sets the permit obtainable in the city, {@code null} or "NONE" for none. */
+    public GraphUpdate setAvailablePermit(String city, String permit) {
+        changes.add(new Change(Kind.AVAILABLE_PERMIT, city, null, 0, permit));
+        return this;
+    }
+
+    public boolean isEmpty() { return changes.isEmpty(); }
+
+    /** Whether a route may get shorter, so that lower bounds computed on the old graph may not hold. */
+    public boolean canShortenRoutes() {
+        for (Change change : changes) {
+            if (change.kind == Kind.REOPEN || change.kind == Kind.DISTANCE) return true;
+        }
+        return false;
+    }
+
+    /** Whether which cities a route can reach, or with which permits, may change. */
+    public boolean canChangeReachability() {
+        for (Change change : changes) {
+            if (change.kind != Kind.DISTANCE) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Cities whose roads, or the permits they lead to, differ between the graph before and after this
+     * update: both ends of every changed road, and for a changed available permit the city and its
+     * neighbours in either graph.
+     */
+    int[] affectedCities(Graph before, Graph after) {
+        boolean[] affected = new boolean[before.cityCount()];
+        for (Change change : changes) {
+            int city = before.cityId(change.city1);
+            if (city == Graph.NONE) continue;
+            affected[city] = true;
+            if (change.city2 != null) {
+                int other = before.cityId(change.city2);
+                if (other != Graph.NONE) affected[other] = true;
+                continue;
+            }
+            for (Graph graph : new Graph[]{before, after}) {
+                for (int edge = graph.firstEdge(city), end = graph.endEdge(city); edge < end; edge++) {
+                    affected[graph.target(edge)] = true;
+                }
+            }
+        }
+        int count = 0;
+        for (boolean a : affected) if (a) count++;
+        int[] cities = new int[count];
+        for (int city = 0, i = 0; city < affected.length; city++) if (affected[city]) cities[i++] = city;
+        return cities;
+    }
+
+    /**
+     * Builds the graph with all changes applied.
+     *
+     * @throws IllegalArgumentException if a city is unknown, a road to change is not open, or a road to
+     *                                  reopen is not closed; the graph is then left as it was
+     */
+    public Graph applyTo(Graph graph) {
+        return new Editor(graph).apply(changes);
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "GraphUpdate[", "]");
+        for (Change change : changes) {
+            String road = change.city1 + (change.city2 == null ? "" : "-" + change.city2);
+            switch (change.kind) {
+                case CLOSE: joiner.add("close " + road); break;
+                case REOPEN: joiner.add("reopen " + road); break;
+                case DISTANCE: joiner.add(road + " distance " + change.distance); break;
+                case REQUIRED_PERMIT: joiner.add(road + " requires " + change.permit); break;
+                default: joiner.add(road + " offers " + change.permit); break;
+            }
+        }
+        return joiner.toString();
+    }
+
+    /** Copy-on-write view of one graph while a batch is applied. */
+    private static final class Editor {
+        private final Graph base;
+        private final int edgeCount;
+        private PermitRegistry permits;
+        private boolean permitsCopied = false;
+        private int[] availablePermits;   // null until changed
+        private double[] distances;       // null until changed
+        private int[] requiredPermits;    // null until changed
+        private boolean[] closedEdges;    // null until a road is closed
+        private final List<Graph.ClosedRoad> closedRoads;
+        private final List<Graph.ClosedRoad> reopenedRoads = new ArrayList<>();
+
+        Editor(Graph base) {
+            this.base = base;
+            this.edgeCount = base.edgeCount();
+            this.permits = base.permits();
+            this.closedRoads = new ArrayList<>(Arrays.asList(base.closedRoads()));
+        }
+
+        Graph apply(List<Change> changes) {
+            for (Change change : changes) {
+                int city1 = cityId(change.city1);
+                int city2 = change.city2 == null ? Graph.NONE : cityId(change.city2);
+                switch (change.kind) {
+                    case CLOSE: close(city1, city2); break;
+                    case REOPEN: reopen(city1, city2); break;
+                    case DISTANCE: setRoad(city1, city2, change.distance, Graph.NONE, false); break;
+                    case REQUIRED_PERMIT: setRoad(city1, city2, 0, permitBit(change.permit), true); break;
+                    case AVAILABLE_PERMIT:
+                        if (availablePermits == null) availablePermits = toArray(base.availablePermits());
+                        availablePermits[city1] = permitBit(change.permit);
+                        break;
+                    default: throw new IllegalStateException("Unknown change: " + change.kind);
+                }
+            }
+            return build();
+        }
+
+        private int cityId(String name) {
+            int id = base.cityId(name);
+            if (id == Graph.NONE) throw new IllegalArgumentException("Unknown city: " + name);
+            return id;
+        }
+
+        private int permitBit(String permit) {
+            int bit = permits.bit(permit);
+            if (bit != Graph.NONE || permit == null || permit.equals("NONE")) return bit;
+            if (!permitsCopied) {
+                permits = permits.copy(); // the old graph keeps its registry unchanged
+                permitsCopied = true;
+            }
+            return permits.register(permit);
+        }
+
+        private boolean isOpen(int edge) {
+            return closedEdges == null || !closedEdges[edge];
+        }
+
+        private void close(int city1, int city2) {
+            boolean found = false;
+            for (int edge = base.firstEdge(city1), end = base.endEdge(city1); edge < end; edge++) {
+                if (base.target(edge) != city2 || !isOpen(edge)) continue;
+                closedRoads.add(new Graph.ClosedRoad(city1, city2, distance(edge), requiredPermit(edge)));
+                found = true;
+            }
+            if (found) {
+                if (closedEdges == null) closedEdges = new boolean[edgeCount];
+                markClosed(city1, city2);
+                markClosed(city2, city1);
+            }
+            for (Iterator<Graph.ClosedRoad> it = reopenedRoads.iterator(); it.hasNext(); ) {
+                Graph.ClosedRoad road = it.next();
+                if (!road.connects(city1, city2)) continue;
+                it.remove(); // reopened earlier in this batch
+                closedRoads.add(road);
+                found = true;
+            }
+            if (!found) throw new IllegalArgumentException("No open road between " + base.cityName(city1)
+                    + " and " + base.cityName(city2));
+        }
+
+        private void markClosed(int from, int to) {
+            for (int edge = base.firstEdge(from), end = base.endEdge(from); edge < end; edge++) {
+                if (base.target(edge) == to) closedEdges[edge] = true;
+            }
+        }
+
+        private void reopen(int city1, int city2) {
+            boolean found = false;
+            for (Iterator<Graph.ClosedRoad> it = closedRoads.iterator(); it.hasNext(); ) {
+                Graph.ClosedRoad road = it.next();
+                if (!road.connects(city1, city2)) continue;
+                it.remove();
+                reopenedRoads.add(road);
+                found = true;
+            }
+            if (!found) throw new IllegalArgumentException("No closed road between " + base.cityName(city1)
+                    + " and " + base.cityName(city2));
+        }
+
+        /** Sets the distance or, if {@code permitChange}, the required permit of the open road. */
+        private void setRoad(int city1, int city2, double distance, int permit, boolean permitChange) {
+            boolean found = false;
+            for (int[] direction : new int[][]{{city1, city2}, {city2, city1}}) {
+                for (int edge = base.firstEdge(direction[0]), end = base.endEdge(direction[0]); edge < end; edge++) {
+                    if (base.target(edge) != direction[1] || !isOpen(edge)) continue;
+                    if (permitChange) {
+                        if (requiredPermits == null) requiredPermits = toArray(base.edgeRequiredPermits());
+                        requiredPermits[edge] = permit;
+                    } else {
+                        if (distances == null) distances = toArray(base.edgeDistances());
+                        distances[edge] = distance;
+                    }
+                    found = true;
+                }
+                if (city1 == city2) break; // a loop is stored in one direction twice
+            }
+            for (ListIterator<Graph.ClosedRoad> it = reopenedRoads.listIterator(); it.hasNext(); ) {
+                Graph.ClosedRoad road = it.next();
+                if (!road.connects(city1, city2)) continue;
+                it.set(new Graph.ClosedRoad(road.city1, road.city2, permitChange ? road.distance : distance,
+                        permitChange ? permit : road.requiredPermit));
+                found = true;
+            }
+            if (!found) throw new IllegalArgumentException("No open road between " + base.cityName(city1)
+                    + " and " + base.cityName(city2));
+        }
+
+        private double distance(int edge) {
+            return distances != null ? distances[edge] : base.distance(edge);
+        }
+
+        private int requiredPermit(int edge) {
+            return requiredPermits != null ? requiredPermits[edge] : base.requiredPermit(edge);
+        }
+
+        private Graph build() {
+            IntBuffer available = availablePermits != null ? IntBuffer.wrap(availablePermits) : base.availablePermits();
+            Graph.ClosedRoad[] closed = closedRoads.toArray(new Graph.ClosedRoad[0]);
+            if (closedEdges == null && reopenedRoads.isEmpty()) {
+                return new Graph(base.cityNames(), available, permits, base.edgeOffsets(), base.edgeTargets(),
+                        distances != null ? DoubleBuffer.wrap(distances) : base.edgeDistances(),
+                        requiredPermits != null ? IntBuffer.wrap(requiredPermits) : base.edgeRequiredPermits(),
+                        closed);
+            }
+
+            // the open edges keep their order per city; reopened roads follow them
+            int n = base.cityCount();
+            int[] offsets = new int[n + 1];
+            for (int city = 0; city < n; city++) {
+                for (int edge = base.firstEdge(city), end = base.endEdge(city); edge < end; edge++) {
+                    if (isOpen(edge)) offsets[city + 1]++;
+                }
+            }
+            for (Graph.ClosedRoad road : reopenedRoads) {
+                offsets[road.city1 + 1]++;
+                offsets[road.city2 + 1]++;
+            }
+            for (int city = 0; city < n; city++) offsets[city + 1] += offsets[city];
+            int total = offsets[n];
+            int[] next = Arrays.copyOf(offsets, n);
+            int[] targets = new int[total];
+            double[] newDistances = new double[total];
+            int[] newRequiredPermits = new int[total];
+            for (int city = 0; city < n; city++) {
+                for (int edge = base.firstEdge(city), end = base.endEdge(city); edge < end; edge++) {
+                    if (!isOpen(edge)) continue;
+                    int slot = next[city]++;
+                    targets[slot] = base.target(edge);
+                    newDistances[slot] = distance(edge);
+                    newRequiredPermits[slot] = requiredPermit(edge);
+                }
+            }
+            for (Graph.ClosedRoad road : reopenedRoads) {
+                for (int[] direction : new int[][]{{road.city1, road.city2}, {road.city2, road.city1}}) {
+                    int slot = next[direction[0]]++;
+                    targets[slot] = direction[1];
+                    newDistances[slot] = road.distance;
+                    newRequiredPermits[slot] = road.requiredPermit;
+                }
+            }
+            return new Graph(base.cityNames(), available, permits, IntBuffer.wrap(offsets), IntBuffer.wrap(targets),
+                    DoubleBuffer.wrap(newDistances), IntBuffer.wrap(newRequiredPermits), closed);
+        }
+
+        private static int[] toArray(IntBuffer buffer) {
+            int[] array = new int[buffer.limit()];
+            for (int i = 0; i < array.length; i++) array[i] = buffer.get(i);
+            return array;
+        }
+
+        private static double[] toArray(DoubleBuffer buffer) {
+            double[] array = new double[buffer.limit()];
+            for (int i = 0; i < array.length; i++) array[i] = buffer.get(i);
+            return array;
+        }
+    }
+}
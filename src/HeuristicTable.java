@@ -0,0 +1,68 @@
+import java.util.Arrays;
+
+/**
+ * Goal-specific heuristic values of one query, computed the first time a city is reached and read from
+ * an array afterwards. Entries are invalidated by bumping an epoch, so starting a new query does not
+ * clear the arrays.
+ */
+public class HeuristicTable {
+    private double[] values = new double[0];
+    private int[] stamps = new int[0];
+    private int epoch = 0;
+    private int evaluations;
+
+    private GeoHeuristic geo;
+    private GeoHeuristic.Kind kind;
+    private LandmarkIndex landmarks;
+    private int goal;
+    private double scalingFactor;
+    private double geoScale;
+
+    /** Prepares the table for a query towards the goal city. */
+    public void reset(GeoHeuristic geo, GeoHeuristic.Kind kind, int goal, double scalingFactor) {
+        reset(geo, kind, null, goal, scalingFactor);
+    }
+
+    /**
+     * Prepares the table for a query towards the goal city.
+     *
+     * @param landmarks if not null, the heuristic is the maximum of the landmark bound and the geographic
+     *                  distance times {@link GeoHeuristic#getAdmissibleScale()}, which is admissible and
+     *                  consistent; without landmarks the geographic distance is used unscaled
+     */
+    public void reset(GeoHeuristic geo, GeoHeuristic.Kind kind, LandmarkIndex landmarks, int goal,
+                      double scalingFactor) {
+        int n = geo.cityCount();
+        if (values.length < n) {
+            values = new double[n];
+            stamps = new int[n];
+            epoch = 0;
+        }
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            epoch = 1;
+        }
+        this.geo = geo;
+        this.kind = kind;
+        this.landmarks = landmarks;
+        this.goal = goal;
+        this.scalingFactor = scalingFactor;
+        this.geoScale = landmarks != null ? geo.getAdmissibleScale() : 1.0;
+        this.evaluations = 0;
+    }
+
+    /** Returns the scaled heuristic of the city. */
+    public double get(int city) {
+        if (stamps[city] == epoch) return values[city];
+        double h = geo.distance(kind, city, goal);
+        if (landmarks != null) h = Math.max(h * geoScale, landmarks.lowerBound(city, goal));
+        h *= scalingFactor;
+        values[city] = h;
+        stamps[city] = epoch;
+        evaluations++;
+        return h;
+    }
+
+    /** Number of distinct cities whose heuristic was computed since the last reset. */
+    public int getEvaluations() { return evaluations; }
+}
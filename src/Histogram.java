@@ -0,0 +1,100 @@
+import java.util.Arrays;
+
+/**
+ * Histogram of non-negative long values with logarithmic buckets: each power of two is split into 8
+ * buckets, so a percentile is off by at most 12.5% while the histogram stays a fixed array of 496 counts
+ * for any range of values. Not thread-safe.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[(64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS];
+    private long count = 0;
+    private long sum = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+
+    /** Adds a value; negative values count as 0. */
+    public void record(long value) {
+        value = Math.max(value, 0);
+        counts[bucket(value)]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /** Values below 8 get a bucket each; above, the top 4 significant bits select the bucket. */
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> exponent) - SUB_BUCKETS; // 0..7 below the leading bit
+        return (exponent + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /** Largest value that falls into the bucket. */
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << exponent) - 1;
+    }
+
+    /** Adds all values of the other histogram. */
+    public void add(Histogram other) {
+        for (int b = 0; b < counts.length; b++) counts[b] += other.counts[b];
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() { return count; }
+    public long getMin() { return count == 0 ? 0 : min; }
+    public long getMax() { return max; }
+    public double getMean() { return count == 0 ? 0 : (double) sum / count; }
+
+    /**
+     * Nearest-rank percentile, reported as the upper bound of its bucket but never above the maximum.
+     *
+     * @param percentile value in (0, 100]
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int b = 0; b < counts.length; b++) {
+            seen += counts[b];
+            if (seen >= rank) return Math.min(upperBound(b), max);
+        }
+        return max;
+    }
+
+    /**
+     * Non-empty buckets for export, as pairs {@code {upper bound, count}} in ascending order.
+     */
+    public long[][] getBuckets() {
+        int n = 0;
+        for (long c : counts) if (c != 0) n++;
+        long[][] buckets = new long[n][];
+        for (int b = 0, i = 0; b < counts.length; b++) {
+            if (counts[b] != 0) buckets[i++] = new long[]{upperBound(b), counts[b]};
+        }
+        return buckets;
+    }
+
+    public void clear() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d mean=%.1f p50=%d p90=%d p99=%d max=%d",
+                count, getMean(), getPercentile(50), getPercentile(90), getPercentile(99), max);
+    }
+}
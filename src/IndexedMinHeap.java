@@ -0,0 +1,169 @@
+import java.util.Arrays;
+
+/**
+ * d-ary min-heap over dense {@code int} ids with {@code double} keys, used as the search frontier.
+ * <p>
+ * In {@link Mode#DECREASE_KEY} mode every id is in the heap at most once and a position array makes
+ * {@link #push} on a queued id an O(log n) decrease-key. In {@link Mode#LAZY_DELETION} mode a push on a
+ * queued id just adds another entry; the outdated entry is skipped when it reaches the top.
+ * Either way {@link #size()} counts live ids only.
+ */
+public class IndexedMinHeap {
+    public enum Mode { DECREASE_KEY, LAZY_DELETION }
+
+    public static final int EMPTY = -1;
+
+    private final Mode mode;
+    private final int arity;
+
+    // heap entries
+    private int[] heapIds = new int[256];
+    private double[] heapKeys = new double[256];
+    private int count = 0;
+
+    // per id: heap position (DECREASE_KEY) or current key, NaN if not queued (LAZY_DELETION)
+    private int[] positions = new int[0];
+    private double[] currentKeys = new double[0];
+    private int staleEntries = 0;
+
+    public IndexedMinHeap() {
+        this(Mode.DECREASE_KEY, 4);
+    }
+
+    public IndexedMinHeap(Mode mode, int arity) {
+        if (arity < 2) throw new IllegalArgumentException("arity must be at least 2: " + arity);
+        this.mode = mode;
+        this.arity = arity;
+    }
+
+    public Mode getMode() { return mode; }
+
+    /** Number of ids currently queued (stale entries are not counted). */
+    public int size() { return count - staleEntries; }
+
+    public boolean isEmpty() { return size() == 0; }
+
+    /**
+     * Queues the id with the given key. If the id is already queued the key must not be larger than
+     * the current one.
+     */
+    public void push(int id, double key) {
+        ensureId(id);
+        if (mode == Mode.DECREASE_KEY) {
+            int position = positions[id];
+            if (position >= 0) {
+                siftUp(position, id, key);
+                return;
+            }
+        } else {
+            if (currentKeys[id] == key) return; // already queued with this key; a second entry would be live too
+            if (!Double.isNaN(currentKeys[id])) staleEntries++;
+            currentKeys[id] = key;
+        }
+        if (count == heapIds.length) {
+            heapIds = Arrays.copyOf(heapIds, count * 2);
+            heapKeys = Arrays.copyOf(heapKeys, count * 2);
+        }
+        siftUp(count++, id, key);
+    }
+
+    /** Removes and returns the id with the smallest key, or {@link #EMPTY}. */
+    public int poll() {
+        while (count > 0) {
+            int id = heapIds[0];
+            double key = heapKeys[0];
+            removeTop();
+            if (mode == Mode.DECREASE_KEY) {
+                positions[id] = -1;
+                return id;
+            }
+            if (currentKeys[id] == key) {
+                currentKeys[id] = Double.NaN;
+                return id;
+            }
+            staleEntries--; // outdated entry of an id that was pushed again with a smaller key
+        }
+        return EMPTY;
+    }
+
+    /** Returns the smallest key without removing it, or +infinity if the heap is empty. */
+    public double peekKey() {
+        if (mode == Mode.LAZY_DELETION) {
+            while (count > 0 && currentKeys[heapIds[0]] != heapKeys[0]) {
+                removeTop();
+                staleEntries--;
+            }
+        }
+        return count == 0 ? Double.POSITIVE_INFINITY : heapKeys[0];
+    }
+
+    /** Removes all queued ids and returns them in no particular order, e.g. to queue them with new keys. */
+    public int[] drain() {
+        int[] ids = new int[size()];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            int id = heapIds[i];
+            if (mode == Mode.DECREASE_KEY || currentKeys[id] == heapKeys[i]) ids[n++] = id;
+        }
+        clear();
+        return ids;
+    }
+
+    /** Empties the heap but keeps the allocated arrays for the next search. */
+    public void clear() {
+        if (mode == Mode.DECREASE_KEY) {
+            for (int i = 0; i < count; i++) positions[heapIds[i]] = -1;
+        } else {
+            for (int i = 0; i < count; i++) currentKeys[heapIds[i]] = Double.NaN;
+        }
+        count = 0;
+        staleEntries = 0;
+    }
+
+    private void removeTop() {
+        count--;
+        if (count > 0) siftDown(0, heapIds[count], heapKeys[count]);
+    }
+
+    private void siftUp(int position, int id, double key) {
+        while (position > 0) {
+            int parent = (position - 1) / arity;
+            if (heapKeys[parent] <= key) break;
+            place(position, heapIds[parent], heapKeys[parent]);
+            position = parent;
+        }
+        place(position, id, key);
+    }
+
+    private void siftDown(int position, int id, double key) {
+        while (true) {
+            int firstChild = position * arity + 1;
+            if (firstChild >= count) break;
+            int best = firstChild;
+            int lastChild = Math.min(firstChild + arity, count);
+            for (int child = firstChild + 1; child < lastChild; child++) {
+                if (heapKeys[child] < heapKeys[best]) best = child;
+            }
+            if (heapKeys[best] >= key) break;
+            place(position, heapIds[best], heapKeys[best]);
+            position = best;
+        }
+        place(position, id, key);
+    }
+
+    private void place(int position, int id, double key) {
+        heapIds[position] = id;
+        heapKeys[position] = key;
+        if (mode == Mode.DECREASE_KEY) positions[id] = position;
+    }
+
+    private void ensureId(int id) {
+        if (id < positions.length) return;
+        int capacity = Math.max(id + 1, positions.length * 2);
+        int oldCapacity = positions.length;
+        positions = Arrays.copyOf(positions, capacity);
+        currentKeys = Arrays.copyOf(currentKeys, capacity);
+        Arrays.fill(positions, oldCapacity, capacity, -1);
+        Arrays.fill(currentKeys, oldCapacity, capacity, Double.NaN);
+    }
+}
@@ -0,0 +1,217 @@
+import java.util.*;
+import java.util.function.IntToLongFunction;
+
+/**
+ * A* over (city, permits held) states on integer costs, with a {@link RadixHeap} as frontier and the
+ * states in parallel primitive arrays. {@link RoutePlanner} uses it directly on its int distances; for
+ * {@link RoutePlanner2} the km distances are converted to fixed point, e.g. millimetres.
+ * <p>
+ * The radix heap needs keys that never drop below the last polled key, which an inconsistent heuristic
+ * such as the stored values of {@link City} does not guarantee. A state is therefore queued with
+ * {@code max(g + h, last polled key)}. The goal still comes off the frontier with its optimal cost: as
+ * long as it has not, some state of an optimal route is queued with its optimal g, so every polled key
+ * stays at most the optimal cost. States whose cost drops after their expansion are queued again.
+ * <p>
+ * In fixed point every road cost is rounded up and every heuristic value down, so a heuristic that is
+ * admissible in km, such as the scaled one of the network overload, stays admissible; the returned route
+ * is then optimal up to one unit per road, and its cost is recomputed from the exact distances. An
+ * instance is not thread-safe; it keeps its state arrays, frontier and heuristic memo between queries,
+ * also on different networks, so one instance per thread saves the allocations.
+ */
+public class IntegerSearch {
+    /** Fixed-point units per km for millimetre precision. */
+    public static final double MILLIMETRES_PER_KM = 1e6;
+
+    /**
+     * Road costs of a network in fixed point. Immutable, so one instance can serve concurrent searches.
+     */
+    public static final class Costs {
+        private final Graph graph;
+        private final double unitsPerDistance;
+        private final long[] edgeCosts;
+
+        /**
+         * @param unitsPerDistance fixed-point units per unit of distance, 1 for integer distances
+         * @throws IllegalArgumentException if a road cost does not fit into a {@code long}
+         */
+        public Costs(Graph graph, double unitsPerDistance) {
+            if (!(unitsPerDistance > 0)) throw new IllegalArgumentException("unitsPerDistance must be positive: " + unitsPerDistance);
+            this.graph = graph;
+            this.unitsPerDistance = unitsPerDistance;
+            this.edgeCosts = new long[graph.edgeCount()];
+            for (int edge = 0; edge < edgeCosts.length; edge++) {
+                double cost = Math.ceil(graph.distance(edge) * unitsPerDistance);
+                if (!(cost < Long.MAX_VALUE / 4)) {
+                    throw new IllegalArgumentException("Road too long for fixed point: " + graph.distance(edge));
+                }
+                edgeCosts[edge] = (long) cost;
+            }
+        }
+
+        public Graph getGraph() { return graph; }
+        public double getUnitsPerDistance() { return unitsPerDistance; }
+
+        /** The cost of a distance rounded up, as used for the roads. */
+        public long toUnits(double distance) { return (long) Math.ceil(distance * unitsPerDistance); }
+
+        /** A lower bound of the distance rounded down, as used for the heuristic. */
+        public long toUnitsFloor(double distance) { return (long) Math.floor(distance * unitsPerDistance); }
+    }
+
+    private final StateTable reached = new StateTable();
+    private final RadixHeap frontier = new RadixHeap();
+    private final HeuristicTable kmHeuristics = new HeuristicTable();
+    private int count;
+    private int[] cities = new int[256];
+    private long[] permits = new long[256];
+    private long[] g = new long[256];
+    private long[] queuedKeys = new long[256]; // key of the live frontier entry, -1 if not queued
+    private int[] parents = new int[256];
+    private int[] parentEdges = new int[256];
+    private int queued;
+
+    private int maxFrontierSize;
+    private int nodesExpanded;
+
+    // settings of the current query
+    private Costs costs;
+    private Graph graph;
+    private double permitCost;
+    private long permitUnits;
+    private IntToLongFunction unitHeuristic; // null to use kmHeuristics
+
+    /**
+     * Searches a route between two city ids.
+     *
+     * @param permitCost    cost of a permit in distance units; converted like a road
+     * @param heuristic     admissible lower bound in fixed-point units from a city to the goal
+     * @param usefulPermits permits worth acquiring, e.g. from {@link ReachabilityIndex#usefulPermits};
+     *                      -1 for all
+     * @return the route with its exact cost, or null if there is no route
+     */
+    public SearchResult search(Costs costs, double permitCost, int start, int goal, IntToLongFunction heuristic,
+                               long usefulPermits) {
+        this.unitHeuristic = heuristic;
+        return search(costs, permitCost, start, goal, usefulPermits);
+    }
+
+    /**
+     * Searches a route between two city ids of the network, with the ALT bound or, without landmarks, the
+     * geographic distance times the network's {@link GeoHeuristic#getAdmissibleScale() admissible scale},
+     * rounded down to fixed point. costs must belong to the network's graph.
+     *
+     * @param permitCost    cost of a permit in km; converted like a road
+     * @param usefulPermits permits worth acquiring, e.g. from {@link ReachabilityIndex#usefulPermits};
+     *                      -1 for all
+     * @return the route with its exact cost, or null if there is no route
+     */
+    public SearchResult search(Costs costs, double permitCost, NetworkVersion network,
+                               GeoHeuristic.Kind heuristicKind, int start, int goal, long usefulPermits) {
+        double scale = network.getLandmarks() != null ? 1.0 : network.getGeo().getAdmissibleScale();
+        kmHeuristics.reset(network.getGeo(), heuristicKind, network.getLandmarks(), goal, scale);
+        this.unitHeuristic = null;
+        return search(costs, permitCost, start, goal, usefulPermits);
+    }
+
+    private SearchResult search(Costs costs, double permitCost, int start, int goal, long usefulPermits) {
+        this.costs = costs;
+        this.graph = costs.getGraph();
+        this.permitCost = permitCost;
+        this.permitUnits = costs.toUnits(permitCost);
+        reached.clear();
+        frontier.clear();
+        count = 0;
+        queued = 0;
+        maxFrontierSize = 0;
+        nodesExpanded = 0;
+
+        long startHeuristic = heuristic(start);
+        relax(start, 0L, 0, startHeuristic, -1, -1);
+        long startPermit = PermitRegistry.mask(graph.availablePermit(start)) & usefulPermits;
+        if (startPermit != 0) relax(start, startPermit, permitUnits, startHeuristic, -1, -1);
+
+        while (!frontier.isEmpty()) {
+            maxFrontierSize = Math.max(maxFrontierSize, queued);
+            int state = frontier.poll();
+            if (frontier.lastKey() != queuedKeys[state]) continue; // outdated entry
+            queuedKeys[state] = -1;
+            queued--;
+            nodesExpanded++;
+            int city = cities[state];
+            if (city == goal) return buildResult(state);
+
+            long held = permits[state];
+            long cost = g[state];
+            for (int edge = graph.firstEdge(city), end = graph.endEdge(city); edge < end; edge++) {
+                long required = PermitRegistry.mask(graph.requiredPermit(edge));
+                if ((held & required) != required) continue; // cannot drive on this road without permit
+                int next = graph.target(edge);
+                long newCost = cost + costs.edgeCosts[edge];
+                long h = heuristic(next);
+                relax(next, held, newCost, h, state, edge);
+                long available = PermitRegistry.mask(graph.availablePermit(next)) & usefulPermits;
+                if (available != 0 && (held & available) == 0) {
+                    relax(next, held | available, newCost + permitUnits, h, state, edge);
+                }
+            }
+        }
+        return null;
+    }
+
+    private long heuristic(int city) {
+        return unitHeuristic != null ? unitHeuristic.applyAsLong(city) : costs.toUnitsFloor(kmHeuristics.get(city));
+    }
+
+    private void relax(int city, long permitMask, long cost, long h, int parent, int parentEdge) {
+        long key = graph.stateKey(city, permitMask);
+        int state = reached.get(key);
+        if (state == StateTable.ABSENT) {
+            state = add(city, permitMask);
+            reached.put(key, state);
+        } else if (cost >= g[state]) {
+            return;
+        }
+        g[state] = cost;
+        parents[state] = parent;
+        parentEdges[state] = parentEdge;
+        if (queuedKeys[state] == -1) queued++;
+        queuedKeys[state] = Math.max(cost + h, frontier.lastKey());
+        frontier.push(state, queuedKeys[state]);
+    }
+
+    private int add(int city, long permitMask) {
+        if (count == cities.length) {
+            int capacity = count * 2;
+            cities = Arrays.copyOf(cities, capacity);
+            permits = Arrays.copyOf(permits, capacity);
+            g = Arrays.copyOf(g, capacity);
+            queuedKeys = Arrays.copyOf(queuedKeys, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            parentEdges = Arrays.copyOf(parentEdges, capacity);
+        }
+        int state = count++;
+        cities[state] = city;
+        permits[state] = permitMask;
+        queuedKeys[state] = -1;
+        return state;
+    }
+
+    private SearchResult buildResult(int goalState) {
+        List<String> path = new ArrayList<>();
+        List<String> permitsAcquired = new ArrayList<>();
+        double distance = 0;
+        for (int s = goalState; s != -1; s = parents[s]) {
+            path.add(graph.cityName(cities[s]));
+            if (parentEdges[s] != -1) distance += graph.distance(parentEdges[s]);
+            long previousPermits = parents[s] == -1 ? 0L : permits[parents[s]];
+            for (String permit : graph.permits().names(permits[s] & ~previousPermits)) {
+                permitsAcquired.add("Acquired permit " + permit + " at " + graph.cityName(cities[s]));
+            }
+        }
+        Collections.reverse(path);
+        Collections.reverse(permitsAcquired);
+        double totalPermitCost = Long.bitCount(permits[goalState]) * permitCost;
+        return new SearchResult(distance + totalPermitCost, maxFrontierSize, nodesExpanded, path, totalPermitCost,
+                permitsAcquired);
+    }
+}
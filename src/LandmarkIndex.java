@@ -0,0 +1,215 @@
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * Landmark distances for the ALT heuristic (A*, Landmarks, Triangle inequality).
+ * <p>
+ * For k landmarks L the index stores the road distance d(L, v) to every city v, ignoring permits.
+ * Roads are undirected, so by the triangle inequality {@code |d(L, goal) - d(L, v)|} is a lower bound on the
+ * distance from v to the goal. Permit restrictions only remove roads and permit costs are never negative,
+ * so the bound also holds for the permit-aware route cost. The maximum over all landmarks is consistent.
+ * {@link HeuristicTable} combines it with the geographic distance by taking the maximum again, after
+ * scaling that distance by {@link GeoHeuristic#getAdmissibleScale()}: unscaled it is not a lower bound
+ * on networks with roads shorter than their straight line.
+ */
+public class LandmarkIndex {
+    public enum Selection {
+        /** Each landmark is the city farthest from the landmarks chosen so far. */
+        FARTHEST,
+        /**
+         * "Avoid" (Goldberg/Harrelson): grow a shortest-path tree from a root, weight every city by how
+         * badly the current landmarks bound its distance, and pick a leaf of the heaviest subtree that
+         * contains no landmark yet.
+         */
+        AVOID
+    }
+
+    private final int[] landmarks;
+    // distances[city * k + i] = d(landmark i, city), +infinity if unreachable; heap or mapped
+    private final DoubleBuffer distances;
+    private final Selection selection;
+    private final long buildTimeNanos;
+
+    LandmarkIndex(int[] landmarks, DoubleBuffer distances, Selection selection, long buildTimeNanos) {
+        this.landmarks = landmarks;
+        this.distances = distances;
+        this.selection = selection;
+        this.buildTimeNanos = buildTimeNanos;
+    }
+
+    /**
+     * Selects {@code count} landmarks (fewer if the network has fewer cities) and computes their distances.
+     */
+    public static LandmarkIndex build(Graph graph, int count, Selection selection) {
+        long startTime = System.nanoTime();
+        int n = graph.cityCount();
+        int k = Math.min(count, n);
+        int[] landmarks = new int[k];
+        double[][] rows = new double[k][];
+        IndexedMinHeap heap = new IndexedMinHeap(IndexedMinHeap.Mode.DECREASE_KEY, 4);
+
+        double[] minDistance = new double[n]; // FARTHEST: distance to the closest landmark so far
+        Arrays.fill(minDistance, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < k; i++) {
+            int landmark;
+            if (i == 0) {
+                // start from the city farthest from an arbitrary one, as a first landmark should be peripheral
+                landmark = farthest(dijkstra(graph, 0, heap, null), landmarks, 0);
+            } else if (selection == Selection.FARTHEST) {
+                landmark = farthest(minDistance, landmarks, i);
+            } else {
+                landmark = avoid(graph, landmarks, rows, i, heap);
+            }
+            landmarks[i] = landmark;
+            rows[i] = dijkstra(graph, landmark, heap, null);
+            for (int v = 0; v < n; v++) {
+                minDistance[v] = Math.min(minDistance[v], rows[i][v]);
+            }
+        }
+
+        double[] distances = new double[n * k];
+        for (int i = 0; i < k; i++) {
+            for (int v = 0; v < n; v++) {
+                distances[v * k + i] = rows[i][v];
+            }
+        }
+        return new LandmarkIndex(landmarks, DoubleBuffer.wrap(distances), selection, System.nanoTime() - startTime);
+    }
+
+    /**
+     * Lower bound on the distance from city to goal. Landmarks that reach neither city are skipped;
+     * if exactly one of the two is reachable from a landmark the cities are disconnected and the
+     * bound is +infinity.
+     */
+    public double lowerBound(int city, int goal) {
+        int k = landmarks.length;
+        int cityRow = city * k;
+        int goalRow = goal * k;
+        double best = 0;
+        for (int i = 0; i < k; i++) {
+            double toGoal = distances.get(goalRow + i);
+            double toCity = distances.get(cityRow + i);
+            if (toGoal == toCity) continue; // also covers both unreachable
+            best = Math.max(best, Math.abs(toGoal - toCity));
+        }
+        return best;
+    }
+
+    public int size() { return landmarks.length; }
+    public int[] getLandmarks() { return landmarks.clone(); }
+    public Selection getSelection() { return selection; }
+    public long getBuildTimeNanos() { return buildTimeNanos; }
+
+    /** Bytes held by the distance table. */
+    public long getMemoryBytes() { return (long) distances.limit() * Double.BYTES; }
+
+    /** The distance table, laid out as described at the field. */
+    DoubleBuffer distances() { return distances.duplicate(); }
+
+    @Override
+    public String toString() {
+        return String.format("%d landmarks (%s), %.1f KiB, built in %.1f ms",
+                landmarks.length, selection, getMemoryBytes() / 1024.0, buildTimeNanos / 1e6);
+    }
+
+    /**
+     * Plain Dijkstra over all roads, ignoring permits.
+     *
+     * @param parents if not null, receives the shortest-path tree (-1 for the source and unreachable cities)
+     */
+    static double[] dijkstra(Graph graph, int source, IndexedMinHeap heap, int[] parents) {
+        double[] distance = new double[graph.cityCount()];
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+        if (parents != null) Arrays.fill(parents, -1);
+        heap.clear();
+        distance[source] = 0;
+        heap.push(source, 0);
+        int city;
+        while ((city = heap.poll()) != IndexedMinHeap.EMPTY) {
+            for (int edge = graph.firstEdge(city), end = graph.endEdge(city); edge < end; edge++) {
+                int next = graph.target(edge);
+                double d = distance[city] + graph.distance(edge);
+                if (d < distance[next]) {
+                    distance[next] = d;
+                    if (parents != null) parents[next] = city;
+                    heap.push(next, d);
+                }
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * City with the largest finite value, skipping the excluded ones. Unreachable cities are only
+     * chosen if nothing else is left.
+     */
+    private static int farthest(double[] values, int[] excluded, int excludedCount) {
+        int best = -1;
+        for (int v = 0; v < values.length; v++) {
+            if (contains(excluded, excludedCount, v)) continue;
+            if (best == -1 || values[best] == Double.POSITIVE_INFINITY
+                    || (values[v] > values[best] && values[v] != Double.POSITIVE_INFINITY)) {
+                best = v;
+            }
+        }
+        return best;
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) return true;
+        }
+        return false;
+    }
+
+    private static int avoid(Graph graph, int[] landmarks, double[][] rows, int chosen, IndexedMinHeap heap) {
+        int n = graph.cityCount();
+        // Root: the city farthest from the existing landmarks
+        double[] closest = new double[n];
+        Arrays.fill(closest, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < chosen; i++) {
+            for (int v = 0; v < n; v++) closest[v] = Math.min(closest[v], rows[i][v]);
+        }
+        int root = farthest(closest, landmarks, chosen);
+
+        int[] parents = new int[n];
+        double[] distance = dijkstra(graph, root, heap, parents);
+
+        // weight(v) = d(root, v) - current landmark bound; size(v) = weight of the subtree below v
+        double[] size = new double[n];
+        boolean[] hasLandmark = new boolean[n];
+        Integer[] order = new Integer[n];
+        for (int v = 0; v < n; v++) {
+            order[v] = v;
+            if (distance[v] == Double.POSITIVE_INFINITY) continue;
+            double bound = 0;
+            for (int i = 0; i < chosen; i++) {
+                bound = Math.max(bound, Math.abs(rows[i][root] - rows[i][v]));
+            }
+            size[v] = distance[v] - bound;
+        }
+        for (int i = 0; i < chosen; i++) hasLandmark[landmarks[i]] = true;
+        // accumulate bottom-up: children have larger distances than their parents
+        Arrays.sort(order, (a, b) -> Double.compare(distance[b], distance[a]));
+        for (int v : order) {
+            if (distance[v] == Double.POSITIVE_INFINITY) continue;
+            if (hasLandmark[v]) size[v] = 0;
+            int parent = parents[v];
+            if (parent >= 0) {
+                size[parent] += size[v];
+                hasLandmark[parent] |= hasLandmark[v];
+            }
+        }
+        // walk down from the root along the heaviest child
+        int[] heaviestChild = new int[n];
+        Arrays.fill(heaviestChild, -1);
+        for (int v = 0; v < n; v++) {
+            int parent = parents[v];
+            if (parent < 0 || hasLandmark[v]) continue;
+            if (heaviestChild[parent] == -1 || size[v] > size[heaviestChild[parent]]) heaviestChild[parent] = v;
+        }
+        int city = root;
+        while (heaviestChild[city] != -1) city = heaviestChild[city];
+        return contains(landmarks, chosen, city) ? farthest(closest, landmarks, chosen) : city;
+    }
+}
@@ -0,0 +1,78 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Assigns dense ids to names given as UTF-8 bytes, decoding every distinct name to a {@code String}
+ * only once. Used by {@link SemicolonParser} so that a city referenced on thousands of
+ * connection lines costs a hash lookup per line instead of a new String.
+ */
+public class NameInterner {
+    private String[] names = new String[16];
+    private byte[][] keys = new byte[16][];
+    private int[] hashes = new int[16];
+    private int[] slots = new int[32]; // open addressing, id + 1, 0 = free
+    private int size = 0;
+
+    /** Returns the id of the name in {@code data[start, end)}, adding it if it is new. */
+    public int intern(byte[] data, int start, int end) {
+        int hash = hash(data, start, end);
+        int slot = findSlot(data, start, end, hash);
+        if (slots[slot] != 0) return slots[slot] - 1;
+
+        int id = size++;
+        if (id == names.length) {
+            names = Arrays.copyOf(names, id * 2);
+            keys = Arrays.copyOf(keys, id * 2);
+            hashes = Arrays.copyOf(hashes, id * 2);
+        }
+        byte[] key = Arrays.copyOfRange(data, start, end);
+        keys[id] = key;
+        names[id] = new String(key, StandardCharsets.UTF_8);
+        hashes[id] = hash;
+        slots[slot] = id + 1;
+        if (size * 2 > slots.length) rehash();
+        return id;
+    }
+
+    /** Returns the id of the name in {@code data[start, end)} or {@link Graph#NONE} if it is unknown. */
+    public int find(byte[] data, int start, int end) {
+        int slot = findSlot(data, start, end, hash(data, start, end));
+        return slots[slot] - 1; // NONE for a free slot
+    }
+
+    public String name(int id) { return names[id]; }
+    public int size() { return size; }
+
+    private int findSlot(byte[] data, int start, int end, int hash) {
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == hash && matches(keys[id], data, start, end)) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = id + 1;
+        }
+    }
+
+    private static boolean matches(byte[] key, byte[] data, int start, int end) {
+        return Arrays.equals(key, 0, key.length, data, start, end);
+    }
+
+    private static int hash(byte[] data, int start, int end) {
+        int hash = 0x811C9DC5; // FNV-1a
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ (data[i] & 0xFF)) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,86 @@
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Immutable list of distinct names, stored as UTF-8 bytes with an offset per name and the ids sorted by
+ * name for lookups. Nothing is held as {@code String}, so the table works the same on heap buffers and
+ * on a memory-mapped {@link NetworkSnapshot}.
+ */
+public class NameTable {
+    private final ByteBuffer bytes;
+    private final IntBuffer offsets; // name i is bytes[offsets[i] .. offsets[i + 1])
+    private final IntBuffer sortedIds; // ids ordered by their UTF-8 bytes, unsigned
+
+    NameTable(ByteBuffer bytes, IntBuffer offsets, IntBuffer sortedIds) {
+        this.bytes = bytes;
+        this.offsets = offsets;
+        this.sortedIds = sortedIds;
+    }
+
+    /** Encodes the names; ids are the list positions. */
+    public static NameTable of(List<String> names) {
+        int n = names.size();
+        byte[][] encoded = new byte[n][];
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            encoded[i] = names.get(i).getBytes(StandardCharsets.UTF_8);
+            offsets[i + 1] = offsets[i] + encoded[i].length;
+        }
+        byte[] bytes = new byte[offsets[n]];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(encoded[i], 0, bytes, offsets[i], encoded[i].length);
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(encoded[a], encoded[b]));
+        int[] sortedIds = new int[n];
+        for (int i = 0; i < n; i++) sortedIds[i] = order[i];
+        return new NameTable(ByteBuffer.wrap(bytes), IntBuffer.wrap(offsets), IntBuffer.wrap(sortedIds));
+    }
+
+    public int size() { return sortedIds.limit(); }
+
+    public String name(int id) {
+        int start = offsets.get(id);
+        byte[] name = new byte[offsets.get(id + 1) - start];
+        bytes.get(start, name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /** Returns the id of the name or {@link Graph#NONE} if it is not in the table. */
+    public int id(String name) {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int id = sortedIds.get(mid);
+            int cmp = compare(id, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return id;
+            }
+        }
+        return Graph.NONE;
+    }
+
+    /** Compares the stored name with the key, unsigned byte by byte like {@link Arrays#compareUnsigned}. */
+    private int compare(int id, byte[] key) {
+        int start = offsets.get(id);
+        int length = offsets.get(id + 1) - start;
+        for (int i = 0, common = Math.min(length, key.length); i < common; i++) {
+            int cmp = Byte.compareUnsigned(bytes.get(start + i), key[i]);
+            if (cmp != 0) return cmp;
+        }
+        return length - key.length;
+    }
+
+    ByteBuffer bytes() { return bytes.duplicate(); }
+    IntBuffer offsets() { return offsets.duplicate(); }
+    IntBuffer sortedIds() { return sortedIds.duplicate(); }
+}
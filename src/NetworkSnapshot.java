@@ -0,0 +1,256 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary snapshot of a RoutePlanner2 network: city names, permit names, the CSR adjacency of the
+ * {@link Graph}, the city coordinates and optionally the ALT landmark distances. It is written once from
+ * the text files and opened with {@link FileChannel#map}. The graph then searches directly on views of
+ * the mapped file: opening costs no parsing and the network does not live on the Java heap.
+ * <p>
+ * Layout, little-endian, every section starting at a multiple of 8 bytes:
+ * <pre>
+ * header        int magic "RPSN", version, cityCount, edgeCount, permitCount, landmarkCount,
+ *               landmarkSelection (-1 without landmarks), cityNameBytes, permitNameBytes, 0
+ * city names    int offsets[cityCount + 1], UTF-8 bytes, int sortedIds[cityCount]
+ * permit names  int offsets[permitCount + 1], UTF-8 bytes
+ * cities        int availablePermit[cityCount]
+ * roads         int edgeOffsets[cityCount + 1], int targets[edgeCount], int requiredPermit[edgeCount],
+ *               double distance[edgeCount]
+ * coordinates   double latitude[cityCount], double longitude[cityCount] (degrees)
+ * landmarks     int landmark[landmarkCount], double distance[cityCount * landmarkCount]
+ * </pre>
+ * Files of another version are rejected, so the format can change together with the planner.
+ */
+public class NetworkSnapshot {
+    public static final int MAGIC = 0x4E535052; // "RPSN" in little-endian byte order
+    public static final int VERSION = 1;
+    private static final int HEADER_BYTES = 40;
+
+    private final Graph graph;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final LandmarkIndex landmarks;
+
+    private NetworkSnapshot(Graph graph, double[] latitudes, double[] longitudes, LandmarkIndex landmarks) {
+        this.graph = graph;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.landmarks = landmarks;
+    }
+
+    public Graph getGraph() { return graph; }
+    public double[] getLatitudes() { return latitudes; }
+    public double[] getLongitudes() { return longitudes; }
+
+    /** Returns the stored landmark index, or null if the snapshot has none. */
+    public LandmarkIndex getLandmarks() { return landmarks; }
+
+    /**
+     * Writes the network to a snapshot file, replacing an existing one.
+     *
+     * @param geo       coordinates of the graph's cities
+     * @param landmarks landmark index of the graph to store as well, or null
+     */
+    public static void write(Path file, Graph graph, GeoHeuristic geo, LandmarkIndex landmarks) throws IOException {
+        int n = graph.cityCount();
+        int m = graph.edgeCount();
+        int p = graph.permitCount();
+        int k = landmarks == null ? 0 : landmarks.size();
+        NameTable cityNames = cityNames(graph);
+        NameTable permitNames = permitNames(graph);
+        int cityNameBytes = cityNames.bytes().remaining();
+        int permitNameBytes = permitNames.bytes().remaining();
+
+        long size = HEADER_BYTES
+                + align(4L * (n + 1)) + align(cityNameBytes) + align(4L * n)
+                + align(4L * (p + 1)) + align(permitNameBytes)
+                + align(4L * n)
+                + align(4L * (n + 1)) + align(4L * m) + align(4L * m) + 8L * m
+                + 16L * n
+                + align(4L * k) + 8L * n * k;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Network too large for a snapshot: " + size + " bytes");
+        }
+        ByteBuffer out = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(m).putInt(p).putInt(k)
+                .putInt(landmarks == null ? -1 : landmarks.getSelection().ordinal())
+                .putInt(cityNameBytes).putInt(permitNameBytes).putInt(0);
+
+        putInts(out, cityNames.offsets());
+        putBytes(out, cityNames.bytes());
+        putInts(out, cityNames.sortedIds());
+        putInts(out, permitNames.offsets());
+        putBytes(out, permitNames.bytes());
+        for (int c = 0; c < n; c++) out.putInt(graph.availablePermit(c));
+        pad(out);
+        for (int c = 0; c <= n; c++) out.putInt(c < n ? graph.firstEdge(c) : m);
+        pad(out);
+        for (int e = 0; e < m; e++) out.putInt(graph.target(e));
+        pad(out);
+        for (int e = 0; e < m; e++) out.putInt(graph.requiredPermit(e));
+        pad(out);
+        for (int e = 0; e < m; e++) out.putDouble(graph.distance(e));
+        for (int c = 0; c < n; c++) out.putDouble(geo.latitudeDegrees(c));
+        for (int c = 0; c < n; c++) out.putDouble(geo.longitudeDegrees(c));
+        if (landmarks != null) {
+            for (int landmark : landmarks.getLandmarks()) out.putInt(landmark);
+            pad(out);
+            DoubleBuffer distances = landmarks.distances();
+            while (distances.hasRemaining()) out.putDouble(distances.get());
+        }
+        out.flip();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (out.hasRemaining()) channel.write(out);
+        }
+    }
+
+    /**
+     * Maps a snapshot file. The mapping stays valid after the file channel is closed and is released
+     * when the graph is no longer referenced.
+     *
+     * @throws IOException if the file cannot be read or is not a snapshot of this version
+     */
+    public static NetworkSnapshot open(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a network snapshot");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException(file + " has snapshot version " + version + ", expected " + VERSION);
+        }
+        int n = buffer.getInt(8);
+        int m = buffer.getInt(12);
+        int p = buffer.getInt(16);
+        int k = buffer.getInt(20);
+        int selection = buffer.getInt(24);
+        int cityNameBytes = buffer.getInt(28);
+        int permitNameBytes = buffer.getInt(32);
+
+        Reader in = new Reader(buffer, file);
+        IntBuffer cityNameOffsets = in.ints(n + 1);
+        ByteBuffer cityNameData = in.bytes(cityNameBytes);
+        NameTable cityNames = new NameTable(cityNameData, cityNameOffsets, in.ints(n));
+        // the few permit names go into a regular registry
+        IntBuffer permitNameOffsets = in.ints(p + 1);
+        ByteBuffer permitNameData = in.bytes(permitNameBytes);
+        PermitRegistry permits = new PermitRegistry();
+        for (int i = 0; i < p; i++) {
+            byte[] name = new byte[permitNameOffsets.get(i + 1) - permitNameOffsets.get(i)];
+            permitNameData.get(permitNameOffsets.get(i), name);
+            permits.register(new String(name, StandardCharsets.UTF_8));
+        }
+
+        IntBuffer availablePermits = in.ints(n);
+        IntBuffer edgeOffsets = in.ints(n + 1);
+        IntBuffer edgeTargets = in.ints(m);
+        IntBuffer edgeRequiredPermits = in.ints(m);
+        DoubleBuffer edgeDistances = in.doubles(m);
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        in.doubles(n).get(latitudes);
+        in.doubles(n).get(longitudes);
+        Graph graph = new Graph(cityNames, availablePermits, permits,
+                edgeOffsets, edgeTargets, edgeDistances, edgeRequiredPermits);
+
+        LandmarkIndex landmarks = null;
+        if (k > 0) {
+            LandmarkIndex.Selection[] selections = LandmarkIndex.Selection.values();
+            if (selection < 0 || selection >= selections.length) {
+                throw new IOException(file + " has unknown landmark selection " + selection);
+            }
+            long distanceCount = (long) n * k;
+            if (distanceCount > Integer.MAX_VALUE) {
+                throw new IOException(file + " has too many landmark distances: " + n + " cities, " + k + " landmarks");
+            }
+            int[] landmarkIds = new int[k];
+            in.ints(k).get(landmarkIds);
+            landmarks = new LandmarkIndex(landmarkIds, in.doubles((int) distanceCount), selections[selection], 0);
+        }
+        in.expectEnd();
+        return new NetworkSnapshot(graph, latitudes, longitudes, landmarks);
+    }
+
+    private static NameTable cityNames(Graph graph) {
+        List<String> names = new ArrayList<>(graph.cityCount());
+        for (int c = 0; c < graph.cityCount(); c++) names.add(graph.cityName(c));
+        return NameTable.of(names);
+    }
+
+    private static NameTable permitNames(Graph graph) {
+        List<String> names = new ArrayList<>(graph.permitCount());
+        for (int i = 0; i < graph.permitCount(); i++) names.add(graph.permitName(i));
+        return NameTable.of(names);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static void pad(ByteBuffer out) {
+        while ((out.position() & 7) != 0) out.put((byte) 0);
+    }
+
+    private static void putInts(ByteBuffer out, IntBuffer values) {
+        while (values.hasRemaining()) out.putInt(values.get());
+        pad(out);
+    }
+
+    private static void putBytes(ByteBuffer out, ByteBuffer values) {
+        out.put(values);
+        pad(out);
+    }
+
+    /** Cuts the sections out of the mapped file one after another. */
+    private static final class Reader {
+        private final ByteBuffer buffer;
+        private final Path file;
+        private long position = HEADER_BYTES;
+
+        Reader(ByteBuffer buffer, Path file) {
+            this.buffer = buffer;
+            this.file = file;
+        }
+
+        ByteBuffer bytes(int count) throws IOException {
+            return section(count).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        IntBuffer ints(int count) throws IOException {
+            return section(4L * count).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        }
+
+        DoubleBuffer doubles(int count) throws IOException {
+            return section(8L * count).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        }
+
+        private ByteBuffer section(long length) throws IOException {
+            if (length < 0 || position + length > buffer.capacity()) {
+                throw new IOException(file + " is truncated");
+            }
+            ByteBuffer section = buffer.slice((int) position, (int) length);
+            position = align(position + length);
+            return section;
+        }
+
+        void expectEnd() throws IOException {
+            if (position != buffer.capacity()) throw new IOException(file + " has trailing data");
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * One published version of the network of a {@link RoutePlanner2}: the graph with the indexes built for
+ * it. Immutable; the planner swaps whole versions, and a search takes the version that is current when it
+ * starts and runs on it to the end, however many versions are published meanwhile.
+ */
+public final class NetworkVersion {
+    private final long version;
+    private final Graph graph;
+    private final GeoHeuristic geo;
+    private final LandmarkIndex landmarks;
+    private final ReachabilityIndex reachability;
+    private final SpatialIndex spatialIndex;
+
+    NetworkVersion(long version, Graph graph, GeoHeuristic geo, LandmarkIndex landmarks,
+                   ReachabilityIndex reachability, SpatialIndex spatialIndex) {
+        this.version = version;
+        this.graph = graph;
+        this.geo = geo;
+        this.landmarks = landmarks;
+        this.reachability = reachability;
+        this.spatialIndex = spatialIndex;
+    }
+
+    /** Counts the networks loaded and updates published by the planner. */
+    public long getVersion() { return version; }
+    public Graph getGraph() { return graph; }
+    public GeoHeuristic getGeo() { return geo; }
+
+    /** Returns the landmark index, or null if ALT is disabled. */
+    public LandmarkIndex getLandmarks() { return landmarks; }
+    public ReachabilityIndex getReachability() { return reachability; }
+
+    /** Nearest-city lookups over the coordinates; updates keep the index of the loaded network. */
+    public SpatialIndex getSpatialIndex() { return spatialIndex; }
+}
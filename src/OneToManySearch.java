@@ -0,0 +1,209 @@
+import java.util.Arrays;
+
+/**
+ * Permit-aware Dijkstra from one source city to a set of target cities, the building block of
+ * {@link DistanceMatrix}. It runs over the same (city, permits held) states as
+ * {@link RoutePlanner2#aStarSearch}, but without a heuristic, so states are settled in order of their
+ * cost and the first settled state of a city is an optimal route to it. The search stops once every
+ * target is settled. Targets that the {@link ReachabilityIndex} rules out are answered without the
+ * search, which would otherwise have to exhaust every state to prove them unreachable, and only permits
+ * that some reachable road requires are ever acquired.
+ * <p>
+ * A state is dominated when a state settled before it, so with lower or equal cost, is in the same city
+ * and holds a superset of its permits: every route onward is open to that state as well, at no more
+ * cost. Dominated states are neither queued nor expanded, which keeps most of the permit layers empty.
+ * With up to 6 permits the check is a single bit test, as every city keeps the permit masks covered by
+ * its settled states in one {@code long}. States are found in a list per city rather than in a table
+ * over all (city, permits) keys, so memory grows with the states the search reaches. An instance is not
+ * thread-safe, but it can be reused for consecutive sources.
+ */
+public class OneToManySearch {
+    private final Graph graph;
+    private final ReachabilityIndex reachability;
+    private final double permitCost;
+
+    private final IndexedMinHeap frontier = new IndexedMinHeap(IndexedMinHeap.Mode.DECREASE_KEY, 4);
+    private int count;
+    private int[] cities = new int[256];
+    private long[] permits = new long[256];
+    private double[] costs = new double[256];
+    private double[] permitCosts = new double[256];
+    private int[] parents = new int[256];
+    private boolean[] acquired = new boolean[256];
+    // the states of each city as linked lists, newest first; a city holds only a few of its permit sets
+    private final int[] statesAtCity;
+    private int[] nextAtCity = new int[256];
+    private boolean[] isSettled = new boolean[256];
+    // up to 6 permits: the permit masks covered by the settled states of each city
+    private final long[] coveredMasks;
+
+    // per city: NOT_A_TARGET, UNSETTLED for a target of the running search, or its settled state
+    private static final int NOT_A_TARGET = -2;
+    private static final int UNSETTLED = -1;
+    private final int[] targetStates;
+
+    public OneToManySearch(Graph graph, ReachabilityIndex reachability, double permitCost) {
+        this.graph = graph;
+        this.reachability = reachability;
+        this.permitCost = permitCost;
+        this.targetStates = new int[graph.cityCount()];
+        Arrays.fill(targetStates, NOT_A_TARGET);
+        this.statesAtCity = new int[graph.cityCount()];
+        Arrays.fill(statesAtCity, -1);
+        this.coveredMasks = graph.permitCount() <= 6 ? new long[graph.cityCount()] : null;
+    }
+
+    /**
+     * Searches optimal routes from the source to all targets.
+     *
+     * @param targets  target city ids, duplicates allowed
+     * @param row      receives the cost to every target, {@link Double#POSITIVE_INFINITY} if unreachable
+     * @param keepTree whether to return the search tree for path reconstruction
+     * @return the search tree, or null if keepTree is false
+     */
+    public Tree search(int source, int[] targets, double[] row, boolean keepTree) {
+        for (int i = 0; i < count; i++) {
+            statesAtCity[cities[i]] = -1;
+            if (coveredMasks != null) coveredMasks[cities[i]] = 0;
+        }
+        frontier.clear();
+        count = 0;
+        int remaining = 0;
+        for (int target : targets) {
+            if (targetStates[target] == NOT_A_TARGET && reachability.isReachable(source, target)) {
+                targetStates[target] = UNSETTLED;
+                remaining++;
+            }
+        }
+        int maxFrontierSize = 0;
+        int nodesExpanded = 0;
+        long usefulPermits = reachability.usefulPermits(source);
+
+        relax(source, 0L, 0, 0, -1, false);
+        long startPermit = PermitRegistry.mask(graph.availablePermit(source)) & usefulPermits;
+        if (startPermit != 0) {
+            relax(source, startPermit, permitCost, permitCost, -1, true);
+        }
+
+        while (remaining > 0 && !frontier.isEmpty()) {
+            maxFrontierSize = Math.max(maxFrontierSize, frontier.size());
+            int state = frontier.poll();
+            int city = cities[state];
+            long held = permits[state];
+            if (dominated(city, held)) continue;
+            settle(state, city, held);
+            nodesExpanded++;
+            if (targetStates[city] == UNSETTLED) {
+                targetStates[city] = state;
+                remaining--;
+            }
+
+            double cost = costs[state];
+            double paidPermits = permitCosts[state];
+            for (int edge = graph.firstEdge(city), end = graph.endEdge(city); edge < end; edge++) {
+                long required = PermitRegistry.mask(graph.requiredPermit(edge));
+                if ((held & required) != required) continue; // cannot drive on this road without permit
+                int next = graph.target(edge);
+                double newCost = cost + graph.distance(edge);
+                relax(next, held, newCost, paidPermits, state, false);
+                long available = PermitRegistry.mask(graph.availablePermit(next)) & usefulPermits;
+                if (available != 0 && (held & available) == 0) {
+                    relax(next, held | available, newCost + permitCost, paidPermits + permitCost, state, true);
+                }
+            }
+        }
+
+        int[] settled = new int[targets.length];
+        for (int j = 0; j < targets.length; j++) {
+            settled[j] = Math.max(targetStates[targets[j]], UNSETTLED);
+            row[j] = settled[j] == UNSETTLED ? Double.POSITIVE_INFINITY : costs[settled[j]];
+        }
+        for (int target : targets) targetStates[target] = NOT_A_TARGET;
+
+        if (!keepTree) return null;
+        return new Tree(Arrays.copyOf(cities, count), Arrays.copyOf(parents, count),
+                Arrays.copyOf(permitCosts, count), Arrays.copyOf(acquired, count),
+                settled, maxFrontierSize, nodesExpanded);
+    }
+
+    private void relax(int city, long permitMask, double cost, double paidPermits, int parent, boolean acquiredHere) {
+        if (dominated(city, permitMask)) return;
+        int state = statesAtCity[city];
+        while (state != -1 && permits[state] != permitMask) state = nextAtCity[state];
+        if (state == -1) {
+            state = add(city, permitMask);
+        } else if (cost >= costs[state]) {
+            return;
+        }
+        costs[state] = cost;
+        permitCosts[state] = paidPermits;
+        parents[state] = parent;
+        acquired[state] = acquiredHere;
+        frontier.push(state, cost);
+    }
+
+    /** True if a settled state in the city holds all of the permits. */
+    private boolean dominated(int city, long permitMask) {
+        if (coveredMasks != null) return (coveredMasks[city] >>> permitMask & 1) != 0;
+        for (int s = statesAtCity[city]; s != -1; s = nextAtCity[s]) {
+            if (isSettled[s] && (permits[s] & permitMask) == permitMask) return true;
+        }
+        return false;
+    }
+
+    private void settle(int state, int city, long held) {
+        if (coveredMasks != null) {
+            long covered = coveredMasks[city];
+            for (long subset = held; ; subset = (subset - 1) & held) {
+                covered |= 1L << subset;
+                if (subset == 0) break;
+            }
+            coveredMasks[city] = covered;
+        } else {
+            isSettled[state] = true;
+        }
+    }
+
+    private int add(int city, long permitMask) {
+        if (count == cities.length) {
+            int capacity = count * 2;
+            cities = Arrays.copyOf(cities, capacity);
+            permits = Arrays.copyOf(permits, capacity);
+            costs = Arrays.copyOf(costs, capacity);
+            permitCosts = Arrays.copyOf(permitCosts, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            acquired = Arrays.copyOf(acquired, capacity);
+            nextAtCity = Arrays.copyOf(nextAtCity, capacity);
+            isSettled = Arrays.copyOf(isSettled, capacity);
+        }
+        int state = count++;
+        cities[state] = city;
+        permits[state] = permitMask;
+        isSettled[state] = false;
+        nextAtCity[state] = statesAtCity[city];
+        statesAtCity[city] = state;
+        return state;
+    }
+
+    /** The states of one search that are needed to rebuild the routes to its targets. */
+    public static final class Tree {
+        final int[] cities;
+        final int[] parents;
+        final double[] permitCosts;
+        final boolean[] acquired;
+        final int[] targetStates; // per target column, -1 if unreachable
+        final int maxFrontierSize;
+        final int nodesExpanded;
+
+        Tree(int[] cities, int[] parents, double[] permitCosts, boolean[] acquired, int[] targetStates,
+             int maxFrontierSize, int nodesExpanded) {
+            this.cities = cities;
+            this.parents = parents;
+            this.permitCosts = permitCosts;
+            this.acquired = acquired;
+            this.targetStates = targetStates;
+            this.maxFrontierSize = maxFrontierSize;
+            this.nodesExpanded = nodesExpanded;
+        }
+    }
+}
@@ -0,0 +1,363 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hash-distributed A* (HDA*) for RoutePlanner2 networks: one A* over (city, permits held) states spread
+ * over several threads.
+ * <p>
+ * Every state belongs to one worker, chosen by a hash of its state key. A worker keeps the reached table
+ * and the frontier of its own states only, so duplicate detection needs no locks. A generated child goes
+ * to its owner: children for other workers are collected per owner and handed over in batches through a
+ * lock-free queue, children of the worker itself are inserted directly.
+ * <p>
+ * The workers share the cost of the best route found so far. A goal state is offered as soon as its owner
+ * receives it, and states whose estimate is not below that cost are neither queued nor expanded. The
+ * heuristic is the ALT bound or, without landmarks, the geographic distance times the network's
+ * {@link GeoHeuristic#getAdmissibleScale() admissible scale}. Both are admissible, so the best route is
+ * optimal once no worker has a state left below its cost and no batch is in transit. Termination is
+ * detected with one counter of the batches in transit plus the workers that are busy. A worker only
+ * becomes busy by taking a batch, and it only sends batches while busy. Once the counter reaches zero, no
+ * more work can appear. States that get cheaper after their expansion are queued again, as in
+ * {@link RoutePlanner2#aStarSearch}.
+ * <p>
+ * The first worker runs on the calling thread, the others on an executor the caller owns, so the threads
+ * outlive a search and are reused by the next one. An instance runs one search at a time.
+ */
+public class ParallelSearch {
+    private static final int BATCH_SIZE = 64;
+    private static final int FLUSH_INTERVAL = 32; // expansions between hand-overs of partly filled batches
+    private static final long NO_PARENT = -1L;
+
+    private final Graph graph;
+    private final GeoHeuristic geo;
+    private final GeoHeuristic.Kind heuristicKind;
+    private final LandmarkIndex landmarks;
+    private final double permitCost;
+    private final int threads;
+    private final ExecutorService executor;
+
+    // shared by the workers of the running search
+    private Worker[] workers;
+    private int goal;
+    private long usefulPermits;
+    private final AtomicLong pending = new AtomicLong(); // batches in transit plus busy workers
+    private volatile double bestCost;
+    private volatile long bestState; // owner << 32 | index of the best goal state, NO_PARENT if none
+    private volatile boolean stopped; // a worker failed or was interrupted
+
+    /**
+     * @param threads  number of workers, 1 to run on the calling thread only
+     * @param executor runs all workers but the first; it has to run threads - 1 tasks at once, e.g. a
+     *                 cached thread pool, because the workers wait for each other. It is not shut down.
+     * @throws IllegalArgumentException if threads is below 1
+     */
+    public ParallelSearch(NetworkVersion network, GeoHeuristic.Kind heuristicKind, double permitCost, int threads,
+                          ExecutorService executor) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        this.graph = network.getGraph();
+        this.geo = network.getGeo();
+        this.heuristicKind = heuristicKind;
+        this.landmarks = network.getLandmarks();
+        this.permitCost = permitCost;
+        this.threads = threads;
+        this.executor = executor;
+    }
+
+    public int getThreads() { return threads; }
+
+    /**
+     * Searches an optimal route between two city ids.
+     *
+     * @param usefulPermits permits worth acquiring, e.g. from {@link ReachabilityIndex#usefulPermits};
+     *                      -1 for all
+     * @return the route, or null if there is no route
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the workers
+     */
+    public SearchResult search(int start, int goal, long usefulPermits) throws InterruptedException {
+        this.goal = goal;
+        this.usefulPermits = usefulPermits;
+        workers = new Worker[threads];
+        for (int w = 0; w < threads; w++) workers[w] = new Worker(w);
+        pending.set(0);
+        bestCost = Double.POSITIVE_INFINITY;
+        bestState = NO_PARENT;
+        stopped = false;
+
+        // The start states are sent like any other child, so every worker starts idle
+        Batch[] seeds = new Batch[threads];
+        collect(seeds, start, 0L, 0, NO_PARENT);
+        long startPermit = PermitRegistry.mask(graph.availablePermit(start)) & usefulPermits;
+        if (startPermit != 0) collect(seeds, start, startPermit, permitCost, NO_PARENT);
+        for (int w = 0; w < threads; w++) {
+            if (seeds[w] != null) hand(w, seeds[w]);
+        }
+
+        List<Future<Void>> futures = new ArrayList<>(threads - 1);
+        try {
+            for (int w = 1; w < threads; w++) futures.add(executor.submit(workers[w]));
+            try {
+                workers[0].call();
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("Search failed", e);
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Search failed", e.getCause());
+                }
+            }
+        } finally {
+            stopped = true;
+            for (Future<Void> future : futures) future.cancel(true);
+        }
+        if (Thread.interrupted()) throw new InterruptedException();
+        return bestState == NO_PARENT ? null : buildResult(bestState);
+    }
+
+    /** States expanded by each worker in the last search, a measure of the load balance. */
+    public int[] getWorkerExpansions() {
+        int[] expansions = new int[workers == null ? 0 : workers.length];
+        for (int w = 0; w < expansions.length; w++) expansions[w] = workers[w].nodesExpanded;
+        return expansions;
+    }
+
+    /** Children handed to another worker in the last search. */
+    public long getMessagesSent() {
+        long messages = 0;
+        if (workers != null) {
+            for (Worker worker : workers) messages += worker.messagesSent;
+        }
+        return messages;
+    }
+
+    /** Spreads the states evenly over the workers, whatever the layout of the state keys. */
+    private int owner(long stateKey) {
+        long hash = stateKey * 0x9E3779B97F4A7C15L;
+        return (int) (((hash >>> 32) * threads) >>> 32);
+    }
+
+    /** Adds a child to the outgoing batch of its owner; returns the owner. */
+    private int collect(Batch[] outboxes, int city, long permitMask, double cost, long parent) {
+        int owner = owner(graph.stateKey(city, permitMask));
+        Batch batch = outboxes[owner];
+        if (batch == null) batch = outboxes[owner] = new Batch();
+        batch.add(city, permitMask, cost, parent);
+        return owner;
+    }
+
+    /** Puts a batch into the inbox of a worker; counted before it becomes visible. */
+    private void hand(int owner, Batch batch) {
+        pending.incrementAndGet();
+        workers[owner].inbox.add(batch);
+    }
+
+    /** Takes the route if it is cheaper than the best one so far. */
+    private synchronized void offerGoal(double cost, long state) {
+        if (cost < bestCost) {
+            bestCost = cost;
+            bestState = state;
+        }
+    }
+
+    private SearchResult buildResult(long goalState) {
+        List<String> path = new ArrayList<>();
+        List<String> permitsAcquired = new ArrayList<>();
+        int maxFrontierSize = 0;
+        int nodesExpanded = 0;
+        for (Worker worker : workers) {
+            maxFrontierSize += worker.maxFrontierSize;
+            nodesExpanded += worker.nodesExpanded;
+        }
+        long goalPermits = workers[(int) (goalState >>> 32)].permits[(int) goalState];
+        for (long s = goalState; s != NO_PARENT; ) {
+            Worker worker = workers[(int) (s >>> 32)];
+            int state = (int) s;
+            long parent = worker.parents[state];
+            path.add(graph.cityName(worker.cities[state]));
+            long previousPermits = parent == NO_PARENT ? 0L : workers[(int) (parent >>> 32)].permits[(int) parent];
+            for (String permit : graph.permits().names(worker.permits[state] & ~previousPermits)) {
+                permitsAcquired.add("Acquired permit " + permit + " at " + graph.cityName(worker.cities[state]));
+            }
+            s = parent;
+        }
+        Collections.reverse(path);
+        Collections.reverse(permitsAcquired);
+        double totalPermitCost = Long.bitCount(goalPermits) * permitCost;
+        return new SearchResult(bestCost, maxFrontierSize, nodesExpanded, path, totalPermitCost, permitsAcquired);
+    }
+
+    /** Children on their way to one owner, in parallel arrays. */
+    private static final class Batch {
+        final int[] cities = new int[BATCH_SIZE];
+        final long[] permits = new long[BATCH_SIZE];
+        final double[] costs = new double[BATCH_SIZE];
+        final long[] parents = new long[BATCH_SIZE];
+        int size;
+
+        void add(int city, long permitMask, double cost, long parent) {
+            cities[size] = city;
+            permits[size] = permitMask;
+            costs[size] = cost;
+            parents[size] = parent;
+            size++;
+        }
+
+        boolean isFull() { return size == BATCH_SIZE; }
+    }
+
+    /** The states owned by one thread, with their frontier and inbox. */
+    private final class Worker implements Callable<Void> {
+        final int id;
+        final ConcurrentLinkedQueue<Batch> inbox = new ConcurrentLinkedQueue<>();
+        final Batch[] outboxes = new Batch[threads];
+        final StateTable reached = new StateTable();
+        final IndexedMinHeap frontier = new IndexedMinHeap();
+        final HeuristicTable heuristics = new HeuristicTable();
+
+        int count;
+        int[] cities = new int[256];
+        long[] permits = new long[256];
+        double[] g = new double[256];
+        long[] parents = new long[256];
+
+        int maxFrontierSize;
+        int nodesExpanded;
+        long messagesSent;
+
+        Worker(int id) {
+            this.id = id;
+            heuristics.reset(geo, heuristicKind, landmarks, goal, landmarks != null ? 1.0 : geo.getAdmissibleScale());
+        }
+
+        @Override
+        public Void call() {
+            try {
+                run();
+            } catch (RuntimeException | Error e) {
+                stopped = true;
+                throw e;
+            }
+            return null;
+        }
+
+        private void run() {
+            boolean busy = false;
+            while (!stopped) {
+                Batch batch = inbox.poll();
+                if (batch != null) {
+                    if (busy) {
+                        pending.decrementAndGet();
+                    } else {
+                        busy = true; // the count of the batch now stands for this worker
+                    }
+                    for (int i = 0; i < batch.size; i++) {
+                        receive(batch.cities[i], batch.permits[i], batch.costs[i], batch.parents[i]);
+                    }
+                    continue;
+                }
+                if (!frontier.isEmpty() && frontier.peekKey() < bestCost) {
+                    expand(frontier.poll());
+                    if (nodesExpanded % FLUSH_INTERVAL == 0) {
+                        flush();
+                        if (Thread.currentThread().isInterrupted()) stopped = true;
+                    }
+                    continue;
+                }
+                if (busy) {
+                    // Nothing below the best cost is left here; idle until the next batch arrives
+                    flush();
+                    busy = false;
+                    pending.decrementAndGet();
+                    continue;
+                }
+                if (pending.get() == 0) return;
+                if (Thread.currentThread().isInterrupted()) {
+                    stopped = true;
+                    return;
+                }
+                Thread.yield();
+            }
+        }
+
+        /** Inserts a state owned by this worker, unless it is reached no cheaper than before. */
+        private void receive(int city, long permitMask, double cost, long parent) {
+            long key = graph.stateKey(city, permitMask);
+            int state = reached.get(key);
+            if (state != StateTable.ABSENT && cost >= g[state]) return;
+            double estimate = cost + heuristics.get(city);
+            if (estimate >= bestCost) return;
+            if (state == StateTable.ABSENT) {
+                state = add(city, permitMask);
+                reached.put(key, state);
+            }
+            g[state] = cost;
+            parents[state] = parent;
+            if (city == goal) {
+                offerGoal(cost, (long) id << 32 | state);
+                return;
+            }
+            // Same heuristic, lower cost: the key can only decrease
+            frontier.push(state, estimate);
+            maxFrontierSize = Math.max(maxFrontierSize, frontier.size());
+        }
+
+        private void expand(int state) {
+            nodesExpanded++;
+            int city = cities[state];
+            long held = permits[state];
+            double cost = g[state];
+            long self = (long) id << 32 | state;
+            for (int edge = graph.firstEdge(city), end = graph.endEdge(city); edge < end; edge++) {
+                long required = PermitRegistry.mask(graph.requiredPermit(edge));
+                if ((held & required) != required) continue; // cannot drive on this road without permit
+                int next = graph.target(edge);
+                double newCost = cost + graph.distance(edge);
+                if (newCost >= bestCost) continue;
+                generate(next, held, newCost, self);
+                long available = PermitRegistry.mask(graph.availablePermit(next)) & usefulPermits;
+                if (available != 0 && (held & available) == 0) {
+                    generate(next, held | available, newCost + permitCost, self);
+                }
+            }
+        }
+
+        private void generate(int city, long permitMask, double cost, long parent) {
+            if (owner(graph.stateKey(city, permitMask)) == id) {
+                receive(city, permitMask, cost, parent);
+                return;
+            }
+            messagesSent++;
+            int owner = collect(outboxes, city, permitMask, cost, parent);
+            if (outboxes[owner].isFull()) {
+                hand(owner, outboxes[owner]);
+                outboxes[owner] = null;
+            }
+        }
+
+        /** Hands over all partly filled batches. */
+        private void flush() {
+            for (int w = 0; w < outboxes.length; w++) {
+                if (outboxes[w] != null) {
+                    hand(w, outboxes[w]);
+                    outboxes[w] = null;
+                }
+            }
+        }
+
+        private int add(int city, long permitMask) {
+            if (count == cities.length) {
+                int capacity = count * 2;
+                cities = Arrays.copyOf(cities, capacity);
+                permits = Arrays.copyOf(permits, capacity);
+                g = Arrays.copyOf(g, capacity);
+                parents = Arrays.copyOf(parents, capacity);
+            }
+            int state = count++;
+            cities[state] = city;
+            permits[state] = permitMask;
+            return state;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+import java.util.*;
+
+/**
+ * Bi-objective route search for RoutePlanner2 networks: the Pareto front of routes over (distance, permit
+ * spend), from the shortest route to the cheapest one in permits, with every trade-off in between.
+ * <p>
+ * Every permit costs the same {@code permitCost}, so the spend of a route is fixed by the permits its
+ * state holds. A search over (city, permits held) states that only minimizes distance therefore keeps,
+ * per state, exactly the label that NAMOA* keeps: no two labels of one state can be incomparable. The
+ * search is A* on distance. Its heuristic is the ALT bound or, without landmarks, the geographic distance
+ * times the network's {@link GeoHeuristic#getAdmissibleScale() admissible scale}, as in
+ * {@link AnytimeSearch}; both are consistent, so the goal states come off the frontier in the order of
+ * their distance. A goal state joins the front if it spends less than every
+ * route found before; otherwise the shorter earlier routes dominate it. States that already spend at
+ * least as much as the cheapest route found so far are dominated as well and are dropped. The search
+ * ends with a route without permits or an empty frontier.
+ * <p>
+ * The states live in parallel arrays indexed through a {@link StateTable}, like those of
+ * {@link AnytimeSearch}. An instance is not thread-safe, but it can be reused for consecutive queries.
+ */
+public class ParetoSearch {
+    private final Graph graph;
+    private final GeoHeuristic geo;
+    private final GeoHeuristic.Kind heuristicKind;
+    private final LandmarkIndex landmarks;
+    private final double permitCost;
+
+    private final StateTable reached = new StateTable();
+    private final IndexedMinHeap frontier = new IndexedMinHeap(IndexedMinHeap.Mode.DECREASE_KEY, 4);
+    private final HeuristicTable heuristics = new HeuristicTable();
+    private int count;
+    private int[] cities = new int[256];
+    private long[] permits = new long[256];
+    private double[] distances = new double[256];
+    private int[] parents = new int[256];
+
+    private double minSpend;      // spend of the cheapest route found so far
+    private int maxFrontierSize;
+    private int nodesExpanded;
+
+    /**
+     * @param landmarks ALT landmarks for the heuristic, or null
+     */
+    public ParetoSearch(Graph graph, GeoHeuristic geo, GeoHeuristic.Kind heuristicKind,
+                        LandmarkIndex landmarks, double permitCost) {
+        this.graph = graph;
+        this.geo = geo;
+        this.heuristicKind = heuristicKind;
+        this.landmarks = landmarks;
+        this.permitCost = permitCost;
+    }
+
+    /**
+     * Searches the Pareto front between two city ids.
+     *
+     * @param usefulPermits permits worth acquiring, e.g. from {@link ReachabilityIndex#usefulPermits};
+     *                      -1 for all
+     * @return the routes by ascending distance and descending permit spend, empty if there is no route;
+     *         the distance of a route is {@code getOptimalCost() - getTotalPermitCost()}
+     */
+    public List<SearchResult> search(int start, int goal, long usefulPermits) {
+        reached.clear();
+        frontier.clear();
+        count = 0;
+        heuristics.reset(geo, heuristicKind, landmarks, goal, landmarks != null ? 1.0 : geo.getAdmissibleScale());
+        minSpend = Double.POSITIVE_INFINITY;
+        maxFrontierSize = 0;
+        nodesExpanded = 0;
+
+        List<SearchResult> front = new ArrayList<>();
+        double lastDistance = Double.NEGATIVE_INFINITY; // distance of the last route in the front
+        relax(start, 0L, 0, -1);
+        long startPermit = PermitRegistry.mask(graph.availablePermit(start)) & usefulPermits;
+        if (startPermit != 0) relax(start, startPermit, 0, -1);
+
+        while (!frontier.isEmpty()) {
+            maxFrontierSize = Math.max(maxFrontierSize, frontier.size());
+            int state = frontier.poll();
+            long held = permits[state];
+            double spend = spend(held);
+            if (spend >= minSpend) continue; // found after the cheapest route, so at least as long
+            nodesExpanded++;
+            int city = cities[state];
+            double distance = distances[state];
+
+            if (city == goal) {
+                // no later route is shorter; a route of equal length that spends less replaces this one
+                if (distance <= lastDistance) front.remove(front.size() - 1);
+                front.add(buildResult(state));
+                lastDistance = distance;
+                minSpend = spend;
+                if (held == 0) break; // nothing spends less than a route without permits
+                continue;
+            }
+
+            for (int edge = graph.firstEdge(city), end = graph.endEdge(city); edge < end; edge++) {
+                long required = PermitRegistry.mask(graph.requiredPermit(edge));
+                if ((held & required) != required) continue; // cannot drive on this road without permit
+                int next = graph.target(edge);
+                double newDistance = distance + graph.distance(edge);
+                relax(next, held, newDistance, state);
+                long available = PermitRegistry.mask(graph.availablePermit(next)) & usefulPermits;
+                if (available != 0 && (held & available) == 0 && spend(held | available) < minSpend) {
+                    relax(next, held | available, newDistance, state);
+                }
+            }
+        }
+        return front;
+    }
+
+    private double spend(long permitMask) {
+        return Long.bitCount(permitMask) * permitCost;
+    }
+
+    private void relax(int city, long permitMask, double distance, int parent) {
+        long key = graph.stateKey(city, permitMask);
+        int state = reached.get(key);
+        if (state == StateTable.ABSENT) {
+            state = add(city, permitMask);
+            reached.put(key, state);
+        } else if (distance >= distances[state]) {
+            return;
+        }
+        distances[state] = distance;
+        parents[state] = parent;
+        frontier.push(state, distance + heuristics.get(city));
+    }
+
+    private int add(int city, long permitMask) {
+        if (count == cities.length) {
+            int capacity = count * 2;
+            cities = Arrays.copyOf(cities, capacity);
+            permits = Arrays.copyOf(permits, capacity);
+            distances = Arrays.copyOf(distances, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+        }
+        int state = count++;
+        cities[state] = city;
+        permits[state] = permitMask;
+        return state;
+    }
+
+    private SearchResult buildResult(int goalState) {
+        List<String> path = new ArrayList<>();
+        List<String> permitsAcquired = new ArrayList<>();
+        for (int s = goalState; s != -1; s = parents[s]) {
+            path.add(graph.cityName(cities[s]));
+            long previousPermits = parents[s] == -1 ? 0L : permits[parents[s]];
+            for (String permit : graph.permits().names(permits[s] & ~previousPermits)) {
+                permitsAcquired.add("Acquired permit " + permit + " at " + graph.cityName(cities[s]));
+            }
+        }
+        Collections.reverse(path);
+        Collections.reverse(permitsAcquired);
+        double spend = spend(permits[goalState]);
+        return new SearchResult(distances[goalState] + spend, maxFrontierSize, nodesExpanded, path, spend,
+                permitsAcquired);
+    }
+}
@@ -0,0 +1,63 @@
+import java.util.*;
+
+/**
+ * Assigns every permit type a bit position while the network is loaded, so a set of permits fits in a
+ * single {@code long} mask. At most {@value #MAX_PERMITS} permit types are supported.
+ */
+public class PermitRegistry {
+    public static final int MAX_PERMITS = 64;
+
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> bits = new HashMap<>();
+
+    /**
+     * Returns the bit of the permit, assigning the next free one on first use.
+     *
+     * @return the bit position, or {@link Graph#NONE} for {@code null} / "NONE"
+     * @throws IllegalStateException if more than {@value #MAX_PERMITS} permit types are registered
+     */
+    public int register(String permit) {
+        if (permit == null || permit.equals("NONE")) return Graph.NONE;
+        Integer bit = bits.get(permit);
+        if (bit == null) {
+            if (names.size() == MAX_PERMITS) {
+                throw new IllegalStateException("More than " + MAX_PERMITS + " permit types: " + permit);
+            }
+            bit = names.size();
+            names.add(permit);
+            bits.put(permit, bit);
+        }
+        return bit;
+    }
+
+    /** Returns the bit of an already registered permit or {@link Graph#NONE}. */
+    public int bit(String permit) {
+        Integer bit = permit == null ? null : bits.get(permit);
+        return bit == null ? Graph.NONE : bit;
+    }
+
+    /** Returns an independent registry with the same bits, to register further permits in. */
+    public PermitRegistry copy() {
+        PermitRegistry copy = new PermitRegistry();
+        copy.names.addAll(names);
+        copy.bits.putAll(bits);
+        return copy;
+    }
+
+    public String name(int bit) { return names.get(bit); }
+    public int size() { return names.size(); }
+
+    /** Returns the mask containing only the given permit, or 0 for {@link Graph#NONE}. */
+    public static long mask(int bit) {
+        return bit == Graph.NONE ? 0L : 1L << bit;
+    }
+
+    /** Returns the names of all permits in the mask, in bit order. */
+    public List<String> names(long mask) {
+        List<String> result = new ArrayList<>(Long.bitCount(mask));
+        for (long m = mask; m != 0; m &= m - 1) {
+            result.add(names.get(Long.numberOfTrailingZeros(m)));
+        }
+        return result;
+    }
+}
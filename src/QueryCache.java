@@ -0,0 +1,218 @@
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.ToLongFunction;
+
+/**
+ * Thread-safe cache of {@link RoutePlanner2#aStarSearch} results for repeated queries. Entries are keyed
+ * by start, goal, scaling factor, permit cost and heuristic kind, and evicted in least-recently-used order
+ * once their total weight exceeds the bound. Concurrent misses for the same key are computed only once:
+ * the other callers wait for the first one and count as hits. Loading another network, updating it or
+ * changing the landmarks drops all entries.
+ * <p>
+ * Cached results, including "no route" (null), are shared between callers and must not be modified. A
+ * search that is interrupted is not cached; its caller and the callers waiting for it get a
+ * {@link CancellationException}.
+ */
+public class QueryCache {
+    private final RoutePlanner2 planner;
+    private final long maxWeight;
+    private final ToLongFunction<SearchResult> weigher;
+
+    // guarded by this
+    private final LinkedHashMap<Key, SearchResult> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Key, CompletableFuture<SearchResult>> inFlight = new HashMap<>();
+    private long networkVersion;
+    private long weight = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    /**
+     * @param maxWeight largest total weight of the entries
+     * @param weigher   weight of a result (null for no route), at least 0
+     */
+    public QueryCache(RoutePlanner2 planner, long maxWeight, ToLongFunction<SearchResult> weigher) {
+        if (maxWeight < 1) throw new IllegalArgumentException("maxWeight must be at least 1: " + maxWeight);
+        this.planner = planner;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.networkVersion = planner.getNetworkVersion();
+    }
+
+    /** Creates a cache holding at most {@code maxEntries} results. */
+    public static QueryCache bySize(RoutePlanner2 planner, int maxEntries) {
+        return new QueryCache(planner, maxEntries, result -> 1);
+    }
+
+    /**
+     * Creates a cache bounded by the size of the results: a result weighs one plus the cities on its path
+     * and its acquired permits, so long routes take more of the budget than short ones.
+     */
+    public static QueryCache byWeight(RoutePlanner2 planner, long maxWeight) {
+        return new QueryCache(planner, maxWeight, QueryCache::pathWeight);
+    }
+
+    private static long pathWeight(SearchResult result) {
+        return result == null ? 1 : 1 + result.getPath().size() + result.getPermitsAcquired().size();
+    }
+
+    /**
+     * Returns the cached result or runs the search of {@code aStarSearch(startCity, goalCity, scalingFactor)}
+     * without its console output.
+     *
+     * @return the search result or null if there is no route
+     * @throws IllegalArgumentException if a city is not in the network
+     * @throws CancellationException    if the search, or the search of another caller this one waits for, was
+     *                                  interrupted
+     */
+    public SearchResult search(String startCity, String goalCity, double scalingFactor) {
+        return search(startCity, goalCity, scalingFactor, null);
+    }
+
+    /**
+     * Like {@link #search(String, String, double)}, but a miss runs the search on the given scratch.
+     *
+     * @param scratch scratch of the calling thread, or null to allocate one on a miss
+     */
+    public SearchResult search(String startCity, String goalCity, double scalingFactor, SearchScratch<State2> scratch) {
+        Key key = new Key(startCity, goalCity, scalingFactor, planner.permitCost, planner.heuristicKind);
+        long version = planner.getNetworkVersion();
+        CompletableFuture<SearchResult> pending;
+        CompletableFuture<SearchResult> computation = null;
+        synchronized (this) {
+            if (version > networkVersion) {
+                clear();
+                networkVersion = version;
+            }
+            if (entries.containsKey(key)) {
+                hits++;
+                return entries.get(key);
+            }
+            pending = inFlight.get(key);
+            if (pending != null) {
+                hits++;
+            } else {
+                misses++;
+                computation = new CompletableFuture<>();
+                inFlight.put(key, computation);
+            }
+        }
+        if (pending != null) return await(pending);
+
+        SearchResult result;
+        try {
+            SearchOutcome outcome = scratch == null
+                    ? planner.search(startCity, goalCity, scalingFactor, SearchBudget.unlimited())
+                    : planner.search(startCity, goalCity, scalingFactor, SearchBudget.unlimited(), scratch);
+            // only a completed search tells whether there is a route; a cancelled one is not cached
+            if (!outcome.isFound() && outcome.getStatus() != SearchOutcome.Status.NO_ROUTE) {
+                throw new CancellationException(startCity + " -> " + goalCity + ": " + outcome);
+            }
+            result = outcome.getResult();
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                inFlight.remove(key, computation);
+            }
+            computation.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (this) {
+            // a result of an older network is handed to the waiting callers but not stored
+            if (inFlight.remove(key, computation) && version == networkVersion) put(key, result);
+        }
+        computation.complete(result);
+        return result;
+    }
+
+    private static SearchResult await(CompletableFuture<SearchResult> pending) {
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+    }
+
+    private void put(Key key, SearchResult result) {
+        weight += weigher.applyAsLong(result);
+        entries.put(key, result);
+        Iterator<Map.Entry<Key, SearchResult>> eldest = entries.entrySet().iterator();
+        while (weight > maxWeight && eldest.hasNext()) {
+            weight -= weigher.applyAsLong(eldest.next().getValue());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /** Drops all entries, e.g. after the network was changed in a way the cache cannot see. */
+    public synchronized void invalidate() {
+        clear();
+    }
+
+    private void clear() {
+        if (!entries.isEmpty() || !inFlight.isEmpty()) invalidations++;
+        entries.clear();
+        inFlight.clear(); // running computations finish for their callers but are not stored
+        weight = 0;
+    }
+
+    public synchronized int size() { return entries.size(); }
+    public synchronized long getWeight() { return weight; }
+    public long getMaxWeight() { return maxWeight; }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    /** Number of times the entries were dropped because the network changed or {@link #invalidate} was called. */
+    public synchronized long getInvalidations() { return invalidations; }
+
+    /** Share of the queries answered without a search of their own. */
+    public synchronized double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d entries (weight %d of %d), %d hits, %d misses, %d evictions, %d invalidations",
+                entries.size(), weight, maxWeight, hits, misses, evictions, invalidations);
+    }
+
+    private static final class Key {
+        private final String startCity;
+        private final String goalCity;
+        private final double scalingFactor;
+        private final double permitCost;
+        private final GeoHeuristic.Kind heuristicKind;
+
+        Key(String startCity, String goalCity, double scalingFactor, double permitCost, GeoHeuristic.Kind heuristicKind) {
+            this.startCity = startCity;
+            this.goalCity = goalCity;
+            this.scalingFactor = scalingFactor;
+            this.permitCost = permitCost;
+            this.heuristicKind = heuristicKind;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return startCity.equals(other.startCity) && goalCity.equals(other.goalCity)
+                    && Double.compare(scalingFactor, other.scalingFactor) == 0
+                    && Double.compare(permitCost, other.permitCost) == 0
+                    && heuristicKind == other.heuristicKind;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = startCity.hashCode() * 31 + goalCity.hashCode();
+            hash = hash * 31 + Double.hashCode(scalingFactor);
+            hash = hash * 31 + Double.hashCode(permitCost);
+            return hash * 31 + heuristicKind.hashCode();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+import java.util.Arrays;
+
+/**
+ * Monotone radix heap over {@code int} ids with non-negative {@code long} keys, the frontier of
+ * {@link IntegerSearch}.
+ * <p>
+ * Every pushed key must be at least the key of the last poll. Bucket {@code b > 0} then holds the keys
+ * whose highest bit that differs from the last polled key is bit {@code b - 1}, and bucket 0 the keys
+ * equal to it. A poll takes from bucket 0; when that is empty, the first non-empty bucket is
+ * redistributed around its smallest key, and every entry moves to a lower bucket. So an entry is moved
+ * at most 64 times, and pushes and polls need no comparisons between entries. Ids may be pushed more
+ * than once; like {@link IndexedMinHeap.Mode#LAZY_DELETION} the caller skips outdated entries.
+ */
+public class RadixHeap {
+    public static final int EMPTY = -1;
+    private static final int BUCKETS = 65;
+
+    private final long[][] keys = new long[BUCKETS][];
+    private final int[][] ids = new int[BUCKETS][];
+    private final int[] sizes = new int[BUCKETS];
+    private long lastKey = 0;
+    private int size = 0;
+
+    public RadixHeap() {
+        for (int b = 0; b < BUCKETS; b++) {
+            keys[b] = new long[16];
+            ids[b] = new int[16];
+        }
+    }
+
+    /** Number of entries, outdated ones included. */
+    public int size() { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    /** Key of the last poll; no smaller key may be pushed. */
+    public long lastKey() { return lastKey; }
+
+    /**
+     * Queues the id with the key.
+     *
+     * @throws IllegalArgumentException if the key is smaller than {@link #lastKey()}
+     */
+    public void push(int id, long key) {
+        if (key < lastKey) throw new IllegalArgumentException("Key " + key + " below the last key " + lastKey);
+        append(bucket(key), id, key);
+        size++;
+    }
+
+    /** Removes and returns an id with the smallest key, or {@link #EMPTY}; {@link #lastKey()} is its key. */
+    public int poll() {
+        if (size == 0) return EMPTY;
+        if (sizes[0] == 0) {
+            int b = 1;
+            while (sizes[b] == 0) b++;
+            long[] bucketKeys = keys[b];
+            int[] bucketIds = ids[b];
+            int count = sizes[b];
+            long min = bucketKeys[0];
+            for (int i = 1; i < count; i++) min = Math.min(min, bucketKeys[i]);
+            lastKey = min;
+            sizes[b] = 0;
+            for (int i = 0; i < count; i++) append(bucket(bucketKeys[i]), bucketIds[i], bucketKeys[i]);
+        }
+        size--;
+        return ids[0][--sizes[0]];
+    }
+
+    /** Empties the heap but keeps the allocated buckets for the next search. */
+    public void clear() {
+        Arrays.fill(sizes, 0);
+        size = 0;
+        lastKey = 0;
+    }
+
+    private int bucket(long key) {
+        return 64 - Long.numberOfLeadingZeros(key ^ lastKey);
+    }
+
+    private void append(int bucket, int id, long key) {
+        int count = sizes[bucket];
+        if (count == keys[bucket].length) {
+            keys[bucket] = Arrays.copyOf(keys[bucket], count * 2);
+            ids[bucket] = Arrays.copyOf(ids[bucket], count * 2);
+        }
+        keys[bucket][count] = key;
+        ids[bucket][count] = id;
+        sizes[bucket] = count + 1;
+    }
+}
@@ -0,0 +1,240 @@
+import java.util.*;
+
+/**
+ * Load-time index that answers in O(1) whether a route between two cities exists at all, and which
+ * permits a search from a city can ever use.
+ * <p>
+ * The cities are grouped into components connected by roads without permit. Each component is labeled
+ * with the permits available in its cities, and the roads that need a permit form a condensed graph
+ * between the components. As permits are kept once acquired and every road can be driven back, a search
+ * from a component reaches exactly the components of its closure: starting with the component's own
+ * permits, every road whose permit is held leads to a component whose permits are added as well, until
+ * nothing changes. The final permit mask of a closure decides the whole closure, so the index keeps, per
+ * distinct mask, the components connected by roads needing a permit of that mask, and a query compares
+ * two labels.
+ * <p>
+ * The permits worth acquiring from a start are those of the closure mask that some road inside the
+ * closure requires; acquiring any other permit costs money and opens no road. The planners pass this
+ * mask to the search to skip those permit branches. Building the index runs one closure per component,
+ * which is cheap as long as most roads need no permit and the components stay few.
+ */
+public class ReachabilityIndex {
+    private final int[] componentOfCity;
+    private final long[] componentPermits; // permits available in the cities of each component
+    private final int[] closureGroup;      // per component: index of its closure mask in closureMasks
+    private final long[] closureMasks;
+    private final int[][] labels;          // per closure mask: connected class of every component
+    private final long[][] usefulPermits;  // per closure mask and class: permits that some road there requires
+    private final long buildTimeNanos;
+
+    private ReachabilityIndex(int[] componentOfCity, long[] componentPermits, int[] closureGroup,
+                              long[] closureMasks, int[][] labels, long[][] usefulPermits, long buildTimeNanos) {
+        this.componentOfCity = componentOfCity;
+        this.componentPermits = componentPermits;
+        this.closureGroup = closureGroup;
+        this.closureMasks = closureMasks;
+        this.labels = labels;
+        this.usefulPermits = usefulPermits;
+        this.buildTimeNanos = buildTimeNanos;
+    }
+
+    public static ReachabilityIndex build(Graph graph) {
+        long startTime = System.nanoTime();
+        int n = graph.cityCount();
+
+        // components over roads without permit
+        int[] parent = new int[n];
+        for (int v = 0; v < n; v++) parent[v] = v;
+        for (int v = 0; v < n; v++) {
+            for (int edge = graph.firstEdge(v), end = graph.endEdge(v); edge < end; edge++) {
+                if (graph.requiredPermit(edge) == Graph.NONE) union(parent, v, graph.target(edge));
+            }
+        }
+        int[] componentOfCity = new int[n];
+        int components = denseLabels(parent, componentOfCity);
+
+        // component labels and the condensed graph of the roads that need a permit
+        long[] componentPermits = new long[components];
+        long[] requiredPermits = new long[components]; // permits required by a road at a city of the component
+        long[] condensed = new long[16];               // (from, to, permit) packed for sorting
+        int condensedCount = 0;
+        for (int v = 0; v < n; v++) {
+            int from = componentOfCity[v];
+            componentPermits[from] |= PermitRegistry.mask(graph.availablePermit(v));
+            for (int edge = graph.firstEdge(v), end = graph.endEdge(v); edge < end; edge++) {
+                int permit = graph.requiredPermit(edge);
+                if (permit == Graph.NONE) continue;
+                requiredPermits[from] |= PermitRegistry.mask(permit);
+                int to = componentOfCity[graph.target(edge)];
+                if (to == from) continue;
+                if (condensedCount == condensed.length) condensed = Arrays.copyOf(condensed, condensedCount * 2);
+                condensed[condensedCount++] = ((long) from * components + to) << 6 | permit;
+            }
+        }
+        Arrays.sort(condensed, 0, condensedCount);
+        int[] firstEdge = new int[components + 1];
+        int[] edgeTargets = new int[condensedCount];
+        int[] edgePermits = new int[condensedCount];
+        int edges = 0;
+        for (int i = 0; i < condensedCount; i++) {
+            if (i > 0 && condensed[i] == condensed[i - 1]) continue; // parallel roads with the same permit
+            long fromTo = condensed[i] >>> 6;
+            firstEdge[(int) (fromTo / components) + 1]++;
+            edgeTargets[edges] = (int) (fromTo % components);
+            edgePermits[edges] = (int) (condensed[i] & 63);
+            edges++;
+        }
+        for (int c = 0; c < components; c++) firstEdge[c + 1] += firstEdge[c];
+
+        // closure mask of every component, grouped by distinct mask
+        Map<Long, Integer> groupOfMask = new HashMap<>();
+        List<Long> masks = new ArrayList<>();
+        int[] closureGroup = new int[components];
+        Closure closure = new Closure(components);
+        for (int c = 0; c < components; c++) {
+            long mask = closure.run(c, componentPermits, firstEdge, edgeTargets, edgePermits);
+            Integer group = groupOfMask.get(mask);
+            if (group == null) {
+                group = masks.size();
+                masks.add(mask);
+                groupOfMask.put(mask, group);
+            }
+            closureGroup[c] = group;
+        }
+
+        // per mask: components connected by the roads whose permit it contains
+        long[] closureMasks = new long[masks.size()];
+        int[][] labels = new int[masks.size()][];
+        long[][] usefulPermits = new long[masks.size()][];
+        int[] componentParent = new int[components];
+        for (int g = 0; g < closureMasks.length; g++) {
+            long mask = masks.get(g);
+            closureMasks[g] = mask;
+            for (int c = 0; c < components; c++) componentParent[c] = c;
+            for (int c = 0; c < components; c++) {
+                for (int e = firstEdge[c]; e < firstEdge[c + 1]; e++) {
+                    if ((mask & 1L << edgePermits[e]) != 0) union(componentParent, c, edgeTargets[e]);
+                }
+            }
+            labels[g] = new int[components];
+            usefulPermits[g] = new long[denseLabels(componentParent, labels[g])];
+            for (int c = 0; c < components; c++) {
+                usefulPermits[g][labels[g][c]] |= requiredPermits[c] & mask;
+            }
+        }
+        return new ReachabilityIndex(componentOfCity, componentPermits, closureGroup, closureMasks, labels,
+                usefulPermits, System.nanoTime() - startTime);
+    }
+
+    /**
+     * Breadth-first search over the condensed graph that acquires the permits of every component it
+     * reaches. Roads whose permit is not held yet wait in a list per permit until it is.
+     */
+    private static final class Closure {
+        private final int[] visited;
+        private final int[] queue;
+        private final int[][] waiting = new int[PermitRegistry.MAX_PERMITS][];
+        private final int[] waitingCount = new int[PermitRegistry.MAX_PERMITS];
+        private int stamp = 0;
+        private int tail;
+
+        Closure(int components) {
+            visited = new int[components];
+            queue = new int[components];
+        }
+
+        long run(int start, long[] componentPermits, int[] firstEdge, int[] edgeTargets, int[] edgePermits) {
+            stamp++;
+            Arrays.fill(waitingCount, 0);
+            tail = 0;
+            visit(start);
+            long mask = 0;
+            for (int head = 0; head < tail; head++) {
+                int c = queue[head];
+                long gained = componentPermits[c] & ~mask;
+                mask |= gained;
+                for (long m = gained; m != 0; m &= m - 1) {
+                    int permit = Long.numberOfTrailingZeros(m);
+                    for (int i = 0; i < waitingCount[permit]; i++) visit(waiting[permit][i]);
+                    waitingCount[permit] = 0;
+                }
+                for (int e = firstEdge[c]; e < firstEdge[c + 1]; e++) {
+                    int target = edgeTargets[e];
+                    if (visited[target] == stamp) continue;
+                    int permit = edgePermits[e];
+                    if ((mask & 1L << permit) != 0) {
+                        visit(target);
+                    } else {
+                        if (waiting[permit] == null) waiting[permit] = new int[16];
+                        if (waitingCount[permit] == waiting[permit].length) {
+                            waiting[permit] = Arrays.copyOf(waiting[permit], waitingCount[permit] * 2);
+                        }
+                        waiting[permit][waitingCount[permit]++] = target;
+                    }
+                }
+            }
+            return mask;
+        }
+
+        private void visit(int component) {
+            if (visited[component] == stamp) return;
+            visited[component] = stamp;
+            queue[tail++] = component;
+        }
+    }
+
+    private static int find(int[] parent, int v) {
+        while (parent[v] != v) {
+            parent[v] = parent[parent[v]];
+            v = parent[v];
+        }
+        return v;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+    }
+
+    /** Numbers the sets of the union-find forest 0, 1, ... in order of their smallest element. */
+    private static int denseLabels(int[] parent, int[] labels) {
+        int count = 0;
+        for (int v = 0; v < parent.length; v++) {
+            int root = find(parent, v);
+            labels[v] = root == v ? count++ : labels[root];
+        }
+        return count;
+    }
+
+    /** True if some route leads from start to goal, whatever it costs. */
+    public boolean isReachable(int start, int goal) {
+        int startComponent = componentOfCity[start];
+        int[] groupLabels = labels[closureGroup[startComponent]];
+        return groupLabels[startComponent] == groupLabels[componentOfCity[goal]];
+    }
+
+    /**
+     * Permits that a search from the city can acquire and use on some road; acquiring any other permit
+     * never leads to a cheaper route.
+     */
+    public long usefulPermits(int start) {
+        int startComponent = componentOfCity[start];
+        int group = closureGroup[startComponent];
+        return usefulPermits[group][labels[group][startComponent]];
+    }
+
+    /** All permits that can be acquired on some route from the city. */
+    public long reachablePermits(int start) { return closureMasks[closureGroup[componentOfCity[start]]]; }
+
+    public int component(int city) { return componentOfCity[city]; }
+    public int componentCount() { return componentPermits.length; }
+    public long componentPermits(int component) { return componentPermits[component]; }
+    public long getBuildTimeNanos() { return buildTimeNanos; }
+
+    @Override
+    public String toString() {
+        return String.format("%d components, %d closure masks, built in %.1f ms",
+                componentPermits.length, closureMasks.length, buildTimeNanos / 1e6);
+    }
+}
@@ -0,0 +1,521 @@
+import java.util.*;
+
+/**
+ * D* Lite route repair for a vehicle that is already driving, on the networks of a {@link RoutePlanner2}.
+ * <p>
+ * The search runs backwards from the goal over (city, permits required) states, so the cost-to-goal
+ * values g and their one-step lookaheads rhs stay valid while the vehicle moves. A state is a city
+ * together with the permits the rest of the route needs when it leaves the city; the goal is the goal
+ * city with no permits required, one state. Going backwards over a road adds the road's permit, and a
+ * city that sells a required permit may acquire it there, which removes it from the set. A virtual start
+ * state, whose successors are the states of the current city that ask only for permits the vehicle holds,
+ * or for one more that the city sells, is the {@code s_start} of D* Lite. Permits enter the sets only
+ * where a road needs them, so the search stays as narrow as a forward A*.
+ * <p>
+ * After {@link #update} only the states at the cities whose roads changed are updated, and
+ * {@link #replan} expands just the states whose values are affected, in key order
+ * {@code [min(g, rhs) + h + km, min(g, rhs)]}. The heuristic is the geographic distance to the current
+ * position, or the distance via the nearest city that sells a required permit the vehicle does not hold,
+ * plus the cost of these permits, which it has to acquire on the way; landmarks are not used because
+ * they may be rebuilt between network versions. D* Lite needs the heuristic to be consistent, which A*
+ * does not, so the distances are scaled by the admissible scale of the network, with which no road is
+ * shorter than its scaled straight line. A move adds the cost driven to km.
+ * <p>
+ * A session is not thread-safe. It keeps the {@link NetworkVersion} it plans on, and starts over when an
+ * update registers a new permit, lets another city sell a permit or lowers the admissible scale.
+ */
+public class ReplanningSession {
+    private final GeoHeuristic.Kind heuristicKind;
+    private final double permitCost;
+    private final int goal;
+
+    private NetworkVersion network;
+    private Graph graph;
+    private int startCity;        // position of the vehicle
+    private long heldPermits;     // permits the vehicle holds
+    private int start;            // virtual start state
+    private double km;            // heuristic offset accumulated by the moves
+    private double heuristicScale; // admissible scale of the network the values were computed on
+    private boolean searched;     // whether the values are up to date for the current start
+    private int lastExpansions;
+    private long totalExpansions;
+    private int maxQueueSize;
+
+    private final HeuristicTable heuristics = new HeuristicTable();
+    private int[][] sellers;      // per permit, the cities that sold it when the session (re)started
+    private double[][] detours;   // per permit and city, scaled straight line via a seller, NaN if not computed
+    private double successorCost; // cost of the step to the state the last bestSuccessor returned
+    private final StateTable reached = new StateTable();
+    private int count;
+    private int[] cities = new int[256];
+    private long[] permits = new long[256];
+    private double[] g = new double[256];
+    private double[] rhs = new double[256];
+    private int[] nextAtCity = new int[256];
+    private int[] firstAtCity;
+
+    // binary heap of states ordered by (key1, key2), with the heap position of every state, -1 if not queued
+    private double[] key1 = new double[256];
+    private double[] key2 = new double[256];
+    private int[] positions = new int[256];
+    private int[] heap = new int[256];
+    private int size;
+
+    ReplanningSession(NetworkVersion network, int start, int goal, GeoHeuristic.Kind heuristicKind,
+                      double permitCost) {
+        this.heuristicKind = heuristicKind;
+        this.permitCost = permitCost;
+        this.goal = goal;
+        this.startCity = start;
+        this.heldPermits = 0L;
+        restart(network);
+    }
+
+    /** Network version the session currently plans on. */
+    public NetworkVersion getNetwork() { return network; }
+
+    /** City the vehicle is in. */
+    public String getPosition() { return graph.cityName(startCity); }
+
+    /** Permits the vehicle holds, as a mask over the permits of the current network. */
+    long getHeldPermits() { return heldPermits; }
+
+    /** Nodes expanded by the last {@link #replan}; 0 if nothing had changed since the one before. */
+    public int getLastExpansions() { return lastExpansions; }
+
+    /** Nodes expanded by all replans since the session was started. */
+    public long getTotalExpansions() { return totalExpansions; }
+
+    /**
+     * Brings the values up to date and returns the best route from the current position.
+     *
+     * @return the remaining route, its cost counted from the current position, or null if there is none
+     */
+    public SearchResult replan() {
+        lastExpansions = 0;
+        // the index only knows routes that start without permits
+        if (heldPermits == 0 && !network.getReachability().isReachable(startCity, goal)) return null;
+        if (!searched) {
+            computeShortestPath();
+            searched = true;
+        }
+        return buildResult();
+    }
+
+    /**
+     * Moves the vehicle to a city of the current route; it then holds the permits the route has acquired
+     * up to there.
+     *
+     * @throws IllegalArgumentException if the city is not on the current route
+     */
+    public void moveTo(String city) {
+        int target = graph.cityId(city);
+        if (!searched) computeShortestPath();
+        searched = true;
+        long held = heldPermits;
+        double driven = 0;
+        int previous = start;
+        int state = g[start] == Double.POSITIVE_INFINITY ? -1 : bestSuccessor(start);
+        for (int steps = 0; state != -1 && cities[state] != target && steps <= count; steps++) {
+            held |= acquired(previous, state);
+            driven += successorCost;
+            previous = state;
+            state = isGoal(state) ? -1 : bestSuccessor(state);
+        }
+        if (state == -1 || cities[state] != target) {
+            throw new IllegalArgumentException(city + " is not on the current route");
+        }
+        held |= acquired(previous, state);
+        driven += successorCost;
+
+        // The cost driven bounds how far every heuristic value can drop, also the detours via sellers
+        // whose permit the vehicle now holds, so the keys computed before stay lower bounds
+        km += driven;
+        resetHeuristic(target);
+        startCity = target;
+        heldPermits = held;
+        remove(start); // the old start has no predecessors, so nothing depends on it
+        start = add(startCity, heldPermits);
+        updateVertex(start);
+        searched = false;
+    }
+
+    /**
+     * Switches to a newer network version. {@code update} has to be what changed since the version the
+     * session plans on, e.g. the argument of {@link RoutePlanner2#updateNetwork}.
+     */
+    public void update(NetworkVersion version, GraphUpdate update) {
+        Graph before = graph;
+        Graph after = version.getGraph();
+        if (after.permits().size() != before.permits().size()
+                || version.getGeo().getAdmissibleScale() < heuristicScale) {
+            restart(version);
+            return;
+        }
+        int[] affected = update.affectedCities(before, after);
+        for (int city : affected) {
+            int permit = after.availablePermit(city);
+            // a new seller would lower the detours, which have to stay consistent
+            if (permit != Graph.NONE && permit != before.availablePermit(city)) {
+                restart(version);
+                return;
+            }
+        }
+        network = version;
+        graph = after;
+        for (int city : affected) {
+            for (int state = firstAtCity[city]; state != -1; state = nextAtCity[state]) {
+                updateVertex(state);
+                // a road that opened up needs the states behind it, which may not exist yet
+                if (g[state] != Double.POSITIVE_INFINITY) updatePredecessors(state);
+            }
+        }
+        updateVertex(start);
+        searched = false;
+    }
+
+    /** Drops all values and plans from scratch on the version, from the current position. */
+    private void restart(NetworkVersion version) {
+        network = version;
+        graph = version.getGraph();
+        heuristicScale = version.getGeo().getAdmissibleScale();
+        int permitCount = graph.permits().size();
+        int[] sellerCounts = new int[permitCount];
+        for (int city = 0; city < graph.cityCount(); city++) {
+            if (graph.availablePermit(city) != Graph.NONE) sellerCounts[graph.availablePermit(city)]++;
+        }
+        sellers = new int[permitCount][];
+        detours = new double[permitCount][];
+        for (int permit = 0; permit < permitCount; permit++) sellers[permit] = new int[sellerCounts[permit]];
+        for (int city = 0; city < graph.cityCount(); city++) {
+            int permit = graph.availablePermit(city);
+            if (permit != Graph.NONE) sellers[permit][--sellerCounts[permit]] = city;
+        }
+        resetHeuristic(startCity);
+        reached.clear();
+        count = 0;
+        size = 0;
+        km = 0;
+        firstAtCity = new int[graph.cityCount()];
+        Arrays.fill(firstAtCity, -1);
+
+        int state = state(goal, 0L);
+        rhs[state] = 0;
+        insert(state);
+        start = add(startCity, heldPermits);
+        updateVertex(start);
+        searched = false;
+    }
+
+    /** Points the heuristic at the city; the detours are computed again when they are needed. */
+    private void resetHeuristic(int city) {
+        heuristics.reset(network.getGeo(), heuristicKind, city, heuristicScale);
+        for (double[] row : detours) if (row != null) Arrays.fill(row, Double.NaN);
+    }
+
+    /**
+     * Heuristic of a state: the scaled straight line from the position, at least the one via the nearest
+     * seller of every required permit the vehicle does not hold, plus the cost of these permits. It is
+     * consistent: a step forward drops permits from the set only by acquiring them, at the permit cost, in
+     * a city whose detour is its own straight line.
+     */
+    private double heuristic(int city, long missing) {
+        double h = heuristics.get(city);
+        for (long rest = missing; rest != 0; rest &= rest - 1) {
+            h = Math.max(h, detour(Long.numberOfTrailingZeros(rest), city));
+        }
+        return h + Long.bitCount(missing) * permitCost;
+    }
+
+    /** Scaled straight line from the position via the nearest seller of the permit to the city, or infinity. */
+    private double detour(int permit, int city) {
+        if (detours[permit] == null) {
+            detours[permit] = new double[graph.cityCount()];
+            Arrays.fill(detours[permit], Double.NaN);
+        }
+        double detour = detours[permit][city];
+        if (Double.isNaN(detour)) {
+            GeoHeuristic geo = network.getGeo();
+            detour = Double.POSITIVE_INFINITY;
+            for (int seller : sellers[permit]) {
+                detour = Math.min(detour, geo.distance(heuristicKind, startCity, seller)
+                        + geo.distance(heuristicKind, seller, city));
+            }
+            detour *= heuristicScale;
+            detours[permit][city] = detour;
+        }
+        return detour;
+    }
+
+    private void computeShortestPath() {
+        int expansions = 0;
+        // ties with the start are expanded as well: its successors are reached at no cost, in the same city
+        while (size > 0 && (!keyLess(calculateKey1(start), calculateKey2(start), key1[heap[0]], key2[heap[0]])
+                || rhs[start] != g[start])) {
+            maxQueueSize = Math.max(maxQueueSize, size);
+            int state = heap[0];
+            double newKey1 = calculateKey1(state);
+            double newKey2 = calculateKey2(state);
+            if (keyLess(key1[state], key2[state], newKey1, newKey2)) {
+                remove(state);
+                insert(state); // key outdated by a move
+                continue;
+            }
+            remove(state);
+            expansions++;
+            if (g[state] > rhs[state]) {
+                g[state] = rhs[state];
+                updatePredecessors(state);
+            } else {
+                g[state] = Double.POSITIVE_INFINITY;
+                updateVertex(state);
+                updatePredecessors(state);
+            }
+        }
+        lastExpansions = expansions;
+        totalExpansions += expansions;
+    }
+
+    private void updateVertex(int state) {
+        if (!isGoal(state)) rhs[state] = state == start ? startLookahead() : lookahead(state);
+        remove(state);
+        if (g[state] != rhs[state]) insert(state);
+    }
+
+    private boolean isGoal(int state) {
+        return cities[state] == goal && permits[state] == 0 && state != start;
+    }
+
+    /**
+     * rhs of a state: the cheapest road to a successor, and permit acquired on arrival, plus the
+     * successor's g. A successor asks for the required permits but the road's, if the state already asks
+     * for that one, or for one more if it acquires it on arrival.
+     */
+    private double lookahead(int state) {
+        int city = cities[state];
+        long required = permits[state];
+        double best = Double.POSITIVE_INFINITY;
+        for (int edge = graph.firstEdge(city), end = graph.endEdge(city); edge < end; edge++) {
+            long road = PermitRegistry.mask(graph.requiredPermit(edge));
+            if ((required & road) != road) continue; // the road needs a permit the state does not ask for
+            int next = graph.target(edge);
+            double distance = graph.distance(edge);
+            best = Math.min(best, distance + Math.min(g(next, required), g(next, required & ~road)));
+            long available = PermitRegistry.mask(graph.availablePermit(next));
+            if (available != 0 && (required & available) == 0) {
+                best = Math.min(best, distance + permitCost
+                        + Math.min(g(next, required | available), g(next, (required & ~road) | available)));
+            }
+        }
+        return best;
+    }
+
+    /**
+     * rhs of the virtual start: a state of the current city that asks only for permits held, or for the
+     * permit of the city besides, which is then acquired first.
+     */
+    private double startLookahead() {
+        double best = Double.POSITIVE_INFINITY;
+        for (int state = firstAtCity[startCity]; state != -1; state = nextAtCity[state]) {
+            best = Math.min(best, startCost(state) + g[state]);
+        }
+        return best;
+    }
+
+    /** Cost of moving from the virtual start to a state of its city, infinite if it is not a successor. */
+    private double startCost(int state) {
+        long missing = permits[state] & ~heldPermits;
+        if (missing == 0) return 0;
+        return missing == PermitRegistry.mask(graph.availablePermit(startCity)) ? permitCost : Double.POSITIVE_INFINITY;
+    }
+
+    private double g(int city, long permitMask) {
+        int state = reached.get(graph.stateKey(city, permitMask));
+        return state == StateTable.ABSENT ? Double.POSITIVE_INFINITY : g[state];
+    }
+
+    /** Updates every state that can move to the state in one step. */
+    private void updatePredecessors(int state) {
+        int city = cities[state];
+        long required = permits[state];
+        if (city == startCity && startCost(state) != Double.POSITIVE_INFINITY) updateVertex(start);
+        long available = PermitRegistry.mask(graph.availablePermit(city));
+        boolean acquirable = available != 0 && (required & available) == available;
+        for (int edge = graph.firstEdge(city), end = graph.endEdge(city); edge < end; edge++) {
+            // roads are stored in both directions with the same distance and permit
+            long road = PermitRegistry.mask(graph.requiredPermit(edge));
+            int previous = graph.target(edge);
+            if (previous == goal) continue;
+            updateVertex(state(previous, required | road));
+            if (acquirable && road != available) updateVertex(state(previous, (required & ~available) | road));
+        }
+    }
+
+    private int state(int city, long permitMask) {
+        long key = graph.stateKey(city, permitMask);
+        int state = reached.get(key);
+        if (state == StateTable.ABSENT) {
+            state = add(city, permitMask);
+            reached.put(key, state);
+            nextAtCity[state] = firstAtCity[city];
+            firstAtCity[city] = state;
+        }
+        return state;
+    }
+
+    /** Adds a state; the virtual start is neither in the reached table nor among the states of its city. */
+    private int add(int city, long permitMask) {
+        if (count == cities.length) {
+            int capacity = count * 2;
+            cities = Arrays.copyOf(cities, capacity);
+            permits = Arrays.copyOf(permits, capacity);
+            g = Arrays.copyOf(g, capacity);
+            rhs = Arrays.copyOf(rhs, capacity);
+            nextAtCity = Arrays.copyOf(nextAtCity, capacity);
+            key1 = Arrays.copyOf(key1, capacity);
+            key2 = Arrays.copyOf(key2, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            heap = Arrays.copyOf(heap, capacity);
+        }
+        int state = count++;
+        cities[state] = city;
+        permits[state] = permitMask;
+        g[state] = Double.POSITIVE_INFINITY;
+        rhs[state] = Double.POSITIVE_INFINITY;
+        positions[state] = -1;
+        nextAtCity[state] = -1;
+        return state;
+    }
+
+    /** Permits acquired on the step from one state to the next: those the next asks for and the first not. */
+    private long acquired(int from, int to) {
+        return permits[to] & ~permits[from];
+    }
+
+    private SearchResult buildResult() {
+        if (g[start] == Double.POSITIVE_INFINITY) return null;
+        List<String> path = new ArrayList<>();
+        List<String> permitsAcquired = new ArrayList<>();
+        path.add(graph.cityName(startCity));
+        int acquisitions = 0;
+        int previous = start;
+        int state = bestSuccessor(start);
+        for (int steps = 0; ; steps++) {
+            if (cities[state] != cities[previous]) path.add(graph.cityName(cities[state]));
+            for (String permit : graph.permits().names(acquired(previous, state))) {
+                permitsAcquired.add("Acquired permit " + permit + " at " + graph.cityName(cities[state]));
+                acquisitions++;
+            }
+            if (isGoal(state)) break;
+            if (steps > count) throw new IllegalStateException("Route does not reach the goal");
+            previous = state;
+            state = bestSuccessor(state);
+        }
+        return new SearchResult(g[start], maxQueueSize, lastExpansions, path, acquisitions * permitCost,
+                permitsAcquired);
+    }
+
+    /** Successor state on a cheapest route, by road distance, permit cost and g. */
+    private int bestSuccessor(int state) {
+        int best = -1;
+        double bestCost = Double.POSITIVE_INFINITY;
+        if (state == start) {
+            for (int next = firstAtCity[startCity]; next != -1; next = nextAtCity[next]) {
+                if (startCost(next) + g[next] < bestCost) {
+                    best = next;
+                    bestCost = startCost(next) + g[next];
+                    successorCost = startCost(next);
+                }
+            }
+            return best;
+        }
+        int city = cities[state];
+        long required = permits[state];
+        for (int edge = graph.firstEdge(city), end = graph.endEdge(city); edge < end; edge++) {
+            long road = PermitRegistry.mask(graph.requiredPermit(edge));
+            if ((required & road) != road) continue;
+            int next = graph.target(edge);
+            long available = PermitRegistry.mask(graph.availablePermit(next));
+            boolean acquirable = available != 0 && (required & available) == 0;
+            for (int option = 0; option < 4; option++) {
+                if (option >= 2 && !acquirable) break;
+                long permitMask = (option & 1) == 0 ? required : required & ~road;
+                if (option >= 2) permitMask |= available;
+                int successor = reached.get(graph.stateKey(next, permitMask));
+                if (successor == StateTable.ABSENT) continue;
+                double step = graph.distance(edge) + (option >= 2 ? permitCost : 0);
+                if (step + g[successor] < bestCost) {
+                    best = successor;
+                    bestCost = step + g[successor];
+                    successorCost = step;
+                }
+            }
+        }
+        return best;
+    }
+
+    private double calculateKey2(int state) {
+        return Math.min(g[state], rhs[state]);
+    }
+
+    private double calculateKey1(int state) {
+        if (state == start) return calculateKey2(state) + km;
+        return calculateKey2(state) + heuristic(cities[state], permits[state] & ~heldPermits) + km;
+    }
+
+    private static boolean keyLess(double key1, double key2, double otherKey1, double otherKey2) {
+        return key1 < otherKey1 || (key1 == otherKey1 && key2 < otherKey2);
+    }
+
+    private boolean less(int a, int b) {
+        return keyLess(key1[a], key2[a], key1[b], key2[b]);
+    }
+
+    private void insert(int state) {
+        key1[state] = calculateKey1(state);
+        key2[state] = calculateKey2(state);
+        positions[state] = size;
+        heap[size++] = state;
+        siftUp(size - 1);
+    }
+
+    private void remove(int state) {
+        int position = positions[state];
+        if (position < 0) return;
+        positions[state] = -1;
+        int last = heap[--size];
+        if (position == size) return;
+        heap[position] = last;
+        positions[last] = position;
+        siftUp(position);
+        siftDown(positions[last]);
+    }
+
+    private void siftUp(int position) {
+        int state = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!less(state, heap[parent])) break;
+            heap[position] = heap[parent];
+            positions[heap[position]] = position;
+            position = parent;
+        }
+        heap[position] = state;
+        positions[state] = position;
+    }
+
+    private void siftDown(int position) {
+        int state = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) break;
+            if (child + 1 < size && less(heap[child + 1], heap[child])) child++;
+            if (!less(heap[child], state)) break;
+            heap[position] = heap[child];
+            positions[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = state;
+        positions[state] = position;
+    }
+}
@@ -1,9 +1,19 @@
 import java.io.*;
 import java.util.*;
+import java.util.function.IntToLongFunction;
 
 public class RoutePlanner {
-    private Map<String, City> cities = new HashMap<>();
-    private Map<String, List<Connection>> graph = new HashMap<>();
+    private Map<String, City> cities = new LinkedHashMap<>();
+    private Graph graph = new GraphBuilder().build();
+    private City[] cityById = new City[0];
+    private NameInterner cityNames = new NameInterner(); // Namen aus der Städte-Datei, für readConnections
+    private SearchListener searchListener = null; // erhält die Zähler jeder aStarSearch, null wenn deaktiviert
+    private boolean dominancePruning = false;
+    private ReachabilityIndex reachability = ReachabilityIndex.build(graph); // verwirft unmögliche Anfragen
+    private IntegerSearch.Costs integerCosts = new IntegerSearch.Costs(graph, 1); // Straßenkosten für integerSearch
+    private IntToLongFunction integerHeuristic = city -> 0; // gespeicherte Heuristik der Städte für integerSearch
+    // Zustände, Frontier und Heuristik von integerSearch, eine Instanz pro aufrufendem Thread
+    private final ThreadLocal<IntegerSearch> integerSearches = ThreadLocal.withInitial(IntegerSearch::new);
     int permitCost = 10;
     static int testCaseNr = 1;   //change this value to test it and find the optimal path
 
@@ -11,53 +21,73 @@ public class RoutePlanner {
      * Liest die Städte aus der angegebenen Datei ein.
      *
      * @param filename Pfad zur Städte-Datei
-     * @throws IOException bei Datei-Lese-Fehlern
+     * @throws IOException bei Datei-Lese-Fehlern oder fehlerhaften Zeilen (mit Zeilennummer)
      */
     public void readCities(String filename) throws IOException {
         cities.clear(); // Vorherige Daten löschen
-        BufferedReader br = new BufferedReader(new FileReader(filename));
-        String line;
-        br.readLine(); // Überspringe Header
-        while ((line = br.readLine()) != null) {
-            line = line.trim();
-            if (line.isEmpty()) continue; // Überspringe leere Zeilen
-            String[] parts = line.split(";");
-            if (parts.length < 3) continue; // Ungültige Zeile überspringen
-            String name = parts[0].trim();
-            int heuristic = Integer.parseInt(parts[1].trim());
-            String availablePermit = parts[2].trim();
-            cities.put(name, new City(name, heuristic, availablePermit));
+        cityNames = new NameInterner(); // IDs in Reihenfolge der Datei, wie in der LinkedHashMap
+        NameInterner permitNames = new NameInterner();
+        try (SemicolonParser parser = SemicolonParser.open(filename)) {
+            parser.nextLine(); // Überspringe Header
+            while (parser.nextLine()) { // leere Zeilen werden übersprungen
+                parser.requireFields(3, "city;h;available_permit");
+                String name = cityNames.name(parser.nameField(cityNames));
+                int heuristic = parser.intField();
+                String availablePermit = permitNames.name(parser.nameField(permitNames));
+                cities.put(name, new City(name, heuristic, availablePermit));
+            }
         }
-        br.close();
+        graph = newGraphBuilder().build();
+        reachability = ReachabilityIndex.build(graph);
+        integerCosts = new IntegerSearch.Costs(graph, 1);
+        integerHeuristic = storedHeuristic(cityById);
+    }
+
+    /**
+     * Liest die gespeicherte Heuristik über die Stadt-ID, ohne bei jeder Suche ein Lambda zu erzeugen.
+     */
+    private static IntToLongFunction storedHeuristic(City[] cityById) {
+        return city -> cityById[city].getHeuristic();
+    }
+
+    /**
+     * Erstellt einen Builder, der bereits alle eingelesenen Städte enthält (IDs in Reihenfolge der Städte-Datei).
+     */
+    private GraphBuilder newGraphBuilder() {
+        GraphBuilder builder = new GraphBuilder();
+        cityById = new City[cities.size()];
+        for (City city : cities.values()) {
+            cityById[builder.addCity(city.getName(), city.getAvailablePermit())] = city;
+        }
+        return builder;
     }
 
     /**
      * Liest die Verbindungen aus der angegebenen Datei ein und baut den Graphen auf.
      *
      * @param filename Pfad zur Verbindungen-Datei
-     * @throws IOException bei Datei-Lese-Fehlern
+     * @throws IOException bei Datei-Lese-Fehlern oder fehlerhaften Zeilen (mit Zeilennummer)
      */
     public void readConnections(String filename) throws IOException {
-        graph.clear(); // Vorherige Daten löschen
-        BufferedReader br = new BufferedReader(new FileReader(filename));
-        String line;
-        br.readLine(); // Überspringe Header
-        while ((line = br.readLine()) != null) {
-            line = line.trim();
-            if (line.isEmpty()) continue; // Überspringe leere Zeilen
-            String[] parts = line.split(";");
-            if (parts.length < 4) continue; // Ungültige Zeile überspringen
-            String city1 = parts[0].trim();
-            String city2 = parts[1].trim();
-            int distance = Integer.parseInt(parts[2].trim());
-            String requiredPermit = parts[3].trim();
-            Connection connection = new Connection(city1, city2, distance, requiredPermit);
-            // Füge die Verbindung in beide Richtungen hinzu
-            graph.computeIfAbsent(city1, k -> new ArrayList<>()).add(connection);
-            graph.computeIfAbsent(city2, k -> new ArrayList<>())
-                    .add(new Connection(city2, city1, distance, requiredPermit));
+        GraphBuilder builder = newGraphBuilder(); // Vorherige Verbindungen verwerfen
+        NameInterner permitNames = new NameInterner();
+        try (SemicolonParser parser = SemicolonParser.open(filename)) {
+            parser.nextLine(); // Überspringe Header
+            while (parser.nextLine()) { // leere Zeilen werden übersprungen
+                parser.requireFields(4, "city_1;city_2;distance;required_permit");
+                int city1 = parser.knownNameField(cityNames);
+                int city2 = parser.knownNameField(cityNames);
+                int distance = parser.intField();
+                String requiredPermit = permitNames.name(parser.nameField(permitNames));
+                if (city1 == Graph.NONE || city2 == Graph.NONE) continue; // Unbekannte Städte werden übersprungen
+                // Füge die Verbindung in beide Richtungen hinzu
+                builder.addConnection(city1, city2, distance, requiredPermit);
+            }
         }
-        br.close();
+        graph = builder.build();
+        reachability = ReachabilityIndex.build(graph);
+        integerCosts = new IntegerSearch.Costs(graph, 1);
+        integerHeuristic = storedHeuristic(cityById);
     }
 
     /**
@@ -68,149 +98,330 @@ public class RoutePlanner {
      * @return Gesamtkosten der optimalen Route oder -1, wenn keine Lösung existiert
      */
     public int aStarSearch(String startCity, String goalCity) {
-        PriorityQueue<State> frontier = new PriorityQueue<>();
-        Map<String, State> reached = new HashMap<>();
+        return aStarSearch(startCity, goalCity, IndexedMinHeap.Mode.DECREASE_KEY);
+    }
+
+    /**
+     * Führt die A*-Suche von startCity zu goalCity durch.
+     *
+     * @param startCity    Name der Startstadt
+     * @param goalCity     Name der Zielstadt
+     * @param frontierMode Decrease-Key in der Frontier oder erneutes Einfügen mit Überspringen veralteter Einträge
+     * @return Gesamtkosten der optimalen Route oder -1, wenn keine Lösung existiert
+     */
+    public int aStarSearch(String startCity, String goalCity, IndexedMinHeap.Mode frontierMode) {
+        return aStarSearch(startCity, goalCity, new SearchScratch<>(frontierMode));
+    }
 
-        City start = cities.get(startCity);
-        City goal = cities.get(goalCity);
+    /**
+     * Führt die A*-Suche von startCity zu goalCity mit wiederverwendetem Arbeitsspeicher durch.
+     *
+     * @param scratch Frontier, reached-Tabelle und Zustandsliste; wird zu Beginn geleert
+     * @return Gesamtkosten der optimalen Route oder -1, wenn keine Lösung existiert
+     */
+    public int aStarSearch(String startCity, String goalCity, SearchScratch<State> scratch) {
+        int startId = graph.cityId(startCity);
+        int goalId = graph.cityId(goalCity);
 
-        if (start == null || goal == null) {
+        if (startId == Graph.NONE || goalId == Graph.NONE) {
             System.out.println("Start- oder Zielstadt nicht gefunden.");
             return -1;
         }
+        SearchOutcome outcome = aStarSearch(startId, goalId, scratch, SearchBudget.unlimited());
+        switch (outcome.getStatus()) {
+            case FOUND:
+                System.out.println("Optimaler Pfad gefunden: " + outcome.getResult().getPath());
+                System.out.println("Gesamtkosten: " + (int) outcome.getResult().getOptimalCost());
+                return (int) outcome.getResult().getOptimalCost();
+            case CANCELLED:
+                System.out.println("Suche abgebrochen.");
+                return -1;
+            default:
+                System.out.println("Keine Lösung gefunden.");
+                return -1;
+        }
+    }
+
+    /**
+     * Führt die A*-Suche mit Budget durch: Sie endet, sobald Zeit-, Knoten- oder Zustandsbudget aufgebraucht
+     * sind oder der Thread unterbrochen wird, und meldet das Ergebnis typisiert statt auf der Konsole.
+     *
+     * @param startCity Name der Startstadt
+     * @param goalCity  Name der Zielstadt
+     * @throws IllegalArgumentException wenn eine Stadt nicht im Netz vorkommt
+     */
+    public SearchOutcome search(String startCity, String goalCity, SearchBudget budget) {
+        return search(startCity, goalCity, budget, new SearchScratch<>());
+    }
+
+    /**
+     * Wie {@link #search(String, String, SearchBudget)}, mit wiederverwendetem Arbeitsspeicher.
+     *
+     * @throws IllegalArgumentException wenn eine Stadt nicht im Netz vorkommt
+     */
+    public SearchOutcome search(String startCity, String goalCity, SearchBudget budget, SearchScratch<State> scratch) {
+        int startId = graph.cityId(startCity);
+        int goalId = graph.cityId(goalCity);
+        if (startId == Graph.NONE) throw new IllegalArgumentException("Unbekannte Stadt: " + startCity);
+        if (goalId == Graph.NONE) throw new IllegalArgumentException("Unbekannte Stadt: " + goalCity);
+        return aStarSearch(startId, goalId, scratch, budget);
+    }
+
+    private SearchOutcome aStarSearch(int startId, int goalId, SearchScratch<State> scratch, SearchBudget budget) {
+        long startNanos = System.nanoTime();
+        scratch.reset();
+        SearchListener listener = searchListener;
+        SearchStats stats = scratch.getStats();
+        stats.reset(listener != null);
+        // Frontier über Indizes in states, sortiert nach geschätzten Gesamtkosten
+        IndexedMinHeap frontier = scratch.getFrontier();
+        // Schlüssel (Stadt, Genehmigungen) -> Index in states
+        StateTable reached = scratch.getReached();
+        List<State> states = scratch.getStates();
+
+        // Paare ohne jede Route werden ohne Suche abgewiesen
+        if (!reachability.isReachable(startId, goalId)) {
+            stats.endPhase(SearchStats.Phase.SETUP);
+            finishSearch(stats, listener, SearchOutcome.Status.NO_ROUTE);
+            return new SearchOutcome(SearchOutcome.Status.NO_ROUTE, null, 0, 0, 0, System.nanoTime() - startNanos);
+        }
+        // Genehmigungen, die keine erreichbare Straße verlangt, werden nie geholt
+        long usefulPermits = reachability.usefulPermits(startId);
+        DominanceTable dominance = dominancePruning ? scratch.getDominance() : null;
+        if (dominance != null) dominance.reset(graph.cityCount());
+
+        City start = cityById[startId];
+        stats.heuristicEvaluations++; // gespeicherter Wert aus der Städte-Datei
 
         // Initialer Knoten
-        Set<String> initialPermits = new HashSet<>();
+        long initialPermits = 0L;
         int initialCost = 0;
-        List<String> initialPath = new ArrayList<>();
-        initialPath.add(startCity);
 
         // Option 1: Ohne Genehmigung holen
         State initialState = new State(
-                startCity,
+                startId,
                 initialPermits,
                 initialCost,
                 initialCost + start.getHeuristic(),
-                initialPath
+                null
         );
-        frontier.add(initialState);
-        reached.put(generateStateKey(initialState), initialState);
+        addState(initialState, frontier, reached, states, dominance, stats);
 
         // Option 2: Mit Genehmigung holen (falls verfügbar)
-        if (start.getAvailablePermit() != null) {
-            Set<String> permitsWithNew = new HashSet<>(initialPermits);
-            permitsWithNew.add(start.getAvailablePermit());
+        int startPermit = graph.availablePermit(startId);
+        if ((PermitRegistry.mask(startPermit) & usefulPermits) != 0) {
+            long permitsWithNew = initialPermits | PermitRegistry.mask(startPermit);
             int costWithPermit = initialCost + permitCost; // Kosten für Genehmigung
             State stateWithPermit = new State(
-                    startCity,
+                    startId,
                     permitsWithNew,
                     costWithPermit,
                     costWithPermit + start.getHeuristic(),
-                    initialPath
+                    null
             );
-            frontier.add(stateWithPermit);
-            reached.put(generateStateKey(stateWithPermit), stateWithPermit);
+            addState(stateWithPermit, frontier, reached, states, dominance, stats);
+            stats.permitBranches++;
         }
+        stats.endPhase(SearchStats.Phase.SETUP);
 
+        SearchOutcome.Status status = SearchOutcome.Status.NO_ROUTE;
         while (!frontier.isEmpty()) {
-            State currentState = frontier.poll();
+            // Budget und Abbruch; Uhr und Interrupt-Flag werden alle 64 Expansionen geprüft
+            if (stats.nodesExpanded >= budget.getMaxNodesExpanded() || states.size() >= budget.getMaxStates()) {
+                status = SearchOutcome.Status.BUDGET_EXCEEDED;
+                break;
+            }
+            if ((stats.nodesExpanded & 63) == 0) {
+                if (Thread.currentThread().isInterrupted()) {
+                    status = SearchOutcome.Status.CANCELLED;
+                    break;
+                }
+                if (budget.isTimeUp(startNanos)) {
+                    status = SearchOutcome.Status.BUDGET_EXCEEDED;
+                    break;
+                }
+            }
+            stats.maxFrontierSize = Math.max(stats.maxFrontierSize, frontier.size());
+            State currentState = states.get(frontier.poll());
+            // Ein Zustand mit mehr Genehmigungen kann inzwischen ebenso günstig sein
+            if (isDominated(currentState, dominance, stats)) continue;
+            stats.nodesExpanded++;
 
             // Ziel erreicht
-            if (currentState.getCurrentCity().equals(goalCity)) {
-                System.out.println("Optimaler Pfad gefunden: " + currentState.getPath());
-                System.out.println("Gesamtkosten: " + currentState.getCostSoFar());
-                return currentState.getCostSoFar();
+            if (currentState.getCurrentCity() == goalId) {
+                stats.endPhase(SearchStats.Phase.SEARCH);
+                List<String> permitsAcquired = buildPermitsAcquired(currentState);
+                SearchResult result = new SearchResult(currentState.getCostSoFar(), stats.maxFrontierSize,
+                        stats.nodesExpanded, buildPath(currentState), permitsAcquired.size() * permitCost,
+                        permitsAcquired);
+                finishSearch(stats, listener, SearchOutcome.Status.FOUND);
+                return new SearchOutcome(SearchOutcome.Status.FOUND, result, stats.nodesExpanded,
+                        stats.maxFrontierSize, stats.statesGenerated, System.nanoTime() - startNanos);
             }
 
             // Generate actions (neighbours)
-            List<Connection> neighbors = graph.getOrDefault(currentState.getCurrentCity(), new ArrayList<>());
-            for (Connection conn : neighbors) {
-                String nextCityName = conn.getCity2();
-                City nextCity = cities.get(nextCityName);
-                if (nextCity == null) continue; // unknown city skip
-
+            int currentCity = currentState.getCurrentCity();
+            long currentPermits = currentState.getPermits();
+            for (int edge = graph.firstEdge(currentCity), end = graph.endEdge(currentCity); edge < end; edge++) {
                 // check if the required permit is available
-                if (conn.getRequiredPermit() != null && !currentState.getPermits().contains(conn.getRequiredPermit())) {
+                long requiredPermit = PermitRegistry.mask(graph.requiredPermit(edge));
+                if ((currentPermits & requiredPermit) != requiredPermit) {
+                    stats.edgesPrunedByPermit++;
                     continue; // cannot drive on this road without permit
                 }
-
+                int nextCityId = graph.target(edge);
+                City nextCity = cityById[nextCityId];
+                stats.heuristicEvaluations++;
 
                 // Calculate new cost
-                int newCost = currentState.getCostSoFar() + conn.getDistance();
-
-                // Create new path
-                List<String> newPath = new ArrayList<>(currentState.getPath());
-                newPath.add(nextCityName);
+                int newCost = currentState.getCostSoFar() + (int) graph.distance(edge);
 
                 // Option 1: Ohne Genehmigung holen
-                Set<String> permitsWithoutNew = new HashSet<>(currentState.getPermits());
                 int costWithoutPermit = newCost;
                 int estimatedTotalCostWithoutPermit = costWithoutPermit + nextCity.getHeuristic();
                 State childStateWithoutPermit = new State(
-                        nextCityName,
-                        permitsWithoutNew,
+                        nextCityId,
+                        currentPermits,
                         costWithoutPermit,
                         estimatedTotalCostWithoutPermit,
-                        newPath
+                        currentState
                 );
-                String stateKeyWithoutPermit = generateStateKey(childStateWithoutPermit);
-
-                // Check if this state is already in reached
-                if (!reached.containsKey(stateKeyWithoutPermit)) {
-                    reached.put(stateKeyWithoutPermit, childStateWithoutPermit);
-                    frontier.add(childStateWithoutPermit);
-                } else {
-                    State existingState = reached.get(stateKeyWithoutPermit);
-                    if (childStateWithoutPermit.getCostSoFar() < existingState.getCostSoFar()) {
-                        // Entferne den schlechteren Knoten aus der Frontier
-                        frontier.remove(existingState);
-                        reached.put(stateKeyWithoutPermit, childStateWithoutPermit);
-                        frontier.add(childStateWithoutPermit);
-                    }
-                }
+                addState(childStateWithoutPermit, frontier, reached, states, dominance, stats);
 
                 // Option 2: Obtain a new permit (if available and not already obtained)
-                if (nextCity.getAvailablePermit() != null && !currentState.getPermits().contains(nextCity.getAvailablePermit())) {
-                    Set<String> permitsWithNew = new HashSet<>(currentState.getPermits());
-                    permitsWithNew.add(nextCity.getAvailablePermit());
+                long newPermit = PermitRegistry.mask(graph.availablePermit(nextCityId)) & usefulPermits;
+                if (newPermit != 0 && (currentPermits & newPermit) == 0) {
+                    long permitsWithNew = currentPermits | newPermit;
                     int costWithPermit = newCost + permitCost; // Kosten für Genehmigung
                     int estimatedTotalCostWithPermit = costWithPermit + nextCity.getHeuristic();
                     State childStateWithPermit = new State(
-                            nextCityName,
+                            nextCityId,
                             permitsWithNew,
                             costWithPermit,
                             estimatedTotalCostWithPermit,
-                            newPath
+                            currentState
                     );
-                    String stateKeyWithPermit = generateStateKey(childStateWithPermit);
-
-                    // Check if this state is already in reached
-                    if (!reached.containsKey(stateKeyWithPermit)) {
-                        reached.put(stateKeyWithPermit, childStateWithPermit);
-                        frontier.add(childStateWithPermit);
-                    } else {
-                        State existingState = reached.get(stateKeyWithPermit);
-                        if (childStateWithPermit.getCostSoFar() < existingState.getCostSoFar()) {
-                            // Entferne den schlechteren Knoten aus der Frontier
-                            frontier.remove(existingState);
-                            reached.put(stateKeyWithPermit, childStateWithPermit);
-                            frontier.add(childStateWithPermit);
-                        }
-                    }
+                    addState(childStateWithPermit, frontier, reached, states, dominance, stats);
+                    stats.permitBranches++;
                 }
             }
         }
 
-        // Keine Lösung gefunden
-        System.out.println("Keine Lösung gefunden.");
-        return -1;
+        // Keine Lösung gefunden oder Suche abgebrochen
+        stats.endPhase(SearchStats.Phase.SEARCH);
+        finishSearch(stats, listener, status);
+        return new SearchOutcome(status, null, stats.nodesExpanded, stats.maxFrontierSize, stats.statesGenerated,
+                System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Schließt die Zähler einer Suche ab und übergibt sie dem Listener, falls einer gesetzt ist.
+     */
+    private static void finishSearch(SearchStats stats, SearchListener listener, SearchOutcome.Status status) {
+        stats.endPhase(SearchStats.Phase.PATH);
+        stats.status = status;
+        if (listener != null) listener.searchFinished(stats);
+    }
+
+    /**
+     * A*-Suche auf ganzzahligen Kosten mit Radix-Heap als Frontier und Zuständen in primitiven Arrays,
+     * siehe {@link IntegerSearch}. Liefert dieselben Kosten wie {@link #aStarSearch(String, String)}, aber
+     * ohne Konsolenausgabe.
+     *
+     * @return die optimale Route oder null, wenn keine existiert
+     * @throws IllegalArgumentException wenn eine Stadt nicht im Netz vorkommt
+     */
+    public SearchResult integerSearch(String startCity, String goalCity) {
+        int startId = graph.cityId(startCity);
+        int goalId = graph.cityId(goalCity);
+        if (startId == Graph.NONE) throw new IllegalArgumentException("Unbekannte Stadt: " + startCity);
+        if (goalId == Graph.NONE) throw new IllegalArgumentException("Unbekannte Stadt: " + goalCity);
+        if (!reachability.isReachable(startId, goalId)) return null;
+        return integerSearches.get().search(integerCosts, permitCost, startId, goalId, integerHeuristic,
+                reachability.usefulPermits(startId));
+    }
+
+    /**
+     * Schaltet die Dominanz-Prüfung ein: Ein Zustand wird weder eingefügt noch expandiert, solange ein
+     * Zustand in derselben Stadt mehr Genehmigungen zu höchstens denselben Kosten hält
+     * (siehe {@link DominanceTable}). Die Routen bleiben optimal.
+     */
+    public void setDominancePruning(boolean enabled) { this.dominancePruning = enabled; }
+
+    public boolean isDominancePruning() { return dominancePruning; }
+
+    /**
+     * Setzt den Listener, der die {@link SearchStats} jeder aStarSearch erhält (z. B. {@link SearchMetrics});
+     * null deaktiviert ihn. Ohne Listener werden die Phasen nicht gemessen.
+     */
+    public void setSearchListener(SearchListener listener) { this.searchListener = listener; }
+
+    /**
+     * Rekonstruiert den Pfad zum Zustand über die Vorgänger-Zeiger.
+     */
+    private List<String> buildPath(State state) {
+        List<String> path = new ArrayList<>();
+        for (State s = state; s != null; s = s.getParent()) {
+            path.add(graph.cityName(s.getCurrentCity()));
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Rekonstruiert die Liste "Acquired permit X at Y": Eine Genehmigung wurde dort geholt, wo ein Zustand
+     * mehr Genehmigungen hält als sein Vorgänger (bzw. als die leere Menge beim Startzustand).
+     */
+    private List<String> buildPermitsAcquired(State state) {
+        List<String> permitsAcquired = new ArrayList<>();
+        for (State s = state; s != null; s = s.getParent()) {
+            long previousPermits = s.getParent() == null ? 0L : s.getParent().getPermits();
+            for (String permit : graph.permits().names(s.getPermits() & ~previousPermits)) {
+                permitsAcquired.add("Acquired permit " + permit + " at " + graph.cityName(s.getCurrentCity()));
+            }
+        }
+        Collections.reverse(permitsAcquired);
+        return permitsAcquired;
+    }
+
+    /**
+     * Fügt den Zustand in die Frontier ein, sofern derselbe (Stadt, Genehmigungen)-Zustand nicht
+     * bereits mit geringeren oder gleichen Kosten erreicht wurde. Ein günstigerer Zustand ersetzt den alten.
+     */
+    private void addState(State state, IndexedMinHeap frontier, StateTable reached, List<State> states,
+                          DominanceTable dominance, SearchStats stats) {
+        stats.statesGenerated++;
+        long key = graph.stateKey(state.getCurrentCity(), state.getPermits());
+        int index = reached.get(key);
+        if (index == StateTable.ABSENT) {
+            if (isDominated(state, dominance, stats)) return;
+            index = states.size();
+            if (dominance != null) dominance.add(index, state.getCurrentCity(), state.getPermits(), state.getCostSoFar());
+            reached.put(key, index);
+            states.add(state);
+            frontier.push(index, state.getEstimatedTotalCost());
+        } else {
+            State existingState = states.get(index);
+            if (state.getCostSoFar() < existingState.getCostSoFar()) {
+                if (isDominated(state, dominance, stats)) return;
+                if (dominance != null) dominance.update(index, state.getCostSoFar());
+                // Ersetze den schlechteren Knoten (gleiche Heuristik, der Schlüssel sinkt nur)
+                states.set(index, state);
+                frontier.push(index, state.getEstimatedTotalCost());
+                stats.reopenedStates++;
+            } else {
+                stats.duplicateStates++;
+            }
+        }
     }
 
-    private String generateStateKey(State state) {
-        // Erstelle einen eindeutigen Schlüssel basierend auf der aktuellen Stadt und den Genehmigungen
-        List<String> sortedPermits = new ArrayList<>(state.getPermits());
-        Collections.sort(sortedPermits);
-        return state.getCurrentCity() + "|" + String.join(",", sortedPermits);
+    /** Dominanzprüfung eines Zustands vor dem Einfügen oder Expandieren; false, wenn sie deaktiviert ist. */
+    private static boolean isDominated(State state, DominanceTable dominance, SearchStats stats) {
+        if (dominance == null || !dominance.isDominated(state.getCurrentCity(), state.getPermits(), state.getCostSoFar())) {
+            return false;
+        }
+        stats.dominatedStates++;
+        return true;
     }
 
     public static void main(String[] args) {
@@ -1,73 +1,266 @@
 import java.io.*;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 public class RoutePlanner2 {
-    private Map<String, City2> cities = new HashMap<>();
-    private Map<String, List<Connection2>> graph = new HashMap<>();
+    private Map<String, City2> cities = new LinkedHashMap<>();
+    private NameInterner cityNames = new NameInterner(); // names of the cities file, for readConnections
+    private GeoHeuristic geo = new GeoHeuristic(new double[0], new double[0]); // coordinates of the loaded cities
+    // graph, landmarks and reachability index; every search reads it once and runs on that version
+    private volatile NetworkVersion network = newNetworkVersion(0, new GraphBuilder().build(), geo, null,
+            SpatialIndex.build(geo));
+    private int landmarkCount = 0;
+    private LandmarkIndex.Selection landmarkSelection = LandmarkIndex.Selection.AVOID;
+    // built on demand, valid only while its graph is the current one
+    private volatile ContractionHierarchy contractionHierarchy = null;
+    private volatile IntegerSearch.Costs fixedPointCosts = null; // road costs of the last fixedPointSearch
+    // state tables of bidirectionalSearch, contractionHierarchySearch and fixedPointSearch, one per calling thread
+    private final ThreadLocal<BidirectionalSearch> bidirectionalSearches =
+            ThreadLocal.withInitial(BidirectionalSearch::new);
+    private final ThreadLocal<ContractionHierarchyQuery> hierarchyQueries =
+            ThreadLocal.withInitial(ContractionHierarchyQuery::new);
+    private final ThreadLocal<IntegerSearch> integerSearches = ThreadLocal.withInitial(IntegerSearch::new);
+    // worker threads of parallelSearch, shared by all its queries; idle ones end after a minute
+    private final ExecutorService parallelSearchWorkers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "parallel-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private SearchListener searchListener = null; // receives the counters of every aStarSearch, null if disabled
+    private boolean dominancePruning = false;
 
     double permitCost = 10.0; // Cost for obtaining the permit
+    GeoHeuristic.Kind heuristicKind = GeoHeuristic.Kind.HAVERSINE; // CHORD is cheaper and never longer
 
     public void readCities(String filename) throws IOException {
         cities.clear();
-        BufferedReader br = new BufferedReader(new FileReader(filename));
-        String line;
-        // Skip the header line
-        br.readLine();
-
-        while ((line = br.readLine()) != null) {
-            line = line.trim();
-            if (line.isEmpty()) continue;
-            String[] parts = line.split(";");
-            if (parts.length < 4) continue;
-            String name = parts[0].trim();
-            double latitude = Double.parseDouble(parts[1].trim());
-            double longitude = Double.parseDouble(parts[2].trim());
-            String availablePermit = parts[3].trim();
-            cities.put(name, new City2(name, latitude, longitude, availablePermit));
+        cityNames = new NameInterner(); // ids in file order, like the LinkedHashMap and the graph builder
+        NameInterner permitNames = new NameInterner();
+        try (SemicolonParser parser = SemicolonParser.open(filename)) {
+            // Skip the header line
+            parser.nextLine();
+
+            while (parser.nextLine()) {
+                parser.requireFields(4, "city;lat;lon;available_permit");
+                String name = cityNames.name(parser.nameField(cityNames));
+                double latitude = parser.doubleField();
+                double longitude = parser.doubleField();
+                String availablePermit = permitNames.name(parser.nameField(permitNames));
+                cities.put(name, new City2(name, latitude, longitude, availablePermit));
+            }
         }
-        br.close();
+        setGraph(newGraphBuilder().build());
+    }
+
+    /**
+     * Creates a builder that already contains all loaded cities, so city ids follow the order of the cities file.
+     */
+    private GraphBuilder newGraphBuilder() {
+        GraphBuilder builder = new GraphBuilder();
+        double[] latitudes = new double[cities.size()];
+        double[] longitudes = new double[cities.size()];
+        for (City2 city : cities.values()) {
+            int id = builder.addCity(city.getName(), city.getAvailablePermit());
+            latitudes[id] = city.getLatitude();
+            longitudes[id] = city.getLongitude();
+        }
+        geo = new GeoHeuristic(latitudes, longitudes);
+        return builder;
     }
 
     public void readConnections(String filename) throws IOException {
-        graph.clear();
-        BufferedReader br = new BufferedReader(new FileReader(filename));
-        String line;
-
-        // Skip the header line
-        br.readLine();
-
-        while ((line = br.readLine()) != null) {
-            line = line.trim();
-            if (line.isEmpty()) continue;
-            String[] parts = line.split(";");
-            if (parts.length < 4) continue;
-            String city1 = parts[0].trim();
-            String city2 = parts[1].trim();
-            double distance = Double.parseDouble(parts[2].trim());
-            String requiredPermit = parts[3].trim();
-            Connection2 connection = new Connection2(city1, city2, distance, requiredPermit);
-            graph.computeIfAbsent(city1, k -> new ArrayList<>()).add(connection);
-            graph.computeIfAbsent(city2, k -> new ArrayList<>())
-                    .add(new Connection2(city2, city1, distance, requiredPermit));
+        GraphBuilder builder = newGraphBuilder();
+        NameInterner permitNames = new NameInterner();
+        try (SemicolonParser parser = SemicolonParser.open(filename)) {
+            // Skip the header line
+            parser.nextLine();
+
+            while (parser.nextLine()) {
+                parser.requireFields(4, "city_1;city_2;distance;required_permit");
+                int city1 = parser.knownNameField(cityNames);
+                int city2 = parser.knownNameField(cityNames);
+                double distance = parser.doubleField();
+                String requiredPermit = permitNames.name(parser.nameField(permitNames));
+                if (city1 == Graph.NONE || city2 == Graph.NONE) continue; // unknown cities are skipped
+                builder.addConnection(city1, city2, distance, requiredPermit);
+            }
+        }
+        setGraph(builder.build());
+    }
+
+    /**
+     * Writes the loaded network, including the landmark index if ALT is enabled, to a binary snapshot
+     * that {@link #readSnapshot} can open without parsing.
+     */
+    public void writeSnapshot(String filename) throws IOException {
+        NetworkVersion network = this.network;
+        NetworkSnapshot.write(Paths.get(filename), network.getGraph(), network.getGeo(), network.getLandmarks());
+    }
+
+    /**
+     * Replaces the loaded network with a memory-mapped snapshot written by {@link #writeSnapshot}. The
+     * search runs directly on the mapped file. Landmarks stored in the snapshot are used as they are and
+     * enable ALT; without stored landmarks the configured ones are built.
+     */
+    public void readSnapshot(String filename) throws IOException {
+        NetworkSnapshot snapshot = NetworkSnapshot.open(Paths.get(filename));
+        cities.clear(); // the text files have to be read again before readConnections
+        cityNames = new NameInterner();
+        geo = new GeoHeuristic(snapshot.getLatitudes(), snapshot.getLongitudes());
+        if (snapshot.getLandmarks() != null) {
+            LandmarkIndex landmarks = snapshot.getLandmarks();
+            synchronized (this) {
+                landmarkCount = landmarks.size();
+                landmarkSelection = landmarks.getSelection();
+                publish(snapshot.getGraph(), landmarks);
+            }
+        } else {
+            setGraph(snapshot.getGraph());
         }
-        br.close();
+    }
+
+    /**
+     * Publishes the graph with the configured landmarks. The landmarks are built under the same lock as
+     * updateNetwork, so neither can publish a version that misses the other's change.
+     */
+    private synchronized void setGraph(Graph graph) {
+        publish(graph, landmarkCount > 0 ? LandmarkIndex.build(graph, landmarkCount, landmarkSelection) : null);
+    }
+
+    /**
+     * Makes the graph the current network; searches that are running keep the version they started on.
+     * Callers hold the lock.
+     */
+    private void publish(Graph graph, LandmarkIndex landmarks) {
+        SpatialIndex spatialIndex = network.getSpatialIndex();
+        if (spatialIndex.getGeo() != geo) spatialIndex = SpatialIndex.build(geo); // cities were loaded
+        network = newNetworkVersion(network.getVersion() + 1, graph, geo, landmarks, spatialIndex);
+    }
+
+    private static NetworkVersion newNetworkVersion(long version, Graph graph, GeoHeuristic geo,
+                                                    LandmarkIndex landmarks, SpatialIndex spatialIndex) {
+        return new NetworkVersion(version, graph, geo.measuredOn(graph), landmarks, ReachabilityIndex.build(graph),
+                spatialIndex);
+    }
+
+    /**
+     * Applies the update to the current network and publishes the result as a new version, without
+     * waiting for running searches: they finish on the version they started on, and every search started
+     * afterwards sees the update. The new graph shares all buffers the update leaves unchanged, see
+     * {@link GraphUpdate}. The reachability index is rebuilt unless only distances change, and the
+     * landmarks only if the update can shorten routes: closed roads, longer roads and permit changes leave
+     * their lower bounds admissible. A contraction hierarchy has to be built again. Updates are applied one at
+     * a time.
+     *
+     * @return the published version
+     * @throws IllegalArgumentException if the update does not fit the current network, which then stays current
+     */
+    public synchronized NetworkVersion updateNetwork(GraphUpdate update) {
+        NetworkVersion current = network;
+        Graph graph = update.applyTo(current.getGraph());
+        LandmarkIndex landmarks = current.getLandmarks();
+        GeoHeuristic geo = current.getGeo();
+        if (update.canShortenRoutes()) {
+            if (landmarks != null) landmarks = LandmarkIndex.build(graph, landmarkCount, landmarkSelection);
+            geo = geo.remeasuredOn(graph, update.affectedCities(current.getGraph(), graph));
+        }
+        network = new NetworkVersion(current.getVersion() + 1, graph, geo, landmarks,
+                update.canChangeReachability() ? ReachabilityIndex.build(graph) : current.getReachability(),
+                current.getSpatialIndex());
+        return network;
+    }
+
+    /** The current network version; it stays valid after later updates. */
+    public NetworkVersion getNetwork() { return network; }
+
+    /** Components and permit closures of the loaded network, see {@link ReachabilityIndex}. */
+    public ReachabilityIndex getReachability() { return network.getReachability(); }
+
+    /**
+     * Whether any route leads from startCity to goalCity, answered from the {@link ReachabilityIndex}
+     * without a search.
+     *
+     * @throws IllegalArgumentException if a city is not in the network
+     */
+    public boolean isReachable(String startCity, String goalCity) {
+        NetworkVersion network = this.network;
+        int[] ids = cityIds(network.getGraph(), Arrays.asList(startCity, goalCity));
+        return network.getReachability().isReachable(ids[0], ids[1]);
+    }
+
+    /**
+     * Number of times a network was loaded, updated or the landmarks were changed. Results computed
+     * under another version may differ.
+     */
+    public long getNetworkVersion() { return network.getVersion(); }
+
+    /**
+     * Enables the ALT heuristic: the heuristic becomes the maximum of the landmark bound and the geographic
+     * distance scaled down to the network's {@link GeoHeuristic#getAdmissibleScale() admissible scale}, so
+     * scaling factor 1.0 gives optimal routes. The landmarks are selected now and again whenever a network
+     * is loaded. Concurrent calls of updateNetwork wait until they are selected, and the other way round.
+     *
+     * @param count number of landmarks, 0 to disable ALT
+     */
+    public synchronized void useLandmarks(int count, LandmarkIndex.Selection selection) {
+        landmarkCount = count;
+        landmarkSelection = selection;
+        setGraph(network.getGraph());
+    }
+
+    /** Returns the landmark index, or null if ALT is disabled. */
+    public LandmarkIndex getLandmarks() { return network.getLandmarks(); }
+
+    /** Returns the city nearest to the position by haversine distance, or null if no cities are loaded. */
+    public String nearestCity(double latitude, double longitude) {
+        NetworkVersion network = this.network;
+        int city = network.getSpatialIndex().nearest(latitude, longitude);
+        return city == Graph.NONE ? null : network.getGraph().cityName(city);
+    }
+
+    /**
+     * Returns the k cities nearest to the position by haversine distance, nearest first.
+     *
+     * @throws IllegalArgumentException if k is negative or the position is not a valid latitude and longitude
+     */
+    public List<String> nearestCities(double latitude, double longitude, int k) {
+        NetworkVersion network = this.network;
+        return cityNames(network.getGraph(), network.getSpatialIndex().nearest(latitude, longitude, k));
+    }
+
+    /**
+     * Returns the cities within radiusKm of the position by haversine distance, nearest first.
+     *
+     * @throws IllegalArgumentException if the radius is negative or the position is not a valid latitude
+     *                                  and longitude
+     */
+    public List<String> citiesWithin(double latitude, double longitude, double radiusKm) {
+        NetworkVersion network = this.network;
+        return cityNames(network.getGraph(), network.getSpatialIndex().withinRadius(latitude, longitude, radiusKm));
+    }
+
+    private static List<String> cityNames(Graph graph, int[] ids) {
+        List<String> names = new ArrayList<>(ids.length);
+        for (int id : ids) names.add(graph.cityName(id));
+        return names;
     }
 
     public List<TestCase> readTestCases(String filename) throws IOException {
         List<TestCase> testCases = new ArrayList<>();
-        BufferedReader br = new BufferedReader(new FileReader(filename));
-        String line;
-
-        while ((line = br.readLine()) != null) {
-            line = line.trim();
-            if (line.isEmpty()) continue;
-            String[] parts = line.split(";");
-            if (parts.length != 2) continue;
-            String startCity = parts[0].trim();
-            String goalCity = parts[1].trim();
-            testCases.add(new TestCase(startCity, goalCity));
+        NameInterner names = new NameInterner();
+        try (SemicolonParser parser = SemicolonParser.open(filename)) {
+            while (parser.nextLine()) {
+                if (parser.fieldCount() != 2) {
+                    throw parser.error("expected 2 fields (start;goal), found " + parser.fieldCount());
+                }
+                String startCity = names.name(parser.nameField(names));
+                String goalCity = names.name(parser.nameField(names));
+                testCases.add(new TestCase(startCity, goalCity));
+            }
         }
-        br.close();
         return testCases;
     }
 
@@ -90,191 +283,540 @@ public class RoutePlanner2 {
     }
 
     public SearchResult aStarSearch(String startCity, String goalCity, double scalingFactor) {
+        return aStarSearch(startCity, goalCity, scalingFactor, IndexedMinHeap.Mode.DECREASE_KEY);
+    }
 
-        PriorityQueue<State2> frontier = new PriorityQueue<>();
-        Map<String, State2> reached = new HashMap<>();
-        int maxFrontierSize = 0;
-        int nodesExpanded = 0;
-
-        City2 start = cities.get(startCity);
-        City2 goal = cities.get(goalCity);
+    /**
+     * A* search from startCity to goalCity.
+     *
+     * @param frontierMode whether a cheaper path to a queued state updates its entry in place
+     *                     (decrease-key) or queues it again and skips the outdated entry on poll
+     * @return the search result or null if there is no route
+     */
+    public SearchResult aStarSearch(String startCity, String goalCity, double scalingFactor,
+                                    IndexedMinHeap.Mode frontierMode) {
+        return aStarSearch(startCity, goalCity, scalingFactor, new SearchScratch<>(frontierMode));
+    }
 
-        if (start == null || goal == null) {
+    /**
+     * A* search that reuses the frontier, reached table and state list of the given scratch.
+     * Searches on different threads can run concurrently as long as each uses its own scratch
+     * and no network is loaded meanwhile; updateNetwork may run concurrently.
+     *
+     * @return the search result or null if there is no route
+     */
+    public SearchResult aStarSearch(String startCity, String goalCity, double scalingFactor,
+                                    SearchScratch<State2> scratch) {
+        NetworkVersion network = this.network;
+        int startId = network.getGraph().cityId(startCity);
+        int goalId = network.getGraph().cityId(goalCity);
+
+        if (startId == Graph.NONE || goalId == Graph.NONE) {
             System.out.println("Start or goal city not found.");
             return null;
         }
+        SearchOutcome outcome = aStarSearch(network, startId, goalId, scalingFactor, scratch, SearchBudget.unlimited());
+        if (outcome.getStatus() == SearchOutcome.Status.NO_ROUTE) {
+            System.out.println("No solution found.");
+        } else if (outcome.getStatus() == SearchOutcome.Status.CANCELLED) {
+            System.out.println("Search cancelled.");
+        }
+        return outcome.getResult();
+    }
+
+    /**
+     * A* search between the cities nearest to two positions, e.g. the GPS coordinates a client sends.
+     * Both ends are snapped with the {@link SpatialIndex} of the network version the search runs on; the
+     * route starts and ends at the snapped cities.
+     *
+     * @return the search result or null if there is no route or no city at all
+     * @throws IllegalArgumentException if a position is not a valid latitude and longitude
+     */
+    public SearchResult aStarSearch(double startLatitude, double startLongitude, double goalLatitude,
+                                    double goalLongitude, double scalingFactor) {
+        NetworkVersion network = this.network;
+        SpatialIndex spatialIndex = network.getSpatialIndex();
+        int startId = spatialIndex.nearest(startLatitude, startLongitude);
+        int goalId = spatialIndex.nearest(goalLatitude, goalLongitude);
+        if (startId == Graph.NONE || goalId == Graph.NONE) return null;
+        return aStarSearch(network, startId, goalId, scalingFactor, new SearchScratch<>(), SearchBudget.unlimited())
+                .getResult();
+    }
+
+    /**
+     * A* search that stops when the budget runs out or the thread is interrupted, and reports how it
+     * ended instead of printing.
+     *
+     * @throws IllegalArgumentException if a city is not in the network
+     */
+    public SearchOutcome search(String startCity, String goalCity, double scalingFactor, SearchBudget budget) {
+        return search(startCity, goalCity, scalingFactor, budget, new SearchScratch<>());
+    }
+
+    /**
+     * Budgeted A* search on the given scratch, see {@link #search(String, String, double, SearchBudget)}.
+     *
+     * @throws IllegalArgumentException if a city is not in the network
+     */
+    public SearchOutcome search(String startCity, String goalCity, double scalingFactor, SearchBudget budget,
+                                SearchScratch<State2> scratch) {
+        NetworkVersion network = this.network;
+        int[] ids = cityIds(network.getGraph(), Arrays.asList(startCity, goalCity));
+        return aStarSearch(network, ids[0], ids[1], scalingFactor, scratch, budget);
+    }
+
+    private SearchOutcome aStarSearch(NetworkVersion network, int startId, int goalId, double scalingFactor,
+                                      SearchScratch<State2> scratch, SearchBudget budget) {
+        long startNanos = System.nanoTime();
+        Graph graph = network.getGraph();
+        ReachabilityIndex reachability = network.getReachability();
+        scratch.reset();
+        SearchListener listener = searchListener;
+        SearchStats stats = scratch.getStats();
+        stats.reset(listener != null);
+        // Frontier over indices into states, ordered by estimated total cost
+        IndexedMinHeap frontier = scratch.getFrontier();
+        // (city, permits) key -> index into states
+        StateTable reached = scratch.getReached();
+        List<State2> states = scratch.getStates();
+        int maxFrontierSize = 0;
+        int nodesExpanded = 0;
+
+        // Pairs without any route are rejected before the search
+        if (!reachability.isReachable(startId, goalId)) {
+            stats.endPhase(SearchStats.Phase.SETUP);
+            finishSearch(stats, listener, scratch, SearchOutcome.Status.NO_ROUTE, 0, 0);
+            return new SearchOutcome(SearchOutcome.Status.NO_ROUTE, null, 0, 0, 0, System.nanoTime() - startNanos);
+        }
+        // Permits that no reachable road requires are never acquired
+        long usefulPermits = reachability.usefulPermits(startId);
+        DominanceTable dominance = dominancePruning ? scratch.getDominance() : null;
+        if (dominance != null) dominance.reset(graph.cityCount());
+
+        // Heuristic values are computed at most once per city and query
+        HeuristicTable heuristics = scratch.getHeuristics();
+        heuristics.reset(network.getGeo(), heuristicKind, network.getLandmarks(), goalId, scalingFactor);
 
         // Initial State
-        Set<String> initialPermits = new HashSet<>();
+        long initialPermits = 0L;
         double initialCost = 0;
-        List<String> initialPath = new ArrayList<>();
-        initialPath.add(startCity);
         double initialPermitCost = 0;
 
-        double heuristic = scalingFactor * haversineDistance(start, goal);
+        double heuristic = heuristics.get(startId);
         //Option 1: Ohne Genehmigung holen
         State2 initialState = new State2(
-                startCity,
+                startId,
                 initialPermits,
                 initialCost,
                 initialCost + heuristic,
-                initialPath,
-                initialPermitCost,
-                new ArrayList<>() // Initialize permitsAcquired as an empty list
+                null,
+                initialPermitCost
         );
-        frontier.add(initialState);
-        reached.put(generateStateKey(initialState), initialState);
+        addState(initialState, frontier, reached, states, dominance, stats, graph);
 
         // Option 2: Mit Genehmigung holen (falls verfügbar)
-        if (start.getAvailablePermit() != null) {
-            Set<String> permitsWithNew = new HashSet<>(initialPermits);
-            permitsWithNew.add(start.getAvailablePermit());
+        int startPermit = graph.availablePermit(startId);
+        if ((PermitRegistry.mask(startPermit) & usefulPermits) != 0) {
+            long permitsWithNew = initialPermits | PermitRegistry.mask(startPermit);
 
             // Add permit cost to the initial cost
             double costWithPermit = initialCost + permitCost; // Kosten für Genehmigung
 
-            // Initialize the list for tracking permits acquired
-            List<String> permitsAcquiredWithNew = new ArrayList<>();
-
-            // Track the city and the acquired permit as a single entry
-            permitsAcquiredWithNew.add("Acquired permit " + start.getAvailablePermit() + " at " + startCity);  // Permit acquisition detail
-
             // Create a new State2 object reflecting this new state
             State2 stateWithPermit = new State2(
-                    startCity,  // Current city is still the start city
-                    permitsWithNew,  // Updated permit list
+                    startId,  // Current city is still the start city
+                    permitsWithNew,  // Updated permit mask
                     costWithPermit,  // New cost with permit
                     costWithPermit + heuristic,  // Estimate cost with heuristic
-                    initialPath,  // Path is still initialPath for now
-                    permitCost,  // Total cost of permit acquisition
-                    permitsAcquiredWithNew  // The list of all acquired permits
+                    null,  // Start state, the path is just the start city
+                    permitCost  // Total cost of permit acquisition
             );
 
-            frontier.add(stateWithPermit);  // Add state to the frontier
-            reached.put(generateStateKey(stateWithPermit), stateWithPermit);  // Save to reached set
+            addState(stateWithPermit, frontier, reached, states, dominance, stats, graph);
+            stats.permitBranches++;
         }
+        stats.endPhase(SearchStats.Phase.SETUP);
 
 
-
+        SearchOutcome.Status status = SearchOutcome.Status.NO_ROUTE;
         while (!frontier.isEmpty()) {
+            // Budget and cancellation; the clock and the interrupt flag are checked every 64 expansions
+            if (nodesExpanded >= budget.getMaxNodesExpanded() || states.size() >= budget.getMaxStates()) {
+                status = SearchOutcome.Status.BUDGET_EXCEEDED;
+                break;
+            }
+            if ((nodesExpanded & 63) == 0) {
+                if (Thread.currentThread().isInterrupted()) {
+                    status = SearchOutcome.Status.CANCELLED;
+                    break;
+                }
+                if (budget.isTimeUp(startNanos)) {
+                    status = SearchOutcome.Status.BUDGET_EXCEEDED;
+                    break;
+                }
+            }
             maxFrontierSize = Math.max(maxFrontierSize, frontier.size());
-            State2 currentState = frontier.poll();
+            State2 currentState = states.get(frontier.poll());
+            // A state with more permits may have become as cheap after this one was queued
+            if (isDominated(currentState, dominance, stats)) continue;
             nodesExpanded++;
 
             // Goal reached
-            if (currentState.getCurrentCity().equals(goalCity)) {
-                return new SearchResult(
+            if (currentState.getCurrentCity() == goalId) {
+                stats.endPhase(SearchStats.Phase.SEARCH);
+                SearchResult result = new SearchResult(
                         currentState.getCostSoFar(),
                         maxFrontierSize,
                         nodesExpanded,
-                        currentState.getPath(),
+                        buildPath(graph, currentState),
                         currentState.getTotalPermitCost(),
-                        currentState.getPermitsAcquired() // Add permitsAcquired here
-
+                        buildPermitsAcquired(graph, currentState),
+                        suboptimalityBound(network, scalingFactor)
                 );
+                finishSearch(stats, listener, scratch, SearchOutcome.Status.FOUND, maxFrontierSize, nodesExpanded);
+                return new SearchOutcome(SearchOutcome.Status.FOUND, result, nodesExpanded, maxFrontierSize,
+                        stats.statesGenerated, System.nanoTime() - startNanos);
             }
 
             // Generate actions (neighbors)
-            List<Connection2> neighbors = graph.getOrDefault(currentState.getCurrentCity(), new ArrayList<>());
-            for (Connection2 conn : neighbors) {
-                String nextCityName = conn.getCity2();
-                City2 nextCity = cities.get(nextCityName);
-                if (nextCity == null) continue; //unknown city skip
-
+            int currentCity = currentState.getCurrentCity();
+            long currentPermits = currentState.getPermits();
+            for (int edge = graph.firstEdge(currentCity), end = graph.endEdge(currentCity); edge < end; edge++) {
                 // Check if the required permit is available
-                if (conn.getRequiredPermit() != null && !currentState.getPermits().contains(conn.getRequiredPermit())) {
+                long requiredPermit = PermitRegistry.mask(graph.requiredPermit(edge));
+                if ((currentPermits & requiredPermit) != requiredPermit) {
+                    stats.edgesPrunedByPermit++;
                     continue; //cannot drive on this road without permit
                 }
+                int nextCityId = graph.target(edge);
 
                 // Calculate new cost
-                double newCost = currentState.getCostSoFar() + conn.getDistance();
+                double newCost = currentState.getCostSoFar() + graph.distance(edge);
 
-                // Create new path
-                List<String> newPath = new ArrayList<>(currentState.getPath());
-                newPath.add(nextCityName);
                 // Calculate heuristic
-                double h = scalingFactor * haversineDistance(nextCity, goal);
+                double h = heuristics.get(nextCityId);
                 // Option 1: Without obtaining a new permit
-                Set<String> permitsWithoutNew = new HashSet<>(currentState.getPermits());
                 double costWithoutPermit = newCost;
                 double estimatedTotalCostWithoutPermit = costWithoutPermit + h;
                 double totalPermitCostWithoutNew = currentState.getTotalPermitCost();
                 State2 childStateWithoutPermit = new State2(
-                        nextCityName,
-                        permitsWithoutNew,
+                        nextCityId,
+                        currentPermits,
                         costWithoutPermit,
                         estimatedTotalCostWithoutPermit,
-                        newPath,
-                        totalPermitCostWithoutNew,
-                        new ArrayList<>(currentState.getPermitsAcquired()) // Copy parent's permitsAcquired
+                        currentState,
+                        totalPermitCostWithoutNew
                 );
-                String stateKeyWithoutPermit = generateStateKey(childStateWithoutPermit);
-
-                // Check if this state is already in reached
-                if (!reached.containsKey(stateKeyWithoutPermit)) {
-                    reached.put(stateKeyWithoutPermit, childStateWithoutPermit);
-                    frontier.add(childStateWithoutPermit);
-                } else {
-                    State2 existingState = reached.get(stateKeyWithoutPermit);
-                    if (childStateWithoutPermit.getCostSoFar() < existingState.getCostSoFar()) {
-                        frontier.remove(existingState);
-                        reached.put(stateKeyWithoutPermit, childStateWithoutPermit);
-                        frontier.add(childStateWithoutPermit);
-                    }
-                }
+                addState(childStateWithoutPermit, frontier, reached, states, dominance, stats, graph);
 
                 // Option 2: Obtain a new permit (if available and not already obtained)
-                if (nextCity.getAvailablePermit() != null && !currentState.getPermits().contains(nextCity.getAvailablePermit())) {
-                    Set<String> permitsWithNew = new HashSet<>(currentState.getPermits());
-                    permitsWithNew.add(nextCity.getAvailablePermit());
+                long newPermit = PermitRegistry.mask(graph.availablePermit(nextCityId)) & usefulPermits;
+                if (newPermit != 0 && (currentPermits & newPermit) == 0) {
+                    long permitsWithNew = currentPermits | newPermit;
                     double costWithPermit = newCost + permitCost;
                     double estimatedTotalCostWithPermit = costWithPermit + h;
                     double totalPermitCostWithNew = currentState.getTotalPermitCost() + permitCost;
 
-                    // Update permitsAcquired list with city and permit details
-                    List<String> newPermitsAcquired = new ArrayList<>(currentState.getPermitsAcquired());
-                    String permitDetail = "Acquired permit " + nextCity.getAvailablePermit() + " at " + nextCityName;
-                    newPermitsAcquired.add(permitDetail); // Add full detail to the list
-
                     State2 childStateWithPermit = new State2(
-                            nextCityName,
+                            nextCityId,
                             permitsWithNew,
                             costWithPermit,
                             estimatedTotalCostWithPermit,
-                            newPath,
-                            totalPermitCostWithNew,
-                            newPermitsAcquired // Ensure it's correctly passed here
+                            currentState,
+                            totalPermitCostWithNew
                     );
-
-                    String stateKeyWithPermit = generateStateKey(childStateWithPermit);
-
-                    // Check if this state is already in reached
-                    if (!reached.containsKey(stateKeyWithPermit)) {
-                        reached.put(stateKeyWithPermit, childStateWithPermit);
-                        frontier.add(childStateWithPermit);
-                    } else {
-                        State2 existingState = reached.get(stateKeyWithPermit);
-                        if (childStateWithPermit.getCostSoFar() < existingState.getCostSoFar()) {
-                            frontier.remove(existingState);
-                            reached.put(stateKeyWithPermit, childStateWithPermit);
-                            frontier.add(childStateWithPermit);
-                        }
-                    }
+                    addState(childStateWithPermit, frontier, reached, states, dominance, stats, graph);
+                    stats.permitBranches++;
                 }
 
             }
         }
 
-        // No solution found
-        System.out.println("No solution found.");
-        return null;
+        // No solution found, or the search was stopped
+        stats.endPhase(SearchStats.Phase.SEARCH);
+        finishSearch(stats, listener, scratch, status, maxFrontierSize, nodesExpanded);
+        return new SearchOutcome(status, null, nodesExpanded, maxFrontierSize, stats.statesGenerated,
+                System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Completes the counters of a search and passes them to the listener, if there is one.
+     */
+    private static void finishSearch(SearchStats stats, SearchListener listener, SearchScratch<State2> scratch,
+                                     SearchOutcome.Status status, int maxFrontierSize, int nodesExpanded) {
+        stats.endPhase(SearchStats.Phase.PATH);
+        stats.status = status;
+        stats.maxFrontierSize = maxFrontierSize;
+        stats.nodesExpanded = nodesExpanded;
+        stats.heuristicEvaluations = scratch.getHeuristics().getEvaluations();
+        if (listener != null) listener.searchFinished(stats);
+    }
+
+    /**
+     * Enables dominance pruning in aStarSearch and search: a state is neither queued nor expanded while
+     * another state in the same city holds more permits at no higher cost, see {@link DominanceTable}.
+     * Routes stay optimal; the pruning saves expansions when permits are cheap compared to the detours
+     * they open, and costs a walk over the labels of a city per generated state.
+     */
+    public void setDominancePruning(boolean enabled) { this.dominancePruning = enabled; }
+
+    public boolean isDominancePruning() { return dominancePruning; }
+
+    /**
+     * Sets the listener that receives the {@link SearchStats} of every aStarSearch, e.g. a
+     * {@link SearchMetrics}; null disables it. Without a listener the phases are not timed.
+     */
+    public void setSearchListener(SearchListener listener) { this.searchListener = listener; }
+
+    /**
+     * Bidirectional A* from startCity to goalCity, see {@link BidirectionalSearch}. Returns an optimal
+     * route, also without landmarks, where {@code aStarSearch(startCity, goalCity, 1.0)} may not.
+     *
+     * @return the search result or null if there is no route
+     * @throws IllegalArgumentException if a city is not in the network
+     */
+    public SearchResult bidirectionalSearch(String startCity, String goalCity) {
+        NetworkVersion network = this.network;
+        int[] ids = cityIds(network.getGraph(), Arrays.asList(startCity, goalCity));
+        if (!network.getReachability().isReachable(ids[0], ids[1])) return null;
+        return bidirectionalSearches.get().search(network, heuristicKind, permitCost, ids[0], ids[1]);
+    }
+
+    /**
+     * A* on fixed-point costs with a radix heap, see {@link IntegerSearch}. Road costs are rounded up to
+     * whole units, so the route is optimal up to one unit per road; its reported cost is exact.
+     *
+     * @param unitsPerKm fixed-point units per km, e.g. {@link IntegerSearch#MILLIMETRES_PER_KM}
+     * @return the route or null if there is no route
+     * @throws IllegalArgumentException if a city is not in the network
+     */
+    public SearchResult fixedPointSearch(String startCity, String goalCity, double unitsPerKm) {
+        NetworkVersion network = this.network;
+        Graph graph = network.getGraph();
+        ReachabilityIndex reachability = network.getReachability();
+        int[] ids = cityIds(graph, Arrays.asList(startCity, goalCity));
+        if (!reachability.isReachable(ids[0], ids[1])) return null;
+        IntegerSearch.Costs costs = fixedPointCosts;
+        if (costs == null || costs.getGraph() != graph || costs.getUnitsPerDistance() != unitsPerKm) {
+            costs = new IntegerSearch.Costs(graph, unitsPerKm);
+            fixedPointCosts = costs;
+        }
+        return integerSearches.get().search(costs, permitCost, network, heuristicKind, ids[0], ids[1],
+                reachability.usefulPermits(ids[0]));
+    }
+
+    /**
+     * Hash-distributed A* from startCity to goalCity on the given number of threads, see
+     * {@link ParallelSearch}. Returns an optimal route, also without landmarks; among equally short ones it
+     * may differ from run to run. The first worker runs on the calling thread, the others on threads the
+     * planner keeps for later queries.
+     *
+     * @param threads number of worker threads, 1 to search on the calling thread only
+     * @return the route or null if there is no route
+     * @throws IllegalArgumentException if a city is not in the network or threads is below 1
+     */
+    public SearchResult parallelSearch(String startCity, String goalCity, int threads) throws InterruptedException {
+        NetworkVersion network = this.network;
+        ReachabilityIndex reachability = network.getReachability();
+        int[] ids = cityIds(network.getGraph(), Arrays.asList(startCity, goalCity));
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        if (!reachability.isReachable(ids[0], ids[1])) return null;
+        return new ParallelSearch(network, heuristicKind, permitCost, threads, parallelSearchWorkers)
+                .search(ids[0], ids[1], reachability.usefulPermits(ids[0]));
     }
 
+    /**
+     * Pareto front of the routes from startCity to goalCity over distance and permit spend, see
+     * {@link ParetoSearch}: the shortest route first, then ever longer routes that spend less on permits,
+     * down to the cheapest route in permits.
+     *
+     * @return the routes by ascending distance, empty if there is no route
+     * @throws IllegalArgumentException if a city is not in the network
+     */
+    public List<SearchResult> paretoSearch(String startCity, String goalCity) {
+        NetworkVersion network = this.network;
+        ReachabilityIndex reachability = network.getReachability();
+        int[] ids = cityIds(network.getGraph(), Arrays.asList(startCity, goalCity));
+        if (!reachability.isReachable(ids[0], ids[1])) return new ArrayList<>();
+        return new ParetoSearch(network.getGraph(), network.getGeo(), heuristicKind, network.getLandmarks(), permitCost)
+                .search(ids[0], ids[1], reachability.usefulPermits(ids[0]));
+    }
+
+    /**
+     * Starts a D* Lite session for a vehicle driving from startCity to goalCity on the current network,
+     * see {@link ReplanningSession}. The session is told about moves with {@link ReplanningSession#moveTo}
+     * and about changes with {@link ReplanningSession#update}, and repairs its route incrementally.
+     *
+     * @throws IllegalArgumentException if a city is not in the network
+     */
+    public ReplanningSession startReplanning(String startCity, String goalCity) {
+        NetworkVersion network = this.network;
+        int[] ids = cityIds(network.getGraph(), Arrays.asList(startCity, goalCity));
+        return new ReplanningSession(network, ids[0], ids[1], heuristicKind, permitCost);
+    }
+
+    /**
+     * Anytime search from startCity to goalCity, see {@link AnytimeSearch}: a weighted A* route comes first
+     * and is improved with lower weights until its proven bound is at most targetBound or the time budget
+     * is used up. {@link SearchResult#getSuboptimalityBound()} reports the bound of the returned route.
+     *
+     * @param initialWeight heuristic weight of the first iteration, e.g. 2.5
+     * @param targetBound   1 to continue until the route is optimal
+     * @param budgetNanos   time from now after which the best route so far is returned
+     * @param onImprovement receives every better route as soon as it is found, or null
+     * @return the best route found, or null if there is no route or none was found within the budget
+     * @throws IllegalArgumentException if a city is not in the network, or initialWeight or targetBound is
+     *                                  below 1
+     */
+    public SearchResult anytimeSearch(String startCity, String goalCity, double initialWeight, double targetBound,
+                                      long budgetNanos, Consumer<SearchResult> onImprovement) {
+        long deadline = System.nanoTime() + budgetNanos;
+        NetworkVersion network = this.network;
+        Graph graph = network.getGraph();
+        int[] ids = cityIds(graph, Arrays.asList(startCity, goalCity));
+        AnytimeSearch.checkBounds(initialWeight, targetBound);
+        if (!network.getReachability().isReachable(ids[0], ids[1])) return null;
+        return new AnytimeSearch(graph, network.getGeo(), heuristicKind, network.getLandmarks(), permitCost)
+                .search(ids[0], ids[1], initialWeight, targetBound, deadline, onImprovement);
+    }
+
+    /**
+     * Contracts the current network, see {@link ContractionHierarchy}. The hierarchy is kept until
+     * another network is loaded or updated.
+     */
+    public ContractionHierarchy buildContractionHierarchy() {
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(network.getGraph());
+        contractionHierarchy = hierarchy;
+        return hierarchy;
+    }
 
-    private String generateStateKey(State2 state) {
-        List<String> sortedPermits = new ArrayList<>(state.getPermits());
-        Collections.sort(sortedPermits);
-        return state.getCurrentCity() + "|" + String.join(",", sortedPermits);
+    /** Returns the contraction hierarchy, or null if it has not been built for the current network. */
+    public ContractionHierarchy getContractionHierarchy() {
+        ContractionHierarchy hierarchy = contractionHierarchy;
+        return hierarchy != null && hierarchy.getGraph() == network.getGraph() ? hierarchy : null;
+    }
+
+    /**
+     * Query on the contraction hierarchy from startCity to goalCity. Returns an optimal route, also without
+     * landmarks, where {@code aStarSearch(startCity, goalCity, 1.0)} may not.
+     *
+     * @return the search result or null if there is no route
+     * @throws IllegalArgumentException if a city is not in the network
+     * @throws IllegalStateException    if buildContractionHierarchy was not called for the current network
+     */
+    public SearchResult contractionHierarchySearch(String startCity, String goalCity) {
+        NetworkVersion network = this.network;
+        Graph graph = network.getGraph();
+        ContractionHierarchy hierarchy = contractionHierarchy;
+        if (hierarchy == null || hierarchy.getGraph() != graph) {
+            throw new IllegalStateException("Contraction hierarchy not built");
+        }
+        int[] ids = cityIds(graph, Arrays.asList(startCity, goalCity));
+        if (!network.getReachability().isReachable(ids[0], ids[1])) return null;
+        return hierarchyQueries.get().search(hierarchy, network, heuristicKind, permitCost, ids[0], ids[1]);
+    }
+
+    /**
+     * Optimal costs from every source to every target city, one permit-aware Dijkstra per source on all
+     * available processors. See {@link DistanceMatrix}.
+     *
+     * @param keepPaths whether the routes can be rebuilt with {@link DistanceMatrix#getResult}
+     * @throws IllegalArgumentException if a city is not in the network
+     */
+    public DistanceMatrix distanceMatrix(List<String> sources, List<String> targets, boolean keepPaths)
+            throws InterruptedException {
+        NetworkVersion network = this.network;
+        Graph graph = network.getGraph();
+        return DistanceMatrix.compute(graph, network.getReachability(), permitCost, cityIds(graph, sources),
+                cityIds(graph, targets), keepPaths, Runtime.getRuntime().availableProcessors());
+    }
+
+    private static int[] cityIds(Graph graph, List<String> names) {
+        int[] ids = new int[names.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = graph.cityId(names.get(i));
+            if (ids[i] == Graph.NONE) throw new IllegalArgumentException("Unknown city: " + names.get(i));
+        }
+        return ids;
+    }
+
+    /**
+     * Rebuilds the path to the state by following the parent pointers.
+     */
+    private static List<String> buildPath(Graph graph, State2 state) {
+        List<String> path = new ArrayList<>();
+        for (State2 s = state; s != null; s = s.getParent()) {
+            path.add(graph.cityName(s.getCurrentCity()));
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Rebuilds the "Acquired permit X at Y" list: a permit was acquired wherever a state holds
+     * more permits than its parent (or than the empty set for a start state).
+     */
+    private static List<String> buildPermitsAcquired(Graph graph, State2 state) {
+        List<String> permitsAcquired = new ArrayList<>();
+        for (State2 s = state; s != null; s = s.getParent()) {
+            long previousPermits = s.getParent() == null ? 0L : s.getParent().getPermits();
+            for (String permit : graph.permits().names(s.getPermits() & ~previousPermits)) {
+                permitsAcquired.add("Acquired permit " + permit + " at " + graph.cityName(s.getCurrentCity()));
+            }
+        }
+        Collections.reverse(permitsAcquired);
+        return permitsAcquired;
+    }
+
+    /**
+     * Adds the state to the frontier unless the same (city, permits) state was already reached
+     * with lower or equal cost. A cheaper state replaces the reached one.
+     */
+    private void addState(State2 state, IndexedMinHeap frontier, StateTable reached, List<State2> states,
+                          DominanceTable dominance, SearchStats stats, Graph graph) {
+        stats.statesGenerated++;
+        long key = graph.stateKey(state.getCurrentCity(), state.getPermits());
+        int index = reached.get(key);
+        if (index == StateTable.ABSENT) {
+            if (isDominated(state, dominance, stats)) return;
+            index = states.size();
+            if (dominance != null) dominance.add(index, state.getCurrentCity(), state.getPermits(), state.getCostSoFar());
+            reached.put(key, index);
+            states.add(state);
+            frontier.push(index, state.getEstimatedTotalCost());
+        } else {
+            State2 existingState = states.get(index);
+            if (state.getCostSoFar() < existingState.getCostSoFar()) {
+                if (isDominated(state, dominance, stats)) return;
+                if (dominance != null) dominance.update(index, state.getCostSoFar());
+                // Same heuristic, lower cost: the key can only decrease
+                states.set(index, state);
+                frontier.push(index, state.getEstimatedTotalCost());
+                stats.reopenedStates++;
+            } else {
+                stats.duplicateStates++;
+            }
+        }
+    }
+
+    /**
+     * Bound on the cost of an aStarSearch route relative to the optimum. With landmarks the heuristic is
+     * admissible, so it is the scaling factor, as for weighted A*. Without, the plain geographic distance
+     * can exceed the remaining distance by up to the inverse of the admissible scale, which enters the bound.
+     */
+    private static double suboptimalityBound(NetworkVersion network, double scalingFactor) {
+        double weight = network.getLandmarks() != null ? scalingFactor
+                : scalingFactor / network.getGeo().getAdmissibleScale();
+        return Math.max(1.0, weight);
+    }
+
+    /** Dominance check of a state about to be queued or expanded; false if pruning is disabled. */
+    private static boolean isDominated(State2 state, DominanceTable dominance, SearchStats stats) {
+        if (dominance == null || !dominance.isDominated(state.getCurrentCity(), state.getPermits(), state.getCostSoFar())) {
+            return false;
+        }
+        stats.dominatedStates++;
+        return true;
     }
 
     private static void runTestCases1(RoutePlanner2 planner, List<TestCase> testCases, double scalingFactor) {
@@ -345,32 +887,18 @@ public class RoutePlanner2 {
         }
     }
     private static void runTestCases2(RoutePlanner2 planner, List<TestCase> testCases, double scalingFactor) {
-        // Statistics variables
-        double totalOptimalCost = 0;
-        double totalMaxFrontierSize = 0;
-        double totalNodesExpanded = 0;
-        int successfulCases = 0;
-
-        for (TestCase testCase : testCases) {
-            SearchResult result = planner.aStarSearch(testCase.getStartCity(), testCase.getGoalCity(), scalingFactor); // Pass scaling factor here
-
-            if (result != null) {
-                totalOptimalCost += result.getOptimalCost();
-                totalMaxFrontierSize += result.getMaxFrontierSize();
-                totalNodesExpanded += result.getNodesExpanded();
-                successfulCases++;
-            }
+        BatchResult batch;
+        try (BatchQueryEngine engine = new BatchQueryEngine(planner, Runtime.getRuntime().availableProcessors())) {
+            batch = engine.run(testCases, scalingFactor);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
         }
 
-        if (successfulCases > 0) {
-            double avgOptimalCost = totalOptimalCost / successfulCases;
-            double avgMaxFrontierSize = totalMaxFrontierSize / successfulCases;
-            double avgNodesExpanded = totalNodesExpanded / successfulCases;
-
-            System.out.printf("Average Optimal Cost: %.2f\n", avgOptimalCost);
-            System.out.printf("Average Max Frontier Size: %.2f\n", avgMaxFrontierSize);
-            System.out.printf("Average Nodes Expanded: %.2f\n", avgNodesExpanded);
-        }
+        System.out.printf("Throughput: %.1f queries/s\n", batch.getThroughput());
+        System.out.printf("Latency p50/p90/p99/max: %.3f / %.3f / %.3f / %.3f ms\n",
+                batch.getLatencyPercentileMillis(50), batch.getLatencyPercentileMillis(90),
+                batch.getLatencyPercentileMillis(99), batch.getLatencyPercentileMillis(100));
     }
 
     public static void main(String[] args) {
@@ -402,6 +930,11 @@ public class RoutePlanner2 {
             // Scaled heuristic (scaling factor = 1.4515)
             System.out.println("Results with Scaled Heuristic (Scaling Factor = 1.4515):");
             runTestCases2(planner, testCases, 1.4515); // Pass scaling factor as 1.4515
+            System.out.println("\n");
+            // ALT heuristic (optimal, landmark bound combined with haversine)
+            planner.useLandmarks(16, LandmarkIndex.Selection.FARTHEST);
+            System.out.println("Results with ALT Heuristic (" + planner.getLandmarks() + "):");
+            runTestCases2(planner, testCases, 1.0);
 
         } catch (IOException e) {
             System.out.println("Error reading files: " + e.getMessage());
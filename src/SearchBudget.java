@@ -0,0 +1,54 @@
+/**
+ * Limits of one search: a time budget, a maximum number of expanded nodes and a maximum number of
+ * generated states (which bounds the memory of the reached table and the state list). The search also
+ * stops when its thread is interrupted. Budgets are immutable; the {@code with...} methods return copies.
+ */
+public class SearchBudget {
+    private static final SearchBudget UNLIMITED = new SearchBudget(Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    private final long timeNanos;
+    private final int maxNodesExpanded;
+    private final int maxStates;
+
+    private SearchBudget(long timeNanos, int maxNodesExpanded, int maxStates) {
+        this.timeNanos = timeNanos;
+        this.maxNodesExpanded = maxNodesExpanded;
+        this.maxStates = maxStates;
+    }
+
+    /** No limits; the search only stops early when its thread is interrupted. */
+    public static SearchBudget unlimited() { return UNLIMITED; }
+
+    /** Time from the start of the search after which it gives up. */
+    public SearchBudget withTimeNanos(long timeNanos) {
+        if (timeNanos < 0) throw new IllegalArgumentException("time budget must not be negative: " + timeNanos);
+        return new SearchBudget(timeNanos, maxNodesExpanded, maxStates);
+    }
+
+    public SearchBudget withMaxNodesExpanded(int maxNodesExpanded) {
+        if (maxNodesExpanded < 1) throw new IllegalArgumentException("maxNodesExpanded must be at least 1: " + maxNodesExpanded);
+        return new SearchBudget(timeNanos, maxNodesExpanded, maxStates);
+    }
+
+    public SearchBudget withMaxStates(int maxStates) {
+        if (maxStates < 1) throw new IllegalArgumentException("maxStates must be at least 1: " + maxStates);
+        return new SearchBudget(timeNanos, maxNodesExpanded, maxStates);
+    }
+
+    public long getTimeNanos() { return timeNanos; }
+    public int getMaxNodesExpanded() { return maxNodesExpanded; }
+    public int getMaxStates() { return maxStates; }
+
+    /** True if the time budget of a search started at {@code startNanos} ({@link System#nanoTime}) is used up. */
+    boolean isTimeUp(long startNanos) {
+        return timeNanos != Long.MAX_VALUE && System.nanoTime() - startNanos >= timeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("time %s, nodes %s, states %s",
+                timeNanos == Long.MAX_VALUE ? "unlimited" : String.format("%.3f ms", timeNanos / 1e6),
+                maxNodesExpanded == Integer.MAX_VALUE ? "unlimited" : String.valueOf(maxNodesExpanded),
+                maxStates == Integer.MAX_VALUE ? "unlimited" : String.valueOf(maxStates));
+    }
+}
@@ -0,0 +1,9 @@
+/**
+ * Receives the {@link SearchStats} of every {@code aStarSearch} of a planner, see
+ * {@link RoutePlanner#setSearchListener} and {@link RoutePlanner2#setSearchListener}. It is called on the
+ * searching thread, so a listener shared by concurrent searches has to be thread-safe.
+ */
+public interface SearchListener {
+    /** Called once per search, after the result was built; the stats are only valid during the call. */
+    void searchFinished(SearchStats stats);
+}
@@ -0,0 +1,63 @@
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * {@link SearchListener} that records every {@link SearchStats.Metric} of each search in a
+ * {@link Histogram}, for capacity planning across many queries. Thread-safe; concurrent searches, e.g. of a
+ * {@link BatchQueryEngine}, serialize on one short lock per search.
+ */
+public class SearchMetrics implements SearchListener {
+    private final Map<SearchStats.Metric, Histogram> histograms = new EnumMap<>(SearchStats.Metric.class);
+    private final long[] outcomes = new long[SearchOutcome.Status.values().length];
+    private long searches = 0;
+
+    public SearchMetrics() {
+        for (SearchStats.Metric metric : SearchStats.Metric.values()) {
+            histograms.put(metric, new Histogram());
+        }
+    }
+
+    @Override
+    public synchronized void searchFinished(SearchStats stats) {
+        for (Map.Entry<SearchStats.Metric, Histogram> entry : histograms.entrySet()) {
+            entry.getValue().record(stats.get(entry.getKey()));
+        }
+        searches++;
+        outcomes[stats.getStatus().ordinal()]++;
+    }
+
+    public synchronized long getSearches() { return searches; }
+    public synchronized long getRoutesFound() { return getCount(SearchOutcome.Status.FOUND); }
+
+    /** Number of searches that ended with the status. */
+    public synchronized long getCount(SearchOutcome.Status status) { return outcomes[status.ordinal()]; }
+
+    /** Returns a copy of the histogram of the metric. */
+    public synchronized Histogram getHistogram(SearchStats.Metric metric) {
+        Histogram copy = new Histogram();
+        copy.add(histograms.get(metric));
+        return copy;
+    }
+
+    public synchronized void clear() {
+        for (Histogram histogram : histograms.values()) histogram.clear();
+        Arrays.fill(outcomes, 0);
+        searches = 0;
+    }
+
+    /** One line per metric with count, mean, percentiles and maximum. */
+    @Override
+    public synchronized String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(searches).append(" searches");
+        for (SearchOutcome.Status status : SearchOutcome.Status.values()) {
+            text.append(", ").append(outcomes[status.ordinal()]).append(' ').append(status);
+        }
+        text.append('\n');
+        for (Map.Entry<SearchStats.Metric, Histogram> entry : histograms.entrySet()) {
+            text.append(String.format("%-22s %s%n", entry.getKey(), entry.getValue()));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * How a budgeted search ended, with the route if one was found and the statistics gathered up to the
+ * end, also for searches that were stopped early.
+ */
+public class SearchOutcome {
+    public enum Status {
+        /** An optimal route (within the scaling factor) was found. */
+        FOUND,
+        /** The whole reachable state space was searched without reaching the goal. */
+        NO_ROUTE,
+        /** The time, node or state budget ran out first. */
+        BUDGET_EXCEEDED,
+        /** The searching thread was interrupted. */
+        CANCELLED
+    }
+
+    private final Status status;
+    private final SearchResult result;
+    private final int nodesExpanded;
+    private final int maxFrontierSize;
+    private final int statesGenerated;
+    private final long elapsedNanos;
+
+    public SearchOutcome(Status status, SearchResult result, int nodesExpanded, int maxFrontierSize,
+                         int statesGenerated, long elapsedNanos) {
+        this.status = status;
+        this.result = result;
+        this.nodesExpanded = nodesExpanded;
+        this.maxFrontierSize = maxFrontierSize;
+        this.statesGenerated = statesGenerated;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public Status getStatus() { return status; }
+    public boolean isFound() { return status == Status.FOUND; }
+
+    /** The route, or null unless the status is {@link Status#FOUND}. */
+    public SearchResult getResult() { return result; }
+
+    public int getNodesExpanded() { return nodesExpanded; }
+    public int getMaxFrontierSize() { return maxFrontierSize; }
+    public int getStatesGenerated() { return statesGenerated; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    @Override
+    public String toString() {
+        return String.format("%s after %d expanded nodes, %d states, %.3f ms", status, nodesExpanded,
+                statesGenerated, elapsedNanos / 1e6);
+    }
+}
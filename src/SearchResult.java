@@ -8,14 +8,20 @@ public class SearchResult {
     private List<String> path;
     private double totalPermitCost;
     List<String> permitsAcquired;
+    private double suboptimalityBound; // optimalCost is at most this factor times the optimum
 
     public SearchResult(double optimalCost, int maxFrontierSize, int nodesExpanded, List<String> path, double totalPermitCost, List<String> permitsAcquired) {
+        this(optimalCost, maxFrontierSize, nodesExpanded, path, totalPermitCost, permitsAcquired, 1.0);
+    }
+
+    public SearchResult(double optimalCost, int maxFrontierSize, int nodesExpanded, List<String> path, double totalPermitCost, List<String> permitsAcquired, double suboptimalityBound) {
         this.optimalCost = optimalCost;
         this.maxFrontierSize = maxFrontierSize;
         this.nodesExpanded = nodesExpanded;
         this.path = new ArrayList<>(path);
         this.totalPermitCost = totalPermitCost;
         this.permitsAcquired = permitsAcquired; // Initialize
+        this.suboptimalityBound = suboptimalityBound;
     }
 
     public double getOptimalCost() { return optimalCost; }
@@ -26,4 +32,10 @@ public class SearchResult {
     public List<String> getPermitsAcquired() {
         return permitsAcquired;
     }
+
+    /**
+     * Proven factor by which the cost may exceed the optimum: 1 for an optimal route, the scaling factor
+     * for a scaled-heuristic search, and the bound reached so far for an anytime search.
+     */
+    public double getSuboptimalityBound() { return suboptimalityBound; }
 }
@@ -0,0 +1,41 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Working memory of one search: frontier, reached table, the list of generated states, the
+ * heuristic memo, the dominance labels and the search counters. Passing the
+ * same scratch to consecutive searches reuses the grown arrays instead of allocating them per query.
+ * A scratch must only be used by one search at a time.
+ *
+ * @param <S> the state type of the planner ({@link State} or {@link State2})
+ */
+public class SearchScratch<S> {
+    private final IndexedMinHeap frontier;
+    private final StateTable reached = new StateTable();
+    private final List<S> states = new ArrayList<>();
+    private final HeuristicTable heuristics = new HeuristicTable();
+    private final DominanceTable dominance = new DominanceTable(); // reset by the search if it prunes
+    private final SearchStats stats = new SearchStats();
+
+    public SearchScratch() {
+        this(IndexedMinHeap.Mode.DECREASE_KEY);
+    }
+
+    public SearchScratch(IndexedMinHeap.Mode frontierMode) {
+        this.frontier = new IndexedMinHeap(frontierMode, 4);
+    }
+
+    /** Empties all structures for the next search. */
+    public void reset() {
+        frontier.clear();
+        reached.clear();
+        states.clear();
+    }
+
+    public IndexedMinHeap getFrontier() { return frontier; }
+    public StateTable getReached() { return reached; }
+    public List<S> getStates() { return states; }
+    public HeuristicTable getHeuristics() { return heuristics; }
+    public DominanceTable getDominance() { return dominance; }
+    public SearchStats getStats() { return stats; }
+}
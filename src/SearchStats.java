@@ -0,0 +1,138 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Counters and phase times of one {@code aStarSearch} of {@link RoutePlanner} or {@link RoutePlanner2}.
+ * The search increments the counters in its {@link SearchScratch} and hands the object to the planner's
+ * {@link SearchListener} when it is done. The phases are only timed while a listener is set, so a planner
+ * without listener pays a few field increments per state and no clock reads.
+ * <p>
+ * The object is reused by the next search on the same scratch; a listener that keeps values has to
+ * copy them.
+ */
+public class SearchStats {
+    /** Parts of a search that are timed separately. */
+    public enum Phase {
+        /** Resolving the cities, preparing the heuristic and queuing the start states. */
+        SETUP,
+        /** The main loop up to the goal, an empty frontier or the end of the budget. */
+        SEARCH,
+        /** Rebuilding the path and the result. */
+        PATH
+    }
+
+    /** Everything a {@link SearchMetrics} can aggregate. */
+    public enum Metric {
+        STATES_GENERATED, DUPLICATE_STATES, REOPENED_STATES, DOMINATED_STATES, PERMIT_BRANCHES, EDGES_PRUNED_BY_PERMIT,
+        HEURISTIC_EVALUATIONS, NODES_EXPANDED, MAX_FRONTIER_SIZE,
+        SETUP_WALL_NANOS, SEARCH_WALL_NANOS, PATH_WALL_NANOS,
+        SETUP_CPU_NANOS, SEARCH_CPU_NANOS, PATH_CPU_NANOS
+    }
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported();
+
+    int statesGenerated;     // states created from an expansion or as start states
+    int duplicateStates;     // generated states dropped because the (city, permits) state was reached as cheap
+    int reopenedStates;      // generated states that replaced a reached state with a higher cost
+    int dominatedStates;     // states dropped or not expanded because a state with more permits was as cheap
+    int permitBranches;      // generated states that acquire a permit
+    int edgesPrunedByPermit; // roads skipped because a required permit was missing
+    int heuristicEvaluations;
+    int nodesExpanded;
+    int maxFrontierSize;
+    SearchOutcome.Status status = SearchOutcome.Status.NO_ROUTE;
+
+    private boolean timed;
+    private long wallMark;
+    private long cpuMark;
+    private final long[] wallNanos = new long[Phase.values().length];
+    private final long[] cpuNanos = new long[Phase.values().length];
+
+    /**
+     * Clears the counters for the next search.
+     *
+     * @param timed whether the phases are timed, i.e. whether a listener will see the result
+     */
+    void reset(boolean timed) {
+        statesGenerated = 0;
+        duplicateStates = 0;
+        reopenedStates = 0;
+        dominatedStates = 0;
+        permitBranches = 0;
+        edgesPrunedByPermit = 0;
+        heuristicEvaluations = 0;
+        nodesExpanded = 0;
+        maxFrontierSize = 0;
+        status = SearchOutcome.Status.NO_ROUTE;
+        this.timed = timed;
+        if (timed) {
+            Arrays.fill(wallNanos, 0);
+            Arrays.fill(cpuNanos, 0);
+            wallMark = System.nanoTime();
+            cpuMark = cpuTime();
+        }
+    }
+
+    /** Books the time since the end of the previous phase (or the reset) on the phase. */
+    void endPhase(Phase phase) {
+        if (!timed) return;
+        long wall = System.nanoTime();
+        long cpu = cpuTime();
+        wallNanos[phase.ordinal()] += wall - wallMark;
+        cpuNanos[phase.ordinal()] += cpu - cpuMark;
+        wallMark = wall;
+        cpuMark = cpu;
+    }
+
+    private static long cpuTime() {
+        return CPU_TIME ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    public int getStatesGenerated() { return statesGenerated; }
+    public int getDuplicateStates() { return duplicateStates; }
+    public int getReopenedStates() { return reopenedStates; }
+    /** Always 0 unless the planner's dominance pruning is enabled. */
+    public int getDominatedStates() { return dominatedStates; }
+    public int getPermitBranches() { return permitBranches; }
+    public int getEdgesPrunedByPermit() { return edgesPrunedByPermit; }
+    /** Heuristic values computed; RoutePlanner reads a stored value per generated state. */
+    public int getHeuristicEvaluations() { return heuristicEvaluations; }
+    public int getNodesExpanded() { return nodesExpanded; }
+    public int getMaxFrontierSize() { return maxFrontierSize; }
+    public SearchOutcome.Status getStatus() { return status; }
+    public boolean isFound() { return status == SearchOutcome.Status.FOUND; }
+    public long getWallNanos(Phase phase) { return wallNanos[phase.ordinal()]; }
+    /** CPU time of the searching thread, 0 if the JVM cannot measure it. */
+    public long getCpuNanos(Phase phase) { return cpuNanos[phase.ordinal()]; }
+
+    public long get(Metric metric) {
+        switch (metric) {
+            case STATES_GENERATED: return statesGenerated;
+            case DUPLICATE_STATES: return duplicateStates;
+            case REOPENED_STATES: return reopenedStates;
+            case DOMINATED_STATES: return dominatedStates;
+            case PERMIT_BRANCHES: return permitBranches;
+            case EDGES_PRUNED_BY_PERMIT: return edgesPrunedByPermit;
+            case HEURISTIC_EVALUATIONS: return heuristicEvaluations;
+            case NODES_EXPANDED: return nodesExpanded;
+            case MAX_FRONTIER_SIZE: return maxFrontierSize;
+            case SETUP_WALL_NANOS: return getWallNanos(Phase.SETUP);
+            case SEARCH_WALL_NANOS: return getWallNanos(Phase.SEARCH);
+            case PATH_WALL_NANOS: return getWallNanos(Phase.PATH);
+            case SETUP_CPU_NANOS: return getCpuNanos(Phase.SETUP);
+            case SEARCH_CPU_NANOS: return getCpuNanos(Phase.SEARCH);
+            case PATH_CPU_NANOS: return getCpuNanos(Phase.PATH);
+            default: throw new IllegalArgumentException("Unknown metric: " + metric);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d generated, %d duplicate, %d reopened, %d dominated, %d permit branches, "
+                        + "%d pruned roads, %d heuristic evaluations, %d expanded, setup/search/path %.3f/%.3f/%.3f ms",
+                statesGenerated, duplicateStates, reopenedStates, dominatedStates, permitBranches, edgesPrunedByPermit,
+                heuristicEvaluations, nodesExpanded, wallNanos[0] / 1e6, wallNanos[1] / 1e6, wallNanos[2] / 1e6);
+    }
+}
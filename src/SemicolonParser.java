@@ -0,0 +1,269 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Byte-level reader for the semicolon separated cities, connections and test case files.
+ * <p>
+ * The file is read through a channel in blocks into one reused byte array and scanned once per line,
+ * without creating line or field Strings: names are resolved through a {@link NameInterner}, numbers
+ * are parsed from the bytes. Reading blocks into an array turned out faster than reading a mapped
+ * buffer byte by byte, and keeps memory flat for any file size. Fields are trimmed like
+ * {@link String#trim()}, blank lines are skipped and lines may end with "\n" or "\r\n". Errors carry the
+ * file name and line number, e.g. {@code bigGraph_connections.txt:17: field 3: not a number: "12,5"}.
+ * <p>
+ * Typical use:
+ * <pre>
+ * try (SemicolonParser parser = SemicolonParser.open(filename)) {
+ *     parser.nextLine(); // header
+ *     while (parser.nextLine()) {
+ *         parser.requireFields(2, "start;goal");
+ *         int start = parser.nameField(names);
+ *         ...
+ *     }
+ * }
+ * </pre>
+ */
+public class SemicolonParser implements Closeable {
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    // exact powers of ten: a mantissa below 2^53 times or divided by one of them is correctly rounded
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final ReadableByteChannel channel;
+    private final String source;
+    private byte[] data = new byte[BLOCK_SIZE];
+    private int limit;       // end of the valid bytes in data
+    private boolean endOfInput;
+    private boolean started;
+    private int next;        // start of the next line
+    private int lineEnd;     // end of the current line, without the line break
+    private int lineNumber;  // 1-based number of the current line
+    private int fieldCount;  // fields on the current line
+    private int lineStart;   // start of the current line
+    private int[] separators = new int[8]; // positions of the semicolons on the current line, from lineStart
+    private int fieldNumber; // 1-based number of the last field read
+
+    // the last field read, trimmed
+    private int start;
+    private int end;
+
+    /**
+     * @param source file name used in error messages
+     */
+    public SemicolonParser(ReadableByteChannel channel, String source) {
+        this.channel = channel;
+        this.source = source;
+    }
+
+    /** Opens the file; close the parser when done. */
+    public static SemicolonParser open(String filename) throws IOException {
+        Path path = Paths.get(filename);
+        return new SemicolonParser(FileChannel.open(path, StandardOpenOption.READ), String.valueOf(path.getFileName()));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Moves to the next line that is not blank.
+     *
+     * @return false at the end of the file
+     */
+    public boolean nextLine() throws IOException {
+        if (!started) {
+            started = true;
+            fill();
+            if (limit >= 3 && data[0] == (byte) 0xEF && data[1] == (byte) 0xBB && data[2] == (byte) 0xBF) {
+                next = 3; // UTF-8 byte order mark
+            }
+        }
+        while (true) {
+            int lineStart = next;
+            int i = lineStart;
+            int semicolons = 0;
+            while (true) {
+                byte[] bytes = data;
+                int n = limit;
+                for (; i < n; i++) {
+                    byte b = bytes[i];
+                    if (b == '\n') break;
+                    if (b == ';') {
+                        if (semicolons == separators.length) separators = Arrays.copyOf(separators, semicolons * 2);
+                        separators[semicolons++] = i - lineStart;
+                    }
+                }
+                if (i < limit || endOfInput) break;
+                // the line continues beyond the block: move it to the front and read more
+                int shift = lineStart;
+                System.arraycopy(data, shift, data, 0, limit - shift);
+                limit -= shift;
+                i -= shift;
+                lineStart = 0;
+                fill();
+            }
+            if (lineStart == limit) {
+                next = limit;
+                return false; // end of input
+            }
+            this.lineStart = lineStart;
+            lineEnd = i;
+            next = Math.min(i + 1, limit);
+            lineNumber++;
+            if (semicolons > 0 || !isBlank(lineStart, lineEnd)) {
+                fieldCount = semicolons + 1;
+                fieldNumber = 0;
+                return true;
+            }
+        }
+    }
+
+    /** Reads the next block behind the valid bytes, growing the array for very long lines. */
+    private void fill() throws IOException {
+        if (limit == data.length) data = Arrays.copyOf(data, data.length * 2);
+        ByteBuffer target = ByteBuffer.wrap(data, limit, data.length - limit);
+        int read = 0;
+        while (read == 0) read = channel.read(target);
+        if (read < 0) {
+            endOfInput = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    public int getLineNumber() { return lineNumber; }
+
+    /** Number of fields on the current line. */
+    public int fieldCount() { return fieldCount; }
+
+    /**
+     * @param layout the expected fields, for the error message
+     * @throws IOException if the current line has fewer than {@code count} fields
+     */
+    public void requireFields(int count, String layout) throws IOException {
+        int found = fieldCount();
+        if (found < count) throw error("expected " + count + " fields (" + layout + "), found " + found);
+    }
+
+    /** Interns the next field as a name and returns its id. */
+    public int nameField(NameInterner names) throws IOException {
+        nextField();
+        return names.intern(data, start, end);
+    }
+
+    /** Looks up the next field and returns its id, or {@link Graph#NONE} if the interner does not know it. */
+    public int knownNameField(NameInterner names) throws IOException {
+        nextField();
+        return names.find(data, start, end);
+    }
+
+    /** Decodes the next field. */
+    public String stringField() throws IOException {
+        nextField();
+        return decode();
+    }
+
+    /** Parses the next field as a decimal int, with an optional sign like {@link Integer#parseInt}. */
+    public int intField() throws IOException {
+        nextField();
+        int i = start;
+        boolean negative = i < end && data[i] == '-';
+        if (i < end && (data[i] == '-' || data[i] == '+')) i++;
+        if (i == end) throw notANumber();
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = data[i] - '0';
+            if (digit < 0 || digit > 9) throw notANumber();
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) throw notANumber();
+        }
+        if (negative) value = -value;
+        if (value > Integer.MAX_VALUE) throw notANumber();
+        return (int) value;
+    }
+
+    /**
+     * Parses the next field as a double with the same result as {@link Double#parseDouble}. Plain decimals
+     * with at most 15 significant digits are converted directly; anything else goes through parseDouble.
+     */
+    public double doubleField() throws IOException {
+        nextField();
+        int i = start;
+        boolean negative = i < end && data[i] == '-';
+        if (i < end && (data[i] == '-' || data[i] == '+')) i++;
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean seenDigit = false;
+        for (; i < end && isDigit(data[i]); i++, seenDigit = true) {
+            mantissa = mantissa * 10 + (data[i] - '0');
+            if (mantissa != 0) digits++;
+        }
+        if (i < end && data[i] == '.') {
+            for (i++; i < end && isDigit(data[i]); i++, seenDigit = true) {
+                mantissa = mantissa * 10 + (data[i] - '0');
+                if (mantissa != 0) digits++;
+                exponent--;
+            }
+        }
+        if (seenDigit && i == end && digits <= 15 && -exponent < POWERS_OF_TEN.length) {
+            double value = exponent == 0 ? mantissa : mantissa / POWERS_OF_TEN[-exponent];
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(decode()); // exponents, long fractions, NaN, ...
+        } catch (NumberFormatException e) {
+            throw notANumber();
+        }
+    }
+
+    /** True if the current line has fields that were not read yet. */
+    public boolean hasMoreFields() {
+        return fieldNumber < fieldCount;
+    }
+
+    /** Creates an exception for the current line. */
+    public IOException error(String message) {
+        return new IOException(source + ":" + lineNumber + ": " + message);
+    }
+
+    private void nextField() throws IOException {
+        if (!hasMoreFields()) throw error("missing field " + (fieldNumber + 1));
+        start = fieldNumber == 0 ? lineStart : lineStart + separators[fieldNumber - 1] + 1;
+        end = fieldNumber == fieldCount - 1 ? lineEnd : lineStart + separators[fieldNumber];
+        fieldNumber++;
+        while (start < end && (data[start] & 0xFF) <= ' ') start++;
+        while (end > start && (data[end - 1] & 0xFF) <= ' ') end--;
+    }
+
+    private IOException notANumber() {
+        return error("field " + fieldNumber + ": not a number: \"" + decode() + "\"");
+    }
+
+    private String decode() {
+        return new String(data, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private boolean isBlank(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if ((data[i] & 0xFF) > ' ') return false;
+        }
+        return true;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
@@ -0,0 +1,278 @@
+import java.util.Arrays;
+
+/**
+ * Nearest-neighbour and radius queries over the cities of a network by great-circle distance.
+ * <p>
+ * The cities are stored as unit vectors in a balanced k-d tree. The straight chord between two points
+ * of the sphere grows with their great-circle distance, so the cities nearest by chord are the cities
+ * nearest by haversine distance, and a radius in km converts to a chord length once per query. The tree
+ * is implicit: a range of the arrays is a subtree, its middle element the node that splits it.
+ * Immutable after construction, so one instance can serve concurrent queries.
+ */
+public final class SpatialIndex {
+    private final GeoHeuristic geo;
+    // per tree position
+    private final int[] cities;
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    private final byte[] splitAxes;
+
+    private SpatialIndex(GeoHeuristic geo, int[] cities, double[] x, double[] y, double[] z, byte[] splitAxes) {
+        this.geo = geo;
+        this.cities = cities;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.splitAxes = splitAxes;
+    }
+
+    /** Builds the tree over all cities of geo in O(n log² n). */
+    public static SpatialIndex build(GeoHeuristic geo) {
+        int n = geo.cityCount();
+        int[] cities = new int[n];
+        double[][] points = new double[3][n];
+        for (int city = 0; city < n; city++) {
+            cities[city] = city;
+            double[] vector = unitVector(geo.latitudeDegrees(city), geo.longitudeDegrees(city));
+            for (int axis = 0; axis < 3; axis++) points[axis][city] = vector[axis];
+        }
+        byte[] splitAxes = new byte[n];
+        split(cities, points, splitAxes, 0, n);
+        return new SpatialIndex(geo, cities, points[0], points[1], points[2], splitAxes);
+    }
+
+    /** Orders the range so its middle element splits it along the axis of the largest spread. */
+    private static void split(int[] cities, double[][] points, byte[] splitAxes, int from, int to) {
+        if (to - from <= 1) return;
+        int axis = 0;
+        double largestSpread = -1;
+        for (int a = 0; a < 3; a++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                min = Math.min(min, points[a][i]);
+                max = Math.max(max, points[a][i]);
+            }
+            if (max - min > largestSpread) {
+                largestSpread = max - min;
+                axis = a;
+            }
+        }
+        int middle = (from + to) >>> 1;
+        select(cities, points, points[axis], from, to - 1, middle);
+        splitAxes[middle] = (byte) axis;
+        split(cities, points, splitAxes, from, middle);
+        split(cities, points, splitAxes, middle + 1, to);
+    }
+
+    /** Quickselect: moves the k-th smallest key of [left, right] to k, smaller keys before it. */
+    private static void select(int[] cities, double[][] points, double[] keys, int left, int right, int k) {
+        while (left < right) {
+            double pivot = keys[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (keys[i] < pivot) i++;
+                while (keys[j] > pivot) j--;
+                if (i <= j) swap(cities, points, i++, j--);
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static void swap(int[] cities, double[][] points, int i, int j) {
+        int city = cities[i];
+        cities[i] = cities[j];
+        cities[j] = city;
+        for (double[] axis : points) {
+            double value = axis[i];
+            axis[i] = axis[j];
+            axis[j] = value;
+        }
+    }
+
+    public GeoHeuristic getGeo() { return geo; }
+    public int size() { return cities.length; }
+
+    /**
+     * Returns the city nearest to the coordinates, or {@link Graph#NONE} if there are no cities.
+     *
+     * @throws IllegalArgumentException if the coordinates are not a valid position
+     */
+    public int nearest(double latitude, double longitude) {
+        int[] nearest = nearest(latitude, longitude, 1);
+        return nearest.length == 0 ? Graph.NONE : nearest[0];
+    }
+
+    /**
+     * Returns the k cities nearest to the coordinates, nearest first; fewer if the network is smaller.
+     *
+     * @throws IllegalArgumentException if k is negative or the coordinates are not a valid position
+     */
+    public int[] nearest(double latitude, double longitude, int k) {
+        if (k < 0) throw new IllegalArgumentException("k must not be negative: " + k);
+        double[] query = unitVector(latitude, longitude);
+        Candidates candidates = new Candidates(Math.min(k, cities.length));
+        if (candidates.capacity > 0) nearest(query, 0, cities.length, candidates);
+        return candidates.sorted();
+    }
+
+    /**
+     * Returns all cities within radiusKm of the coordinates by great-circle distance, nearest first.
+     *
+     * @throws IllegalArgumentException if the radius is negative or the coordinates are not a valid position
+     */
+    public int[] withinRadius(double latitude, double longitude, double radiusKm) {
+        if (!(radiusKm >= 0)) throw new IllegalArgumentException("radius must not be negative: " + radiusKm);
+        double[] query = unitVector(latitude, longitude);
+        double chord = 2 * Math.sin(Math.min(radiusKm / GeoHeuristic.EARTH_RADIUS, Math.PI) / 2);
+        Candidates candidates = new Candidates(16);
+        withinRadius(query, chord * chord, 0, cities.length, candidates);
+        return candidates.sorted();
+    }
+
+    /** Great-circle distance in km from the coordinates to the city. */
+    public double distance(double latitude, double longitude, int city) {
+        double[] query = unitVector(latitude, longitude);
+        double[] position = unitVector(geo.latitudeDegrees(city), geo.longitudeDegrees(city));
+        double dx = query[0] - position[0];
+        double dy = query[1] - position[1];
+        double dz = query[2] - position[2];
+        return toKm(dx * dx + dy * dy + dz * dz);
+    }
+
+    private void nearest(double[] query, int from, int to, Candidates candidates) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            candidates.offer(cities[middle], squaredChord(query, middle));
+            double offset = query[splitAxes[middle]] - coordinate(splitAxes[middle], middle);
+            // Near side first; the far side only if the splitting plane is closer than the worst candidate
+            if (offset < 0) {
+                nearest(query, from, middle, candidates);
+                if (offset * offset >= candidates.bound()) return;
+                from = middle + 1;
+            } else {
+                nearest(query, middle + 1, to, candidates);
+                if (offset * offset >= candidates.bound()) return;
+                to = middle;
+            }
+        }
+    }
+
+    private void withinRadius(double[] query, double squaredRadius, int from, int to, Candidates candidates) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            double squaredDistance = squaredChord(query, middle);
+            if (squaredDistance <= squaredRadius) candidates.add(cities[middle], squaredDistance);
+            double offset = query[splitAxes[middle]] - coordinate(splitAxes[middle], middle);
+            if (offset < 0) {
+                if (offset * offset <= squaredRadius) withinRadius(query, squaredRadius, middle + 1, to, candidates);
+                to = middle;
+            } else {
+                if (offset * offset <= squaredRadius) withinRadius(query, squaredRadius, from, middle, candidates);
+                from = middle + 1;
+            }
+        }
+    }
+
+    private double coordinate(int axis, int position) {
+        return axis == 0 ? x[position] : axis == 1 ? y[position] : z[position];
+    }
+
+    private double squaredChord(double[] query, int position) {
+        double dx = query[0] - x[position];
+        double dy = query[1] - y[position];
+        double dz = query[2] - z[position];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /** Great-circle distance of a squared chord on the unit sphere. */
+    private static double toKm(double squaredChord) {
+        return 2 * GeoHeuristic.EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(squaredChord) / 2));
+    }
+
+    private static double[] unitVector(double latitudeDegrees, double longitudeDegrees) {
+        if (!(latitudeDegrees >= -90 && latitudeDegrees <= 90) || !Double.isFinite(longitudeDegrees)) {
+            throw new IllegalArgumentException("Invalid coordinates: " + latitudeDegrees + ", " + longitudeDegrees);
+        }
+        double latitude = Math.toRadians(latitudeDegrees);
+        double longitude = Math.toRadians(longitudeDegrees);
+        double cosLatitude = Math.cos(latitude);
+        return new double[]{cosLatitude * Math.cos(longitude), cosLatitude * Math.sin(longitude), Math.sin(latitude)};
+    }
+
+    /**
+     * Cities found by a query with their squared chords. For k-nearest it holds at most capacity cities
+     * as a max-heap, so the worst one is replaced first; for radius queries it just grows.
+     */
+    private static final class Candidates {
+        final int capacity;
+        int[] cities;
+        double[] distances;
+        int size;
+
+        Candidates(int capacity) {
+            this.capacity = capacity;
+            this.cities = new int[Math.max(capacity, 1)];
+            this.distances = new double[Math.max(capacity, 1)];
+        }
+
+        /** Squared chord a city has to beat to become a candidate. */
+        double bound() {
+            return size < capacity ? Double.POSITIVE_INFINITY : distances[0];
+        }
+
+        void offer(int city, double distance) {
+            if (size < capacity) {
+                int i = size++;
+                while (i > 0 && distances[(i - 1) / 2] < distance) {
+                    cities[i] = cities[(i - 1) / 2];
+                    distances[i] = distances[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                cities[i] = city;
+                distances[i] = distance;
+            } else if (distance < distances[0]) {
+                int i = 0;
+                while (2 * i + 1 < size) {
+                    int child = 2 * i + 1;
+                    if (child + 1 < size && distances[child + 1] > distances[child]) child++;
+                    if (distances[child] <= distance) break;
+                    cities[i] = cities[child];
+                    distances[i] = distances[child];
+                    i = child;
+                }
+                cities[i] = city;
+                distances[i] = distance;
+            }
+        }
+
+        void add(int city, double distance) {
+            if (size == cities.length) {
+                cities = Arrays.copyOf(cities, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+            cities[size] = city;
+            distances[size] = distance;
+            size++;
+        }
+
+        /** The cities by ascending distance, ties by city id. */
+        int[] sorted() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> distances[a] != distances[b]
+                    ? Double.compare(distances[a], distances[b]) : Integer.compare(cities[a], cities[b]));
+            int[] result = new int[size];
+            for (int i = 0; i < size; i++) result[i] = cities[order[i]];
+            return result;
+        }
+    }
+}
@@ -1,25 +1,23 @@
-import java.util.*;
-
 public class State implements Comparable<State> {
-    private String currentCity;
-    private Set<String> permits;
+    private int currentCity;
+    private long permits; // bit mask, see PermitRegistry
     private int costSoFar;
     private int estimatedTotalCost;
-    private List<String> path;
+    private State parent; // predecessor on the path, null for start states
 
-    public State(String currentCity, Set<String> permits, int costSoFar, int estimatedTotalCost, List<String> path) {
+    public State(int currentCity, long permits, int costSoFar, int estimatedTotalCost, State parent) {
         this.currentCity = currentCity;
-        this.permits = new HashSet<>(permits);
+        this.permits = permits;
         this.costSoFar = costSoFar;
         this.estimatedTotalCost = estimatedTotalCost;
-        this.path = new ArrayList<>(path);
+        this.parent = parent;
     }
 
-    public String getCurrentCity() {
+    public int getCurrentCity() {
         return currentCity;
     }
 
-    public Set<String> getPermits() {
+    public long getPermits() {
         return permits;
     }
 
@@ -31,8 +29,8 @@ public class State implements Comparable<State> {
         return estimatedTotalCost;
     }
 
-    public List<String> getPath() {
-        return path;
+    public State getParent() {
+        return parent;
     }
 
     @Override
@@ -46,14 +44,14 @@ public class State implements Comparable<State> {
             return true;
         if (obj instanceof State) {
             State other = (State) obj;
-            return this.currentCity.equals(other.currentCity) && this.permits.equals(other.permits);
+            return this.currentCity == other.currentCity && this.permits == other.permits;
         }
         return false;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(currentCity, permits);
+        return 31 * currentCity + Long.hashCode(permits);
     }
 }
 
@@ -1,29 +1,25 @@
-import java.util.*;
-
 public class State2 implements Comparable<State2> {
-    private String currentCity;
-    private Set<String> permits;
+    private int currentCity;
+    private long permits; // bit mask, see PermitRegistry
     private double costSoFar;
     private double estimatedTotalCost;
-    private List<String> path;
+    private State2 parent; // predecessor on the path, null for start states
     private double totalPermitCost; // New field
-    private List<String> permitsAcquired; // New field
 
-    public State2(String currentCity, Set<String> permits, double costSoFar, double estimatedTotalCost, List<String> path, double totalPermitCost, List<String> permitsAcquired ) {
+    public State2(int currentCity, long permits, double costSoFar, double estimatedTotalCost, State2 parent, double totalPermitCost) {
         this.currentCity = currentCity;
-        this.permits = new HashSet<>(permits);
+        this.permits = permits;
         this.costSoFar = costSoFar;
         this.estimatedTotalCost = estimatedTotalCost;
-        this.path = new ArrayList<>(path);
+        this.parent = parent;
         this.totalPermitCost = totalPermitCost;
-        this.permitsAcquired = permitsAcquired;
     }
 
-    public String getCurrentCity() { return currentCity; }
-    public Set<String> getPermits() { return permits; }
+    public int getCurrentCity() { return currentCity; }
+    public long getPermits() { return permits; }
     public double getCostSoFar() { return costSoFar; }
     public double getEstimatedTotalCost() { return estimatedTotalCost; }
-    public List<String> getPath() { return path; }
+    public State2 getParent() { return parent; }
     public double getTotalPermitCost() { return totalPermitCost; }
 
     @Override
@@ -36,18 +32,14 @@ public class State2 implements Comparable<State2> {
         if (this == obj) return true;
         if (obj instanceof State2) {
             State2 other = (State2) obj;
-            return this.currentCity.equals(other.currentCity) && this.permits.equals(other.permits);
+            return this.currentCity == other.currentCity && this.permits == other.permits;
         }
         return false;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(currentCity, permits);
-    }
-    public List<String> getPermitsAcquired() {
-        return permitsAcquired;
+        return 31 * currentCity + Long.hashCode(permits);
     }
-
 }
 
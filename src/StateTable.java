@@ -0,0 +1,88 @@
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table from non-negative {@code long} state keys to {@code int} values, used as the
+ * {@code reached} set of the searches. Keys and values live in two primitive arrays; lookups and inserts
+ * allocate nothing unless the table has to grow.
+ */
+public class StateTable {
+    public static final int ABSENT = -1;
+    private static final long EMPTY = -1L;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    public StateTable() {
+        this(1024);
+    }
+
+    public StateTable(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2) - 1) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+    }
+
+    /** Returns the value stored for the key, or {@link #ABSENT}. */
+    public int get(long key) {
+        int slot = slot(key);
+        while (true) {
+            long k = keys[slot];
+            if (k == key) return values[slot];
+            if (k == EMPTY) return ABSENT;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /** Stores the value for the key, replacing an existing one. */
+    public void put(long key, int value) {
+        int slot = slot(key);
+        while (true) {
+            long k = keys[slot];
+            if (k == key) {
+                values[slot] = value;
+                return;
+            }
+            if (k == EMPTY) {
+                keys[slot] = key;
+                values[slot] = value;
+                if (++size * 2 > keys.length) grow();
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public int size() { return size; }
+
+    /** Removes all entries but keeps the allocated capacity. */
+    public void clear() {
+        if (size == 0) return;
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY) continue;
+            int slot = slot(oldKeys[i]);
+            while (keys[slot] != EMPTY) slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+}
@@ -0,0 +1,96 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnytimeSearchTest {
+    private static final long UNLIMITED = Long.MAX_VALUE / 2;
+
+    @Test
+    void matchesReferenceOnBigGraph() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        for (TestCase query : TestNetworks.bigGraphQueries(planner, new Random(16), TestNetworks.trials(10))) {
+            assertAnytime(planner, query.getStartCity(), query.getGoalCity(), 2.5);
+        }
+    }
+
+    @Test
+    void matchesReferenceWithLandmarks() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        planner.useLandmarks(8, LandmarkIndex.Selection.FARTHEST);
+        for (TestCase query : TestNetworks.bigGraphQueries(planner, new Random(16), TestNetworks.trials(50))) {
+            assertAnytime(planner, query.getStartCity(), query.getGoalCity(), 2.5);
+        }
+    }
+
+    @Test
+    void matchesReferenceOnRandomNetworks(@TempDir Path directory) throws IOException {
+        Random random = new Random(16);
+        for (int trial = 0; trial < TestNetworks.trials(300); trial++) {
+            RoutePlanner2 planner = TestNetworks.randomNetwork(random, directory, 30, 4);
+            if (random.nextInt(4) == 0) planner.permitCost = 0;
+            for (int query = 0; query < 5; query++) {
+                String start = TestNetworks.randomCity(planner, random);
+                String goal = TestNetworks.randomCity(planner, random);
+                assertAnytime(planner, start, goal, 1 + 3 * random.nextDouble());
+            }
+        }
+    }
+
+    @Test
+    void boundsHoldWithinATimeBudget() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        for (TestCase query : TestNetworks.bigGraphQueries(planner, new Random(16), 0)) {
+            SearchResult result = planner.anytimeSearch(query.getStartCity(), query.getGoalCity(), 2.5, 1.0,
+                    100_000, null);
+            if (result == null) continue; // nothing found within 0.1 ms
+            double optimum = TestNetworks.referenceCost(planner, query.getStartCity(), query.getGoalCity());
+            assertTrue(result.getOptimalCost() >= optimum - 1e-6);
+            assertTrue(result.getOptimalCost() <= result.getSuboptimalityBound() * optimum + 1e-6,
+                    query.getStartCity() + " -> " + query.getGoalCity());
+        }
+    }
+
+    @Test
+    void rejectsBoundsBelowOne() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        assertThrows(IllegalArgumentException.class,
+                () -> planner.anytimeSearch("Ahaus", "Obertshausen", 0.5, 1.0, UNLIMITED, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> planner.anytimeSearch("Ahaus", "Obertshausen", 2.5, 0.9, UNLIMITED, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> planner.anytimeSearch("Ahaus", "Atlantis", 2.5, 1.0, UNLIMITED, null));
+    }
+
+    /**
+     * Runs the query until the route is optimal and until it is within a bound of 1.5, and checks the
+     * costs, the reported bounds and that every reported improvement is cheaper than the one before.
+     */
+    private static void assertAnytime(RoutePlanner2 planner, String start, String goal, double initialWeight) {
+        String query = start + " -> " + goal;
+        List<SearchResult> improvements = new ArrayList<>();
+        SearchResult optimal = planner.anytimeSearch(start, goal, initialWeight, 1.0, UNLIMITED, improvements::add);
+        TestNetworks.assertOptimal(planner, start, goal, optimal);
+        if (optimal == null) {
+            assertTrue(improvements.isEmpty(), query);
+            return;
+        }
+        assertEquals(1.0, optimal.getSuboptimalityBound(), 1e-9, query);
+        for (int i = 1; i < improvements.size(); i++) {
+            assertTrue(improvements.get(i).getOptimalCost() < improvements.get(i - 1).getOptimalCost(), query);
+        }
+        assertEquals(optimal.getOptimalCost(), improvements.get(improvements.size() - 1).getOptimalCost(), query);
+
+        SearchResult bounded = planner.anytimeSearch(start, goal, initialWeight, 1.5, UNLIMITED, null);
+        assertTrue(bounded.getSuboptimalityBound() <= 1.5, query);
+        assertTrue(bounded.getOptimalCost() <= bounded.getSuboptimalityBound() * optimal.getOptimalCost() + 1e-6,
+                query);
+        TestNetworks.assertRoute(planner.getNetwork().getGraph(), start, goal, bounded);
+    }
+}
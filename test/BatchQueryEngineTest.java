@@ -0,0 +1,57 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchQueryEngineTest {
+
+    @Test
+    void matchesAStarWithoutConsoleOutput() throws Exception {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        planner.useLandmarks(8, LandmarkIndex.Selection.FARTHEST);
+        List<TestCase> queries = TestNetworks.bigGraphQueries(planner, new Random(5), TestNetworks.trials(100));
+        BatchResult batch;
+        PrintStream out = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed, true));
+        try (BatchQueryEngine engine = new BatchQueryEngine(planner, 4)) {
+            batch = engine.run(queries, 1.0);
+        } finally {
+            System.setOut(out);
+        }
+        assertEquals("", printed.toString());
+        assertEquals(queries.size(), batch.getOutcomes().size());
+        for (int i = 0; i < queries.size(); i++) {
+            TestCase query = queries.get(i);
+            SearchOutcome outcome = batch.getOutcomes().get(i);
+            assertNotEquals(SearchOutcome.Status.CANCELLED, outcome.getStatus());
+            assertSame(outcome.getResult(), batch.getResults().get(i));
+            TestNetworks.assertOptimal(planner, query.getStartCity(), query.getGoalCity(), outcome.getResult());
+            assertTrue(batch.getLatenciesNanos()[i] > 0);
+        }
+    }
+
+    @Test
+    void failsTheBatchOnAnUnknownCityAndStaysUsable() throws Exception {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        List<TestCase> queries = new ArrayList<>(TestNetworks.bigGraphQueries(planner, new Random(5), 0));
+        try (BatchQueryEngine engine = new BatchQueryEngine(planner, 4)) {
+            List<TestCase> failing = new ArrayList<>(queries);
+            failing.add(failing.size() / 2, new TestCase("Ahaus", "Atlantis"));
+            IllegalStateException e = assertThrows(IllegalStateException.class, () -> engine.run(failing, 1.0));
+            assertInstanceOf(IllegalArgumentException.class, e.getCause());
+
+            BatchResult batch = engine.run(queries, 1.0);
+            for (int i = 0; i < queries.size(); i++) {
+                assertEquals(TestNetworks.aStar(planner, queries.get(i).getStartCity(), queries.get(i).getGoalCity())
+                        .getOptimalCost(), batch.getResults().get(i).getOptimalCost(), 1e-6);
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BidirectionalSearchTest {
+
+    @Test
+    void matchesReferenceOnBigGraph() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        for (TestCase query : TestNetworks.bigGraphQueries(planner, new Random(9), TestNetworks.trials(100))) {
+            TestNetworks.assertOptimal(planner, query.getStartCity(), query.getGoalCity(),
+                    planner.bidirectionalSearch(query.getStartCity(), query.getGoalCity()));
+        }
+    }
+
+    @Test
+    void matchesReferenceOnRandomNetworks(@TempDir Path directory) throws IOException {
+        Random random = new Random(9);
+        for (int trial = 0; trial < TestNetworks.trials(300); trial++) {
+            RoutePlanner2 planner = TestNetworks.randomNetwork(random, directory, 30, 4,
+                    TestNetworks.randomSpread(random));
+            if (random.nextInt(4) == 0) planner.permitCost = 0;
+            for (int query = 0; query < 5; query++) {
+                String start = TestNetworks.randomCity(planner, random);
+                String goal = TestNetworks.randomCity(planner, random);
+                TestNetworks.assertOptimal(planner, start, goal, planner.bidirectionalSearch(start, goal));
+            }
+        }
+    }
+
+    @Test
+    void rejectsUnknownCities() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        assertThrows(IllegalArgumentException.class, () -> planner.bidirectionalSearch("Aachen", "Atlantis"));
+    }
+}
@@ -0,0 +1,51 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContractionHierarchyTest {
+
+    @Test
+    void matchesReferenceOnBigGraph() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        planner.buildContractionHierarchy();
+        for (TestCase query : TestNetworks.bigGraphQueries(planner, new Random(10), TestNetworks.trials(100))) {
+            TestNetworks.assertOptimal(planner, query.getStartCity(), query.getGoalCity(),
+                    planner.contractionHierarchySearch(query.getStartCity(), query.getGoalCity()));
+        }
+    }
+
+    @Test
+    void matchesReferenceOnRandomNetworks(@TempDir Path directory) throws IOException {
+        Random random = new Random(10);
+        for (int trial = 0; trial < TestNetworks.trials(300); trial++) {
+            RoutePlanner2 planner = TestNetworks.randomNetwork(random, directory, 30, 4,
+                    TestNetworks.randomSpread(random));
+            if (random.nextInt(4) == 0) planner.permitCost = 0;
+            planner.buildContractionHierarchy();
+            for (int query = 0; query < 5; query++) {
+                String start = TestNetworks.randomCity(planner, random);
+                String goal = TestNetworks.randomCity(planner, random);
+                TestNetworks.assertOptimal(planner, start, goal, planner.contractionHierarchySearch(start, goal));
+            }
+        }
+    }
+
+    @Test
+    void isDroppedByUpdate(@TempDir Path directory) throws IOException {
+        RoutePlanner2 planner = TestNetworks.randomNetwork(new Random(10), directory, 30, 4);
+        Graph graph = planner.getNetwork().getGraph();
+        int city = 0;
+        while (graph.firstEdge(city) == graph.endEdge(city)) city++;
+        planner.buildContractionHierarchy();
+        assertNotNull(planner.getContractionHierarchy());
+        planner.updateNetwork(new GraphUpdate().closeRoad(graph.cityName(city),
+                graph.cityName(graph.target(graph.firstEdge(city)))));
+        assertNull(planner.getContractionHierarchy());
+        assertThrows(IllegalStateException.class, () -> planner.contractionHierarchySearch("C0", "C1"));
+    }
+}
@@ -0,0 +1,89 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistanceMatrixTest {
+
+    @Test
+    void matchesReferenceOnBigGraph() throws Exception {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        List<String> sources = new ArrayList<>();
+        List<String> targets = new ArrayList<>();
+        for (TestCase query : TestNetworks.bigGraphQueries(planner, new Random(14), 0).subList(0, 10)) {
+            sources.add(query.getStartCity());
+            targets.add(query.getGoalCity());
+        }
+        assertMatrix(planner, sources, targets, planner.distanceMatrix(sources, targets, true));
+    }
+
+    @Test
+    void matchesReferenceOnRandomNetworks(@TempDir Path directory) throws Exception {
+        Random random = new Random(14);
+        for (int trial = 0; trial < TestNetworks.trials(200); trial++) {
+            RoutePlanner2 planner = TestNetworks.randomNetwork(random, directory, 20, 4);
+            if (random.nextInt(4) == 0) planner.permitCost = 0;
+            List<String> sources = new ArrayList<>();
+            List<String> targets = new ArrayList<>();
+            for (int i = random.nextInt(6); i > 0; i--) sources.add(TestNetworks.randomCity(planner, random));
+            for (int i = random.nextInt(6); i > 0; i--) targets.add(TestNetworks.randomCity(planner, random));
+            assertMatrix(planner, sources, targets, planner.distanceMatrix(sources, targets, true));
+
+            // the same costs on one thread and on more threads than sources, without paths
+            Graph graph = planner.getNetwork().getGraph();
+            int[] sourceIds = sources.stream().mapToInt(graph::cityId).toArray();
+            int[] targetIds = targets.stream().mapToInt(graph::cityId).toArray();
+            double[][] expected = planner.distanceMatrix(sources, targets, false).getCosts();
+            for (int parallelism : new int[]{1, 8}) {
+                DistanceMatrix matrix = DistanceMatrix.compute(graph, planner.getNetwork().getReachability(),
+                        planner.permitCost, sourceIds, targetIds, false, parallelism);
+                assertArrayEquals(expected, matrix.getCosts());
+                assertFalse(matrix.hasPaths());
+            }
+        }
+    }
+
+    @Test
+    void rejectsInvalidArguments() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        Graph graph = planner.getNetwork().getGraph();
+        assertThrows(IllegalArgumentException.class,
+                () -> planner.distanceMatrix(List.of("Aachen"), List.of("Atlantis"), false));
+        assertThrows(IllegalArgumentException.class, () -> DistanceMatrix.compute(graph,
+                planner.getNetwork().getReachability(), planner.permitCost, new int[1], new int[1], false, 0));
+    }
+
+    @Test
+    void rebuildsRoutesOnlyWithPaths() throws Exception {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        DistanceMatrix matrix = planner.distanceMatrix(List.of("Ahaus"), List.of("Obertshausen"), false);
+        assertThrows(IllegalStateException.class, () -> matrix.getResult(0, 0));
+    }
+
+    private static void assertMatrix(RoutePlanner2 planner, List<String> sources, List<String> targets,
+                                      DistanceMatrix matrix) {
+        assertEquals(sources.size(), matrix.getSourceCount());
+        assertEquals(sources.isEmpty() ? 0 : targets.size(), matrix.getTargetCount());
+        for (int i = 0; i < sources.size(); i++) {
+            for (int j = 0; j < targets.size(); j++) {
+                String start = sources.get(i);
+                String goal = targets.get(j);
+                double expected = TestNetworks.referenceCost(planner, start, goal);
+                assertEquals(expected, matrix.getCost(i, j), 1e-6, start + " -> " + goal);
+                SearchResult result = matrix.getResult(i, j);
+                if (expected == Double.POSITIVE_INFINITY) {
+                    assertNull(result, start + " -> " + goal);
+                } else {
+                    assertEquals(expected, result.getOptimalCost(), 1e-6, start + " -> " + goal);
+                    TestNetworks.assertRoute(planner.getNetwork().getGraph(), start, goal, result);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DominancePruningTest {
+
+    @Test
+    void keepsCostsOnBigGraph() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        planner.useLandmarks(8, LandmarkIndex.Selection.FARTHEST); // optimal at scaling factor 1.0
+        long[] expanded = new long[2];
+        for (TestCase query : TestNetworks.bigGraphQueries(planner, new Random(19), TestNetworks.trials(50))) {
+            for (int pruning = 0; pruning < 2; pruning++) {
+                planner.setDominancePruning(pruning == 1);
+                SearchOutcome outcome = planner.search(query.getStartCity(), query.getGoalCity(), 1.0,
+                        SearchBudget.unlimited());
+                TestNetworks.assertOptimal(planner, query.getStartCity(), query.getGoalCity(), outcome.getResult());
+                expanded[pruning] += outcome.getNodesExpanded();
+            }
+        }
+        assertTrue(expanded[1] <= expanded[0], expanded[1] + " > " + expanded[0]);
+    }
+
+    @Test
+    void keepsCostsOnRandomNetworks(@TempDir Path directory) throws IOException {
+        Random random = new Random(19);
+        int dominated = 0;
+        for (int trial = 0; trial < TestNetworks.trials(300); trial++) {
+            RoutePlanner2 planner = TestNetworks.randomNetwork(random, directory, 30, 4);
+            if (random.nextInt(4) == 0) planner.permitCost = 0;
+            planner.setDominancePruning(true);
+            for (int query = 0; query < 5; query++) {
+                String start = TestNetworks.randomCity(planner, random);
+                String goal = TestNetworks.randomCity(planner, random);
+                int[] pruned = new int[1];
+                planner.setSearchListener(stats -> pruned[0] = stats.getDominatedStates());
+                TestNetworks.assertOptimal(planner, start, goal, TestNetworks.aStar(planner, start, goal));
+                dominated += pruned[0];
+            }
+        }
+        assertTrue(dominated > 0);
+    }
+
+    @Test
+    void keepsCostsOnSmallGraphs() throws IOException {
+        for (int number = 0; number < 8; number++) {
+            RoutePlanner planner = new RoutePlanner();
+            planner.readCities(TestNetworks.dataFile("testcases_Teilaufgabe_2/t" + number + "_cities.txt"));
+            planner.readConnections(TestNetworks.dataFile("testcases_Teilaufgabe_2/t" + number + "_connections.txt"));
+            SearchOutcome[] outcomes = new SearchOutcome[2];
+            for (int pruning = 0; pruning < 2; pruning++) {
+                planner.setDominancePruning(pruning == 1);
+                outcomes[pruning] = planner.search("A", "B", SearchBudget.unlimited());
+            }
+            assertEquals(outcomes[0].getStatus(), outcomes[1].getStatus(), "t" + number);
+            if (outcomes[0].isFound()) {
+                assertEquals(outcomes[0].getResult().getOptimalCost(), outcomes[1].getResult().getOptimalCost(),
+                        "t" + number);
+            }
+            assertTrue(outcomes[1].getNodesExpanded() <= outcomes[0].getNodesExpanded(), "t" + number);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphUpdateTest {
+
+    /** A road of the model; closed roads keep their values until they are reopened. */
+    private static final class Road {
+        final String city1;
+        final String city2;
+        double distance;
+        String permit;
+        boolean open = true;
+
+        Road(String city1, String city2, double distance, String permit) {
+            this.city1 = city1;
+            this.city2 = city2;
+            this.distance = distance;
+            this.permit = permit;
+        }
+
+        boolean connects(String a, String b) {
+            return city1.equals(a) && city2.equals(b) || city1.equals(b) && city2.equals(a);
+        }
+    }
+
+    @Test
+    void updatesMatchReloadedNetworks(@TempDir Path directory) throws IOException {
+        Random random = new Random(22);
+        for (int trial = 0; trial < TestNetworks.trials(150); trial++) {
+            RoutePlanner2 planner = TestNetworks.randomNetwork(random, directory, 20, 4);
+            if (random.nextInt(3) == 0) planner.useLandmarks(2, LandmarkIndex.Selection.FARTHEST);
+            List<String[]> cities = readLines(directory.resolve("cities.txt"));
+            List<Road> roads = new ArrayList<>();
+            Set<String> permits = new TreeSet<>(Collections.singleton("NONE"));
+            for (String[] line : readLines(directory.resolve("connections.txt"))) {
+                roads.add(new Road(line[0], line[1], Double.parseDouble(line[2]), line[3]));
+                permits.add(line[3]);
+            }
+            for (String[] city : cities) permits.add(city[3]);
+            List<String> permitNames = new ArrayList<>(permits);
+
+            for (int step = 0; step < 10; step++) {
+                NetworkVersion before = planner.getNetwork();
+                String start = TestNetworks.randomCity(planner, random);
+                String goal = TestNetworks.randomCity(planner, random);
+                double costBefore = TestNetworks.referenceCost(planner, start, goal);
+
+                GraphUpdate update = new GraphUpdate();
+                for (int change = 1 + random.nextInt(3); change > 0; change--) {
+                    randomChange(random, update, cities, roads, permitNames);
+                }
+                NetworkVersion after = planner.updateNetwork(update);
+                assertSame(after, planner.getNetwork());
+                assertEquals(before.getVersion() + 1, after.getVersion());
+                boolean anyClosed = roads.stream().anyMatch(road -> !road.open);
+                assertEquals(anyClosed, after.getGraph().closedRoadCount() > 0, update.toString());
+
+                // the old version is untouched, the new one searches like a freshly loaded network
+                Graph old = before.getGraph();
+                assertEquals(costBefore, TestNetworks.referenceCost(old, old.cityId(start), old.cityId(goal), 0L,
+                        planner.permitCost), 1e-9);
+                RoutePlanner2 reloaded = load(directory, cities, roads);
+                reloaded.permitCost = planner.permitCost;
+                for (int query = 0; query < 5; query++) {
+                    String s = TestNetworks.randomCity(planner, random);
+                    String g = TestNetworks.randomCity(planner, random);
+                    String message = update + ": " + s + " -> " + g;
+                    double expected = TestNetworks.referenceCost(reloaded, s, g);
+                    assertEquals(expected, TestNetworks.referenceCost(planner, s, g), 1e-9, message);
+                    assertEquals(expected < Double.POSITIVE_INFINITY, planner.isReachable(s, g), message);
+                    TestNetworks.assertOptimal(planner, s, g, TestNetworks.aStar(planner, s, g));
+                    TestNetworks.assertOptimal(planner, s, g, planner.bidirectionalSearch(s, g));
+                }
+            }
+        }
+    }
+
+    @Test
+    void reopeningRestoresRoutesOnBigGraph() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        for (TestCase query : TestNetworks.bigGraphQueries(planner, new Random(22), 0).subList(0, 20)) {
+            String start = query.getStartCity();
+            String goal = query.getGoalCity();
+            SearchResult open = TestNetworks.aStar(planner, start, goal);
+            List<String> path = open.getPath();
+            NetworkVersion before = planner.getNetwork();
+
+            planner.updateNetwork(new GraphUpdate().closeRoad(path.get(0), path.get(1)));
+            assertTrue(planner.getNetwork().getGraph().closedRoadCount() > 0);
+            SearchResult closed = TestNetworks.aStar(planner, start, goal);
+            if (closed != null) {
+                assertTrue(closed.getOptimalCost() >= open.getOptimalCost(), start + " -> " + goal);
+                assertNotEquals(path, closed.getPath());
+            }
+            assertEquals(0, before.getGraph().closedRoadCount());
+
+            planner.updateNetwork(new GraphUpdate().reopenRoad(path.get(0), path.get(1)));
+            assertEquals(0, planner.getNetwork().getGraph().closedRoadCount());
+            assertEquals(open.getOptimalCost(), TestNetworks.aStar(planner, start, goal).getOptimalCost());
+        }
+    }
+
+    @Test
+    void rejectsUpdatesThatDoNotFit() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        NetworkVersion current = planner.getNetwork();
+        GraphUpdate[] invalid = {
+                new GraphUpdate().closeRoad("Ahaus", "Atlantis"),
+                new GraphUpdate().reopenRoad("Ahaus", "Obertshausen"),
+                new GraphUpdate().setAvailablePermit("Atlantis", "NONE")};
+        for (GraphUpdate update : invalid) {
+            assertThrows(IllegalArgumentException.class, () -> planner.updateNetwork(update), update.toString());
+            assertSame(current, planner.getNetwork());
+        }
+        assertThrows(IllegalArgumentException.class, () -> new GraphUpdate().setDistance("Ahaus", "Obertshausen", -1));
+    }
+
+    /** Adds one change that fits the model to the update and applies it to the model. */
+    private static void randomChange(Random random, GraphUpdate update, List<String[]> cities, List<Road> roads,
+                                     List<String> permits) {
+        List<Road> open = new ArrayList<>();
+        List<Road> closed = new ArrayList<>();
+        for (Road road : roads) (road.open ? open : closed).add(road);
+        int kind = random.nextInt(5);
+        if (kind == 1 && !closed.isEmpty()) {
+            Road road = closed.get(random.nextInt(closed.size()));
+            update.reopenRoad(road.city1, road.city2);
+            for (Road other : closed) if (other.connects(road.city1, road.city2)) other.open = true;
+        } else if (kind >= 2 && kind <= 3 && !open.isEmpty()) {
+            Road road = open.get(random.nextInt(open.size()));
+            if (kind == 2) {
+                double distance = 20 + random.nextInt(100);
+                update.setDistance(road.city1, road.city2, distance);
+                for (Road other : open) if (other.connects(road.city1, road.city2)) other.distance = distance;
+            } else {
+                String permit = permits.get(random.nextInt(permits.size()));
+                update.setRequiredPermit(road.city1, road.city2, permit);
+                for (Road other : open) if (other.connects(road.city1, road.city2)) other.permit = permit;
+            }
+        } else if (kind == 4 || open.isEmpty()) {
+            String[] city = cities.get(random.nextInt(cities.size()));
+            city[3] = permits.get(random.nextInt(permits.size()));
+            update.setAvailablePermit(city[0], city[3]);
+        } else {
+            Road road = open.get(random.nextInt(open.size()));
+            update.closeRoad(road.city1, road.city2);
+            for (Road other : open) if (other.connects(road.city1, road.city2)) other.open = false;
+        }
+    }
+
+    private static RoutePlanner2 load(Path directory, List<String[]> cities, List<Road> roads) throws IOException {
+        Path citiesFile = directory.resolve("updated_cities.txt");
+        Path connectionsFile = directory.resolve("updated_connections.txt");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(citiesFile, StandardCharsets.UTF_8))) {
+            out.println("city;lat;lon;available_permit");
+            for (String[] city : cities) out.println(String.join(";", city));
+        }
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(connectionsFile, StandardCharsets.UTF_8))) {
+            out.println("city_1;city_2;distance;required_permit");
+            for (Road road : roads) {
+                if (road.open) out.println(road.city1 + ";" + road.city2 + ";" + road.distance + ";" + road.permit);
+            }
+        }
+        RoutePlanner2 planner = new RoutePlanner2();
+        planner.readCities(citiesFile.toString());
+        planner.readConnections(connectionsFile.toString());
+        return planner;
+    }
+
+    private static List<String[]> readLines(Path file) throws IOException {
+        List<String[]> lines = new ArrayList<>();
+        List<String> text = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (String line : text.subList(1, text.size())) lines.add(line.split(";")); // without the header
+        return lines;
+    }
+}
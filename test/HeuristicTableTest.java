@@ -0,0 +1,112 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeuristicTableTest {
+
+    /** The memo returns what GeoHeuristic.distance gives directly, across queries that reuse the table. */
+    @Test
+    void matchesDirectDistances() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        GeoHeuristic geo = planner.getNetwork().getGeo();
+        LandmarkIndex landmarks = LandmarkIndex.build(planner.getNetwork().getGraph(), 8,
+                LandmarkIndex.Selection.FARTHEST);
+        HeuristicTable table = new HeuristicTable();
+        Random random = new Random(7);
+        for (int query = 0; query < TestNetworks.trials(200); query++) {
+            GeoHeuristic.Kind kind = GeoHeuristic.Kind.values()[random.nextInt(2)];
+            LandmarkIndex used = random.nextBoolean() ? landmarks : null;
+            int goal = random.nextInt(geo.cityCount());
+            double scalingFactor = random.nextBoolean() ? 1.0 : 1.4515;
+            table.reset(geo, kind, used, goal, scalingFactor);
+            int[] cities = new int[50];
+            for (int i = 0; i < cities.length; i++) cities[i] = random.nextInt(geo.cityCount());
+            for (int round = 0; round < 2; round++) { // the second round reads the memo
+                for (int city : cities) {
+                    double expected = geo.distance(kind, city, goal);
+                    if (used != null) {
+                        expected = Math.max(expected * geo.getAdmissibleScale(), used.lowerBound(city, goal));
+                    }
+                    assertEquals(expected * scalingFactor, table.get(city), 0.0, kind + " " + city + " -> " + goal);
+                }
+            }
+            assertEquals(Arrays.stream(cities).distinct().count(), table.getEvaluations());
+        }
+    }
+
+    @Test
+    void growsForLargerNetworks(@TempDir Path directory) throws IOException {
+        Random random = new Random(7);
+        RoutePlanner2 small = TestNetworks.randomNetwork(random, directory, 10, 2);
+        RoutePlanner2 big = TestNetworks.bigGraph();
+        HeuristicTable table = new HeuristicTable();
+        for (RoutePlanner2 planner : new RoutePlanner2[]{small, big, small}) {
+            GeoHeuristic geo = planner.getNetwork().getGeo();
+            table.reset(geo, GeoHeuristic.Kind.HAVERSINE, 0, 1.0);
+            for (int city = 0; city < geo.cityCount(); city++) {
+                assertEquals(geo.haversine(city, 0), table.get(city), 0.0);
+            }
+            assertEquals(geo.cityCount(), table.getEvaluations());
+        }
+    }
+
+    /** The chord is never longer than the great circle, which matches the planner's haversineDistance. */
+    @Test
+    void chordIsALowerBoundOfHaversine() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        GeoHeuristic geo = planner.getNetwork().getGeo();
+        Random random = new Random(7);
+        for (int i = 0; i < TestNetworks.trials(10_000); i++) {
+            int from = random.nextInt(geo.cityCount());
+            int to = random.nextInt(geo.cityCount());
+            double haversine = geo.distance(GeoHeuristic.Kind.HAVERSINE, from, to);
+            double chord = geo.distance(GeoHeuristic.Kind.CHORD, from, to);
+            assertTrue(chord <= haversine + 1e-9, from + " -> " + to + ": " + chord + " > " + haversine);
+            assertTrue(chord >= haversine * 0.999, from + " -> " + to); // below 0.1 % apart at these distances
+            City2 city1 = new City2("", geo.latitudeDegrees(from), geo.longitudeDegrees(from), "NONE");
+            City2 city2 = new City2("", geo.latitudeDegrees(to), geo.longitudeDegrees(to), "NONE");
+            assertEquals(planner.haversineDistance(city1, city2), haversine, 1e-9);
+        }
+    }
+
+    /** With an admissible heuristic both kinds find optimal routes, so their costs are the same. */
+    @Test
+    void chordGivesTheHaversineCostsOnBigGraph() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        planner.useLandmarks(8, LandmarkIndex.Selection.FARTHEST);
+        for (TestCase query : TestNetworks.bigGraphQueries(planner, new Random(7), TestNetworks.trials(100))) {
+            planner.heuristicKind = GeoHeuristic.Kind.HAVERSINE;
+            SearchResult haversine = TestNetworks.aStar(planner, query.getStartCity(), query.getGoalCity());
+            planner.heuristicKind = GeoHeuristic.Kind.CHORD;
+            SearchResult chord = TestNetworks.aStar(planner, query.getStartCity(), query.getGoalCity());
+            String message = query.getStartCity() + " -> " + query.getGoalCity();
+            assertEquals(haversine == null, chord == null, message);
+            if (chord != null) {
+                assertEquals(haversine.getOptimalCost(), chord.getOptimalCost(), 1e-6, message);
+                TestNetworks.assertRoute(planner.getNetwork().getGraph(), query.getStartCity(), query.getGoalCity(),
+                        chord);
+            }
+        }
+    }
+
+    @Test
+    void chordIsOptimalOnRandomNetworks(@TempDir Path directory) throws IOException {
+        Random random = new Random(7);
+        for (int trial = 0; trial < TestNetworks.trials(300); trial++) {
+            RoutePlanner2 planner = TestNetworks.randomNetwork(random, directory, 30, 4);
+            planner.heuristicKind = GeoHeuristic.Kind.CHORD;
+            if (random.nextInt(4) == 0) planner.permitCost = 0;
+            for (int query = 0; query < 5; query++) {
+                String start = TestNetworks.randomCity(planner, random);
+                String goal = TestNetworks.randomCity(planner, random);
+                TestNetworks.assertOptimal(planner, start, goal, TestNetworks.aStar(planner, start, goal));
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexedMinHeapTest {
+
+    @Test
+    void decreaseKeyMatchesModel() {
+        assertMatchesModel(IndexedMinHeap.Mode.DECREASE_KEY);
+    }
+
+    @Test
+    void lazyDeletionMatchesModel() {
+        assertMatchesModel(IndexedMinHeap.Mode.LAZY_DELETION);
+    }
+
+    @Test
+    void emptyHeap() {
+        for (IndexedMinHeap.Mode mode : IndexedMinHeap.Mode.values()) {
+            IndexedMinHeap heap = new IndexedMinHeap(mode, 2);
+            assertTrue(heap.isEmpty());
+            assertEquals(IndexedMinHeap.EMPTY, heap.poll());
+            assertEquals(Double.POSITIVE_INFINITY, heap.peekKey());
+            assertEquals(0, heap.drain().length);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new IndexedMinHeap(IndexedMinHeap.Mode.DECREASE_KEY, 1));
+    }
+
+    /** Both frontier modes give aStarSearch the same costs. */
+    @Test
+    void frontierModesGiveTheSameCostsOnBigGraph() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        SearchScratch<State2> decreaseKey = new SearchScratch<>(IndexedMinHeap.Mode.DECREASE_KEY);
+        SearchScratch<State2> lazyDeletion = new SearchScratch<>(IndexedMinHeap.Mode.LAZY_DELETION);
+        for (TestCase query : TestNetworks.bigGraphQueries(planner, new Random(4), TestNetworks.trials(100))) {
+            for (double scalingFactor : new double[]{1.0, 1.4515}) {
+                SearchOutcome expected = planner.search(query.getStartCity(), query.getGoalCity(), scalingFactor,
+                        SearchBudget.unlimited(), decreaseKey);
+                SearchOutcome actual = planner.search(query.getStartCity(), query.getGoalCity(), scalingFactor,
+                        SearchBudget.unlimited(), lazyDeletion);
+                String message = query.getStartCity() + " -> " + query.getGoalCity() + " at " + scalingFactor;
+                assertEquals(expected.getStatus(), actual.getStatus(), message);
+                if (!expected.isFound()) continue;
+                assertEquals(expected.getResult().getOptimalCost(), actual.getResult().getOptimalCost(), 1e-6, message);
+                TestNetworks.assertRoute(planner.getNetwork().getGraph(), query.getStartCity(), query.getGoalCity(),
+                        actual.getResult());
+            }
+        }
+    }
+
+    /**
+     * Random pushes, decrease-keys, polls, drains and clears on heaps of several arities, against a map of
+     * the queued ids to their keys. Ties may come out in any order, so polls are checked by their key.
+     */
+    private static void assertMatchesModel(IndexedMinHeap.Mode mode) {
+        Random random = new Random(4);
+        for (int trial = 0; trial < TestNetworks.trials(200); trial++) {
+            IndexedMinHeap heap = new IndexedMinHeap(mode, 2 + random.nextInt(7));
+            Map<Integer, Double> model = new HashMap<>();
+            int ids = 1 + random.nextInt(600);
+            for (int operation = 0; operation < 2000; operation++) {
+                int action = random.nextInt(20);
+                if (action < 9) {
+                    int id = random.nextInt(ids);
+                    Double current = model.get(id);
+                    // decrease-key for a queued id, keys with many ties for a new one
+                    double key = current != null ? current - random.nextInt(3) : random.nextInt(50);
+                    heap.push(id, key);
+                    model.put(id, key);
+                } else if (action < 18) {
+                    int id = heap.poll();
+                    if (model.isEmpty()) {
+                        assertEquals(IndexedMinHeap.EMPTY, id);
+                    } else {
+                        assertTrue(model.containsKey(id), "polled " + id);
+                        assertEquals(Collections.min(model.values()), model.remove(id), "polled " + id);
+                    }
+                } else if (action == 18) {
+                    double expected = model.isEmpty() ? Double.POSITIVE_INFINITY : Collections.min(model.values());
+                    assertEquals(expected, heap.peekKey());
+                } else if (random.nextBoolean()) {
+                    int[] drained = heap.drain();
+                    Arrays.sort(drained);
+                    assertArrayEquals(model.keySet().stream().mapToInt(Integer::intValue).sorted().toArray(), drained);
+                    model.clear();
+                } else {
+                    heap.clear();
+                    model.clear();
+                }
+                assertEquals(model.size(), heap.size());
+                assertEquals(model.isEmpty(), heap.isEmpty());
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntegerSearchTest {
+
+    @Test
+    void matchesAStarOnSmallGraphs() throws IOException {
+        for (int number = 0; number < 8; number++) {
+            RoutePlanner planner = new RoutePlanner();
+            planner.readCities(TestNetworks.dataFile("testcases_Teilaufgabe_2/t" + number + "_cities.txt"));
+            planner.readConnections(TestNetworks.dataFile("testcases_Teilaufgabe_2/t" + number + "_connections.txt"));
+            assertSameCost(planner, "A", "B");
+        }
+    }
+
+    @Test
+    void matchesAStarOnRandomIntegerNetworks(@TempDir Path directory) throws IOException {
+        Random random = new Random(21);
+        for (int trial = 0; trial < TestNetworks.trials(300); trial++) {
+            int cities = 2 + random.nextInt(20);
+            Path citiesFile = directory.resolve("cities.txt");
+            Path connectionsFile = directory.resolve("connections.txt");
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(citiesFile, StandardCharsets.UTF_8))) {
+                out.println("city;h;available_permit");
+                for (int city = 0; city < cities; city++) {
+                    out.println("C" + city + ";0;" + (random.nextBoolean() ? "P" + random.nextInt(3) : "NONE"));
+                }
+            }
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(connectionsFile, StandardCharsets.UTF_8))) {
+                out.println("city_1;city_2;distance;required_permit");
+                for (int road = cities + random.nextInt(3 * cities); road > 0; road--) {
+                    out.println("C" + random.nextInt(cities) + ";C" + random.nextInt(cities) + ";"
+                            + (1 + random.nextInt(100)) + ";"
+                            + (random.nextBoolean() ? "NONE" : "P" + random.nextInt(3)));
+                }
+            }
+            RoutePlanner planner = new RoutePlanner();
+            planner.readCities(citiesFile.toString());
+            planner.readConnections(connectionsFile.toString());
+            for (int query = 0; query < 5; query++) {
+                assertSameCost(planner, "C" + random.nextInt(cities), "C" + random.nextInt(cities));
+            }
+        }
+    }
+
+    @Test
+    void fixedPointMatchesReferenceOnBigGraph() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        for (TestCase query : TestNetworks.bigGraphQueries(planner, new Random(21), TestNetworks.trials(100))) {
+            assertFixedPoint(planner, query.getStartCity(), query.getGoalCity(), IntegerSearch.MILLIMETRES_PER_KM);
+        }
+    }
+
+    @Test
+    void fixedPointMatchesReferenceOnRandomNetworks(@TempDir Path directory) throws IOException {
+        Random random = new Random(21);
+        for (int trial = 0; trial < TestNetworks.trials(300); trial++) {
+            RoutePlanner2 planner = TestNetworks.randomNetwork(random, directory, 30, 4,
+                    TestNetworks.randomSpread(random));
+            if (random.nextInt(4) == 0) planner.permitCost = 0;
+            // whole km give exact costs, tenths of a unit per km a coarse rounding of up to 10 km per road
+            double unitsPerKm = random.nextBoolean() ? 1 : 0.1;
+            for (int query = 0; query < 5; query++) {
+                String start = TestNetworks.randomCity(planner, random);
+                String goal = TestNetworks.randomCity(planner, random);
+                assertFixedPoint(planner, start, goal, unitsPerKm);
+            }
+        }
+    }
+
+    @Test
+    void rejectsInvalidUnits() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        assertThrows(IllegalArgumentException.class, () -> planner.fixedPointSearch("Ahaus", "Obertshausen", 0));
+        assertThrows(IllegalArgumentException.class, () -> planner.fixedPointSearch("Ahaus", "Obertshausen", 1e30));
+    }
+
+    private static void assertSameCost(RoutePlanner planner, String start, String goal) {
+        SearchOutcome outcome = planner.search(start, goal, SearchBudget.unlimited());
+        SearchResult result = planner.integerSearch(start, goal);
+        String query = start + " -> " + goal;
+        assertEquals(outcome.isFound(), result != null, query);
+        if (result != null) {
+            assertEquals(outcome.getResult().getOptimalCost(), result.getOptimalCost(), query);
+            assertEquals(start, result.getPath().get(0), query);
+            assertEquals(goal, result.getPath().get(result.getPath().size() - 1), query);
+        }
+    }
+
+    /**
+     * The fixed-point route costs at least the optimum and, as every road and permit is rounded up by less
+     * than one unit, at most one unit per road and permit of an optimal route more.
+     */
+    private static void assertFixedPoint(RoutePlanner2 planner, String start, String goal, double unitsPerKm) {
+        String query = start + " -> " + goal;
+        double optimum = TestNetworks.referenceCost(planner, start, goal);
+        SearchResult result = planner.fixedPointSearch(start, goal, unitsPerKm);
+        if (optimum == Double.POSITIVE_INFINITY) {
+            assertNull(result, query);
+            return;
+        }
+        assertNotNull(result, query);
+        SearchResult optimal = planner.bidirectionalSearch(start, goal);
+        int units = optimal.getPath().size() + optimal.getPermitsAcquired().size();
+        assertTrue(result.getOptimalCost() >= optimum - 1e-6, query);
+        assertTrue(result.getOptimalCost() <= optimum + units / unitsPerKm + 1e-6,
+                query + ": " + result.getOptimalCost() + " > " + optimum);
+        TestNetworks.assertRoute(planner.getNetwork().getGraph(), start, goal, result);
+    }
+}
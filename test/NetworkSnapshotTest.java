@@ -0,0 +1,91 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NetworkSnapshotTest {
+
+    @Test
+    void searchesTheSameOnBigGraph(@TempDir Path directory) throws IOException {
+        RoutePlanner2 text = TestNetworks.bigGraph();
+        text.useLandmarks(8, LandmarkIndex.Selection.AVOID);
+        Path file = directory.resolve("bigGraph.rpsn");
+        text.writeSnapshot(file.toString());
+        RoutePlanner2 mapped = new RoutePlanner2();
+        mapped.readSnapshot(file.toString());
+
+        assertNotNull(mapped.getLandmarks());
+        for (TestCase query : TestNetworks.bigGraphQueries(text, new Random(11), TestNetworks.trials(100))) {
+            SearchResult expected = TestNetworks.aStar(text, query.getStartCity(), query.getGoalCity());
+            SearchResult actual = TestNetworks.aStar(mapped, query.getStartCity(), query.getGoalCity());
+            if (expected == null) {
+                assertNull(actual);
+                continue;
+            }
+            assertEquals(expected.getOptimalCost(), actual.getOptimalCost());
+            assertEquals(expected.getPath(), actual.getPath());
+            assertEquals(expected.getPermitsAcquired(), actual.getPermitsAcquired());
+            assertEquals(expected.getNodesExpanded(), actual.getNodesExpanded());
+        }
+    }
+
+    @Test
+    void keepsRandomNetworks(@TempDir Path directory) throws IOException {
+        Random random = new Random(11);
+        Path file = directory.resolve("network.rpsn");
+        for (int trial = 0; trial < TestNetworks.trials(200); trial++) {
+            RoutePlanner2 text = TestNetworks.randomNetwork(random, directory, 30, 4);
+            text.writeSnapshot(file.toString());
+            RoutePlanner2 mapped = new RoutePlanner2();
+            mapped.readSnapshot(file.toString());
+
+            Graph expected = text.getNetwork().getGraph();
+            Graph actual = mapped.getNetwork().getGraph();
+            assertEquals(expected.cityCount(), actual.cityCount());
+            for (int city = 0; city < expected.cityCount(); city++) {
+                assertEquals(expected.cityName(city), actual.cityName(city));
+                assertEquals(permitName(expected, expected.availablePermit(city)),
+                        permitName(actual, actual.availablePermit(city)));
+                int roads = expected.endEdge(city) - expected.firstEdge(city);
+                assertEquals(roads, actual.endEdge(city) - actual.firstEdge(city));
+                for (int i = 0; i < roads; i++) {
+                    int edge = expected.firstEdge(city) + i;
+                    int other = actual.firstEdge(city) + i;
+                    assertEquals(expected.cityName(expected.target(edge)), actual.cityName(actual.target(other)));
+                    assertEquals(expected.distance(edge), actual.distance(other));
+                    assertEquals(permitName(expected, expected.requiredPermit(edge)),
+                            permitName(actual, actual.requiredPermit(other)));
+                }
+            }
+            for (int query = 0; query < 3; query++) {
+                String start = TestNetworks.randomCity(mapped, random);
+                String goal = TestNetworks.randomCity(mapped, random);
+                TestNetworks.assertOptimal(mapped, start, goal, TestNetworks.aStar(mapped, start, goal));
+            }
+        }
+    }
+
+    @Test
+    void rejectsDamagedFiles(@TempDir Path directory) throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        Path file = directory.resolve("bigGraph.rpsn");
+        planner.writeSnapshot(file.toString());
+        byte[] bytes = Files.readAllBytes(file);
+
+        Path damaged = directory.resolve("damaged.rpsn");
+        Files.write(damaged, new byte[]{1, 2, 3});
+        assertThrows(IOException.class, () -> new RoutePlanner2().readSnapshot(damaged.toString()));
+        Files.write(damaged, Arrays.copyOf(bytes, bytes.length - 100));
+        assertThrows(IOException.class, () -> new RoutePlanner2().readSnapshot(damaged.toString()));
+    }
+
+    private static String permitName(Graph graph, int permit) {
+        return permit == Graph.NONE ? null : graph.permits().name(permit);
+    }
+}
@@ -0,0 +1,82 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelSearchTest {
+
+    @Test
+    void matchesReferenceOnBigGraph() throws Exception {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        Random random = new Random(24);
+        for (TestCase query : TestNetworks.bigGraphQueries(planner, random, TestNetworks.trials(50))) {
+            TestNetworks.assertOptimal(planner, query.getStartCity(), query.getGoalCity(),
+                    planner.parallelSearch(query.getStartCity(), query.getGoalCity(), 1 + random.nextInt(5)));
+        }
+    }
+
+    @Test
+    void matchesReferenceWithLandmarks() throws Exception {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        planner.useLandmarks(8, LandmarkIndex.Selection.FARTHEST);
+        Random random = new Random(24);
+        for (TestCase query : TestNetworks.bigGraphQueries(planner, random, TestNetworks.trials(50))) {
+            TestNetworks.assertOptimal(planner, query.getStartCity(), query.getGoalCity(),
+                    planner.parallelSearch(query.getStartCity(), query.getGoalCity(), 1 + random.nextInt(5)));
+        }
+    }
+
+    @Test
+    void matchesReferenceOnRandomNetworks(@TempDir Path directory) throws Exception {
+        Random random = new Random(24);
+        for (int trial = 0; trial < TestNetworks.trials(300); trial++) {
+            RoutePlanner2 planner = TestNetworks.randomNetwork(random, directory, 30, 4,
+                    TestNetworks.randomSpread(random));
+            if (random.nextInt(4) == 0) planner.permitCost = 0;
+            for (int query = 0; query < 5; query++) {
+                String start = TestNetworks.randomCity(planner, random);
+                String goal = TestNetworks.randomCity(planner, random);
+                int threads = 1 + random.nextInt(5);
+                TestNetworks.assertOptimal(planner, start, goal, planner.parallelSearch(start, goal, threads));
+            }
+        }
+    }
+
+    @Test
+    void servesConcurrentQueriesFromDaemonWorkers() throws Exception {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        List<TestCase> queries = TestNetworks.bigGraphQueries(planner, new Random(24), 0);
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<SearchResult>> results = new ArrayList<>();
+            for (TestCase query : queries) {
+                results.add(callers.submit(() -> planner.parallelSearch(query.getStartCity(), query.getGoalCity(), 3)));
+            }
+            for (int i = 0; i < queries.size(); i++) {
+                TestNetworks.assertOptimal(planner, queries.get(i).getStartCity(), queries.get(i).getGoalCity(),
+                        results.get(i).get());
+            }
+        } finally {
+            callers.shutdown();
+        }
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("parallel-search")) assertTrue(thread.isDaemon(), thread.getName());
+        }
+    }
+
+    @Test
+    void rejectsInvalidArguments() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        assertThrows(IllegalArgumentException.class, () -> planner.parallelSearch("Ahaus", "Obertshausen", 0));
+        assertThrows(IllegalArgumentException.class, () -> planner.parallelSearch("Ahaus", "Atlantis", 2));
+    }
+}
@@ -0,0 +1,89 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParetoSearchTest {
+
+    @Test
+    void matchesBruteForceOnBigGraph() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        for (TestCase query : TestNetworks.bigGraphQueries(planner, new Random(20), TestNetworks.trials(10))) {
+            assertFront(planner, query.getStartCity(), query.getGoalCity());
+        }
+    }
+
+    @Test
+    void matchesBruteForceOnRandomNetworks(@TempDir Path directory) throws IOException {
+        Random random = new Random(20);
+        for (int trial = 0; trial < TestNetworks.trials(300); trial++) {
+            RoutePlanner2 planner = TestNetworks.randomNetwork(random, directory, 30, 5,
+                    TestNetworks.randomSpread(random));
+            if (random.nextInt(4) == 0) planner.permitCost = random.nextInt(2) == 0 ? 0 : 5;
+            for (int query = 0; query < 5; query++) {
+                String start = TestNetworks.randomCity(planner, random);
+                String goal = TestNetworks.randomCity(planner, random);
+                assertFront(planner, start, goal);
+            }
+        }
+    }
+
+    private static void assertFront(RoutePlanner2 planner, String start, String goal) {
+        Graph graph = planner.getNetwork().getGraph();
+        List<double[]> expected = bruteForceFront(graph, graph.cityId(start), graph.cityId(goal), planner.permitCost);
+        List<SearchResult> front = planner.paretoSearch(start, goal);
+        String query = start + " -> " + goal;
+        assertEquals(expected.size(), front.size(), query + ": " + front);
+        for (int i = 0; i < front.size(); i++) {
+            SearchResult route = front.get(i);
+            assertEquals(expected.get(i)[0], route.getOptimalCost() - route.getTotalPermitCost(), 1e-6, query);
+            assertEquals(expected.get(i)[1], route.getTotalPermitCost(), 1e-6, query);
+            TestNetworks.assertRoute(graph, start, goal, route);
+        }
+    }
+
+    /**
+     * The non-dominated {distance, permit spend} pairs by ascending distance: the shortest distance with
+     * which every permit set reaches the goal, by Dijkstra over (city, permits acquired), filtered to the
+     * pairs that spend less than every shorter one.
+     */
+    private static List<double[]> bruteForceFront(Graph graph, int start, int goal, double permitCost) {
+        boolean[] settled = new boolean[(int) graph.stateKey(graph.cityCount(), 0L)];
+        PriorityQueue<double[]> queue = new PriorityQueue<>(Comparator.comparingDouble(entry -> entry[0]));
+        queue.add(new double[]{0, start, 0L});
+        long startPermit = PermitRegistry.mask(graph.availablePermit(start));
+        if (startPermit != 0) queue.add(new double[]{0, start, startPermit});
+        List<double[]> routes = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            double[] entry = queue.poll();
+            int city = (int) entry[1];
+            long permits = (long) entry[2];
+            int state = (int) graph.stateKey(city, permits);
+            if (settled[state]) continue;
+            settled[state] = true;
+            if (city == goal) {
+                routes.add(new double[]{entry[0], Long.bitCount(permits) * permitCost});
+                if (routes.get(routes.size() - 1)[1] == 0) break; // no later route can spend less
+            }
+            for (int edge = graph.firstEdge(city), end = graph.endEdge(city); edge < end; edge++) {
+                long required = PermitRegistry.mask(graph.requiredPermit(edge));
+                if ((permits & required) != required) continue;
+                int next = graph.target(edge);
+                double distance = entry[0] + graph.distance(edge);
+                queue.add(new double[]{distance, next, permits});
+                long available = PermitRegistry.mask(graph.availablePermit(next));
+                if (available != 0) queue.add(new double[]{distance, next, permits | available});
+            }
+        }
+        routes.sort(Comparator.<double[]>comparingDouble(route -> route[0]).thenComparingDouble(route -> route[1]));
+        List<double[]> front = new ArrayList<>();
+        for (double[] route : routes) {
+            if (front.isEmpty() || route[1] < front.get(front.size() - 1)[1]) front.add(route);
+        }
+        return front;
+    }
+}
@@ -0,0 +1,135 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryCacheTest {
+
+    @Test
+    void evictsLeastRecentlyUsed() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        List<TestCase> pairs = TestNetworks.bigGraphQueries(planner, new Random(13), 0).subList(0, 30);
+        QueryCache cache = QueryCache.bySize(planner, 10);
+        // the cache as a plain access-ordered map
+        LinkedHashMap<String, SearchResult> model = new LinkedHashMap<>(16, 0.75f, true);
+        long hits = 0;
+        long evictions = 0;
+        Random random = new Random(13);
+        for (int i = 0; i < TestNetworks.trials(500); i++) {
+            TestCase query = pairs.get(random.nextInt(pairs.size()));
+            SearchResult result = cache.search(query.getStartCity(), query.getGoalCity(), 1.0);
+            String key = query.getStartCity() + " -> " + query.getGoalCity();
+            if (model.containsKey(key)) {
+                hits++;
+                assertSame(model.get(key), result, key);
+            } else {
+                model.put(key, result);
+                if (model.size() > 10) {
+                    model.remove(model.keySet().iterator().next());
+                    evictions++;
+                }
+            }
+            assertEquals(TestNetworks.aStar(planner, query.getStartCity(), query.getGoalCity()).getOptimalCost(),
+                    result.getOptimalCost());
+        }
+        assertEquals(hits, cache.getHits());
+        assertEquals(evictions, cache.getEvictions());
+        assertEquals(model.size(), cache.size());
+    }
+
+    @Test
+    void staysWithinItsWeight() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        QueryCache cache = QueryCache.byWeight(planner, 200);
+        for (TestCase query : TestNetworks.bigGraphQueries(planner, new Random(13), 0)) {
+            cache.search(query.getStartCity(), query.getGoalCity(), 1.0);
+            assertTrue(cache.getWeight() <= cache.getMaxWeight(), cache.toString());
+        }
+        assertTrue(cache.getEvictions() > 0);
+    }
+
+    @Test
+    void searchesConcurrentMissesOnce() throws Exception {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        QueryCache cache = QueryCache.bySize(planner, 10);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<SearchResult>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) results.add(executor.submit(() -> cache.search("Ahaus", "Obertshausen", 1.0)));
+            SearchResult first = results.get(0).get();
+            for (Future<SearchResult> result : results) assertSame(first, result.get());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, cache.getMisses());
+        assertEquals(63, cache.getHits());
+    }
+
+    /**
+     * An interrupted miss must neither be cached as "no route" nor handed to its waiters as one. The miss
+     * is held in the search listener until a second caller waits for it.
+     */
+    @Test
+    void doesNotCacheInterruptedSearches() throws Exception {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        QueryCache cache = QueryCache.bySize(planner, 10);
+        planner.setSearchListener(stats -> {
+            while (stats.getStatus() == SearchOutcome.Status.CANCELLED && cache.getHits() == 0) Thread.onSpinWait();
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<SearchResult> interrupted = executor.submit(() -> {
+                Thread.currentThread().interrupt();
+                return cache.search("Ahaus", "Obertshausen", 1.0);
+            });
+            while (cache.getMisses() == 0) Thread.onSpinWait();
+            assertThrows(CancellationException.class, () -> cache.search("Ahaus", "Obertshausen", 1.0));
+            ExecutionException e = assertThrows(ExecutionException.class, interrupted::get);
+            assertInstanceOf(CancellationException.class, e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(0, cache.size());
+
+        planner.setSearchListener(null);
+        SearchResult result = cache.search("Ahaus", "Obertshausen", 1.0);
+        assertEquals(TestNetworks.aStar(planner, "Ahaus", "Obertshausen").getOptimalCost(), result.getOptimalCost());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void rejectsUnknownCities() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        QueryCache cache = QueryCache.bySize(planner, 10);
+        assertThrows(IllegalArgumentException.class, () -> cache.search("Ahaus", "Atlantis", 1.0));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void dropsEntriesOfOlderVersions() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        QueryCache cache = QueryCache.bySize(planner, 10);
+        SearchResult before = cache.search("Ahaus", "Obertshausen", 1.0);
+        List<String> path = before.getPath();
+        planner.updateNetwork(new GraphUpdate().closeRoad(path.get(1), path.get(2)));
+
+        SearchResult after = cache.search("Ahaus", "Obertshausen", 1.0);
+        assertEquals(1, cache.getInvalidations());
+        assertEquals(2, cache.getMisses());
+        assertTrue(after.getOptimalCost() >= before.getOptimalCost());
+        assertNotEquals(path, after.getPath());
+
+        planner.useLandmarks(0, LandmarkIndex.Selection.AVOID); // changes the network version as well
+        cache.search("Ahaus", "Obertshausen", 1.0);
+        assertEquals(2, cache.getInvalidations());
+        assertEquals(1, cache.size());
+    }
+}
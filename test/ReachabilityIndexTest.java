@@ -0,0 +1,121 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReachabilityIndexTest {
+
+    @Test
+    void matchesExhaustiveSearchOnRandomNetworks(@TempDir Path directory) throws IOException {
+        Random random = new Random(18);
+        for (int trial = 0; trial < TestNetworks.trials(300); trial++) {
+            RoutePlanner2 planner = TestNetworks.randomNetwork(random, directory, 20, 6);
+            Graph graph = planner.getNetwork().getGraph();
+            ReachabilityIndex index = planner.getReachability();
+            int[] components = permitFreeComponents(graph);
+            for (int start = 0; start < graph.cityCount(); start++) {
+                long reachable = reachablePermits(graph, start);
+                long useful = index.usefulPermits(start);
+                assertEquals(reachable, index.reachablePermits(start), graph.cityName(start));
+                assertEquals(useful, useful & reachable, graph.cityName(start));
+                assertEquals(componentPermits(graph, components, components[start]),
+                        index.componentPermits(index.component(start)), graph.cityName(start));
+                for (int goal = 0; goal < graph.cityCount(); goal++) {
+                    String query = graph.cityName(start) + " -> " + graph.cityName(goal);
+                    double cost = TestNetworks.referenceCost(graph, start, goal, 0L, planner.permitCost);
+                    assertEquals(cost < Double.POSITIVE_INFINITY, index.isReachable(start, goal), query);
+                    assertEquals(cost < Double.POSITIVE_INFINITY,
+                            planner.isReachable(graph.cityName(start), graph.cityName(goal)), query);
+                    // acquiring only the useful permits costs nothing
+                    assertEquals(cost, TestNetworks.referenceCost(graph, start, goal, 0L, planner.permitCost, useful),
+                            1e-9, query);
+                    assertEquals(components[start] == components[goal],
+                            index.component(start) == index.component(goal), query);
+                }
+            }
+        }
+    }
+
+    @Test
+    void answersForBigGraph() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        Graph graph = planner.getNetwork().getGraph();
+        Random random = new Random(18);
+        for (TestCase query : TestNetworks.bigGraphQueries(planner, random, TestNetworks.trials(100))) {
+            assertEquals(TestNetworks.referenceCost(planner, query.getStartCity(), query.getGoalCity())
+                            < Double.POSITIVE_INFINITY, planner.isReachable(query.getStartCity(), query.getGoalCity()),
+                    query.getStartCity() + " -> " + query.getGoalCity());
+        }
+        for (int i = 0; i < TestNetworks.trials(20); i++) {
+            int city = random.nextInt(graph.cityCount());
+            assertEquals(reachablePermits(graph, city), planner.getReachability().reachablePermits(city));
+        }
+        assertThrows(IllegalArgumentException.class, () -> planner.isReachable("Aachen", "Atlantis"));
+    }
+
+    /** Union of the permits held in any (city, permits) state reachable from the start. */
+    private static long reachablePermits(Graph graph, int start) {
+        boolean[] seen = new boolean[(int) graph.stateKey(graph.cityCount(), 0L)];
+        ArrayDeque<long[]> queue = new ArrayDeque<>();
+        long startPermit = PermitRegistry.mask(graph.availablePermit(start));
+        queue.add(new long[]{start, startPermit});
+        seen[(int) graph.stateKey(start, startPermit)] = true;
+        long reachable = 0;
+        while (!queue.isEmpty()) {
+            long[] state = queue.poll();
+            int city = (int) state[0];
+            long permits = state[1];
+            reachable |= permits;
+            for (int edge = graph.firstEdge(city), end = graph.endEdge(city); edge < end; edge++) {
+                long required = PermitRegistry.mask(graph.requiredPermit(edge));
+                if ((permits & required) != required) continue;
+                int next = graph.target(edge);
+                long nextPermits = permits | PermitRegistry.mask(graph.availablePermit(next));
+                int key = (int) graph.stateKey(next, nextPermits);
+                if (!seen[key]) {
+                    seen[key] = true;
+                    queue.add(new long[]{next, nextPermits});
+                }
+            }
+        }
+        return reachable;
+    }
+
+    /** Per city the smallest city connected to it by roads without permit. */
+    private static int[] permitFreeComponents(Graph graph) {
+        int[] components = new int[graph.cityCount()];
+        Arrays.fill(components, -1);
+        for (int root = 0; root < graph.cityCount(); root++) {
+            if (components[root] != -1) continue;
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            queue.add(root);
+            components[root] = root;
+            while (!queue.isEmpty()) {
+                int city = queue.poll();
+                for (int edge = graph.firstEdge(city), end = graph.endEdge(city); edge < end; edge++) {
+                    if (PermitRegistry.mask(graph.requiredPermit(edge)) != 0) continue;
+                    int next = graph.target(edge);
+                    if (components[next] == -1) {
+                        components[next] = root;
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+        return components;
+    }
+
+    private static long componentPermits(Graph graph, int[] components, int root) {
+        long permits = 0;
+        for (int city = 0; city < graph.cityCount(); city++) {
+            if (components[city] == root) permits |= PermitRegistry.mask(graph.availablePermit(city));
+        }
+        return permits;
+    }
+}
@@ -0,0 +1,128 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplanningSessionTest {
+
+    @Test
+    void matchesReferenceWhileDrivingOnRandomNetworks(@TempDir Path directory) throws IOException {
+        Random random = new Random(23);
+        for (int trial = 0; trial < TestNetworks.trials(300); trial++) {
+            RoutePlanner2 planner = TestNetworks.randomNetwork(random, directory, 30, 4);
+            if (random.nextInt(4) == 0) planner.permitCost = 0;
+            String goal = TestNetworks.randomCity(planner, random);
+            ReplanningSession session = planner.startReplanning(TestNetworks.randomCity(planner, random), goal);
+            List<String> changes = new ArrayList<>();
+            for (int step = 0; step < 12; step++) {
+                SearchResult route = session.replan();
+                Graph graph = session.getNetwork().getGraph();
+                String position = session.getPosition();
+                String message = position + " -> " + goal + " after " + changes;
+                double expected = TestNetworks.referenceCost(graph, graph.cityId(position), graph.cityId(goal),
+                        session.getHeldPermits(), planner.permitCost);
+                if (expected == Double.POSITIVE_INFINITY) {
+                    assertNull(route, message);
+                } else {
+                    assertNotNull(route, message);
+                    assertEquals(expected, route.getOptimalCost(), 1e-6, message);
+                    TestNetworks.assertRoute(graph, position, goal, route);
+                }
+
+                if (route != null && route.getPath().size() > 1 && random.nextBoolean()) {
+                    String next = route.getPath().get(1 + random.nextInt(route.getPath().size() - 1));
+                    session.moveTo(next);
+                    assertEquals(next, session.getPosition());
+                    changes.add("move to " + next);
+                } else {
+                    GraphUpdate update = randomUpdate(random, graph);
+                    session.update(planner.updateNetwork(update), update);
+                    changes.add(update.toString());
+                }
+            }
+        }
+    }
+
+    @Test
+    void repairsWithFewerExpansionsThanAFreshPlan() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        long repaired = 0;
+        long fresh = 0;
+        for (TestCase query : TestNetworks.bigGraphQueries(planner, new Random(23), 0)) {
+            ReplanningSession session = planner.startReplanning(query.getStartCity(), query.getGoalCity());
+            SearchResult route = session.replan();
+            if (route == null || route.getPath().size() < 3) continue;
+            List<String> path = route.getPath();
+            int middle = path.size() / 2;
+            session.moveTo(path.get(middle));
+            GraphUpdate closure = new GraphUpdate().closeRoad(path.get(middle), path.get(middle + 1));
+            session.update(planner.updateNetwork(closure), closure);
+
+            SearchResult repair = session.replan();
+            repaired += session.getLastExpansions();
+            ReplanningSession restarted = planner.startReplanning(path.get(middle), query.getGoalCity());
+            SearchResult plan = restarted.replan();
+            fresh += restarted.getLastExpansions();
+            Graph graph = planner.getNetwork().getGraph();
+            double expected = TestNetworks.referenceCost(graph, graph.cityId(path.get(middle)),
+                    graph.cityId(query.getGoalCity()), session.getHeldPermits(), planner.permitCost);
+            if (expected == Double.POSITIVE_INFINITY) {
+                assertNull(repair);
+            } else {
+                assertEquals(expected, repair.getOptimalCost(), 1e-6, path.toString());
+            }
+            if (session.getHeldPermits() == 0 && plan != null) {
+                assertEquals(plan.getOptimalCost(), repair.getOptimalCost(), 1e-6, path.toString());
+            }
+            planner.updateNetwork(new GraphUpdate().reopenRoad(path.get(middle), path.get(middle + 1)));
+        }
+        assertTrue(repaired < fresh, repaired + " expansions to repair, " + fresh + " to plan afresh");
+    }
+
+    @Test
+    void rejectsMovesOffTheRoute() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        ReplanningSession session = planner.startReplanning("Ahaus", "Obertshausen");
+        SearchResult route = session.replan();
+        String elsewhere = TestNetworks.bigGraphQueries(planner, new Random(23), 0).stream()
+                .map(TestCase::getStartCity).filter(city -> !route.getPath().contains(city)).findFirst().get();
+        assertThrows(IllegalArgumentException.class, () -> session.moveTo(elsewhere));
+        assertEquals("Ahaus", session.getPosition());
+    }
+
+    /** One change of a random kind to a random road or city of the graph. */
+    private static GraphUpdate randomUpdate(Random random, Graph graph) {
+        GraphUpdate update = new GraphUpdate();
+        int permits = graph.permits().size();
+        String permit = permits == 0 || random.nextBoolean() ? "NONE" : graph.permitName(random.nextInt(permits));
+        int kind = random.nextInt(5);
+        if (kind == 3 && graph.closedRoadCount() > 0) {
+            Graph.ClosedRoad road = graph.closedRoads()[random.nextInt(graph.closedRoadCount())];
+            return update.reopenRoad(graph.cityName(road.city1), graph.cityName(road.city2));
+        }
+        List<int[]> roads = new ArrayList<>();
+        for (int city = 0; city < graph.cityCount(); city++) {
+            for (int edge = graph.firstEdge(city), end = graph.endEdge(city); edge < end; edge++) {
+                if (graph.target(edge) >= city) roads.add(new int[]{city, graph.target(edge)});
+            }
+        }
+        if (kind == 4 || roads.isEmpty()) {
+            return update.setAvailablePermit(graph.cityName(random.nextInt(graph.cityCount())), permit);
+        }
+        int[] road = roads.get(random.nextInt(roads.size()));
+        String city1 = graph.cityName(road[0]);
+        String city2 = graph.cityName(road[1]);
+        switch (kind) {
+            case 0: return update.closeRoad(city1, city2);
+            case 1: return update.setDistance(city1, city2, 20 + random.nextInt(100));
+            case 2: return update.setRequiredPermit(city1, city2, permit);
+            default: return update.setDistance(city1, city2, 20);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchBudgetTest {
+
+    @Test
+    void nodeBudgetsOnBigGraph() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        Random random = new Random(17);
+        for (TestCase query : TestNetworks.bigGraphQueries(planner, random, TestNetworks.trials(50))) {
+            assertNodeBudgets(random, budget -> planner.search(query.getStartCity(), query.getGoalCity(), 1.0, budget));
+        }
+    }
+
+    @Test
+    void nodeBudgetsOnRandomNetworks(@TempDir Path directory) throws IOException {
+        Random random = new Random(17);
+        for (int trial = 0; trial < TestNetworks.trials(300); trial++) {
+            RoutePlanner2 planner = TestNetworks.randomNetwork(random, directory, 30, 4);
+            if (random.nextInt(4) == 0) planner.permitCost = 0;
+            for (int query = 0; query < 5; query++) {
+                String start = TestNetworks.randomCity(planner, random);
+                String goal = TestNetworks.randomCity(planner, random);
+                SearchOutcome outcome = planner.search(start, goal, 1.0, SearchBudget.unlimited());
+                assertEquals(TestNetworks.referenceCost(planner, start, goal) < Double.POSITIVE_INFINITY,
+                        outcome.isFound(), start + " -> " + goal);
+                assertNodeBudgets(random, budget -> planner.search(start, goal, 1.0, budget));
+            }
+        }
+    }
+
+    @Test
+    void nodeBudgetsOnSmallGraphs() throws IOException {
+        Random random = new Random(17);
+        for (int number = 0; number < 8; number++) {
+            RoutePlanner planner = new RoutePlanner();
+            planner.readCities(TestNetworks.dataFile("testcases_Teilaufgabe_2/t" + number + "_cities.txt"));
+            planner.readConnections(TestNetworks.dataFile("testcases_Teilaufgabe_2/t" + number + "_connections.txt"));
+            assertNodeBudgets(random, budget -> planner.search("A", "B", budget));
+        }
+    }
+
+    @Test
+    void otherLimitsStopBeforeTheFirstExpansion() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        SearchBudget[] budgets = {
+                SearchBudget.unlimited().withTimeNanos(0), SearchBudget.unlimited().withMaxStates(1)};
+        for (SearchBudget budget : budgets) {
+            SearchOutcome outcome = planner.search("Ahaus", "Obertshausen", 1.0, budget);
+            assertEquals(SearchOutcome.Status.BUDGET_EXCEEDED, outcome.getStatus(), budget.toString());
+            assertEquals(0, outcome.getNodesExpanded());
+            assertNull(outcome.getResult());
+        }
+
+        Thread.currentThread().interrupt();
+        try {
+            SearchOutcome outcome = planner.search("Ahaus", "Obertshausen", 1.0, SearchBudget.unlimited());
+            assertEquals(SearchOutcome.Status.CANCELLED, outcome.getStatus());
+            assertNull(outcome.getResult());
+        } finally {
+            Thread.interrupted();
+        }
+        assertTrue(planner.search("Ahaus", "Obertshausen", 1.0, SearchBudget.unlimited()).isFound());
+    }
+
+    @Test
+    void rejectsInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> SearchBudget.unlimited().withTimeNanos(-1));
+        assertThrows(IllegalArgumentException.class, () -> SearchBudget.unlimited().withMaxNodesExpanded(0));
+        assertThrows(IllegalArgumentException.class, () -> SearchBudget.unlimited().withMaxStates(0));
+    }
+
+    /**
+     * Runs the search without a budget and with node budgets below, at and above the nodes it expands: a
+     * budget below stops after exactly that many expansions, any other one ends like the unbudgeted search.
+     */
+    private static void assertNodeBudgets(Random random, Function<SearchBudget, SearchOutcome> search) {
+        SearchOutcome unlimited = search.apply(SearchBudget.unlimited());
+        int expanded = unlimited.getNodesExpanded();
+        int[] budgets = {1, 1 + random.nextInt(Math.max(expanded, 1)), expanded - 1, expanded, expanded + 1};
+        for (int maxNodes : budgets) {
+            if (maxNodes < 1) continue;
+            SearchOutcome outcome = search.apply(SearchBudget.unlimited().withMaxNodesExpanded(maxNodes));
+            String message = maxNodes + " of " + expanded + " nodes";
+            if (maxNodes < expanded) {
+                assertEquals(SearchOutcome.Status.BUDGET_EXCEEDED, outcome.getStatus(), message);
+                assertEquals(maxNodes, outcome.getNodesExpanded(), message);
+                assertNull(outcome.getResult(), message);
+            } else if (unlimited.isFound() || maxNodes > expanded) {
+                // a search without route may still have stale frontier entries after its last expansion
+                assertEquals(unlimited.getStatus(), outcome.getStatus(), message);
+                assertEquals(expanded, outcome.getNodesExpanded(), message);
+                if (unlimited.isFound()) {
+                    assertEquals(unlimited.getResult().getOptimalCost(), outcome.getResult().getOptimalCost(), message);
+                    assertEquals(unlimited.getResult().getPath(), outcome.getResult().getPath(), message);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchMetricsTest {
+
+    @Test
+    void histogramMatchesSortedValues() {
+        Random random = new Random(15);
+        for (int trial = 0; trial < TestNetworks.trials(200); trial++) {
+            int n = 1 + random.nextInt(500);
+            long[] values = new long[n];
+            Histogram histogram = new Histogram();
+            Histogram firstHalf = new Histogram();
+            Histogram secondHalf = new Histogram();
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                values[i] = random.nextInt(3) == 0 ? random.nextInt(10) : (long) Math.exp(random.nextDouble() * 40);
+                sum += values[i];
+                histogram.record(values[i]);
+                (i < n / 2 ? firstHalf : secondHalf).record(values[i]);
+            }
+            Arrays.sort(values);
+            assertEquals(n, histogram.getCount());
+            assertEquals(values[0], histogram.getMin());
+            assertEquals(values[n - 1], histogram.getMax());
+            assertEquals((double) sum / n, histogram.getMean(), 1e-9 * Math.abs(histogram.getMean()));
+            for (double percentile : new double[]{1, 10, 50, 90, 99, 99.9, 100}) {
+                long exact = values[(int) Math.max(0, Math.ceil(percentile / 100 * n) - 1)];
+                long reported = histogram.getPercentile(percentile);
+                String message = "p" + percentile + " of " + Arrays.toString(values);
+                assertTrue(reported >= exact && reported <= values[n - 1], message);
+                assertTrue(reported <= exact + exact / 8, message); // within one bucket of 1/8 of a power of two
+            }
+            firstHalf.add(secondHalf);
+            assertArrayEquals(histogram.getBuckets(), firstHalf.getBuckets());
+            assertEquals(histogram.toString(), firstHalf.toString());
+        }
+    }
+
+    @Test
+    void statsMatchTheOutcomes() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        List<long[]> counters = new ArrayList<>(); // the stats are only valid during the call
+        SearchMetrics metrics = new SearchMetrics();
+        planner.setSearchListener(stats -> {
+            metrics.searchFinished(stats);
+            long[] values = new long[SearchStats.Metric.values().length + 1];
+            for (SearchStats.Metric metric : SearchStats.Metric.values()) values[metric.ordinal()] = stats.get(metric);
+            values[values.length - 1] = stats.getStatus().ordinal();
+            counters.add(values);
+        });
+        List<SearchOutcome> outcomes = new ArrayList<>();
+        for (TestCase query : TestNetworks.bigGraphQueries(planner, new Random(15), TestNetworks.trials(50))) {
+            outcomes.add(planner.search(query.getStartCity(), query.getGoalCity(), 1.0, SearchBudget.unlimited()));
+        }
+        outcomes.add(planner.search("Ahaus", "Obertshausen", 1.0, SearchBudget.unlimited().withMaxNodesExpanded(10)));
+        planner.setSearchListener(null);
+        planner.search("Ahaus", "Obertshausen", 1.0, SearchBudget.unlimited());
+
+        assertEquals(outcomes.size(), counters.size());
+        assertEquals(outcomes.size(), metrics.getSearches());
+        long found = 0;
+        long expanded = 0;
+        for (int i = 0; i < outcomes.size(); i++) {
+            SearchOutcome outcome = outcomes.get(i);
+            long[] values = counters.get(i);
+            assertEquals(outcome.getStatus().ordinal(), values[values.length - 1]);
+            assertEquals(outcome.getNodesExpanded(), values[SearchStats.Metric.NODES_EXPANDED.ordinal()]);
+            assertEquals(outcome.getMaxFrontierSize(), values[SearchStats.Metric.MAX_FRONTIER_SIZE.ordinal()]);
+            assertEquals(outcome.getStatesGenerated(), values[SearchStats.Metric.STATES_GENERATED.ordinal()]);
+            long generated = values[SearchStats.Metric.STATES_GENERATED.ordinal()];
+            assertTrue(values[SearchStats.Metric.DUPLICATE_STATES.ordinal()] <= generated);
+            assertTrue(values[SearchStats.Metric.PERMIT_BRANCHES.ordinal()] <= generated);
+            assertEquals(0, values[SearchStats.Metric.DOMINATED_STATES.ordinal()]);
+            if (outcome.isFound()) found++;
+            expanded += outcome.getNodesExpanded();
+        }
+        assertEquals(found, metrics.getRoutesFound());
+        assertEquals(1, metrics.getCount(SearchOutcome.Status.BUDGET_EXCEEDED));
+        Histogram histogram = metrics.getHistogram(SearchStats.Metric.NODES_EXPANDED);
+        assertEquals(outcomes.size(), histogram.getCount());
+        assertEquals((double) expanded / outcomes.size(), histogram.getMean(), 1e-6);
+
+        metrics.clear();
+        assertEquals(0, metrics.getSearches());
+        assertEquals(0, metrics.getHistogram(SearchStats.Metric.NODES_EXPANDED).getCount());
+    }
+
+    @Test
+    void countsConcurrentSearches() throws Exception {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        List<TestCase> queries = TestNetworks.bigGraphQueries(planner, new Random(15), 0);
+        SearchMetrics metrics = new SearchMetrics();
+        planner.setSearchListener(metrics);
+        BatchResult batch;
+        try (BatchQueryEngine engine = new BatchQueryEngine(planner, 4)) {
+            batch = engine.run(queries, 1.0);
+        }
+        long found = batch.getResults().stream().filter(result -> result != null).count();
+        assertEquals(queries.size(), metrics.getSearches());
+        assertEquals(found, metrics.getRoutesFound());
+        assertEquals(queries.size(), metrics.getHistogram(SearchStats.Metric.NODES_EXPANDED).getCount());
+    }
+}
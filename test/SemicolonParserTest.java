@@ -0,0 +1,265 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SemicolonParserTest {
+
+    /**
+     * Random lines with names, numbers, padding, blank lines and both line breaks, read in blocks of random
+     * size, give the fields of {@code String.split} on the decoded text.
+     */
+    @Test
+    void matchesSplitOnRandomFiles() throws IOException {
+        Random random = new Random(12);
+        String[] names = {"Aachen", "Barsbüttel", "Görlitz", "Ñandú", "東京", "", "P1", "NONE"};
+        for (int trial = 0; trial < TestNetworks.trials(100); trial++) {
+            StringBuilder text = new StringBuilder();
+            for (int line = random.nextInt(200); line > 0; line--) {
+                int fields = random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(6);
+                for (int field = 0; field < fields; field++) {
+                    if (field > 0) text.append(';');
+                    if (random.nextInt(4) == 0) text.append(random.nextBoolean() ? " " : "\t ");
+                    text.append(random.nextBoolean() ? names[random.nextInt(names.length)]
+                            : String.valueOf(random.nextInt(2000) - 1000));
+                    if (random.nextInt(4) == 0) text.append("  ");
+                }
+                if (fields == 0 && random.nextBoolean()) text.append("   ");
+                text.append(random.nextBoolean() ? "\n" : "\r\n");
+            }
+            if (random.nextBoolean() && text.length() > 0) text.setLength(text.length() - 1); // no final break
+            assertFields(text.toString(), 1 + random.nextInt(40));
+            assertFields(text.toString(), 1 << 16);
+        }
+    }
+
+    @Test
+    void readsLinesLongerThanABlock() throws IOException {
+        StringBuilder text = new StringBuilder("header\n");
+        for (int field = 0; field < 40_000; field++) {
+            text.append(field == 0 ? "" : ";").append("Barsbüttel").append(field);
+        }
+        text.append("\nlast;line\n");
+        assertFields(text.toString(), 1 << 16);
+        assertFields(text.toString(), 1000);
+    }
+
+    @Test
+    void skipsByteOrderMarkAndBlankLines() throws IOException {
+        SemicolonParser parser = parser("\uFEFFcity;lat\r\n\r\n   \n\t\r\nAachen ; 50.77\r\n\n");
+        assertTrue(parser.nextLine());
+        assertEquals(1, parser.getLineNumber());
+        assertEquals("city", parser.stringField());
+        assertTrue(parser.nextLine());
+        assertEquals(5, parser.getLineNumber());
+        assertEquals(2, parser.fieldCount());
+        assertEquals("Aachen", parser.stringField());
+        assertEquals(50.77, parser.doubleField());
+        assertFalse(parser.hasMoreFields());
+        assertFalse(parser.nextLine());
+        assertFalse(parser.nextLine());
+    }
+
+    @Test
+    void readsEmptyInput() throws IOException {
+        assertFalse(parser("").nextLine());
+        assertFalse(parser("\uFEFF").nextLine());
+        assertFalse(parser("\n\r\n  \n").nextLine());
+    }
+
+    @Test
+    void reportsWrongFieldCountsWithLineNumbers() throws IOException {
+        SemicolonParser parser = parser("a;b;c;d\n\na;b;c\n");
+        assertTrue(parser.nextLine());
+        parser.requireFields(4, "w;x;y;z");
+        assertTrue(parser.nextLine());
+        IOException e = assertThrows(IOException.class, () -> parser.requireFields(4, "w;x;y;z"));
+        assertEquals("test.txt:3: expected 4 fields (w;x;y;z), found 3", e.getMessage());
+        parser.stringField();
+        parser.stringField();
+        parser.stringField();
+        e = assertThrows(IOException.class, parser::stringField);
+        assertEquals("test.txt:3: missing field 4", e.getMessage());
+    }
+
+    @Test
+    void plannerReportsMalformedLinesWithLineNumbers(@TempDir Path directory) throws IOException {
+        Path cities = directory.resolve("cities.txt");
+        Path connections = directory.resolve("connections.txt");
+        Files.write(cities, "city;lat;lon;available_permit\r\nA;50;7;NONE\r\n\r\nB;50,1;7;NONE\r\n"
+                .getBytes(StandardCharsets.UTF_8));
+        RoutePlanner2 planner = new RoutePlanner2();
+        IOException e = assertThrows(IOException.class, () -> planner.readCities(cities.toString()));
+        assertEquals("cities.txt:4: field 2: not a number: \"50,1\"", e.getMessage());
+
+        Files.write(cities, "city;lat;lon;available_permit\nA;50;7;NONE\nB;50.1;7;NONE\n"
+                .getBytes(StandardCharsets.UTF_8));
+        planner.readCities(cities.toString());
+        Files.write(connections, "city_1;city_2;distance;required_permit\nA;B;12;NONE\nA;B;12\n"
+                .getBytes(StandardCharsets.UTF_8));
+        e = assertThrows(IOException.class, () -> planner.readConnections(connections.toString()));
+        assertEquals("connections.txt:3: expected 4 fields (city_1;city_2;distance;required_permit), found 3",
+                e.getMessage());
+    }
+
+    /** The direct conversion of short decimals and the fallback both give the bits of parseDouble. */
+    @Test
+    void parsesDoublesLikeParseDouble() throws IOException {
+        List<String> values = new ArrayList<>(Arrays.asList("0", "-0", "-0.0", "+1.5", "007.250", "1.", ".5",
+                "123456789012345", "1234567890123456", "0.000000000000000000001", "0.1", "0.3", "9007199254740993",
+                "1e3", "2.5E-3", "-1.7976931348623157e308", "4.9e-324", "NaN", "-Infinity", "0x1p3",
+                "51.1656910", "7.2557260", "12.345678901234567890"));
+        Random random = new Random(12);
+        for (int i = 0; i < TestNetworks.trials(10_000); i++) {
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12) - 4);
+            switch (random.nextInt(3)) {
+                case 0: values.add(Double.toString(value)); break;
+                case 1: values.add(String.format(Locale.ROOT, "%." + random.nextInt(18) + "f", value)); break;
+                default: values.add(Long.toString(random.nextLong() % 1_000_000_000_000_000L)); break;
+            }
+        }
+        SemicolonParser parser = parser(String.join("\n", values));
+        for (String value : values) {
+            assertTrue(parser.nextLine());
+            double expected = Double.parseDouble(value);
+            double actual = parser.doubleField();
+            assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(actual), value);
+        }
+    }
+
+    @Test
+    void rejectsMalformedDoubles() throws IOException {
+        for (String value : new String[]{"", "-", "+", ".", "12,5", "1.2.3", "abc", "1 2", "--1"}) {
+            SemicolonParser parser = parser("header\nA;" + value + ";B\n");
+            parser.nextLine();
+            parser.nextLine();
+            parser.stringField();
+            IOException e = assertThrows(IOException.class, parser::doubleField, value);
+            assertEquals("test.txt:2: field 2: not a number: \"" + value.trim() + "\"", e.getMessage());
+        }
+    }
+
+    @Test
+    void parsesIntsLikeParseIntIncludingOverflow() throws IOException {
+        String[] values = {"0", "-0", "+7", "42", " 13 ", "2147483647", "-2147483648", "2147483648", "-2147483649",
+                "99999999999999999999", "-", "+", "", "1a", "1.0", "0x10", "00000000000000000000000001"};
+        for (String value : values) {
+            SemicolonParser parser = parser(value + ";end");
+            assertTrue(parser.nextLine());
+            Integer expected;
+            try {
+                expected = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                expected = null;
+            }
+            if (expected == null) {
+                IOException e = assertThrows(IOException.class, parser::intField, value);
+                assertTrue(e.getMessage().startsWith("test.txt:1: field 1: not a number"), e.getMessage());
+            } else {
+                assertEquals(expected.intValue(), parser.intField(), value);
+            }
+        }
+    }
+
+    /** Multi-byte names are interned once per distinct name and decoded correctly. */
+    @Test
+    void internsUtf8NamesOnce() throws IOException {
+        NameInterner names = new NameInterner();
+        SemicolonParser parser = parser("Barsbüttel;Barsbuttel\r\n Barsbüttel ;東京\nBarsbüttel;Ahaus\n");
+        assertTrue(parser.nextLine());
+        int barsbuettel = parser.nameField(names);
+        int barsbuttel = parser.nameField(names);
+        assertNotEquals(barsbuettel, barsbuttel);
+        assertTrue(parser.nextLine());
+        assertEquals(barsbuettel, parser.nameField(names));
+        int tokyo = parser.nameField(names);
+        assertTrue(parser.nextLine());
+        assertEquals(barsbuettel, parser.knownNameField(names));
+        assertEquals(Graph.NONE, parser.knownNameField(names));
+        assertEquals(3, names.size());
+        assertEquals("Barsbüttel", names.name(barsbuettel));
+        assertEquals("東京", names.name(tokyo));
+    }
+
+    /** The interner's open-addressing table against a HashMap, through several rehashes. */
+    @Test
+    void internerMatchesHashMap() {
+        NameInterner names = new NameInterner();
+        Map<String, Integer> model = new HashMap<>();
+        Random random = new Random(12);
+        for (int i = 0; i < TestNetworks.trials(20_000); i++) {
+            String name = "Städt" + random.nextInt(3000);
+            byte[] padded = ("  " + name + ";").getBytes(StandardCharsets.UTF_8);
+            int end = padded.length - 1;
+            if (random.nextInt(3) == 0) {
+                assertEquals(model.getOrDefault(name, Graph.NONE), names.find(padded, 2, end), name);
+            } else {
+                Integer expected = model.computeIfAbsent(name, key -> model.size());
+                assertEquals(expected.intValue(), names.intern(padded, 2, end), name);
+            }
+        }
+        assertEquals(model.size(), names.size());
+        for (Map.Entry<String, Integer> entry : model.entrySet()) {
+            assertEquals(entry.getKey(), names.name(entry.getValue()));
+        }
+    }
+
+    /** Reads all lines with stringField and compares them with the lines split on the decoded text. */
+    private static void assertFields(String text, int chunk) throws IOException {
+        List<String[]> expected = new ArrayList<>();
+        for (String line : text.split("\n", -1)) {
+            if (line.trim().isEmpty()) continue;
+            String[] fields = line.split(";", -1);
+            for (int i = 0; i < fields.length; i++) fields[i] = fields[i].trim();
+            expected.add(fields);
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        SemicolonParser parser = new SemicolonParser(new ChunkedChannel(bytes, chunk), "test.txt");
+        for (String[] fields : expected) {
+            assertTrue(parser.nextLine());
+            assertEquals(fields.length, parser.fieldCount(), "line " + parser.getLineNumber());
+            for (String field : fields) assertEquals(field, parser.stringField(), "line " + parser.getLineNumber());
+            assertFalse(parser.hasMoreFields());
+        }
+        assertFalse(parser.nextLine());
+    }
+
+    private static SemicolonParser parser(String text) {
+        return new SemicolonParser(new ChunkedChannel(text.getBytes(StandardCharsets.UTF_8), 1 << 16), "test.txt");
+    }
+
+    /** Hands out the bytes at most {@code chunk} at a time, so lines cross the reads. */
+    private static final class ChunkedChannel implements ReadableByteChannel {
+        private final byte[] bytes;
+        private final int chunk;
+        private int position;
+
+        ChunkedChannel(byte[] bytes, int chunk) {
+            this.bytes = bytes;
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read(ByteBuffer target) {
+            if (position == bytes.length) return -1;
+            int n = Math.min(Math.min(chunk, target.remaining()), bytes.length - position);
+            target.put(bytes, position, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() { return true; }
+
+        @Override
+        public void close() { }
+    }
+}
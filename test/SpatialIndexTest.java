@@ -0,0 +1,220 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpatialIndexTest {
+
+    @Test
+    void matchesScanOnBigGraph() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        SpatialIndex index = planner.getNetwork().getSpatialIndex();
+        Random random = new Random(25);
+        for (int trial = 0; trial < TestNetworks.trials(300); trial++) {
+            double[] position = randomPosition(index.getGeo(), random);
+            assertMatchesScan(index, position[0], position[1], random);
+        }
+    }
+
+    @Test
+    void matchesScanOnRandomNetworks(@TempDir Path directory) throws IOException {
+        Random random = new Random(25);
+        for (int trial = 0; trial < TestNetworks.trials(300); trial++) {
+            RoutePlanner2 planner = TestNetworks.randomNetwork(random, directory, 30, 4);
+            SpatialIndex index = planner.getNetwork().getSpatialIndex();
+            for (int query = 0; query < 5; query++) {
+                double[] position = randomPosition(index.getGeo(), random);
+                assertMatchesScan(index, position[0], position[1], random);
+            }
+        }
+    }
+
+    /** Cities all over the sphere, so the tree splits along every axis and queries cross the poles. */
+    @Test
+    void matchesScanAcrossTheSphere() {
+        Random random = new Random(25);
+        for (int trial = 0; trial < TestNetworks.trials(100); trial++) {
+            int cities = 1 + random.nextInt(200);
+            double[] latitudes = new double[cities];
+            double[] longitudes = new double[cities];
+            for (int city = 0; city < cities; city++) {
+                latitudes[city] = random.nextDouble() * 180 - 90;
+                longitudes[city] = random.nextDouble() * 360 - 180;
+            }
+            SpatialIndex index = SpatialIndex.build(new GeoHeuristic(latitudes, longitudes));
+            assertEquals(cities, index.size());
+            for (int query = 0; query < 5; query++) {
+                assertMatchesScan(index, random.nextDouble() * 180 - 90, random.nextDouble() * 720 - 360, random);
+            }
+            assertMatchesScan(index, 90, 0, random);
+            assertMatchesScan(index, -90, 0, random);
+        }
+    }
+
+    @Test
+    void emptyIndexFindsNothing() {
+        SpatialIndex index = SpatialIndex.build(new GeoHeuristic(new double[0], new double[0]));
+        assertEquals(Graph.NONE, index.nearest(50, 10));
+        assertEquals(0, index.nearest(50, 10, 3).length);
+        assertEquals(0, index.withinRadius(50, 10, 1000).length);
+    }
+
+    @Test
+    void nearestCityMatchesScan() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        SpatialIndex index = planner.getNetwork().getSpatialIndex();
+        Graph graph = planner.getNetwork().getGraph();
+        Random random = new Random(25);
+        for (int trial = 0; trial < TestNetworks.trials(200); trial++) {
+            double[] position = randomPosition(index.getGeo(), random);
+            int[] scanned = scan(index, position[0], position[1]);
+            String nearest = planner.nearestCity(position[0], position[1]);
+            assertEquals(index.distance(position[0], position[1], scanned[0]),
+                    index.distance(position[0], position[1], graph.cityId(nearest)), 1e-9, nearest);
+            assertEquals(nearest, planner.nearestCities(position[0], position[1], 1).get(0));
+        }
+        for (int city = 0; city < graph.cityCount(); city++) { // every city is its own nearest city
+            GeoHeuristic geo = index.getGeo();
+            String nearest = planner.nearestCity(geo.latitudeDegrees(city), geo.longitudeDegrees(city));
+            assertEquals(0, index.distance(geo.latitudeDegrees(city), geo.longitudeDegrees(city),
+                    graph.cityId(nearest)), 1e-9, graph.cityName(city));
+        }
+    }
+
+    /** The snapped search routes between the nearest cities like aStarSearch between their names. */
+    @Test
+    void snappedSearchMatchesSearchBetweenNearestCities() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        Random random = new Random(25);
+        for (TestCase query : TestNetworks.bigGraphQueries(planner, random, TestNetworks.trials(100))) {
+            double[] start = nearCity(planner, query.getStartCity(), random);
+            double[] goal = nearCity(planner, query.getGoalCity(), random);
+            String startCity = planner.nearestCity(start[0], start[1]);
+            String goalCity = planner.nearestCity(goal[0], goal[1]);
+            SearchResult expected = TestNetworks.aStar(planner, startCity, goalCity);
+            SearchResult result = planner.aStarSearch(start[0], start[1], goal[0], goal[1], 1.0);
+            if (expected == null) {
+                assertNull(result, startCity + " -> " + goalCity);
+                continue;
+            }
+            assertNotNull(result, startCity + " -> " + goalCity);
+            assertEquals(expected.getOptimalCost(), result.getOptimalCost(), 1e-6, startCity + " -> " + goalCity);
+            TestNetworks.assertRoute(planner.getNetwork().getGraph(), startCity, goalCity, result);
+        }
+    }
+
+    @Test
+    void snappedSearchIsOptimalOnRandomNetworks(@TempDir Path directory) throws IOException {
+        Random random = new Random(25);
+        for (int trial = 0; trial < TestNetworks.trials(300); trial++) {
+            RoutePlanner2 planner = TestNetworks.randomNetwork(random, directory, 30, 4);
+            if (random.nextInt(4) == 0) planner.permitCost = 0;
+            for (int query = 0; query < 5; query++) {
+                double[] start = nearCity(planner, TestNetworks.randomCity(planner, random), random);
+                double[] goal = nearCity(planner, TestNetworks.randomCity(planner, random), random);
+                TestNetworks.assertOptimal(planner, planner.nearestCity(start[0], start[1]),
+                        planner.nearestCity(goal[0], goal[1]),
+                        planner.aStarSearch(start[0], start[1], goal[0], goal[1], 1.0));
+            }
+        }
+    }
+
+    @Test
+    void rejectsInvalidArguments() throws IOException {
+        RoutePlanner2 planner = TestNetworks.bigGraph();
+        SpatialIndex index = planner.getNetwork().getSpatialIndex();
+        assertThrows(IllegalArgumentException.class, () -> index.nearest(50, 10, -1));
+        assertThrows(IllegalArgumentException.class, () -> index.withinRadius(50, 10, -1));
+        assertThrows(IllegalArgumentException.class, () -> index.withinRadius(50, 10, Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> index.nearest(90.5, 10));
+        assertThrows(IllegalArgumentException.class, () -> index.nearest(-91, 10));
+        assertThrows(IllegalArgumentException.class, () -> index.nearest(50, Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> index.nearest(50, Double.POSITIVE_INFINITY));
+        assertThrows(IllegalArgumentException.class, () -> planner.nearestCity(Double.NaN, 10));
+        assertThrows(IllegalArgumentException.class, () -> planner.nearestCities(50, 10, -1));
+        assertThrows(IllegalArgumentException.class, () -> planner.citiesWithin(50, 10, -1));
+        assertThrows(IllegalArgumentException.class, () -> planner.aStarSearch(50, 10, 91, 10, 1.0));
+    }
+
+    /**
+     * Compares nearest, k-nearest for k from 0 to beyond the size, and radius queries from 0 km up with a
+     * scan over all cities. Cities at the same distance may come in either order, so the distances are
+     * compared position by position.
+     */
+    private static void assertMatchesScan(SpatialIndex index, double latitude, double longitude, Random random) {
+        int[] scanned = scan(index, latitude, longitude);
+        String query = latitude + ", " + longitude;
+        int nearest = index.nearest(latitude, longitude);
+        assertEquals(distance(index, latitude, longitude, scanned[0]), distance(index, latitude, longitude, nearest),
+                1e-9, query);
+
+        for (int k : new int[]{0, 1, 2, 1 + random.nextInt(index.size()), index.size(), index.size() + 3}) {
+            int[] found = index.nearest(latitude, longitude, k);
+            assertEquals(Math.min(k, index.size()), found.length, query + ", k = " + k);
+            assertDistinct(found, query);
+            for (int i = 0; i < found.length; i++) {
+                assertEquals(distance(index, latitude, longitude, scanned[i]),
+                        distance(index, latitude, longitude, found[i]), 1e-9, query + ", k = " + k + ", #" + i);
+            }
+        }
+
+        double farthest = distance(index, latitude, longitude, scanned[scanned.length - 1]);
+        double[] radii = {0, random.nextDouble() * 20, random.nextDouble() * farthest, farthest + 1};
+        for (double radius : radii) {
+            int[] found = index.withinRadius(latitude, longitude, radius);
+            assertDistinct(found, query);
+            for (int i = 0; i < found.length; i++) {
+                double distance = distance(index, latitude, longitude, found[i]);
+                assertTrue(distance <= radius + 1e-9, query + ", radius " + radius + ": " + distance);
+                if (i > 0) assertTrue(distance(index, latitude, longitude, found[i - 1]) <= distance + 1e-9, query);
+            }
+            long inside = Arrays.stream(scanned)
+                    .filter(city -> distance(index, latitude, longitude, city) < radius - 1e-9).count();
+            assertTrue(found.length >= inside, query + ", radius " + radius + ": " + found.length + " < " + inside);
+        }
+        assertEquals(index.size(), index.withinRadius(latitude, longitude, farthest + 1).length, query);
+    }
+
+    /** All cities of the index by ascending great-circle distance. */
+    private static int[] scan(SpatialIndex index, double latitude, double longitude) {
+        double[] distances = new double[index.size()];
+        for (int city = 0; city < distances.length; city++) {
+            distances[city] = distance(index, latitude, longitude, city);
+        }
+        return IntStream.range(0, index.size()).boxed()
+                .sorted((a, b) -> Double.compare(distances[a], distances[b]))
+                .mapToInt(Integer::intValue).toArray();
+    }
+
+    private static double distance(SpatialIndex index, double latitude, double longitude, int city) {
+        return index.distance(latitude, longitude, city);
+    }
+
+    private static void assertDistinct(int[] cities, String query) {
+        assertEquals(cities.length, Arrays.stream(cities).distinct().count(), query + ": " + Arrays.toString(cities));
+    }
+
+    /** Mostly a position within about 10 km of a city, sometimes anywhere on the sphere. */
+    private static double[] randomPosition(GeoHeuristic geo, Random random) {
+        if (random.nextInt(10) == 0) {
+            return new double[]{random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180};
+        }
+        int city = random.nextInt(geo.cityCount());
+        return new double[]{geo.latitudeDegrees(city) + (random.nextDouble() - 0.5) * 0.2,
+                geo.longitudeDegrees(city) + (random.nextDouble() - 0.5) * 0.2};
+    }
+
+    /** A position about 2 km off the city. */
+    private static double[] nearCity(RoutePlanner2 planner, String city, Random random) {
+        GeoHeuristic geo = planner.getNetwork().getGeo();
+        int id = planner.getNetwork().getGraph().cityId(city);
+        return new double[]{geo.latitudeDegrees(id) + (random.nextDouble() - 0.5) * 0.05,
+                geo.longitudeDegrees(id) + (random.nextDouble() - 0.5) * 0.05};
+    }
+}
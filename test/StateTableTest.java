@@ -0,0 +1,64 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StateTableTest {
+
+    /**
+     * Random puts and gets against a HashMap, from a small table through several doublings, with clears in
+     * between that keep the grown arrays. Keys come from narrow and from wide ranges, like the packed states.
+     */
+    @Test
+    void matchesHashMap() {
+        Random random = new Random(2);
+        for (int trial = 0; trial < TestNetworks.trials(100); trial++) {
+            StateTable table = new StateTable(1 + random.nextInt(8));
+            Map<Long, Integer> model = new HashMap<>();
+            long range = random.nextBoolean() ? 1 + random.nextInt(5000) : Long.MAX_VALUE;
+            for (int operation = 0; operation < 20_000; operation++) {
+                long key = (random.nextLong() & Long.MAX_VALUE) % range;
+                int action = random.nextInt(1000);
+                if (action < 500) {
+                    int value = random.nextInt(Integer.MAX_VALUE);
+                    table.put(key, value);
+                    model.put(key, value);
+                } else if (action < 999) {
+                    assertEquals(model.getOrDefault(key, StateTable.ABSENT).intValue(), table.get(key), "key " + key);
+                } else {
+                    table.clear();
+                    model.clear();
+                }
+                assertEquals(model.size(), table.size());
+            }
+            for (Map.Entry<Long, Integer> entry : model.entrySet()) {
+                assertEquals(entry.getValue().intValue(), table.get(entry.getKey()));
+            }
+        }
+    }
+
+    @Test
+    void isReusableAfterClear() {
+        StateTable table = new StateTable(4);
+        for (int round = 0; round < 3; round++) {
+            for (long key = 0; key < 100_000; key++) table.put(key * 31, (int) key + round);
+            assertEquals(100_000, table.size());
+            for (long key = 0; key < 100_000; key++) {
+                assertEquals((int) key + round, table.get(key * 31));
+                assertEquals(StateTable.ABSENT, table.get(key * 31 + 1));
+            }
+            table.clear();
+            assertEquals(0, table.size());
+            assertEquals(StateTable.ABSENT, table.get(0));
+            assertEquals(StateTable.ABSENT, table.get(31));
+        }
+        table.clear(); // clearing an empty table
+        table.put(Long.MAX_VALUE, 7);
+        table.put(Long.MAX_VALUE, 8);
+        assertEquals(1, table.size());
+        assertEquals(8, table.get(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,205 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Networks and brute-force reference answers shared by the planner tests.
+ * <p>
+ * The randomized tests draw their cases from fixed seeds, so a failure repeats. Their number of cases is
+ * scaled by {@code -Dplanner.trials=<factor>}, e.g. {@code mvn test -Dplanner.trials=20} for a long run.
+ */
+final class TestNetworks {
+    static final String BIG_GRAPH_CITIES = "testcases_Teilaufgabe_3/bigGraph_cities.txt";
+    static final String BIG_GRAPH_CONNECTIONS = "testcases_Teilaufgabe_3/bigGraph_connections.txt";
+    static final String BIG_GRAPH_TEST_CASES = "testcases_Teilaufgabe_3/testcases_bigGraph.txt";
+
+    private TestNetworks() {
+    }
+
+    /** Number of random cases for a test that runs {@code cases} by default. */
+    static int trials(int cases) {
+        return cases * Integer.getInteger("planner.trials", 1);
+    }
+
+    /**
+     * Resolves a path below the planner's {@code src} directory; Maven runs the tests in the planner
+     * module, an IDE usually in the repository root.
+     */
+    static String dataFile(String relativePath) {
+        for (String candidate : new String[]{"src", "../src"}) {
+            Path path = Paths.get(candidate, relativePath);
+            if (Files.exists(path)) return path.toString();
+        }
+        throw new IllegalStateException("Cannot find " + relativePath);
+    }
+
+    static RoutePlanner2 bigGraph() throws IOException {
+        RoutePlanner2 planner = new RoutePlanner2();
+        planner.readCities(dataFile(BIG_GRAPH_CITIES));
+        planner.readConnections(dataFile(BIG_GRAPH_CONNECTIONS));
+        return planner;
+    }
+
+    /** The test cases of bigGraph followed by {@code pairs} random pairs of its cities. */
+    static List<TestCase> bigGraphQueries(RoutePlanner2 planner, Random random, int pairs) throws IOException {
+        List<TestCase> queries = new ArrayList<>(planner.readTestCases(dataFile(BIG_GRAPH_TEST_CASES)));
+        Graph graph = planner.getNetwork().getGraph();
+        for (int i = 0; i < pairs; i++) {
+            queries.add(new TestCase(graph.cityName(random.nextInt(graph.cityCount())),
+                    graph.cityName(random.nextInt(graph.cityCount()))));
+        }
+        return queries;
+    }
+
+    /**
+     * Writes a random network of 4 to {@code maxCities} cities into the directory and loads it. The cities
+     * lie within about 10 km of each other and roads are 20 to 119 km long, so the straight line never
+     * overestimates; half of the cities sell and half of the roads require one of 1 to {@code maxPermits}
+     * permits. Networks are often disconnected and have parallel roads and loops.
+     */
+    static RoutePlanner2 randomNetwork(Random random, Path directory, int maxCities, int maxPermits)
+            throws IOException {
+        return randomNetwork(random, directory, maxCities, maxPermits, 0.1);
+    }
+
+    /**
+     * Like {@link #randomNetwork(Random, Path, int, int)} with the cities spread over {@code spreadDegrees}
+     * of latitude and longitude. From about 0.2° on, roads can be shorter than the straight line between
+     * their cities, so the unscaled geographic distance overestimates; at 1° most of them are.
+     */
+    static RoutePlanner2 randomNetwork(Random random, Path directory, int maxCities, int maxPermits,
+                                       double spreadDegrees) throws IOException {
+        int cities = 4 + random.nextInt(maxCities - 3);
+        int permits = 1 + random.nextInt(maxPermits);
+        Path citiesFile = directory.resolve("cities.txt");
+        Path connectionsFile = directory.resolve("connections.txt");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(citiesFile, StandardCharsets.UTF_8))) {
+            out.println("city;lat;lon;available_permit");
+            for (int city = 0; city < cities; city++) {
+                double latitude = random.nextDouble() * spreadDegrees;
+                double longitude = random.nextDouble() * spreadDegrees;
+                out.println("C" + city + ";" + latitude + ";" + longitude + ";"
+                        + (random.nextBoolean() ? "P" + random.nextInt(permits) : "NONE"));
+            }
+        }
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(connectionsFile, StandardCharsets.UTF_8))) {
+            out.println("city_1;city_2;distance;required_permit");
+            int roads = cities + random.nextInt(3 * cities);
+            for (int road = 0; road < roads; road++) {
+                String permit = random.nextBoolean() ? "NONE" : "P" + random.nextInt(permits);
+                out.println("C" + random.nextInt(cities) + ";C" + random.nextInt(cities) + ";"
+                        + (20 + random.nextInt(100)) + ";" + permit);
+            }
+        }
+        RoutePlanner2 planner = new RoutePlanner2();
+        planner.readCities(citiesFile.toString());
+        planner.readConnections(connectionsFile.toString());
+        return planner;
+    }
+
+    /** 0.1° or 1° for {@link #randomNetwork(Random, Path, int, int, double)}, i.e. with or without short roads. */
+    static double randomSpread(Random random) {
+        return random.nextBoolean() ? 0.1 : 1;
+    }
+
+    /** A random city name of the planner's network. */
+    static String randomCity(RoutePlanner2 planner, Random random) {
+        Graph graph = planner.getNetwork().getGraph();
+        return graph.cityName(random.nextInt(graph.cityCount()));
+    }
+
+    /** aStarSearch at scaling factor 1.0 without its console output; null if there is no route. */
+    static SearchResult aStar(RoutePlanner2 planner, String startCity, String goalCity) {
+        return planner.search(startCity, goalCity, 1.0, SearchBudget.unlimited()).getResult();
+    }
+
+    /**
+     * Optimal cost by Dijkstra over every (city, permits held) state, without heuristic, reachability
+     * index or pruning: a permit is acquired in the start city or on arriving in a city, a road needs its
+     * permit. Infinite if there is no route.
+     */
+    static double referenceCost(Graph graph, int start, int goal, long heldPermits, double permitCost) {
+        return referenceCost(graph, start, goal, heldPermits, permitCost, -1L);
+    }
+
+    /** Like {@link #referenceCost(Graph, int, int, long, double)}, acquiring only the permits of the mask. */
+    static double referenceCost(Graph graph, int start, int goal, long heldPermits, double permitCost,
+                                long acquirable) {
+        boolean[] settled = new boolean[(int) graph.stateKey(graph.cityCount(), 0L)];
+        PriorityQueue<double[]> queue = new PriorityQueue<>(Comparator.comparingDouble(entry -> entry[0]));
+        queue.add(new double[]{0, start, heldPermits});
+        long startPermit = PermitRegistry.mask(graph.availablePermit(start)) & acquirable;
+        if (startPermit != 0 && (heldPermits & startPermit) == 0) {
+            queue.add(new double[]{permitCost, start, heldPermits | startPermit});
+        }
+        while (!queue.isEmpty()) {
+            double[] entry = queue.poll();
+            int city = (int) entry[1];
+            long permits = (long) entry[2];
+            int state = (int) graph.stateKey(city, permits);
+            if (settled[state]) continue;
+            settled[state] = true;
+            if (city == goal) return entry[0];
+            for (int edge = graph.firstEdge(city), end = graph.endEdge(city); edge < end; edge++) {
+                long required = PermitRegistry.mask(graph.requiredPermit(edge));
+                if ((permits & required) != required) continue;
+                int next = graph.target(edge);
+                double cost = entry[0] + graph.distance(edge);
+                if (!settled[(int) graph.stateKey(next, permits)]) queue.add(new double[]{cost, next, permits});
+                long available = PermitRegistry.mask(graph.availablePermit(next)) & acquirable;
+                if (available != 0 && (permits & available) == 0
+                        && !settled[(int) graph.stateKey(next, permits | available)]) {
+                    queue.add(new double[]{cost + permitCost, next, permits | available});
+                }
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    static double referenceCost(RoutePlanner2 planner, String startCity, String goalCity) {
+        Graph graph = planner.getNetwork().getGraph();
+        return referenceCost(graph, graph.cityId(startCity), graph.cityId(goalCity), 0L, planner.permitCost);
+    }
+
+    /**
+     * Asserts that the result has the reference cost, or is null where there is no route, and that its path
+     * leads from start to goal over roads whose shortest lengths and the permits add up to no more than
+     * the cost.
+     */
+    static void assertOptimal(RoutePlanner2 planner, String startCity, String goalCity, SearchResult result) {
+        double expected = referenceCost(planner, startCity, goalCity);
+        String query = startCity + " -> " + goalCity;
+        if (expected == Double.POSITIVE_INFINITY) {
+            assertNull(result, query);
+            return;
+        }
+        assertNotNull(result, query);
+        assertEquals(expected, result.getOptimalCost(), 1e-6, query);
+        assertRoute(planner.getNetwork().getGraph(), startCity, goalCity, result);
+    }
+
+    static void assertRoute(Graph graph, String startCity, String goalCity, SearchResult result) {
+        List<String> path = result.getPath();
+        String query = startCity + " -> " + goalCity;
+        assertEquals(startCity, path.get(0), query);
+        assertEquals(goalCity, path.get(path.size() - 1), query);
+        double length = 0;
+        for (int i = 1; i < path.size(); i++) {
+            int from = graph.cityId(path.get(i - 1));
+            int to = graph.cityId(path.get(i));
+            double shortest = Double.POSITIVE_INFINITY;
+            for (int edge = graph.firstEdge(from), end = graph.endEdge(from); edge < end; edge++) {
+                if (graph.target(edge) == to) shortest = Math.min(shortest, graph.distance(edge));
+            }
+            assertNotEquals(Double.POSITIVE_INFINITY, shortest, query + ": no road to " + path.get(i));
+            length += shortest;
+        }
+        assertTrue(length + result.getTotalPermitCost() <= result.getOptimalCost() + 1e-6, query + ": " + path);
+    }
+}